@@ -15,13 +15,15 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.FreemarkerHttpServlet;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChangeListenerDispatcher;
 import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 import javax.servlet.annotation.WebServlet;
 
 /**
  * Show the list of living background threads (instances of
- * VitroBackgroundThread), and their status.
+ * VitroBackgroundThread), and their status. Also show the queues of the
+ * asynchronous change listeners.
  */
 @WebServlet(name = "ShowBackgroundThreads", urlPatterns = {"/admin/showThreads"} )
 public class ShowBackgroundThreadsController extends FreemarkerHttpServlet {
@@ -43,6 +45,8 @@ public class ShowBackgroundThreadsController extends FreemarkerHttpServlet {
 
 		Map<String, Object> bodyMap = new HashMap<String, Object>();
 		bodyMap.put("threads", new ArrayList<ThreadInfo>(threadMap.values()));
+		bodyMap.put("listenerQueues", ChangeListenerDispatcher.getInstance()
+				.getStatus());
 
 		return new TemplateResponseValues(TEMPLATE_NAME, bodyMap);
 
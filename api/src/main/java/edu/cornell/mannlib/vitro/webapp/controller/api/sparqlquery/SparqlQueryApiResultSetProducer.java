@@ -48,17 +48,18 @@ abstract class SparqlQueryApiResultSetProducer extends SparqlQueryApiExecutor {
 	@Override
 	public void executeAndFormat(OutputStream out) throws RDFServiceException,
 			IOException {
-		InputStream rawResult = getRawResultStream();
-		if (mediaType.isNativeFormat()) {
-			IOUtils.copy(rawResult, out);
-		} else if (mediaType == TSV) {
-			// ARQ doesn't support TSV, so we will do the translation.
-			pipeWithReplacement(rawResult, out);
-		} else {
-			ResultSet rs = ResultSetFactory.fromJSON(rawResult);
-			ResultsFormat format = ResultsFormat.lookup(mediaType
-					.getJenaResponseFormat());
-			ResultSetFormatter.output(out, rs, format);
+		try (InputStream rawResult = getRawResultStream()) {
+			if (mediaType.isNativeFormat()) {
+				IOUtils.copy(rawResult, out);
+			} else if (mediaType == TSV) {
+				// ARQ doesn't support TSV, so we will do the translation.
+				pipeWithReplacement(rawResult, out);
+			} else {
+				ResultSet rs = ResultSetFactory.fromJSON(rawResult);
+				ResultsFormat format = ResultsFormat.lookup(mediaType
+						.getJenaResponseFormat());
+				ResultSetFormatter.output(out, rs, format);
+			}
 		}
 	}
 
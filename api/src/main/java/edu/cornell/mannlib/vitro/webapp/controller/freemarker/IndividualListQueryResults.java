@@ -57,18 +57,16 @@ public class IndividualListQueryResults {
 		long hitCount = docs.getNumFound();
 		log.debug("Number of search results: " + hitCount);
 
-		List<Individual> individuals = new ArrayList<Individual>(docs.size());
+		List<String> uris = new ArrayList<String>(docs.size());
 		for (SearchResultDocument doc : docs) {
-			String uri = doc.getStringValue(VitroSearchTermNames.URI);
-			Individual individual = indDao.getIndividualByURI(uri);
-			if (individual == null) {
-				log.debug("No individual for search document with uri = " + uri);
-			} else {
-				individuals.add(individual);
-				log.debug("Adding individual " + uri + " to individual list");
-			}
+			uris.add(doc.getStringValue(VitroSearchTermNames.URI));
 		}
 
+		// load them all at once, rather than one query at a time
+		List<Individual> individuals = indDao.getIndividualsByURIs(uris);
+		log.debug("Found " + individuals.size() + " individuals for "
+				+ uris.size() + " search documents");
+
 		return new IndividualListQueryResults((int) hitCount, individuals);
 	}
 
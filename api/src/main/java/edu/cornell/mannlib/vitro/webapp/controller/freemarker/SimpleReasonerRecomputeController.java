@@ -15,6 +15,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ExceptionResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
+import edu.cornell.mannlib.vitro.webapp.reasoner.ABoxRecomputer.RecomputeProgress;
 import edu.cornell.mannlib.vitro.webapp.reasoner.SimpleReasoner;
 import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
@@ -52,6 +53,10 @@ public class SimpleReasonerRecomputeController extends FreemarkerHttpServlet {
                         messageStr = 
                             "The system is currently in the process of " +
                             "recomputing inferences.";
+                        RecomputeProgress progress = simpleReasoner.getRecomputeProgress();
+                        if (progress != null) {
+                            messageStr += " Progress: " + progress + ".";
+                        }
                 } else {
                     String submit = (String)vreq.getParameter("submit");
                     if (submit != null) {
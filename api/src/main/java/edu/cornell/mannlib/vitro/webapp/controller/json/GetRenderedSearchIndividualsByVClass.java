@@ -2,6 +2,7 @@
 
 package edu.cornell.mannlib.vitro.webapp.controller.json;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -66,16 +67,38 @@ public class GetRenderedSearchIndividualsByVClass extends GetSearchIndividualsBy
 	private void addShortViewRenderings(ObjectNode rObj) {
 		ArrayNode individuals = (ArrayNode) rObj.get("individuals");
 		String vclassName = rObj.get("vclass").get("name").asText();
+		Map<String, Individual> loaded = loadIndividuals(individuals);
 		for (int i = 0; i < individuals.size(); i++) {
 			ObjectNode individual = (ObjectNode) individuals.get(i);
+			String uri = individual.get("URI").asText();
 			individual.put("shortViewHtml",
-					renderShortView(individual.get("URI").asText(), vclassName));
+					renderShortView(uri, loaded.get(uri), vclassName));
 		}
 	}
 
-	private String renderShortView(String individualUri, String vclassName) {
+	/**
+	 * Load all of the individuals on the page at once, rather than one query
+	 * at a time.
+	 */
+	private Map<String, Individual> loadIndividuals(ArrayNode individuals) {
+		List<String> uris = new ArrayList<>();
+		for (int i = 0; i < individuals.size(); i++) {
+			uris.add(individuals.get(i).get("URI").asText());
+		}
 		IndividualDao iDao = vreq.getWebappDaoFactory().getIndividualDao();
-		Individual individual = iDao.getIndividualByURI(individualUri);
+		Map<String, Individual> map = new HashMap<>();
+		for (Individual ind : iDao.getIndividualsByURIs(uris)) {
+			map.put(ind.getURI(), ind);
+		}
+		return map;
+	}
+
+	private String renderShortView(String individualUri, Individual individual,
+			String vclassName) {
+		if (individual == null) {
+			IndividualDao iDao = vreq.getWebappDaoFactory().getIndividualDao();
+			individual = iDao.getIndividualByURI(individualUri);
+		}
 
 		Map<String, Object> modelMap = new HashMap<String, Object>();
 		modelMap.put("individual",
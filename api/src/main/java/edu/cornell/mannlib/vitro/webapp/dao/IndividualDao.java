@@ -5,6 +5,7 @@ package edu.cornell.mannlib.vitro.webapp.dao;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import edu.cornell.mannlib.vitro.webapp.beans.DataPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
@@ -82,11 +83,29 @@ public interface IndividualDao {
      */
     public abstract Individual getIndividualByURI(String individualURI);
 
+    /**
+     * Get the Individuals for these URIs, with as few trips to the triple
+     * store as the implementation allows. Labels, types, most specific types
+     * and thumbnails should be available without further queries.
+     * @param individualURIs URIs of the Individuals. Duplicates and empty URIs
+     *            are ignored.
+     * @return the Individuals, in the order of the URIs. There is no entry for
+     *         a URI that has no Individual.
+     */
+    public abstract List<Individual> getIndividualsByURIs(Collection<String> individualURIs);
+
     /**
      * Returns a collection of all Individuals in the model that are user-viewable.
      */
     public abstract Collection<String> getAllIndividualUris();
 
+    /**
+     * Passes the URIs of all Individuals in the model that are user-viewable to
+     * the consumer, one at a time, as they are read. Unlike
+     * getAllIndividualUris(), the URIs are never held in memory all at once.
+     */
+    public abstract void streamAllIndividualUris(Consumer<String> consumer);
+
     /**
      * Returns an Iterator over all Individuals in the model that are user-viewable and have been updated since the specified time.
      */
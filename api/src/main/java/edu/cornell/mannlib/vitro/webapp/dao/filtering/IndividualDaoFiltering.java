@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import net.sf.jga.algorithms.Filter;
 import net.sf.jga.algorithms.Transform;
@@ -61,6 +62,11 @@ class IndividualDaoFiltering extends BaseFiltering implements IndividualDao{
             return null;        
     }
     
+    public List<Individual> getIndividualsByURIs(Collection<String> individualURIs) {
+        return filterAndWrap(innerIndividualDao.getIndividualsByURIs(individualURIs),
+                filters);
+    }
+
     public void fillVClassForIndividual(Individual individual) {
         innerIndividualDao.fillVClassForIndividual(individual);
     }
@@ -124,6 +130,10 @@ class IndividualDaoFiltering extends BaseFiltering implements IndividualDao{
         return innerIndividualDao.getAllIndividualUris(); 
                        
     }
+
+    public void streamAllIndividualUris(Consumer<String> consumer) {
+        innerIndividualDao.streamAllIndividualUris(consumer);
+    }
     
     public Iterator<String> getUpdatedSinceIterator(long updatedSince) {
         return  innerIndividualDao.getUpdatedSinceIterator(updatedSince);
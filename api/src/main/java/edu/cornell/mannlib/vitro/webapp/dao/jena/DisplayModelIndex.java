@@ -0,0 +1,392 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.RDF;
+
+import edu.cornell.mannlib.vitro.webapp.dao.DisplayVocabulary;
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+
+/**
+ * Holds the pages of the display model in memory, so the PageRoutingFilter
+ * and the PageController don't query the display model on every request.
+ *
+ * The index is read from the display model when it is first needed, and
+ * again after any statement that describes a page or its data getters has
+ * been added or removed. Other changes to the display model are ignored.
+ *
+ * The lookups answer from immutable maps, so they need no locking. A PageDao
+ * uses the index only if its display model is the one that was indexed. A
+ * language-filtered display model is a different model, so it is still
+ * queried directly.
+ */
+public class DisplayModelIndex extends StatementListener {
+    private static final Log log = LogFactory.getLog(DisplayModelIndex.class);
+
+    private static volatile DisplayModelIndex instance;
+
+    /**
+     * May return null, if there is no index.
+     */
+    public static DisplayModelIndex getInstance() {
+        return instance;
+    }
+
+    /** Used by the Setup, and by unit tests. */
+    static void setInstance(DisplayModelIndex index) {
+        instance = index;
+    }
+
+    /** Statements with these predicates can change what the index holds. */
+    private static final Set<String> INDEXED_PREDICATES = new HashSet<>(
+            Arrays.asList(RDF.type.getURI(),
+                    DisplayVocabulary.URL_MAPPING.getURI(),
+                    DisplayVocabulary.TITLE,
+                    DisplayVocabulary.REQUIRES_BODY_TEMPLATE.getURI(),
+                    DisplayVocabulary.HAS_DATA_GETTER,
+                    DisplayVocabulary.REQUIRES_ACTIONS));
+
+    private static final String DATA_GETTERS_QUERY = PageDaoJena.prefixes
+            + "\n" //
+            + "SELECT ?pageUri ?dg ?dataGetterType WHERE {\n"
+            + "    ?pageUri display:hasDataGetter ?dg .\n"
+            + "    OPTIONAL { ?dg rdf:type ?dataGetterType } \n" //
+            + "} \n";
+
+    private static final String REQUIRED_ACTIONS_QUERY = PageDaoJena.prefixes
+            + "\n" //
+            + "SELECT ?pageUri ?requiredAction WHERE {\n" //
+            + "    ?pageUri <" + DisplayVocabulary.REQUIRES_ACTIONS
+            + "> ?requiredAction .\n" //
+            + "} \n";
+
+    /** Queried for the index. */
+    private final OntModel displayModel;
+
+    /** Every change to the display model passes through here. */
+    private final Model model;
+
+    /** Null if the index must be read again. */
+    private volatile Snapshot snapshot;
+
+    /** Incremented by every relevant change. */
+    private final AtomicLong generation = new AtomicLong();
+
+    private long rebuilds;
+
+    public DisplayModelIndex(OntModel displayModel) {
+        this.displayModel = displayModel;
+        this.model = displayModel.getBaseModel();
+        this.model.register(this);
+    }
+
+    /**
+     * Is this the display model that we indexed?
+     */
+    public boolean covers(Model other) {
+        Model base = (other instanceof OntModel) ? ((OntModel) other)
+                .getBaseModel() : other;
+        return base != null && base.getGraph() == model.getGraph();
+    }
+
+    /** Maps each URL mapping to its page. Don't modify it. */
+    public Map<String, String> getPageMappings() {
+        return getSnapshot().pageMappings;
+    }
+
+    /**
+     * A copy of the page information, in the form of PageDao.getPage(), or
+     * an empty map.
+     */
+    public Map<String, Object> getPage(String pageUri) {
+        Snapshot s = getSnapshot();
+        Map<String, Object> page = s.pages.get(pageUri);
+        if (page == null) {
+            log.debug("no page found for " + pageUri);
+            return Collections.emptyMap();
+        }
+        Map<String, Object> copy = new HashMap<>(page);
+        copy.put("dataGetterTypes", new ArrayList<>(listOf(s.dataGetterTypes,
+                pageUri)));
+        copy.put("dataGetterURIs", new ArrayList<>(listOf(s.dataGetterUris,
+                pageUri)));
+        return copy;
+    }
+
+    /** The URIs of all home pages. Don't modify the list. */
+    public List<String> getHomePageUris() {
+        return getSnapshot().homePageUris;
+    }
+
+    /** The types of the page's data getters. Don't modify the list. */
+    public List<String> getDataGetterTypes(String pageUri) {
+        return listOf(getSnapshot().dataGetterTypes, pageUri);
+    }
+
+    /** The actions required by the page itself. Don't modify the list. */
+    public List<String> getRequiredActions(String pageUri) {
+        return listOf(getSnapshot().requiredActions, pageUri);
+    }
+
+    public synchronized long getRebuildCount() {
+        return rebuilds;
+    }
+
+    public void close() {
+        model.unregister(this);
+        snapshot = null;
+    }
+
+    private static List<String> listOf(Map<String, List<String>> map,
+            String pageUri) {
+        List<String> list = map.get(pageUri);
+        return (list == null) ? Collections.<String> emptyList() : list;
+    }
+
+    // ----------------------------------------------------------------------
+    // Reading the display model
+    // ----------------------------------------------------------------------
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            s = snapshot;
+            if (s == null) {
+                long startingGeneration = generation.get();
+                s = readSnapshot();
+                rebuilds++;
+
+                // If the model changed while we read it, read it again next
+                // time.
+                if (startingGeneration == generation.get()) {
+                    snapshot = s;
+                }
+            }
+            return s;
+        }
+    }
+
+    private Snapshot readSnapshot() {
+        Map<String, String> pageMappings = new HashMap<>();
+        Map<String, Map<String, Object>> pages = new HashMap<>();
+        List<String> homePageUris = new ArrayList<>();
+        Map<String, List<String>> dataGetterUris = new HashMap<>();
+        Map<String, List<String>> dataGetterTypes = new HashMap<>();
+        Map<String, List<String>> requiredActions = new HashMap<>();
+
+        displayModel.enterCriticalSection(false);
+        try {
+            for (QuerySolution soln : select(PageDaoJena.pageQuery)) {
+                String pageUri = PageDaoJena.nodeToString(soln.get("pageUri"));
+                // The mapping is OPTIONAL in pageQuery, but not every page has one.
+                RDFNode urlMapping = soln.get("urlMapping");
+                if (urlMapping != null) {
+                    pageMappings.put(PageDaoJena.nodeToString(urlMapping),
+                            pageUri);
+                }
+                if (!pages.containsKey(pageUri)) {
+                    pages.put(pageUri, toMap(soln));
+                }
+            }
+
+            for (QuerySolution soln : select(PageDaoJena.homePageUriQuery)) {
+                homePageUris.add(PageDaoJena.nodeToString(soln.get("pageUri")));
+            }
+
+            Set<String> dataGettersSeen = new HashSet<>();
+            for (QuerySolution soln : select(QueryFactory
+                    .create(DATA_GETTERS_QUERY))) {
+                String pageUri = PageDaoJena.nodeToString(soln.get("pageUri"));
+                String dg = PageDaoJena.nodeToString(soln.get("dg"));
+                if (dataGettersSeen.add(pageUri + " " + dg)) {
+                    add(dataGetterUris, pageUri, dg);
+                }
+                RDFNode type = soln.get("dataGetterType");
+                if (type != null) {
+                    add(dataGetterTypes, pageUri, PageDaoJena.nodeToString(type));
+                }
+            }
+
+            for (QuerySolution soln : select(QueryFactory
+                    .create(REQUIRED_ACTIONS_QUERY))) {
+                add(requiredActions,
+                        PageDaoJena.nodeToString(soln.get("pageUri")),
+                        PageDaoJena.nodeToString(soln.get("requiredAction")));
+            }
+        } finally {
+            displayModel.leaveCriticalSection();
+        }
+
+        log.debug("Indexed " + pages.size() + " pages from the display model.");
+        return new Snapshot(pageMappings, pages, homePageUris,
+                dataGetterUris, dataGetterTypes, requiredActions);
+    }
+
+    private List<QuerySolution> select(Query query) {
+        List<QuerySolution> solutions = new ArrayList<>();
+        QueryExecution qexec = QueryExecutionFactory.create(query,
+                displayModel);
+        try {
+            ResultSet rs = qexec.execSelect();
+            while (rs.hasNext()) {
+                solutions.add(rs.next());
+            }
+        } finally {
+            qexec.close();
+        }
+        return solutions;
+    }
+
+    private static Map<String, Object> toMap(QuerySolution soln) {
+        Map<String, Object> map = new HashMap<>();
+        for (String varName : Arrays.asList("pageUri", "bodyTemplate",
+                "urlMapping", "title")) {
+            if (soln.contains(varName)) {
+                map.put(varName, PageDaoJena.nodeToObject(soln.get(varName)));
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static void add(Map<String, List<String>> map, String key,
+            String value) {
+        List<String> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        list.add(value);
+    }
+
+    // ----------------------------------------------------------------------
+    // Listening for changes
+    // ----------------------------------------------------------------------
+
+    @Override
+    public void addedStatement(Statement stmt) {
+        statementChanged(stmt);
+    }
+
+    @Override
+    public void removedStatement(Statement stmt) {
+        statementChanged(stmt);
+    }
+
+    @Override
+    public void notifyEvent(Model m, Object event) {
+        // A removeAll() doesn't say what was removed.
+        if (event instanceof GraphEvents) {
+            invalidate();
+        }
+    }
+
+    private void statementChanged(Statement stmt) {
+        if (INDEXED_PREDICATES.contains(stmt.getPredicate().getURI())) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Not synchronized: the thread that changes the model may hold a lock
+     * that a rebuild is waiting for.
+     */
+    private void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    // ----------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------
+
+    private static class Snapshot {
+        final Map<String, String> pageMappings;
+        final Map<String, Map<String, Object>> pages;
+        final List<String> homePageUris;
+        final Map<String, List<String>> dataGetterUris;
+        final Map<String, List<String>> dataGetterTypes;
+        final Map<String, List<String>> requiredActions;
+
+        Snapshot(Map<String, String> pageMappings,
+                Map<String, Map<String, Object>> pages,
+                List<String> homePageUris,
+                Map<String, List<String>> dataGetterUris,
+                Map<String, List<String>> dataGetterTypes,
+                Map<String, List<String>> requiredActions) {
+            this.pageMappings = Collections.unmodifiableMap(pageMappings);
+            this.pages = pages;
+            this.homePageUris = Collections.unmodifiableList(homePageUris);
+            this.dataGetterUris = freeze(dataGetterUris);
+            this.dataGetterTypes = freeze(dataGetterTypes);
+            this.requiredActions = freeze(requiredActions);
+        }
+
+        private static Map<String, List<String>> freeze(
+                Map<String, List<String>> map) {
+            for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            return map;
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    /**
+     * Index the display model, and keep the index until shutdown.
+     */
+    public static class Setup implements ServletContextListener {
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            OntModel displayModel = ModelAccess.on(sce.getServletContext())
+                    .getOntModel(DISPLAY);
+            setInstance(new DisplayModelIndex(displayModel));
+            StartupStatus.getBean(sce.getServletContext()).info(this,
+                    "Indexing the pages of the display model.");
+        }
+
+        @Override
+        public void contextDestroyed(ServletContextEvent sce) {
+            DisplayModelIndex index = instance;
+            if (index != null) {
+                setInstance(null);
+                index.close();
+            }
+        }
+    }
+}
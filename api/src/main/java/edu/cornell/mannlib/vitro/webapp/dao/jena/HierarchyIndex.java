@@ -0,0 +1,505 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.shared.Lock;
+import org.apache.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+
+/**
+ * The transitive closures of rdfs:subClassOf and rdfs:subPropertyOf in a TBox
+ * model, so the DAOs don't walk the hierarchy one level at a time.
+ *
+ * Each class or property gets a dense integer ID, and its ancestors and
+ * descendants are held as BitSets of those IDs. The index is read from the
+ * model when it is first needed. A new sub-class or sub-property statement
+ * patches the index in place. Any other change to the hierarchy means that the
+ * index is read again when next needed. Each new version of the index has a
+ * higher version number.
+ *
+ * A version is never modified once it is in use, so the lookups need no
+ * locking.
+ *
+ * The ContextModelAccess creates an index for each of its TBox models. A DAO
+ * uses the index only if its TBox model is the one that was indexed.
+ */
+public class HierarchyIndex {
+    private static final Log log = LogFactory.getLog(HierarchyIndex.class);
+
+    private static final List<HierarchyIndex> indexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Find the index for this model. May return null, if there is no index.
+     */
+    public static HierarchyIndex forModel(Model m) {
+        for (HierarchyIndex index : indexes) {
+            if (index.covers(m)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /** The model that is indexed. */
+    private final OntModel tboxModel;
+
+    /** The models that hold the statements, and must be listened to. */
+    private final List<Model> watchedModels;
+
+    private final Listener listener = new Listener();
+
+    /** Null if the index must be read again. */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /** Incremented by every relevant change. */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private long rebuilds;
+
+    /**
+     * Index the TBox model. If it is a union of other models, changes will
+     * arrive through those models, so they are the ones to watch.
+     */
+    public HierarchyIndex(OntModel tboxModel, OntModel... componentModels) {
+        this.tboxModel = tboxModel;
+
+        List<Model> watched = new ArrayList<>();
+        if (componentModels.length == 0) {
+            watched.add(tboxModel.getBaseModel());
+        } else {
+            for (OntModel component : componentModels) {
+                watched.add(component.getBaseModel());
+            }
+        }
+        this.watchedModels = Collections.unmodifiableList(watched);
+
+        for (Model m : watchedModels) {
+            m.register(listener);
+        }
+        indexes.add(this);
+    }
+
+    /**
+     * Is this the TBox model that we indexed?
+     */
+    public boolean covers(Model other) {
+        return other != null
+                && (other == tboxModel || other.getGraph() == tboxModel
+                        .getGraph());
+    }
+
+    /**
+     * Every version of the index has a higher number than the one before.
+     */
+    public long getVersion() {
+        return getSnapshot().version;
+    }
+
+    /** All classes that are beneath this one in the hierarchy. */
+    public List<String> getSubClassURIs(String classUri) {
+        return getSnapshot().classes.descendants(classUri);
+    }
+
+    /** All classes that are above this one in the hierarchy. */
+    public List<String> getSuperClassURIs(String classUri) {
+        return getSnapshot().classes.ancestors(classUri);
+    }
+
+    public boolean isSubClassOf(String subUri, String superUri) {
+        return getSnapshot().classes.isBelow(subUri, superUri);
+    }
+
+    /** All properties that are beneath this one in the hierarchy. */
+    public List<String> getSubPropertyURIs(String propertyUri) {
+        return getSnapshot().properties.descendants(propertyUri);
+    }
+
+    /** All properties that are above this one in the hierarchy. */
+    public List<String> getSuperPropertyURIs(String propertyUri) {
+        return getSnapshot().properties.ancestors(propertyUri);
+    }
+
+    public boolean isSubPropertyOf(String subUri, String superUri) {
+        return getSnapshot().properties.isBelow(subUri, superUri);
+    }
+
+    public synchronized long getRebuildCount() {
+        return rebuilds;
+    }
+
+    public void close() {
+        indexes.remove(this);
+        for (Model m : watchedModels) {
+            m.unregister(listener);
+        }
+        snapshot.set(null);
+    }
+
+    // ----------------------------------------------------------------------
+    // Reading the TBox model
+    // ----------------------------------------------------------------------
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot.get();
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            s = snapshot.get();
+            if (s == null) {
+                long startingGeneration = generation.get();
+                s = readSnapshot();
+                rebuilds++;
+
+                // If the model changed while we read it, and the change
+                // wasn't patched into this snapshot, read it again next time.
+                if (snapshot.compareAndSet(null, s)
+                        && startingGeneration != generation.get()) {
+                    snapshot.compareAndSet(s, null);
+                }
+            }
+            return s;
+        }
+    }
+
+    private Snapshot readSnapshot() {
+        Closure.Builder classes = new Closure.Builder();
+        Closure.Builder properties = new Closure.Builder();
+
+        tboxModel.enterCriticalSection(Lock.READ);
+        try {
+            readEdges(RDFS.subClassOf, classes);
+            readEdges(RDFS.subPropertyOf, properties);
+        } finally {
+            tboxModel.leaveCriticalSection();
+        }
+
+        Snapshot s = new Snapshot(versions.incrementAndGet(), classes.build(),
+                properties.build());
+        log.debug("Indexed " + s.classes.size() + " classes and "
+                + s.properties.size() + " properties.");
+        return s;
+    }
+
+    private void readEdges(Property predicate, Closure.Builder builder) {
+        StmtIterator stmts = tboxModel.listStatements(null, predicate,
+                (RDFNode) null);
+        try {
+            while (stmts.hasNext()) {
+                Statement stmt = stmts.next();
+                String sub = nodeName(predicate, stmt.getSubject());
+                String sup = nodeName(predicate, stmt.getObject());
+                if (sub != null && sup != null) {
+                    builder.addEdge(sub, sup);
+                }
+            }
+        } finally {
+            stmts.close();
+        }
+    }
+
+    /**
+     * Anonymous classes are named as the VClassDao names them. Anonymous
+     * properties and literals are not indexed.
+     */
+    private static String nodeName(Property predicate, RDFNode node) {
+        if (node.isURIResource()) {
+            return node.asResource().getURI();
+        }
+        if (node.isAnon() && RDFS.subClassOf.equals(predicate)) {
+            return VitroVocabulary.PSEUDO_BNODE_NS
+                    + ((Resource) node).getId().toString();
+        }
+        return null;
+    }
+
+    // ----------------------------------------------------------------------
+    // Listening for changes
+    // ----------------------------------------------------------------------
+
+    private void added(Statement stmt) {
+        Property predicate = stmt.getPredicate();
+        if (!isIndexed(predicate)) {
+            return;
+        }
+        generation.incrementAndGet();
+
+        String sub = nodeName(predicate, stmt.getSubject());
+        String sup = nodeName(predicate, stmt.getObject());
+        if (sub == null || sup == null) {
+            return;
+        }
+
+        while (true) {
+            Snapshot s = snapshot.get();
+            if (s == null) {
+                return;
+            }
+            Snapshot patched = s.withEdge(versions.incrementAndGet(),
+                    RDFS.subClassOf.equals(predicate), sub, sup);
+            if (snapshot.compareAndSet(s, patched)) {
+                return;
+            }
+        }
+    }
+
+    private void removed(Statement stmt) {
+        if (isIndexed(stmt.getPredicate())) {
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    private static boolean isIndexed(Property predicate) {
+        return RDFS.subClassOf.equals(predicate)
+                || RDFS.subPropertyOf.equals(predicate);
+    }
+
+    private class Listener extends StatementListener {
+        @Override
+        public void addedStatement(Statement stmt) {
+            added(stmt);
+        }
+
+        @Override
+        public void removedStatement(Statement stmt) {
+            removed(stmt);
+        }
+
+        @Override
+        public void notifyEvent(Model m, Object event) {
+            // A removeAll() doesn't say what was removed.
+            if (event instanceof GraphEvents) {
+                invalidate();
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------
+
+    private static class Snapshot {
+        final long version;
+        final Closure classes;
+        final Closure properties;
+
+        Snapshot(long version, Closure classes, Closure properties) {
+            this.version = version;
+            this.classes = classes;
+            this.properties = properties;
+        }
+
+        Snapshot withEdge(long newVersion, boolean isClassEdge, String sub,
+                String sup) {
+            if (isClassEdge) {
+                return new Snapshot(newVersion, classes.withEdge(sub, sup),
+                        properties);
+            } else {
+                return new Snapshot(newVersion, classes, properties.withEdge(
+                        sub, sup));
+            }
+        }
+    }
+
+    /**
+     * The transitive closure of one relation. A node is "below" another if
+     * there is a path of one or more edges from it to the other. A node is
+     * below itself only if it lies on a cycle.
+     *
+     * The BitSets are not modified after the Closure is built.
+     */
+    static class Closure {
+        private final Map<String, Integer> ids;
+        private final String[] uris;
+        private final BitSet[] ancestors;
+        private final BitSet[] descendants;
+
+        private Closure(Map<String, Integer> ids, String[] uris,
+                BitSet[] ancestors, BitSet[] descendants) {
+            this.ids = ids;
+            this.uris = uris;
+            this.ancestors = ancestors;
+            this.descendants = descendants;
+        }
+
+        int size() {
+            return uris.length;
+        }
+
+        List<String> ancestors(String uri) {
+            Integer id = ids.get(uri);
+            return (id == null) ? new ArrayList<String>() : toUris(ancestors[id]);
+        }
+
+        List<String> descendants(String uri) {
+            Integer id = ids.get(uri);
+            return (id == null) ? new ArrayList<String>()
+                    : toUris(descendants[id]);
+        }
+
+        boolean isBelow(String sub, String sup) {
+            Integer subId = ids.get(sub);
+            Integer supId = ids.get(sup);
+            return subId != null && supId != null
+                    && ancestors[subId].get(supId);
+        }
+
+        private List<String> toUris(BitSet bits) {
+            List<String> list = new ArrayList<>(bits.cardinality());
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                list.add(uris[i]);
+            }
+            return list;
+        }
+
+        /**
+         * Create a new Closure with this edge added. The unaffected BitSets
+         * are shared with this one.
+         */
+        Closure withEdge(String sub, String sup) {
+            Integer subId = ids.get(sub);
+            Integer supId = ids.get(sup);
+            if (subId != null && supId != null
+                    && ancestors[subId].get(supId)) {
+                return this;
+            }
+
+            Map<String, Integer> newIds = ids;
+            String[] newUris = uris;
+            BitSet[] newAncestors = ancestors.clone();
+            BitSet[] newDescendants = descendants.clone();
+            if (subId == null || supId == null) {
+                newIds = new HashMap<>(ids);
+                List<String> added = new ArrayList<>(Arrays.asList(uris));
+                subId = idFor(sub, newIds, added);
+                supId = idFor(sup, newIds, added);
+                newUris = added.toArray(new String[added.size()]);
+                newAncestors = Arrays.copyOf(newAncestors, newUris.length);
+                newDescendants = Arrays.copyOf(newDescendants,
+                        newUris.length);
+                for (int i = uris.length; i < newUris.length; i++) {
+                    newAncestors[i] = new BitSet();
+                    newDescendants[i] = new BitSet();
+                }
+            }
+
+            // Everything at or below sub is now below everything at or
+            // above sup.
+            BitSet up = (BitSet) newAncestors[supId].clone();
+            up.set(supId);
+            BitSet down = (BitSet) newDescendants[subId].clone();
+            down.set(subId);
+
+            for (int i = down.nextSetBit(0); i >= 0; i = down.nextSetBit(i + 1)) {
+                BitSet bits = (BitSet) newAncestors[i].clone();
+                bits.or(up);
+                newAncestors[i] = bits;
+            }
+            for (int i = up.nextSetBit(0); i >= 0; i = up.nextSetBit(i + 1)) {
+                BitSet bits = (BitSet) newDescendants[i].clone();
+                bits.or(down);
+                newDescendants[i] = bits;
+            }
+            return new Closure(newIds, newUris, newAncestors, newDescendants);
+        }
+
+        private static int idFor(String uri, Map<String, Integer> ids,
+                List<String> uris) {
+            Integer id = ids.get(uri);
+            if (id == null) {
+                id = uris.size();
+                ids.put(uri, id);
+                uris.add(uri);
+            }
+            return id;
+        }
+
+        static class Builder {
+            private final Map<String, Integer> ids = new HashMap<>();
+            private final List<String> uris = new ArrayList<>();
+            private final List<List<Integer>> parents = new ArrayList<>();
+
+            void addEdge(String sub, String sup) {
+                int subId = idFor(sub);
+                int supId = idFor(sup);
+                parents.get(subId).add(supId);
+            }
+
+            private int idFor(String uri) {
+                int size = uris.size();
+                int id = Closure.idFor(uri, ids, uris);
+                if (id == size) {
+                    parents.add(new ArrayList<Integer>());
+                }
+                return id;
+            }
+
+            /**
+             * Walk upward from each node to find its ancestors, then invert
+             * to find the descendants.
+             */
+            Closure build() {
+                int size = uris.size();
+                BitSet[] ancestors = new BitSet[size];
+                BitSet[] descendants = new BitSet[size];
+                for (int i = 0; i < size; i++) {
+                    descendants[i] = new BitSet();
+                }
+
+                int[] stack = new int[size + 1];
+                for (int i = 0; i < size; i++) {
+                    BitSet reached = new BitSet();
+                    int top = 0;
+                    stack[top++] = i;
+                    while (top > 0) {
+                        int node = stack[--top];
+                        for (int parent : parents.get(node)) {
+                            if (!reached.get(parent)) {
+                                reached.set(parent);
+                                stack[top++] = parent;
+                            }
+                        }
+                    }
+                    ancestors[i] = reached;
+                    for (int a = reached.nextSetBit(0); a >= 0; a = reached
+                            .nextSetBit(a + 1)) {
+                        descendants[a].set(i);
+                    }
+                }
+                return new Closure(Collections.unmodifiableMap(ids),
+                        uris.toArray(new String[size]), ancestors,
+                        descendants);
+            }
+        }
+    }
+}
@@ -9,9 +9,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.logging.Log;
@@ -423,6 +425,21 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
         }
     }
 
+    /**
+     * The individuals are backed by an in-memory model, so there is nothing to
+     * gain from loading them together.
+     */
+    public List<Individual> getIndividualsByURIs(Collection<String> individualURIs) {
+        List<Individual> individuals = new ArrayList<Individual>();
+        for (String uri : new LinkedHashSet<String>(individualURIs)) {
+            Individual ind = getIndividualByURI(uri);
+            if (ind != null) {
+                individuals.add(ind);
+            }
+        }
+        return individuals;
+    }
+
     public void fillVClassForIndividual(Individual entity) {
         entity.setVClass(getWebappDaoFactory().getVClassDao().getVClassByURI(entity.getVClassURI()));
     }
@@ -602,6 +619,30 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
         throw new NotImplementedException("");
     }  
 
+    /**
+     * Pass the URI of each labeled resource to the consumer, as it is read.
+     * IndividualDaoSDB does the same with a query that skips the TBox graphs.
+     */
+    public void streamAllIndividualUris(Consumer<String> consumer) {
+        OntModel ontModel = getOntModel();
+        ontModel.enterCriticalSection(Lock.READ);
+        ResIterator subjects = null;
+        try {
+            subjects = ontModel.listSubjectsWithProperty(RDFS.label);
+            while (subjects.hasNext()) {
+                Resource res = subjects.nextResource();
+                if (res.isURIResource()) {
+                    consumer.accept(res.getURI());
+                }
+            }
+        } finally {
+            if (subjects != null) {
+                subjects.close();
+            }
+            ontModel.leaveCriticalSection();
+        }
+    }
+
     public Iterator<String> getUpdatedSinceIterator(long updatedSince){
         //this is implemented in IndivdiualSDB
         throw new NotImplementedException("");
@@ -8,8 +8,11 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import org.apache.commons.lang3.StringUtils;
@@ -29,6 +32,7 @@ import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.AnonId;
 import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
@@ -303,6 +307,64 @@ public class IndividualDaoSDB extends IndividualDaoJena {
         }
     }  
     
+    /**
+     * The hydrating query loads the labels, types, most specific types and
+     * thumbnail links of a whole batch of individuals at once.
+     */
+    @Override
+    public List<Individual> getIndividualsByURIs(Collection<String> individualURIs) {
+        return getHydratedIndividuals(individualURIs);
+    }
+
+    /** How many individuals are hydrated by a single query. */
+    private static final int HYDRATION_BATCH_SIZE = 100;
+
+    /**
+     * Load these individuals, hydrated, with one query for each batch of
+     * URIs. See IndividualSDB.hydrate().
+     * 
+     * The individuals are returned in the order of the URIs. If a URI has no
+     * statements, there is no individual for it.
+     */
+    public List<Individual> getHydratedIndividuals(Collection<String> uris) {
+        Set<String> uniqueUris = new LinkedHashSet<String>();
+        for (String uri : uris) {
+            if (StringUtils.isNotEmpty(uri)) {
+                uniqueUris.add(uri);
+            }
+        }
+        List<String> uriList = new ArrayList<String>(uniqueUris);
+        List<Individual> individuals = new ArrayList<Individual>();
+        for (int i = 0; i < uriList.size(); i += HYDRATION_BATCH_SIZE) {
+            List<String> batch = uriList.subList(i,
+                    Math.min(i + HYDRATION_BATCH_SIZE, uriList.size()));
+            try {
+                Model all = IndividualSDB.loadHydrationModel(
+                        wadf.getRDFService(), batch);
+                for (String uri : batch) {
+                    Model statements = IndividualSDB.extractHydrationModel(all, uri);
+                    if (statements.isEmpty()) {
+                        continue;
+                    }
+                    IndividualSDB ind = new IndividualSDB(uri, this.dwf,
+                            datasetMode, wadf, SKIP_INITIALIZATION);
+                    ind.useHydratedModel(statements);
+                    individuals.add(ind);
+                }
+            } catch (RDFServiceException | IndividualNotFoundException e) {
+                log.warn("Failed to hydrate individuals; "
+                        + "loading them one at a time.", e);
+                for (String uri : batch) {
+                    Individual ind = makeIndividual(uri);
+                    if (ind != null) {
+                        individuals.add(ind);
+                    }
+                }
+            }
+        }
+        return individuals;
+    }
+
     /**
      * fills in the Individual objects needed for any ObjectPropertyStatements 
      * attached to the specified individual.
@@ -445,23 +507,25 @@ public class IndividualDaoSDB extends IndividualDaoJena {
         return rv;
     }
     
+    /**
+     * Get all labeled resources from any non-tbox and non-metadata graphs, as
+     * well as the unnamed graph (first pattern below)
+     */
+    private static final String ALL_INDIVIDUAL_URIS_QUERY = "" //
+            + "SELECT DISTINCT ?ind WHERE { \n" //
+            + " { ?ind <" + RDFS.label.getURI() + "> ?label } " //
+            + " UNION { " //
+            + "  GRAPH ?g { ?ind <" + RDFS.label.getURI() + "> ?label } \n" //
+            + "  FILTER (?g != <" + ModelNames.APPLICATION_METADATA + "> " //
+            + "          && !regex(str(?g),\"tbox\")) \n " //
+            + " } " //
+            + "}";
+
     @Override
     public Collection<String> getAllIndividualUris() {
         final List<String> list = new LinkedList<String>();
         
-        // get all labeled resources from any non-tbox and non-metadata graphs,
-        // as well as the unnamed graph (first pattern below)
-        String query = "SELECT DISTINCT ?ind WHERE { \n" +
-                       " { ?ind <" + RDFS.label.getURI() + "> ?label } " +
-                       " UNION { " + 
-                       "  GRAPH ?g { ?ind <" + RDFS.label.getURI() +
-                                          "> ?label } \n" +
-                       "  FILTER (?g != <" + ModelNames.APPLICATION_METADATA + "> " +
-                       "          && !regex(str(?g),\"tbox\")) \n " +
-                       " } " +
-                       "}";
-              
-	    Query q = QueryFactory.create(query);
+	    Query q = QueryFactory.create(ALL_INDIVIDUAL_URIS_QUERY);
 	    DatasetWrapper w = getDatasetWrapper();
 	    Dataset dataset = w.getDataset();
 	    dataset.getLock().enterCriticalSection(Lock.READ);
@@ -483,6 +547,29 @@ public class IndividualDaoSDB extends IndividualDaoJena {
         return list;
     }  
 
+    /**
+     * The RDFService hands us each solution as it is read, so the URIs can be
+     * consumed without collecting them into a list.
+     */
+    @Override
+    public void streamAllIndividualUris(final Consumer<String> consumer) {
+        try {
+            wadf.getRDFService().sparqlSelectQuery(ALL_INDIVIDUAL_URIS_QUERY,
+                    new ResultSetConsumer() {
+                        @Override
+                        protected void processQuerySolution(QuerySolution qs) {
+                            Resource res = qs.getResource("ind");
+                            if (res != null && !res.isAnon()) {
+                                consumer.accept(res.getURI());
+                            }
+                        }
+                    });
+        } catch (RDFServiceException e) {
+            log.debug(e, e);
+            throw new RuntimeException(e);
+        }
+    }
+
     private Iterator<Individual> getIndividualIterator(
     									final List<String> individualURIs) {
         if (individualURIs.size() >0){
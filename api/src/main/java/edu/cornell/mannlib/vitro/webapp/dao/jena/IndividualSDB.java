@@ -7,6 +7,7 @@ import static edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB.SDBD
 import java.sql.Timestamp;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -39,6 +40,7 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.shared.Lock;
+import org.apache.jena.vocabulary.XSD;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 
@@ -72,6 +74,7 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     private String individualURI = null; 
     private Model model = null;
     private Boolean _hasThumb = null; 
+    private Model hydratedModel = null;
     
     public IndividualSDB(String individualURI, 
                          DatasetWrapperFactory datasetWrapperFactory,
@@ -192,6 +195,135 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     private DatasetWrapper getDatasetWrapper() {
         return this.dwf.getDatasetWrapper();
     }
+
+    /**
+     * The predicates we load for the objects of a hydrated individual's
+     * statements: enough to name them, type them, and find their thumbnails.
+     */
+    private static final String[] LINKED_OBJECT_PREDICATES = {
+            RDFS.label.getURI(), RDF.type.getURI(),
+            VitroVocabulary.FS_THUMBNAIL_IMAGE };
+
+    /**
+     * Load all of the statements about this individual with a single query,
+     * along with the labels and types of the individuals it links to.
+     * 
+     * After this, getMostSpecificTypeURIs(), hasThumb(), getSearchBoost(), 
+     * getObjectPropertyStatements(propertyURI), getRelatedIndividuals(), 
+     * getRelatedIndividual() and getDataPropertyStatements(propertyUri) are 
+     * answered from the loaded statements instead of from the triple store.
+     */
+    public void hydrate() {
+        if (individualURI == null || hydratedModel != null) {
+            return;
+        }
+        try {
+            useHydratedModel(loadHydrationModel(webappDaoFactory.getRDFService(),
+                    Collections.singletonList(individualURI)));
+        } catch (RDFServiceException e) {
+            log.warn("Failed to hydrate " + individualURI, e);
+        }
+    }
+
+    public boolean isHydrated() {
+        return hydratedModel != null;
+    }
+
+    /**
+     * Use these statements to answer the accessors. The model may hold
+     * statements for other individuals, but only this individual's own
+     * statements and those for the objects it links to will be consulted.
+     */
+    void useHydratedModel(Model statements) {
+        Resource self = statements.getResource(individualURI);
+        Model labelModel = ModelFactory.createDefaultModel();
+        labelModel.add(statements.listStatements(self, RDFS.label, (RDFNode) null));
+        OntModel ontModel = ModelFactory.createOntologyModel(
+                OntModelSpec.OWL_MEM, labelModel);
+        this.model = labelModel;
+        this.ind = ontModel.createOntResource(individualURI);
+        this.hydratedModel = statements;
+    }
+
+    /**
+     * One CONSTRUCT for all of these individuals: their outgoing statements,
+     * and the linked object predicates for anything they point to.
+     */
+    static Model loadHydrationModel(RDFService rdfService,
+            Collection<String> individualURIs) throws RDFServiceException {
+        StringBuilder values = new StringBuilder();
+        for (String uri : individualURIs) {
+            values.append(" <").append(uri).append(">");
+        }
+        StringBuilder construct = new StringBuilder("CONSTRUCT { \n" +
+                "  ?s ?p ?o . \n" +
+                "  ?o ?linkedP ?linkedO . \n" +
+                "} WHERE { \n" +
+                "  VALUES ?s {" + values + " } \n" +
+                "  { ?s ?p ?o } \n");
+        for (String linked : LINKED_OBJECT_PREDICATES) {
+            construct.append("  UNION { ?s ?p ?o . ?o ?linkedP ?linkedO . ")
+                    .append("VALUES ?linkedP { <").append(linked)
+                    .append("> } } \n");
+        }
+        construct.append("}");
+
+        Model model = ModelFactory.createDefaultModel();
+        rdfService.sparqlConstructQuery(construct.toString(), model);
+        return model;
+    }
+
+    /**
+     * Pick out the statements for one individual from a model that was loaded
+     * for several.
+     */
+    static Model extractHydrationModel(Model all, String individualURI) {
+        Model model = ModelFactory.createDefaultModel();
+        Resource self = all.getResource(individualURI);
+        StmtIterator stmts = all.listStatements(self, null, (RDFNode) null);
+        try {
+            while (stmts.hasNext()) {
+                Statement stmt = stmts.nextStatement();
+                model.add(stmt);
+                if (stmt.getObject().isResource()) {
+                    Resource linked = stmt.getObject().asResource();
+                    for (String linkedP : LINKED_OBJECT_PREDICATES) {
+                        model.add(all.listStatements(linked,
+                                all.getProperty(linkedP), (RDFNode) null));
+                    }
+                }
+            }
+        } finally {
+            stmts.close();
+        }
+        return model;
+    }
+
+    private Resource hydratedSelf() {
+        return hydratedModel.getResource(individualURI);
+    }
+
+    private List<RDFNode> hydratedValues(String propertyURI) {
+        return hydratedModel.listObjectsOfProperty(hydratedSelf(),
+                hydratedModel.getProperty(propertyURI)).toList();
+    }
+
+    /**
+     * The linked individual, built from its hydrated label and types. If we
+     * know nothing about it, build it the usual way, to find out whether it
+     * exists at all.
+     */
+    private IndividualSDB hydratedIndividual(String uri)
+            throws IndividualNotFoundException {
+        Resource linked = hydratedModel.getResource(uri);
+        if (hydratedModel.contains(linked, RDFS.label)
+                || hydratedModel.contains(linked, RDF.type)) {
+            return new IndividualSDB(uri, dwf, datasetMode, webappDaoFactory,
+                    hydratedModel);
+        } else {
+            return new IndividualSDB(uri, dwf, datasetMode, webappDaoFactory);
+        }
+    }
     
     public String getName() { 
         if (this.name != null) {
@@ -255,6 +387,13 @@ public class IndividualSDB extends IndividualImpl implements Individual {
         final List<String> typeURIs = new ArrayList<String>();
         if (this.getURI() == null) {
             return typeURIs;
+        } else if (hydratedModel != null) {
+            for (RDFNode node : hydratedValues(VitroVocabulary.MOST_SPECIFIC_TYPE)) {
+                if (node.isURIResource()) {
+                    typeURIs.add(node.asResource().getURI());
+                }
+            }
+            return typeURIs;
         } else {
             String queryStr = "SELECT ?type WHERE { <" + this.getURI() + "> <" + 
                     VitroVocabulary.MOST_SPECIFIC_TYPE + "> ?type }";
@@ -300,6 +439,19 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     public Float getSearchBoost(){ 
         if( this._searchBoostJena != null ){
             return this._searchBoostJena;
+        }else if (hydratedModel != null) {
+            List<RDFNode> values = hydratedValues(VitroVocabulary.SEARCH_BOOST_ANNOT);
+            if (values.isEmpty() || !values.get(0).isLiteral()) {
+                return null;
+            }
+            try {
+                searchBoost = Float.parseFloat(
+                        values.get(0).asLiteral().getLexicalForm());
+                return searchBoost;
+            } catch (NumberFormatException e) {
+                log.error(e, e);
+                return null;
+            }
         }else{
             String getPropertyValue = 
             	"SELECT ?value \n" +
@@ -385,6 +537,16 @@ public class IndividualSDB extends IndividualImpl implements Individual {
 	public boolean hasThumb(){
 	    if( _hasThumb != null ){
 	        return _hasThumb;	    
+        }else if (hydratedModel != null) {
+            _hasThumb = false;
+            for (RDFNode mainImage : hydratedValues(VitroVocabulary.IND_MAIN_IMAGE)) {
+                if (mainImage.isResource() && hydratedModel.contains(
+                        mainImage.asResource(), hydratedModel.getProperty(
+                                VitroVocabulary.FS_THUMBNAIL_IMAGE))) {
+                    _hasThumb = true;
+                }
+            }
+            return _hasThumb;
         }else{            
             String ask = 
                 "ASK { " +
@@ -420,6 +582,9 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     	if (propertyURI == null) {
     		return null;
     	}
+    	if (hydratedModel != null) {
+    	    return hydratedObjectPropertyStatements(propertyURI);
+    	}
     	List<ObjectPropertyStatement> objectPropertyStatements = new ArrayList
     	        <ObjectPropertyStatement>();
 	    Model tempModel = ModelFactory.createDefaultModel();
@@ -488,12 +653,59 @@ public class IndividualSDB extends IndividualImpl implements Individual {
      	return objectPropertyStatements;
     }
 
+    private List<ObjectPropertyStatement> hydratedObjectPropertyStatements(
+            String propertyURI) {
+        List<ObjectPropertyStatement> stmts = new ArrayList<ObjectPropertyStatement>();
+        ObjectProperty op = null;
+        for (RDFNode value : hydratedValues(propertyURI)) {
+            if (!value.isURIResource()) {
+                continue;
+            }
+            Individual obj = null;
+            try {
+                obj = hydratedIndividual(value.asResource().getURI());
+            } catch (IndividualNotFoundException e) {
+                continue;
+            }
+            if (op == null) {
+                op = webappDaoFactory.getObjectPropertyDao()
+                        .getObjectPropertyByURI(propertyURI);
+                if (op == null) {
+                    op = new ObjectProperty();
+                    op.setURI(propertyURI);
+                }
+            }
+            ObjectPropertyStatement ops = new ObjectPropertyStatementImpl();
+            ops.setSubject(this);
+            ops.setSubjectURI(this.getURI());
+            ops.setObject(obj);
+            ops.setObjectURI(obj.getURI());
+            ops.setProperty(op);
+            ops.setPropertyURI(op.getURI());
+            stmts.add(ops);
+        }
+        return stmts;
+    }
+
     @Override
     public List<Individual> getRelatedIndividuals(String propertyURI) { 
     	if (propertyURI == null) {
     		return null;
     	}
     	List<Individual> relatedIndividuals = new ArrayList<Individual>();
+    	if (hydratedModel != null) {
+    	    for (RDFNode value : hydratedValues(propertyURI)) {
+    	        if (value.isURIResource()) {
+    	            try {
+    	                relatedIndividuals.add(hydratedIndividual(
+    	                        value.asResource().getURI()));
+    	            } catch (IndividualNotFoundException e) {
+    	                // don't add to the list
+    	            }
+    	        }
+    	    }
+    	    return relatedIndividuals;
+    	}
     	
     	DatasetWrapper w = getDatasetWrapper();
     	Dataset dataset = w.getDataset();
@@ -535,6 +747,10 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     	if (propertyURI == null) {
     		return null;
     	}
+    	if (hydratedModel != null) {
+    	    List<Individual> related = getRelatedIndividuals(propertyURI);
+    	    return related.isEmpty() ? null : related.get(0);
+    	}
     	DatasetWrapper w = getDatasetWrapper();
     	Dataset dataset = w.getDataset();
     	dataset.getLock().enterCriticalSection(Lock.READ);
@@ -729,6 +945,9 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     private List<DataPropertyStatement> sparqlForDataPropertyStatements(final String propertyUri) {
         final List<DataPropertyStatement> stmts = new ArrayList<DataPropertyStatement>();
 		final IndividualSDB individualSDB = this;
+        if (hydratedModel != null) {
+            return hydratedDataPropertyStatements(propertyUri);
+        }
 
         String queryStr = "SELECT (str(?value) as ?valueString) WHERE { <" 
                 + this.getURI() + "> <" + propertyUri + "> ?value }"; 
@@ -762,6 +981,33 @@ public class IndividualSDB extends IndividualImpl implements Individual {
         return stmts;
     }
     
+    /**
+     * Mimic the query above: the values are taken as strings, so they carry
+     * no language, and a URI value becomes a string as well.
+     */
+    private List<DataPropertyStatement> hydratedDataPropertyStatements(String propertyUri) {
+        List<DataPropertyStatement> stmts = new ArrayList<DataPropertyStatement>();
+        for (RDFNode value : hydratedValues(propertyUri)) {
+            String data;
+            if (value.isLiteral()) {
+                data = value.asLiteral().getLexicalForm();
+            } else if (value.isURIResource()) {
+                data = value.asResource().getURI();
+            } else {
+                continue;
+            }
+            DataPropertyStatement stmt = new DataPropertyStatementImpl();
+            stmt.setData(data);
+            stmt.setDatatypeURI(XSD.xstring.getURI());
+            stmt.setLanguage("");
+            stmt.setDatapropURI(propertyUri);
+            stmt.setIndividualURI(getURI());
+            stmt.setIndividual(this);
+            stmts.add(stmt);
+        }
+        return stmts;
+    }
+
     public List<DataPropertyStatement> getExternalIds() { 
         if (this.externalIds != null) {
             return this.externalIds;
@@ -99,6 +99,14 @@ public class JenaBaseDao extends JenaBaseDaoCon {
     	return ontModelSelector;
     }
 
+    /**
+     * The index of class and property hierarchies in this DAO's model, or
+     * null if the model is not indexed.
+     */
+    protected HierarchyIndex getHierarchyIndex() {
+        return HierarchyIndex.forModel(getOntModel());
+    }
+
     protected List<OntModel> getWritableOntModelList() {
         return writableOntModelList;
     }
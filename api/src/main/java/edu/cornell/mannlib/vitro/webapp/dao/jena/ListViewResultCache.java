@@ -0,0 +1,274 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.filter.LanguageFilteringRDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceFactorySingle.UnclosableRDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.logging.LoggingRDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql.CachingRDFService;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.NodeIndexedCache;
+
+/**
+ * Remembers the rows of custom list views, so a popular profile page doesn't
+ * run the same CONSTRUCT and SELECT queries each time it is viewed.
+ *
+ * Each entry remembers the URIs that its queries touched: the subject, every
+ * resource in the constructed model, and every resource in the rows. When a
+ * statement about one of those URIs is added or removed, the entry is
+ * discarded.
+ *
+ * The cache listens to the content and configuration triple stores. Each
+ * entry is scoped to the store that it was read from, and to the languages of
+ * the request if the results are filtered by language. A list view from any
+ * other RDFService is not cached, since the cache doesn't hear its changes.
+ * The store is recognized by its list of listeners, which the short-term
+ * RDFServices for SDB share with the long-term one.
+ *
+ * The cache is disabled until it is configured with a maximum number of
+ * entries. The rows are copied in and out, since the postprocessors modify
+ * them.
+ *
+ * Call getGeneration() before running the queries, and pass the result to
+ * put().
+ */
+public class ListViewResultCache extends
+        NodeIndexedCache<List<Map<String, String>>> {
+    private static final Log log = LogFactory.getLog(ListViewResultCache.class);
+
+    private static final ListViewResultCache instance = new ListViewResultCache();
+
+    public static ListViewResultCache getInstance() {
+        return instance;
+    }
+
+    /** The scope of each store that we listen to, by its list of listeners. */
+    private final Map<Object, String> scopesByListeners = new IdentityHashMap<>();
+
+    ListViewResultCache() {
+        // Use getInstance(), except in unit tests.
+    }
+
+    /**
+     * Listen for changes to the store behind this RDFService, so list views
+     * that are read from that store may be cached.
+     */
+    void listenTo(RDFService rdfService, String name)
+            throws RDFServiceException {
+        RDFServiceImpl store = findStore(rdfService);
+        if (store == null) {
+            throw new RDFServiceException("Can't find the store behind "
+                    + rdfService);
+        }
+        rdfService.registerListener(this);
+        synchronized (scopesByListeners) {
+            scopesByListeners.put(store.getRegisteredListeners(), name);
+        }
+    }
+
+    void stopListeningTo(RDFService rdfService) throws RDFServiceException {
+        RDFServiceImpl store = findStore(rdfService);
+        if (store != null) {
+            synchronized (scopesByListeners) {
+                scopesByListeners.remove(store.getRegisteredListeners());
+            }
+        }
+        rdfService.unregisterListener(this);
+    }
+
+    /**
+     * The scope of list views that are read from this RDFService, or null if
+     * they must not be cached.
+     */
+    public String scopeOf(RDFService rdfService) {
+        StringBuilder languages = new StringBuilder();
+        RDFService s = rdfService;
+        while (!(s instanceof RDFServiceImpl)) {
+            if (s instanceof LanguageFilteringRDFService) {
+                languages.append(((LanguageFilteringRDFService) s)
+                        .getLanguages());
+                s = ((LanguageFilteringRDFService) s).getInnerService();
+            } else {
+                s = unwrap(s);
+                if (s == null) {
+                    return null;
+                }
+            }
+        }
+
+        String storeScope;
+        synchronized (scopesByListeners) {
+            storeScope = scopesByListeners.get(((RDFServiceImpl) s)
+                    .getRegisteredListeners());
+        }
+        return (storeScope == null) ? null : storeScope + languages;
+    }
+
+    private static RDFServiceImpl findStore(RDFService rdfService) {
+        RDFService s = rdfService;
+        while (s != null && !(s instanceof RDFServiceImpl)) {
+            if (s instanceof LanguageFilteringRDFService) {
+                s = ((LanguageFilteringRDFService) s).getInnerService();
+            } else {
+                s = unwrap(s);
+            }
+        }
+        return (RDFServiceImpl) s;
+    }
+
+    /**
+     * The wrappers that don't change the results. Returns null for anything
+     * else.
+     */
+    private static RDFService unwrap(RDFService s) {
+        if (s instanceof LoggingRDFService) {
+            return ((LoggingRDFService) s).getInnerService();
+        } else if (s instanceof UnclosableRDFService) {
+            return ((UnclosableRDFService) s).getInnerService();
+        } else if (s instanceof CachingRDFService) {
+            return ((CachingRDFService) s).getInnerService();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Build a key from the parts of the request. The queries are included
+     * whole, so two configurations can't collide.
+     */
+    public static String key(String scope, String subjectUri,
+            String propertyUri, String objectKey, String domainUri,
+            String rangeUri, String queryString,
+            Collection<String> constructQueries, String sortDirection) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(scope).append('|').append(subjectUri).append('|')
+                .append(propertyUri).append('|').append(objectKey)
+                .append('|').append(domainUri)
+                .append('|').append(rangeUri).append('|')
+                .append(sortDirection).append('|').append(queryString);
+        if (constructQueries != null) {
+            for (String construct : new TreeSet<>(constructQueries)) {
+                sb.append('|').append(construct);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a copy of the remembered rows, or null.
+     */
+    public List<Map<String, String>> get(String key) {
+        List<Map<String, String>> rows = lookup(key);
+        return (rows == null) ? null : copy(rows);
+    }
+
+    /**
+     * Remember a copy of these rows, unless there has been a change since the
+     * queries started.
+     *
+     * @param nodes
+     *            the URIs that the queries touched.
+     */
+    public void put(String key, List<Map<String, String>> rows,
+            Set<String> nodes, long startingGeneration) {
+        store(key, copy(rows), nodes, 0, startingGeneration);
+    }
+
+    private static List<Map<String, String>> copy(
+            List<Map<String, String>> rows) {
+        List<Map<String, String>> copy = new ArrayList<>(rows.size());
+        for (Map<String, String> row : rows) {
+            copy.add(new HashMap<>(row));
+        }
+        return copy;
+    }
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    /**
+     * Read the size from the runtime properties, and listen for changes to the
+     * content.
+     */
+    public static class Setup implements ServletContextListener {
+        private static final String PROPERTY_MAX_ENTRIES = "listview.resultCache.maxEntries";
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            ServletContext ctx = sce.getServletContext();
+            StartupStatus ss = StartupStatus.getBean(ctx);
+            String value = ConfigurationProperties.getBean(ctx).getProperty(
+                    PROPERTY_MAX_ENTRIES);
+            if (value == null || value.trim().isEmpty()) {
+                return;
+            }
+
+            int maxEntries;
+            try {
+                maxEntries = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                ss.warning(this, "Invalid value for " + PROPERTY_MAX_ENTRIES
+                        + ": '" + value + "'. The cache is disabled.");
+                return;
+            }
+            if (maxEntries <= 0) {
+                return;
+            }
+
+            for (WhichService which : WhichService.values()) {
+                try {
+                    instance.listenTo(RDFServiceUtils.getRDFServiceFactory(
+                            ctx, which).getRDFService(), which.name());
+                } catch (RDFServiceException e) {
+                    ss.warning(this, "Failed to listen for changes to the "
+                            + which + " triples. List views from those "
+                            + "triples will not be cached.", e);
+                }
+            }
+            instance.setMaxEntries(maxEntries);
+            ss.info(this, "Caching up to " + maxEntries
+                    + " custom list views.");
+        }
+
+        @Override
+        public void contextDestroyed(ServletContextEvent sce) {
+            if (instance.isEnabled()) {
+                log.info("List view cache: " + instance.getStatistics());
+                for (WhichService which : WhichService.values()) {
+                    try {
+                        instance.stopListeningTo(RDFServiceUtils
+                                .getRDFServiceFactory(sce.getServletContext(),
+                                        which).getRDFService());
+                    } catch (RDFServiceException e) {
+                        log.warn("Failed to unregister the list view cache.",
+                                e);
+                    }
+                }
+                instance.setMaxEntries(0);
+            }
+        }
+    }
+}
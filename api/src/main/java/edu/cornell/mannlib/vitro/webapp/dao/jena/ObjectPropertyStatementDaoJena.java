@@ -5,6 +5,8 @@ package edu.cornell.mannlib.vitro.webapp.dao.jena;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +59,7 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
     
     protected DatasetWrapperFactory dwf;
     protected RDFService rdfService;
+    protected ListViewResultCache listViewCache = ListViewResultCache.getInstance();
     
     public ObjectPropertyStatementDaoJena(RDFService rdfService,
                                           DatasetWrapperFactory dwf,
@@ -283,7 +286,23 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
             Set<String> constructQueryStrings,
             String sortDirection) {    	        
     	
+        String cacheKey = null;
+        long cacheGeneration = 0L;
+        String cacheScope = (rdfService != null && listViewCache.isEnabled())
+                ? listViewCache.scopeOf(rdfService) : null;
+        if (cacheScope != null) {
+            cacheKey = ListViewResultCache.key(cacheScope,
+                    subjectUri, propertyUri, objectKey, domainUri, rangeUri,
+                    queryString, constructQueryStrings, sortDirection);
+            List<Map<String, String>> cached = listViewCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            cacheGeneration = listViewCache.getGeneration();
+        }
+
         final List<Map<String, String>> list = new ArrayList<Map<String, String>>();
+        final Set<String> touchedUris = new HashSet<String>();
         
         long start = System.currentTimeMillis();
 
@@ -296,6 +315,9 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
                 if(log.isDebugEnabled()) {
                     log.debug("Constructed model has " + constructedModel.size() + " statements.");
                 }
+                if (cacheKey != null) {
+                    addUris(constructedModel, touchedUris);
+                }
             }
 
             if("desc".equalsIgnoreCase( sortDirection ) ){
@@ -308,6 +330,7 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
                     RDFNode node = qs.get(objectKey);
                     if (node != null && node.isURIResource()) {
                         list.add(QueryUtils.querySolutionToStringValueMap(qs));
+                        addUris(qs, touchedUris);
                     }
                 }
             };
@@ -325,6 +348,11 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
                 log.debug(duration + " to do list view for " +
                         propertyUri + " / " + domainUri + " / " + rangeUri);
             }
+
+            if (cacheKey != null) {
+                touchedUris.add(subjectUri);
+                listViewCache.put(cacheKey, list, touchedUris, cacheGeneration);
+            }
         } catch (Exception e) {
             log.error("Error getting object property values for subject " + subjectUri + " and property " + propertyUri, e);
             return Collections.emptyList();
@@ -336,6 +364,33 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
         return list;
     }
 
+    private static void addUris(Model model, Set<String> uris) {
+        StmtIterator stmts = model.listStatements();
+        try {
+            while (stmts.hasNext()) {
+                Statement stmt = stmts.next();
+                if (stmt.getSubject().isURIResource()) {
+                    uris.add(stmt.getSubject().getURI());
+                }
+                if (stmt.getObject().isURIResource()) {
+                    uris.add(stmt.getObject().asResource().getURI());
+                }
+            }
+        } finally {
+            stmts.close();
+        }
+    }
+
+    private static void addUris(QuerySolution qs, Set<String> uris) {
+        Iterator<String> varNames = qs.varNames();
+        while (varNames.hasNext()) {
+            RDFNode value = qs.get(varNames.next());
+            if (value != null && value.isURIResource()) {
+                uris.add(value.asResource().getURI());
+            }
+        }
+    }
+
     private void selectFromRDFService(String queryString, String subjectUri,
                                       String propertyUri, String domainUri, String rangeUri, ResultSetConsumer consumer) {
         String[] part = queryString.split("[Ww][Hh][Ee][Rr][Ee]");
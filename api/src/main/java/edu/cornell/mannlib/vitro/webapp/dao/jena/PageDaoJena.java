@@ -242,9 +242,27 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
     public PageDaoJena(WebappDaoFactoryJena wadf) {
         super(wadf);
     }
+
+    /**
+     * The index of the display model, or null if there is none for the
+     * display model that this DAO uses.
+     */
+    protected DisplayModelIndex getIndex() {
+        DisplayModelIndex index = DisplayModelIndex.getInstance();
+        if (index != null
+                && index.covers(getOntModelSelector().getDisplayModel())) {
+            return index;
+        }
+        return null;
+    }
    
     @Override
     public Map<String, String> getPageMappings() {
+        DisplayModelIndex index = getIndex();
+        if (index != null) {
+            return index.getPageMappings();
+        }
+
         Model displayModel = getOntModelSelector().getDisplayModel();
         Map<String,String> rv = new HashMap<String,String>();
         displayModel.enterCriticalSection(false);
@@ -254,7 +272,9 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
                 ResultSet resultSet = qexec.execSelect();
                 while(resultSet.hasNext()){
                     QuerySolution soln = resultSet.next();
-                    rv.put(nodeToString(soln.get("urlMapping")) , nodeToString( soln.get("pageUri") ));
+                    if (soln.get("urlMapping") != null) {
+                        rv.put(nodeToString(soln.get("urlMapping")) , nodeToString( soln.get("pageUri") ));
+                    }
                 }
             }finally{
                 qexec.close();
@@ -270,6 +290,11 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
      */
     @Override
     public Map<String, Object> getPage(String pageUri) {     
+      DisplayModelIndex index = getIndex();
+      if (index != null) {
+          return index.getPage(pageUri);
+      }
+
       //setup query parameters
       QuerySolutionMap initialBindings = new QuerySolutionMap();
       initialBindings.add("pageUri", ResourceFactory.createResource(pageUri));
@@ -336,6 +361,11 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
     
     @Override
     public String getHomePageUri(){
+        DisplayModelIndex index = getIndex();
+        if (index != null) {
+            return chooseHomePageUri(index.getHomePageUris());
+        }
+
         Model displayModel = getOntModelSelector().getDisplayModel();
         List<String> rv = new ArrayList<String>();
         displayModel.enterCriticalSection(false);
@@ -347,22 +377,26 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
                     QuerySolution soln = resultSet.next();
                     rv.add( nodeToString(soln.get("pageUri")) );        
                 }
-                if( rv.size() == 0 ){
-                    log.error("No display:HomePage defined in display model.");
-                    return null;
-                }
-                if( rv.size() > 1 ){
-                    log.error("More than one display:HomePage defined in display model.");
-                    for( String hp : rv ){
-                        log.error("home page: " + hp);
-                    }
-                }
             }finally{
                 qexec.close();            
             }
         }finally{
             displayModel.leaveCriticalSection();
         }
+        return chooseHomePageUri(rv);
+    }
+
+    private String chooseHomePageUri(List<String> rv){
+        if( rv.size() == 0 ){
+            log.error("No display:HomePage defined in display model.");
+            return null;
+        }
+        if( rv.size() > 1 ){
+            log.error("More than one display:HomePage defined in display model.");
+            for( String hp : rv ){
+                log.error("home page: " + hp);
+            }
+        }
         return rv.get(0);
     }
     
@@ -497,6 +531,16 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
     }
     
     public List<String> getDataGetterClass(String pageUri) {
+         DisplayModelIndex index = getIndex();
+         if (index != null) {
+             List<String> types = index.getDataGetterTypes(pageUri);
+             if (types.isEmpty()) {
+                 log.debug("No data getter classes defined for  "+ pageUri);
+                 return null;
+             }
+             return new ArrayList<String>(types);
+         }
+
     	 QuerySolutionMap initialBindings = new QuerySolutionMap();
          initialBindings.add("pageUri", ResourceFactory.createResource(pageUri));
          List<String> dataGetterClasses = new ArrayList<String>();
@@ -531,6 +575,11 @@ public class PageDaoJena extends JenaBaseDao implements PageDao {
      * Gets the requiredActions directly associated with page.
      */
     public List<String> getRequiredActions(String pageUri){
+        DisplayModelIndex index = getIndex();
+        if (index != null) {
+            return new ArrayList<String>(index.getRequiredActions(pageUri));
+        }
+
         QuerySolutionMap initialBindings = new QuerySolutionMap();
         initialBindings.add("pageUri", ResourceFactory.createResource(pageUri));
         List<String> actions = new ArrayList<String>();
@@ -173,6 +173,13 @@ public class PropertyDaoJena extends JenaBaseDao implements PropertyDao {
 
     @Override
     public List<String> getAllSubPropertyURIs(String propertyURI) {
+        HierarchyIndex index = getHierarchyIndex();
+        if (index != null) {
+            List<String> subURIs = index.getSubPropertyURIs(propertyURI);
+            subURIs.remove(propertyURI);
+            return subURIs;
+        }
+
     	HashSet<String> nodeSet = new HashSet<String>();
     	nodeSet.add(propertyURI);
     	getAllSubPropertyURIs(propertyURI, nodeSet);
@@ -214,6 +221,13 @@ public class PropertyDaoJena extends JenaBaseDao implements PropertyDao {
 
     @Override
     public List<String> getAllSuperPropertyURIs(String propertyURI) {
+        HierarchyIndex index = getHierarchyIndex();
+        if (index != null) {
+            List<String> supURIs = index.getSuperPropertyURIs(propertyURI);
+            supURIs.remove(propertyURI);
+            return supURIs;
+        }
+
     	HashSet<String> nodeSet = new HashSet<String>();
     	nodeSet.add(propertyURI);
     	getAllSuperPropertyURIs(propertyURI, nodeSet);
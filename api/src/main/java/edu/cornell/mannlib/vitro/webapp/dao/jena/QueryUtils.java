@@ -2,6 +2,8 @@
 
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -165,10 +167,10 @@ public class QueryUtils {
 
     /** Already have the dataset, so process the query and return the results. */
 	private static ResultSet getQueryResults(String queryStr, RDFService rdfService) {
-	    try {
-            return ResultSetFactory.fromJSON(
-                    rdfService.sparqlSelectQuery(queryStr, RDFService.ResultFormat.JSON));
-	    } catch (RDFServiceException e) {
+	    try (InputStream in = rdfService.sparqlSelectQuery(queryStr,
+	            RDFService.ResultFormat.JSON)) {
+            return ResultSetFactory.fromJSON(in);
+	    } catch (RDFServiceException | IOException e) {
 	        throw new RuntimeException(e);
 	    }
 	}
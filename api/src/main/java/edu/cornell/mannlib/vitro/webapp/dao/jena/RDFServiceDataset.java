@@ -35,6 +35,20 @@ public class RDFServiceDataset implements Dataset {
         this.g = new RDFServiceDatasetGraph(rdfService);
     }
     
+    /**
+     * @see RDFServiceDatasetGraph#enableFindCache(long)
+     */
+    public void enableFindCache(long maxAgeMillis) {
+        g.enableFindCache(maxAgeMillis);
+    }
+
+    /**
+     * @see RDFServiceDatasetGraph#setWriteBatcher(RDFServiceWriteBatcher)
+     */
+    public void setWriteBatcher(RDFServiceWriteBatcher writeBatcher) {
+        g.setWriteBatcher(writeBatcher);
+    }
+
     @Override
     public DatasetGraph asDatasetGraph() {
         return g;
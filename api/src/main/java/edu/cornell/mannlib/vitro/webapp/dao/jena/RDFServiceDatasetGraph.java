@@ -36,6 +36,8 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
     private Context context = new Context() ;
     private Map<String, RDFServiceGraph> graphCache = new ConcurrentHashMap<String, RDFServiceGraph>();
     private ReadWrite transactionMode;
+    private long findCacheMaxAge = 0;
+    private RDFServiceWriteBatcher writeBatcher;
     
     public RDFServiceDatasetGraph(RDFService rdfService) {
         this.rdfService = rdfService;
@@ -46,10 +48,54 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
         return graphCache;
     }
 
+    /**
+     * Enable the find cache on the default graph and on each named graph, as
+     * it is requested. Call close() when finished, so the graphs stop listening
+     * for changes.
+     */
+    public synchronized void enableFindCache(long maxAgeMillis) {
+        this.findCacheMaxAge = maxAgeMillis;
+        defaultGraph.enableFindCache(maxAgeMillis);
+        for (RDFServiceGraph graph : graphCache.values()) {
+            graph.enableFindCache(maxAgeMillis);
+        }
+    }
+
+    /**
+     * Hold the writes to the default graph and to each named graph, as
+     * described in RDFServiceWriteBatcher. Call close() when finished, so the
+     * held writes are written.
+     */
+    public synchronized void setWriteBatcher(RDFServiceWriteBatcher writeBatcher) {
+        this.writeBatcher = writeBatcher;
+        defaultGraph.setWriteBatcher(writeBatcher);
+        for (RDFServiceGraph graph : graphCache.values()) {
+            graph.setWriteBatcher(writeBatcher);
+        }
+    }
+
+    private void flushBeforeRead() {
+        RDFServiceWriteBatcher batcher = writeBatcher;
+        if (batcher != null) {
+            batcher.flush();
+        }
+    }
+
+    private void clearGraphCache() {
+        for (RDFServiceGraph graph : graphCache.values()) {
+            graph.close();
+        }
+        graphCache.clear();
+    }
+
     @Override
     public synchronized void begin(ReadWrite mode) {
         this.transactionMode = mode;
-        graphCache.clear();
+        clearGraphCache();
+        // commit() and abort() include the default graph, so begin() must.
+        if (supportsTransactions(defaultGraph)) {
+            defaultGraph.getTransactionHandler().begin();
+        }
     }
 
     @Override
@@ -66,7 +112,7 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
 
         }
 
-        graphCache.clear();
+        clearGraphCache();
     }
 
     @Override
@@ -83,7 +129,7 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
 
         }
 
-        graphCache.clear();
+        clearGraphCache();
     }
 
     @Override
@@ -121,8 +167,9 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
     }
 
     @Override
-    public void close() {
-        // TODO Auto-generated method stub
+    public synchronized void close() {
+        defaultGraph.close();
+        clearGraphCache();
     }
 
     @Override
@@ -209,6 +256,7 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
         
         //log.info(findQuery.toString());
         
+        flushBeforeRead();
         final List<Quad> quadlist = new ArrayList<Quad>();
         try {
             rdfService.sparqlSelectQuery(findQuery.toString(), new ResultSetConsumer() {
@@ -252,6 +300,8 @@ public class RDFServiceDatasetGraph implements DatasetGraph {
             return graphCache.get(graphURI);
         } else {
             RDFServiceGraph graph = new RDFServiceGraph(rdfService, arg0.getURI());
+            graph.enableFindCache(findCacheMaxAge);
+            graph.setWriteBatcher(writeBatcher);
             graphCache.put(graphURI, graph);
             if(transactionMode != null && supportsTransactions(graph)) {
                 graph.getTransactionHandler().begin();
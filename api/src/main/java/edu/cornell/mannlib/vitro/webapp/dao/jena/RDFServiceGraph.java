@@ -3,9 +3,9 @@
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.function.Supplier;
 
@@ -17,6 +17,7 @@ import org.apache.jena.graph.Capabilities;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.GraphEventManager;
 import org.apache.jena.graph.GraphStatisticsHandler;
+import org.apache.jena.graph.GraphUtil;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.TransactionHandler;
 import org.apache.jena.graph.Triple;
@@ -36,12 +37,13 @@ import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.util.iterator.SingletonIterator;
 import org.apache.jena.util.iterator.WrappedIterator;
 
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.adapters.VitroModelFactory;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
 
 public class RDFServiceGraph implements GraphWithPerform {
@@ -57,6 +59,11 @@ public class RDFServiceGraph implements GraphWithPerform {
     private Graph additionsGraph = ModelFactory.createDefaultModel().getGraph();
     private Graph removalsGraph = ModelFactory.createDefaultModel().getGraph();
 
+    private volatile RDFServiceGraphFindCache findCache;
+    private FindCacheListener findCacheListener;
+
+    private volatile RDFServiceWriteBatcher writeBatcher;
+
     /**
      * Returns a SparqlGraph for the union of named graphs in a remote repository 
      * @param rdfService RDF Service
@@ -83,94 +90,202 @@ public class RDFServiceGraph implements GraphWithPerform {
         return graphURI;
     }
 
+    /**
+     * Remember the results of find() and contains() for up to maxAgeMillis.
+     * The cache is cleared whenever the RDFService reports a change to this
+     * graph, so it is meant for short-lived graphs, like the ones that serve
+     * a single request. Call close() to stop listening for changes.
+     *
+     * The short-term RDFServices for SDB share their listeners with the
+     * long-term one, so a graph that is never closed would leave its cache
+     * registered for good. So the listener holds the cache weakly, and
+     * unregisters itself once the cache is gone.
+     */
+    public synchronized void enableFindCache(long maxAgeMillis) {
+        if (findCache != null || maxAgeMillis <= 0) {
+            return;
+        }
+        RDFServiceGraphFindCache cache = new RDFServiceGraphFindCache(
+                graphURI, maxAgeMillis);
+        FindCacheListener listener = new FindCacheListener(cache, rdfService);
+        try {
+            rdfService.registerListener(listener);
+            findCache = cache;
+            findCacheListener = listener;
+        } catch (RDFServiceException e) {
+            log.warn("Failed to register the find cache for " + this
+                    + "; caching is disabled.", e);
+        }
+    }
+
+    public synchronized void disableFindCache() {
+        FindCacheListener listener = findCacheListener;
+        findCache = null;
+        findCacheListener = null;
+        if (listener != null) {
+            listener.unregister();
+        }
+    }
+
+    public boolean isFindCacheEnabled() {
+        return findCache != null;
+    }
+
+    /**
+     * Outside of a transaction, hold added and removed triples and write them
+     * in batches, as described in RDFServiceWriteBatcher. If the batcher is
+     * null, each triple is written as it is added or removed.
+     */
+    public void setWriteBatcher(RDFServiceWriteBatcher writeBatcher) {
+        flushPendingWrites();
+        this.writeBatcher = writeBatcher;
+    }
+
+    public RDFServiceWriteBatcher getWriteBatcher() {
+        return writeBatcher;
+    }
+
+    /**
+     * Write any triples that are held by the write batcher.
+     */
+    public synchronized void flushPendingWrites() {
+        if (!inTransaction 
+                && !(additionsGraph.isEmpty() && removalsGraph.isEmpty())) {
+            flush();
+        }
+    }
+
+    /**
+     * Before reading, write whatever is held by this graph or by any other
+     * graph that shares its batcher.
+     */
+    private void flushBeforeRead() {
+        RDFServiceWriteBatcher batcher = writeBatcher;
+        if (batcher != null && !inTransaction) {
+            batcher.flush();
+        }
+    }
+
+    /**
+     * Staged changes aren't visible to the RDFService, so don't use the cache
+     * during a transaction.
+     */
+    private RDFServiceGraphFindCache usableFindCache() {
+        return inTransaction ? null : findCache;
+    }
+
+    private void clearFindCache() {
+        RDFServiceGraphFindCache cache = findCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     @Override
     public void add(Triple arg0) throws AddDeniedException {
         performAdd(arg0);
     }
     
-    private StringBuilder serialize(StringBuilder sb, Triple t) {
-        sb.append(sparqlNodeUpdate(t.getSubject(), "")).append(" ")
-               .append(sparqlNodeUpdate(t.getPredicate(), "")).append(" ") 
-               .append(sparqlNodeUpdate(t.getObject(), "")).append(" .");
-        return sb;
-    }
-        
     private synchronized void flush() {                                
+        if (removalsGraph.isEmpty() && additionsGraph.isEmpty()) {
+            return;
+        }
         ChangeSet changeSet = rdfService.manufactureChangeSet();
+        RDFServiceWriteBatcher batcher = inTransaction ? null : writeBatcher;
         try {
             if(!removalsGraph.isEmpty()) {
-                String removals = serializeGraph(removalsGraph);
-                changeSet.addRemoval(RDFServiceUtils.toInputStream(removals), 
-                        RDFService.ModelSerializationFormat.N3, graphURI);
+                changeSet.addRemoval(copyToModel(removalsGraph), graphURI);
                 removalsGraph.clear();
             }
             if(!additionsGraph.isEmpty()) {
-                String additions = serializeGraph(additionsGraph);
-                changeSet.addAddition(RDFServiceUtils.toInputStream(additions), 
-                        RDFService.ModelSerializationFormat.N3, graphURI);
+                changeSet.addAddition(copyToModel(additionsGraph), graphURI);
                 additionsGraph.clear();
             }
             rdfService.changeSetUpdate(changeSet);
         } catch (RDFServiceException rdfse) {
             throw new RuntimeException(rdfse);
+        } finally {
+            clearFindCache();
+            if (batcher != null) {
+                batcher.wrote(this);
+            }
         }
     }
     
-    private synchronized String serializeGraph(Graph graph) {
-        StringBuilder sb = new StringBuilder();
-        Iterator<Triple> tripIt = graph.find(null, null, null);
-        while(tripIt.hasNext()) {
-            serialize(sb.append(" \n"), tripIt.next());
-        }
-        return sb.toString();
+    /**
+     * The staging graphs are cleared after a flush, but the change set may be
+     * shared with listeners, so it gets a copy.
+     */
+    private synchronized Model copyToModel(Graph graph) {
+        Model model = ModelFactory.createDefaultModel();
+        GraphUtil.addInto(model.getGraph(), graph);
+        return model;
+    }
+    
+    private Model toModel(Triple t) {
+        Model model = ModelFactory.createDefaultModel();
+        model.getGraph().add(t);
+        return model;
     }
     
     @Override
     public void performAdd(Triple t) {
+        RDFServiceWriteBatcher batcher = writeBatcher;
         if(inTransaction) {
             stageAddition(t);
+        } else if (batcher != null) {
+            batcher.held(this, stageAddition(t));
         } else {
             ChangeSet changeSet = rdfService.manufactureChangeSet();
             try {
-                changeSet.addAddition(RDFServiceUtils.toInputStream(serialize(new StringBuilder(), t).toString()),
-                        RDFService.ModelSerializationFormat.N3, graphURI);
+                changeSet.addAddition(toModel(t), graphURI);
                 rdfService.changeSetUpdate(changeSet);
             } catch (RDFServiceException rdfse) {
                 throw new RuntimeException(rdfse);
+            } finally {
+                clearFindCache();
             }
         }
     }
     
-    private void stageAddition(Triple t) {
+    /** Returns the number of staged triples. */
+    private synchronized int stageAddition(Triple t) {
         if(removalsGraph.contains(t)) {
             removalsGraph.remove(t.getSubject(), t.getPredicate(), t.getObject());
         } else {
             additionsGraph.add(t);
         }
+        return additionsGraph.size() + removalsGraph.size();
     }
     
     @Override
     public void performDelete(Triple t) {
+        RDFServiceWriteBatcher batcher = writeBatcher;
         if(inTransaction) {
             stageDeletion(t);
+        } else if (batcher != null) {
+            batcher.held(this, stageDeletion(t));
         } else {
             ChangeSet changeSet = rdfService.manufactureChangeSet();
             try {
-                changeSet.addRemoval(RDFServiceUtils.toInputStream(serialize(new StringBuilder(), t).toString()),
-                        RDFService.ModelSerializationFormat.N3, graphURI);
+                changeSet.addRemoval(toModel(t), graphURI);
                 rdfService.changeSetUpdate(changeSet);
             } catch (RDFServiceException rdfse) {
                 throw new RuntimeException(rdfse);
+            } finally {
+                clearFindCache();
             }
         }
     }
     
-    private synchronized void stageDeletion(Triple t) {
+    /** Returns the number of staged triples. */
+    private synchronized int stageDeletion(Triple t) {
         if(additionsGraph.contains(t)) {
             additionsGraph.remove(t.getSubject(), t.getPredicate(), t.getObject());
         } else {
             removalsGraph.add(t);
         }
+        return additionsGraph.size() + removalsGraph.size();
     }
     
     public void removeAll() {
@@ -179,6 +294,7 @@ public class RDFServiceGraph implements GraphWithPerform {
             return;
         }
         String constructStr = "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + graphURI + "> { ?s ?p ?o } }";
+        flushBeforeRead();
         try {
             if(inTransaction) {
                 Model model = ModelFactory.createDefaultModel();
@@ -193,6 +309,8 @@ public class RDFServiceGraph implements GraphWithPerform {
             }
         } catch (RDFServiceException rdfse) {
             throw new RuntimeException(rdfse);
+        } finally {
+            clearFindCache();
         }
     }
     
@@ -206,7 +324,10 @@ public class RDFServiceGraph implements GraphWithPerform {
     
     @Override
     public void close() {
-        // can't close a remote endpoint
+        // can't close a remote endpoint, but write anything that is held,
+        // and stop listening for changes.
+        flushPendingWrites();
+        disableFindCache();
     }
 
     @Override
@@ -221,6 +342,14 @@ public class RDFServiceGraph implements GraphWithPerform {
 				|| (object != null && object.isBlank())) {
             return false;
         }
+        flushBeforeRead();
+        RDFServiceGraphFindCache cache = usableFindCache();
+        if (cache != null) {
+            List<Triple> cached = cache.get(subject, predicate, object);
+            if (cached != null) {
+                return !cached.isEmpty();
+            }
+        }
         StringBuilder containsQuery = new StringBuilder("SELECT * WHERE { \n");
         if (graphURI != null) {
             containsQuery.append("  GRAPH <").append(graphURI).append("> { ");
@@ -342,6 +471,16 @@ public class RDFServiceGraph implements GraphWithPerform {
         
         String queryString = findQuery.toString();
 
+        flushBeforeRead();
+        RDFServiceGraphFindCache cache = usableFindCache();
+        if (cache != null) {
+            List<Triple> cached = cache.get(subject, predicate, object);
+            if (cached != null) {
+                return WrappedIterator.create(cached.iterator());
+            }
+        }
+        long generation = (cache == null) ? 0 : cache.getGeneration();
+
         final List<Triple> triplist = new ArrayList<Triple>();
         if(inTransaction) {
             addAdditions(triplist, additionsGraph.find(subject, predicate, object));
@@ -371,6 +510,10 @@ public class RDFServiceGraph implements GraphWithPerform {
         }
 */
         //log.info(triplist.size() + " results");
+        if (cache != null) {
+            cache.put(subject, predicate, object,
+                    new ArrayList<Triple>(triplist), generation);
+        }
         return WrappedIterator.create(triplist.iterator());
     }
 
@@ -404,7 +547,7 @@ public class RDFServiceGraph implements GraphWithPerform {
     @Override
     public GraphEventManager getEventManager() {
         if (eventManager == null) {
-            eventManager = new SimpleEventManager(this);
+            eventManager = new BatchingEventManager();
         }
         return eventManager;
     }
@@ -443,8 +586,29 @@ public class RDFServiceGraph implements GraphWithPerform {
 
     @Override
     public int size() {
-        int size = find(null, null, null).toList().size();
-        return size;
+        if (inTransaction) {
+            return find(null, null, null).toList().size();
+        }
+        flushBeforeRead();
+        StringBuilder countQuery = new StringBuilder(
+                "SELECT (COUNT(*) AS ?count) WHERE { \n");
+        if (graphURI != null) {
+            countQuery.append("  GRAPH <").append(graphURI).append("> { ");
+        }
+        countQuery.append("?s ?p ?o");
+        if (graphURI != null) {
+            countQuery.append(" } ");
+        }
+        countQuery.append("\n}");
+
+        final long[] count = new long[1];
+        execSelect(countQuery.toString(), new ResultSetConsumer() {
+            @Override
+            protected void processQuerySolution(QuerySolution qs) {
+                count[0] = qs.getLiteral("count").getLong();
+            }
+        });
+        return (int) Math.min(count[0], Integer.MAX_VALUE);
     }
     
     @Override
@@ -510,6 +674,7 @@ public class RDFServiceGraph implements GraphWithPerform {
 
         @Override
         public synchronized void begin() {
+            flushPendingWrites();
             inTransaction = true;
         }
 
@@ -541,6 +706,71 @@ public class RDFServiceGraph implements GraphWithPerform {
         }  
     };
     
+    /**
+     * Jena reports the end of a bulk operation, or sends an event through the
+     * model. Either one ends a batch of held writes. Write them before the
+     * listeners hear about it.
+     */
+    private class BatchingEventManager extends SimpleEventManager {
+        BatchingEventManager() {
+            super(RDFServiceGraph.this);
+        }
+
+        @Override
+        public void notifyAddArray(Graph g, Triple[] triples) {
+            flushPendingWrites();
+            super.notifyAddArray(g, triples);
+        }
+
+        @Override
+        public void notifyAddList(Graph g, List<Triple> triples) {
+            flushPendingWrites();
+            super.notifyAddList(g, triples);
+        }
+
+        @Override
+        public void notifyAddIterator(Graph g, List<Triple> triples) {
+            flushPendingWrites();
+            super.notifyAddIterator(g, triples);
+        }
+
+        @Override
+        public void notifyAddGraph(Graph g, Graph added) {
+            flushPendingWrites();
+            super.notifyAddGraph(g, added);
+        }
+
+        @Override
+        public void notifyDeleteArray(Graph g, Triple[] triples) {
+            flushPendingWrites();
+            super.notifyDeleteArray(g, triples);
+        }
+
+        @Override
+        public void notifyDeleteList(Graph g, List<Triple> triples) {
+            flushPendingWrites();
+            super.notifyDeleteList(g, triples);
+        }
+
+        @Override
+        public void notifyDeleteIterator(Graph g, List<Triple> triples) {
+            flushPendingWrites();
+            super.notifyDeleteIterator(g, triples);
+        }
+
+        @Override
+        public void notifyDeleteGraph(Graph g, Graph removed) {
+            flushPendingWrites();
+            super.notifyDeleteGraph(g, removed);
+        }
+
+        @Override
+        public void notifyEvent(Graph source, Object value) {
+            flushPendingWrites();
+            super.notifyEvent(source, value);
+        }
+    }
+
     private void execSelect(String queryStr, ResultSetConsumer consumer) {
         try { 
             rdfService.sparqlSelectQuery(queryStr, consumer);
@@ -589,6 +819,45 @@ public class RDFServiceGraph implements GraphWithPerform {
         }
     }
     
+    /**
+     * Passes the changes to the find cache, as long as something else holds
+     * on to the cache. After that, stops listening.
+     */
+    private static class FindCacheListener implements ChangeListener {
+        private final WeakReference<RDFServiceGraphFindCache> cacheRef;
+        private final RDFService rdfService;
+
+        FindCacheListener(RDFServiceGraphFindCache cache, RDFService rdfService) {
+            this.cacheRef = new WeakReference<>(cache);
+            this.rdfService = rdfService;
+        }
+
+        @Override
+        public void notifyModelChange(ModelChange modelChange) {
+            RDFServiceGraphFindCache cache = cacheRef.get();
+            if (cache == null) {
+                unregister();
+            } else {
+                cache.notifyModelChange(modelChange);
+            }
+        }
+
+        @Override
+        public void notifyEvent(String graphURI, Object event) {
+            if (cacheRef.get() == null) {
+                unregister();
+            }
+        }
+
+        void unregister() {
+            try {
+                rdfService.unregisterListener(this);
+            } catch (RDFServiceException e) {
+                log.warn("Failed to unregister a find cache.", e);
+            }
+        }
+    }
+
     public static Model createRDFServiceModel(final RDFServiceGraph g) {
         Model m = VitroModelFactory.createModelForGraph(g);
         m.register(new StatementListener() {
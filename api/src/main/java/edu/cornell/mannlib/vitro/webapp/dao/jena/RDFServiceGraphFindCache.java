@@ -0,0 +1,135 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+
+/**
+ * Remembers the results of find() on an RDFServiceGraph, for a short time,
+ * by triple pattern.
+ *
+ * The cache hears the changes of the RDFService, so a change to the graph (or
+ * to any graph, if this is the union graph) clears it. Entries also
+ * expire after maxAgeMillis, to cover changes that are made outside of this
+ * RDFService.
+ *
+ * Each clear starts a new generation. The caller reads the generation before
+ * running its query, and the results are not stored if the cache was cleared
+ * while the query ran.
+ */
+class RDFServiceGraphFindCache implements ChangeListener {
+	static final int MAX_ENTRIES = 5000;
+
+	private final String graphURI;
+	private final long maxAgeMillis;
+
+	private final Map<Triple, Entry> patterns = new LruMap<>();
+
+	/** Incremented by every clear. */
+	private long generation;
+
+	RDFServiceGraphFindCache(String graphURI, long maxAgeMillis) {
+		this.graphURI = graphURI;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * Find the cached triples that match this pattern, or return null if we
+	 * can't answer from the cache.
+	 */
+	synchronized List<Triple> get(Node s, Node p, Node o) {
+		Entry entry = live(patterns, pattern(s, p, o));
+		return (entry == null) ? null : entry.triples;
+	}
+
+	/**
+	 * Call this before running the query, and pass the result to put().
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	synchronized void put(Node s, Node p, Node o, List<Triple> triples,
+			long startingGeneration) {
+		if (startingGeneration == generation) {
+			patterns.put(pattern(s, p, o), new Entry(triples));
+		}
+	}
+
+	synchronized void clear() {
+		generation++;
+		patterns.clear();
+	}
+
+	private Entry live(Map<Triple, Entry> map, Triple key) {
+		Entry entry = map.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.created > maxAgeMillis) {
+			map.remove(key);
+			return null;
+		}
+		return entry;
+	}
+
+	private Triple pattern(Node s, Node p, Node o) {
+		return Triple.create(any(s), any(p), any(o));
+	}
+
+	private Node any(Node node) {
+		return (node == null || node.isVariable()) ? Node.ANY : node;
+	}
+
+	// ----------------------------------------------------------------------
+	// ChangeListener
+	// ----------------------------------------------------------------------
+
+	@Override
+	public void notifyModelChange(ModelChange modelChange) {
+		String changedGraph = modelChange.getGraphURI();
+		if (graphURI == null || changedGraph == null
+				|| graphURI.equals(changedGraph)) {
+			clear();
+		}
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Events don't change the triples.
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class Entry {
+		final long created = System.currentTimeMillis();
+		final List<Triple> triples;
+
+		Entry(List<Triple> triples) {
+			this.triples = Collections.unmodifiableList(triples);
+		}
+	}
+
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+		LruMap() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coordinates the held writes of a group of RDFServiceGraphs, usually the
+ * graphs that serve a single request.
+ *
+ * Outside of a transaction, a graph that has a batcher doesn't write each
+ * triple as it is added or removed. It holds them, and writes them all as a
+ * single ChangeSet when:
+ * <ul>
+ * <li>the graph holds batchSize triples,</li>
+ * <li>a Jena bulk operation (add a Model or a List, remove a Model) ends,</li>
+ * <li>an event (like an EditEvent) is sent through the graph's model,</li>
+ * <li>any graph in the group is read, so the reader sees the writes,</li>
+ * <li>the graph begins a transaction or is closed, or flush() is called.</li>
+ * </ul>
+ *
+ * Queries that go directly to the RDFService, bypassing the graphs, will not
+ * see held writes until one of these happens.
+ */
+public class RDFServiceWriteBatcher {
+    private static final AtomicLong totalTriplesHeld = new AtomicLong();
+    private static final AtomicLong totalChangeSetsWritten = new AtomicLong();
+
+    private final int batchSize;
+    private final Set<RDFServiceGraph> pendingGraphs = new LinkedHashSet<>();
+
+    private final AtomicLong triplesHeld = new AtomicLong();
+    private final AtomicLong changeSetsWritten = new AtomicLong();
+
+    public RDFServiceWriteBatcher(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * The graph is holding another triple. If it holds enough, write them.
+     */
+    void held(RDFServiceGraph graph, int pendingInGraph) {
+        triplesHeld.incrementAndGet();
+        totalTriplesHeld.incrementAndGet();
+        if (pendingInGraph >= batchSize) {
+            graph.flushPendingWrites();
+        } else {
+            synchronized (this) {
+                pendingGraphs.add(graph);
+            }
+        }
+    }
+
+    /**
+     * The graph wrote its held triples.
+     */
+    void wrote(RDFServiceGraph graph) {
+        changeSetsWritten.incrementAndGet();
+        totalChangeSetsWritten.incrementAndGet();
+        synchronized (this) {
+            pendingGraphs.remove(graph);
+        }
+    }
+
+    /**
+     * Write the held triples of every graph in the group.
+     */
+    public void flush() {
+        List<RDFServiceGraph> graphs;
+        synchronized (this) {
+            if (pendingGraphs.isEmpty()) {
+                return;
+            }
+            graphs = new ArrayList<>(pendingGraphs);
+            pendingGraphs.clear();
+        }
+        for (RDFServiceGraph graph : graphs) {
+            graph.flushPendingWrites();
+        }
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(triplesHeld.get(), changeSetsWritten.get());
+    }
+
+    /**
+     * Totals for all of the batchers since startup.
+     */
+    public static Statistics getTotalStatistics() {
+        return new Statistics(totalTriplesHeld.get(),
+                totalChangeSetsWritten.get());
+    }
+
+    public static class Statistics {
+        private final long triplesHeld;
+        private final long changeSetsWritten;
+
+        public Statistics(long triplesHeld, long changeSetsWritten) {
+            this.triplesHeld = triplesHeld;
+            this.changeSetsWritten = changeSetsWritten;
+        }
+
+        /** Each of these would have been a ChangeSet. */
+        public long getTriplesHeld() {
+            return triplesHeld;
+        }
+
+        public long getChangeSetsWritten() {
+            return changeSetsWritten;
+        }
+
+        public long getChangeSetsAvoided() {
+            return Math.max(0, triplesHeld - changeSetsWritten);
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics[triplesHeld=" + triplesHeld
+                    + ", changeSetsWritten=" + changeSetsWritten
+                    + ", changeSetsAvoided=" + getChangeSetsAvoided() + "]";
+        }
+    }
+}
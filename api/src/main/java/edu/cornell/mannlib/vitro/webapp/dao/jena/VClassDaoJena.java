@@ -400,6 +400,13 @@ public class VClassDaoJena extends JenaBaseDao implements VClassDao {
     }
 
     public List<String> getAllSubClassURIs(String classURI) {
+        HierarchyIndex index = getHierarchyIndex();
+        if (index != null) {
+            List<String> subclassURIs = index.getSubClassURIs(classURI);
+            subclassURIs.remove(classURI);
+            return subclassURIs;
+        }
+
         HashSet<String> nodeSet = new HashSet<String>();
         nodeSet.add(classURI);
         getAllSubClassURIs(classURI, nodeSet);
@@ -423,6 +430,18 @@ public class VClassDaoJena extends JenaBaseDao implements VClassDao {
 
         List<String> superclassURIs = null;
 
+        HierarchyIndex index = getHierarchyIndex();
+        if (index != null) {
+            // A reasoned store holds the closure, so the index agrees with
+            // the statements. Otherwise, include the class itself.
+            superclassURIs = index.getSuperClassURIs(classURI);
+            if (!isUnderlyingStoreReasoned()
+                    && !superclassURIs.contains(classURI)) {
+                superclassURIs.add(classURI);
+            }
+            return superclassURIs;
+        }
+
         if (isUnderlyingStoreReasoned()) {	
             superclassURIs = new ArrayList<String>();
             Resource cls = ResourceFactory.createResource(classURI);
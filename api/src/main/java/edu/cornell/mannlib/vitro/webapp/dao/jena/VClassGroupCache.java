@@ -1,6 +1,8 @@
 /* $This file is distributed under the terms of the license in LICENSE$ */
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +29,7 @@ import org.apache.jena.vocabulary.RDFS;
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.beans.VClassGroup;
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.dao.VClassGroupDao;
 import edu.cornell.mannlib.vitro.webapp.dao.VClassGroupsForRequest;
 import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
@@ -42,10 +45,13 @@ import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField.Count;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocument;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
 import edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames;
 import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchQueryUtils;
+import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchQueryUtils.Conjunction;
 import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 /**
@@ -65,6 +71,13 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
  * As of VIVO release 1.4, the counts come from the search index. If the
  * search index is not built or if there were problems building the index,
  * the class counts from VClassGroupCache will be incorrect.
+ * 
+ * A rebuild gets all of the counts from a single faceted query. When the
+ * search indexer updates a list of URIs, the counts are not rebuilt. Instead,
+ * the types and class groups of those documents are read before and after the
+ * update, and the counts are adjusted by the difference. A full rebuild is done
+ * when the classes or class groups change, after an index rebuild, and
+ * periodically after the counts have been adjusted.
  */
 public class VClassGroupCache implements SearchIndexer.Listener {
     private static final Log log = LogFactory.getLog(VClassGroupCache.class);
@@ -75,11 +88,29 @@ public class VClassGroupCache implements SearchIndexer.Listener {
     private static final boolean INCLUDE_UNINSTANTIATED = true;
     private static final boolean DONT_INCLUDE_INDIVIDUAL_COUNT = false;
 
+    private static final String PROPERTY_FULL_REBUILD_MINUTES = "classGroupCache.fullRebuildMinutes";
+    private static final long DEFAULT_FULL_REBUILD_MINUTES = 60;
+
+    /** More facet values than there will ever be classes or groups. */
+    private static final int FACET_LIMIT = 100000;
+
+    /** Larger tasks are followed by a full rebuild instead of an adjustment. */
+    private static final int MAX_URIS_TO_ADJUST = 5000;
+
+    /**
+     * A steady stream of changes delays a rebuild, but not for longer than
+     * this.
+     */
+    private static final long MAX_REBUILD_DELAY = 10000;
+
+    /** Keep each query well below the search engine's limit on clauses. */
+    private static final int URIS_PER_QUERY = 500;
+
     /**
      * This is the cache of VClassGroups. It is a list of VClassGroups. If this
      * is null then the cache is not built.
      */
-    private List<VClassGroup> _groupList;
+    private volatile List<VClassGroup> _groupList;
 
     /**
      * Also keep track of the classes here, makes it easier to get the counts
@@ -94,10 +125,33 @@ public class VClassGroupCache implements SearchIndexer.Listener {
      */
     private final ServletContext context;
 
+    /**
+     * If not positive, every update of the search index causes a full rebuild.
+     */
+    private final long fullRebuildIntervalMillis;
+
+    /**
+     * Hold this while reading the counts from the search engine and storing
+     * them, so a rebuild and an adjustment don't overlap.
+     */
+    private final Object countLock = new Object();
+
+    /** Incremented each time the cache is rebuilt. */
+    private volatile long cacheVersion = 0L;
+    private volatile long lastRebuildMillis = 0L;
+    private volatile boolean countsAdjusted = false;
+
+    /**
+     * The counts for the URIs of the current indexing task, as they were
+     * before the task started. Only used on the search indexer's thread.
+     */
+    private IndexTally tallyBeforeUpdate;
+    private long versionBeforeUpdate;
 
     private VClassGroupCache(ServletContext context) {
         this.context = context;
         this._groupList = null;
+        this.fullRebuildIntervalMillis = readFullRebuildMinutes(context) * 60 * 1000;
 
         if (StartupStatus.getBean(context).isStartupAborted()) {
             _cacheRebuildThread = null;
@@ -161,6 +215,34 @@ public class VClassGroupCache implements SearchIndexer.Listener {
     protected synchronized void setCache(List<VClassGroup> newGroups, Map<String,VClass> classMap){
         _groupList = newGroups;
         VclassMap = classMap;
+        cacheVersion++;
+        lastRebuildMillis = System.currentTimeMillis();
+        countsAdjusted = false;
+    }
+
+    /**
+     * Is it time for a full rebuild, to correct any drift in the adjusted
+     * counts?
+     */
+    boolean isFullRebuildDue() {
+        return countsAdjusted
+                && System.currentTimeMillis() - lastRebuildMillis >= fullRebuildIntervalMillis;
+    }
+
+    private static long readFullRebuildMinutes(ServletContext context) {
+        String value = ConfigurationProperties.getBean(context).getProperty(
+                PROPERTY_FULL_REBUILD_MINUTES);
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_FULL_REBUILD_MINUTES;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + PROPERTY_FULL_REBUILD_MINUTES
+                    + ": '" + value + "'. Using "
+                    + DEFAULT_FULL_REBUILD_MINUTES + " minutes.");
+            return DEFAULT_FULL_REBUILD_MINUTES;
+        }
     }
     
     private boolean paused = false;
@@ -231,7 +313,13 @@ public class VClassGroupCache implements SearchIndexer.Listener {
     @Override
 	public void receiveSearchIndexerEvent(Event event) {
     	switch (event.getType()) {
+    	case START_URIS:
+    	    recordCountsBeforeUpdate(event.getUris());
+    	    break;
     	case STOP_URIS:
+    	    adjustCountsAfterUpdate(event.getUris(), event.areChangesVisible());
+    	    break;
+    	case STOP_REBUILD:
             log.debug("rebuilding because of IndexBuilder " + event.getType());
             requestCacheUpdate();
             break;            
@@ -241,6 +329,121 @@ public class VClassGroupCache implements SearchIndexer.Listener {
     	}
 	}
     
+    private void recordCountsBeforeUpdate(Collection<String> uris) {
+        tallyBeforeUpdate = null;
+        if (fullRebuildIntervalMillis <= 0 || uris.isEmpty()
+                || uris.size() > MAX_URIS_TO_ADJUST) {
+            return;
+        }
+        synchronized (countLock) {
+            versionBeforeUpdate = cacheVersion;
+            tallyBeforeUpdate = tallyForUris(uris);
+        }
+    }
+
+    /**
+     * If we know the counts from before the update, no rebuild has happened
+     * since then, and the search engine is known to show the changes, adjust
+     * the counts. Otherwise, rebuild.
+     *
+     * Without a successful soft commit, a search might not see the changes
+     * yet, and the tally after the update would be the same as before.
+     */
+    private void adjustCountsAfterUpdate(Collection<String> uris,
+            boolean changesVisible) {
+        IndexTally before = tallyBeforeUpdate;
+        tallyBeforeUpdate = null;
+        if (before == null || !changesVisible) {
+            log.debug("rebuilding because of IndexBuilder STOP_URIS");
+            requestCacheUpdate();
+            return;
+        }
+
+        synchronized (countLock) {
+            IndexTally after = null;
+            if (versionBeforeUpdate == cacheVersion) {
+                after = tallyForUris(uris);
+            }
+            if (after == null) {
+                requestCacheUpdate();
+                return;
+            }
+            // Don't lock the cache here: getGroups() may hold it while waiting
+            // for the countLock.
+            List<VClassGroup> groups = _groupList;
+            if (groups != null) {
+                adjustCounts(groups, before, after);
+                countsAdjusted = true;
+            }
+        }
+        log.debug("adjusted counts for " + uris.size() + " URIs");
+    }
+
+    /**
+     * Read the types and class groups of these documents from the search
+     * index. Return null if the search engine can't be reached.
+     */
+    private IndexTally tallyForUris(Collection<String> uris) {
+        SearchEngine searchEngine = ApplicationUtils.instance().getSearchEngine();
+        IndexTally tally = new IndexTally();
+        try {
+            List<String> chunk = new ArrayList<>();
+            for (String uri : uris) {
+                chunk.add(uri);
+                if (chunk.size() >= URIS_PER_QUERY) {
+                    addDocumentsToTally(chunk, tally, searchEngine);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                addDocumentsToTally(chunk, tally, searchEngine);
+            }
+            return tally;
+        } catch (SearchEngineException e) {
+            log.warn("Could not read counts for " + uris.size()
+                    + " URIs. The cache will be rebuilt.", e);
+            return null;
+        }
+    }
+
+    private static void addDocumentsToTally(List<String> uris, IndexTally tally,
+            SearchEngine searchEngine) throws SearchEngineException {
+        SearchQuery query = searchEngine.createQuery()
+                .setQuery(SearchQueryUtils.assembleConjunctiveQuery(
+                        VitroSearchTermNames.URI, uris, Conjunction.OR))
+                .setRows(uris.size())
+                .addFields(VitroSearchTermNames.RDFTYPE,
+                        VitroSearchTermNames.CLASSGROUP_URI);
+        for (SearchResultDocument doc : searchEngine.query(query).getResults()) {
+            tally.add(doc.getFieldValues(VitroSearchTermNames.RDFTYPE),
+                    doc.getFieldValues(VitroSearchTermNames.CLASSGROUP_URI));
+        }
+    }
+
+    /**
+     * Change the count of each class and group by the difference between the
+     * tallies. A count that was never set is treated as zero.
+     */
+    static void adjustCounts(List<VClassGroup> groups, IndexTally before,
+            IndexTally after) {
+        for (VClassGroup group : groups) {
+            int change = after.groupCount(group.getURI())
+                    - before.groupCount(group.getURI());
+            if (change != 0) {
+                group.setIndividualCount(Math.max(0,
+                        Math.max(0, group.getIndividualCount()) + change));
+            }
+            for (VClass clz : group) {
+                change = after.classCount(clz.getURI())
+                        - before.classCount(clz.getURI());
+                if (change != 0) {
+                    clz.setEntityCount(Math.max(0,
+                            Math.max(0, clz.getEntityCount()) + change));
+                }
+            }
+        }
+    }
+
     /* **************** static utility methods ***************** */
     
     /**
@@ -273,8 +476,10 @@ public class VClassGroupCache implements SearchIndexer.Listener {
         List<VClassGroup> groups = vcgDao.getPublicGroupsWithVClasses(ORDER_BY_DISPLAYRANK, 
                 INCLUDE_UNINSTANTIATED, DONT_INCLUDE_INDIVIDUAL_COUNT);
                                 
-        addCountsUsingSearch(groups, searchEngine);        
-        cache.setCache(groups, classMapForGroups(groups));
+        synchronized (cache.countLock) {
+            addCountsUsingSearch(groups, searchEngine);        
+            cache.setCache(groups, classMapForGroups(groups));
+        }
         
         log.debug("msec to build cache: " + (System.currentTimeMillis() - start));
     }
@@ -295,67 +500,56 @@ public class VClassGroupCache implements SearchIndexer.Listener {
 
     
     /**
-     * Add the Individual count to classes in groups.
+     * Add the Individual count to classes in groups. One query gets the counts
+     * for all classes and all groups. Every individual of a class is in the
+     * group of that class, so the count for the class is the same as its count
+     * within the group.
      * @throws SearchEngineException 
      */
     protected static void addCountsUsingSearch(List<VClassGroup> groups, SearchEngine searchEngine) 
     throws SearchEngineException {        
         if( groups == null || searchEngine == null ) 
             return;       
-        for( VClassGroup group : groups){            
-            addClassCountsToGroup(group, searchEngine);            
-        }
-    }    
-    
-    protected static void addClassCountsToGroup(VClassGroup group, SearchEngine searchEngine)
-    throws SearchEngineException {
-        if( group == null ) return;
-        
-        String groupUri = group.getURI();
-        String facetOnField = VitroSearchTermNames.RDFTYPE;
-        
+
         SearchQuery query = searchEngine.createQuery().
             setRows(0).
-            setQuery(VitroSearchTermNames.CLASSGROUP_URI + ":" + groupUri ).        
-            addFacetFields( facetOnField ). //facet on type to get counts for classes in classgroup
-            setFacetMinCount(0);
-        
+            setQuery("*:*").
+            addFacetFields(VitroSearchTermNames.RDFTYPE, VitroSearchTermNames.CLASSGROUP_URI).
+            setFacetLimit(FACET_LIMIT).
+            setFacetMinCount(1);
+
         log.debug("query: " + query);
-        
+
         SearchResponse rsp = searchEngine.query(query);
+        Map<String, Long> classCounts = facetCounts(rsp, VitroSearchTermNames.RDFTYPE);
+        Map<String, Long> groupCounts = facetCounts(rsp, VitroSearchTermNames.CLASSGROUP_URI);
 
-        //Get individual count
-        long individualCount = rsp.getResults().getNumFound();
-        log.debug("Number of individuals found " + individualCount);
-        group.setIndividualCount((int) individualCount);
-        
-        //get counts for classes
-        SearchFacetField ff = rsp.getFacetField( facetOnField );
-        if( ff != null ){
-            List<Count> counts = ff.getValues();
-            if( counts != null ){
-                for( Count ct: counts){
-                    if( ct != null ){
-                        String classUri = ct.getName();
-                        long individualsInClass = ct.getCount();            
-                        setClassCount( group, classUri, individualsInClass);
-                    }
-                }
-            }else{
-               log.debug("no Counts found for FacetField " + facetOnField);   
-            }            
-        }else{
-            log.debug("no FaccetField found for " + facetOnField);
+        for( VClassGroup group : groups){
+            group.setIndividualCount(countFor(groupCounts, group.getURI()));
+            for( VClass clz : group){
+                clz.setEntityCount(countFor(classCounts, clz.getURI()));
+            }
         }
     }
 
-    protected static void setClassCount(VClassGroup group, String classUri,
-            long individualsInClass) {
-        for( VClass clz : group){
-            if( clz.getURI().equals(classUri)){
-                clz.setEntityCount( (int) individualsInClass );
+    private static Map<String, Long> facetCounts(SearchResponse rsp, String fieldName) {
+        Map<String, Long> map = new HashMap<>();
+        SearchFacetField ff = rsp.getFacetField( fieldName );
+        if( ff == null || ff.getValues() == null ){
+            log.debug("no Counts found for FacetField " + fieldName);
+            return map;
+        }
+        for( Count ct: ff.getValues()){
+            if( ct != null ){
+                map.put(ct.getName(), ct.getCount());
             }
-        }        
+        }
+        return map;
+    }
+
+    private static int countFor(Map<String, Long> counts, String uri) {
+        Long count = counts.get(uri);
+        return (count == null) ? 0 : count.intValue();
     }
 
     protected static boolean isClassNameChange(Statement stmt, OntModel jenaOntModel) {
@@ -376,11 +570,53 @@ public class VClassGroupCache implements SearchIndexer.Listener {
             return false;
         }
     }
+
+    protected static boolean isClassDeclaration(Statement stmt) {
+        return OWL.Class.equals(stmt.getObject())
+                || RDFS.Class.equals(stmt.getObject());
+    }
+
+    /**
+     * How many of the documents have each type, and each class group?
+     */
+    static class IndexTally {
+        private final Map<String, Integer> classCounts = new HashMap<>();
+        private final Map<String, Integer> groupCounts = new HashMap<>();
+
+        void add(Collection<Object> types, Collection<Object> groups) {
+            increment(classCounts, types);
+            increment(groupCounts, groups);
+        }
+
+        int classCount(String uri) {
+            Integer count = classCounts.get(uri);
+            return (count == null) ? 0 : count;
+        }
+
+        int groupCount(String uri) {
+            Integer count = groupCounts.get(uri);
+            return (count == null) ? 0 : count;
+        }
+
+        private static void increment(Map<String, Integer> map,
+                Collection<Object> values) {
+            if (values == null) {
+                return;
+            }
+            for (Object value : values) {
+                String key = String.valueOf(value);
+                Integer count = map.get(key);
+                map.put(key, (count == null) ? 1 : count + 1);
+            }
+        }
+    }
+
     /* ******************** RebuildGroupCacheThread **************** */
     
     protected class RebuildGroupCacheThread extends VitroBackgroundThread {
         private final VClassGroupCache cache;
         private long queueChangeMillis = 0L; 
+        private long firstRequestMillis = 0L;
         private boolean rebuildRequested = false;
         private volatile boolean die = false;
         private int failedAttempts = 0;
@@ -396,10 +632,16 @@ public class VClassGroupCache implements SearchIndexer.Listener {
             while (!die) {
                 int delay;
 
+                if ( !rebuildRequested && cache.isFullRebuildDue() ) {
+                    log.debug("rebuildGroupCacheThread.run() -- periodic rebuild");
+                    rebuildRequested = true;
+                }
+
                 if ( !rebuildRequested ) {
                     log.debug("rebuildGroupCacheThread.run() -- nothing to do, sleep");
                     delay = 1000 * 60;
-                } else if ((System.currentTimeMillis() - queueChangeMillis ) < 500) {
+                } else if ((System.currentTimeMillis() - queueChangeMillis ) < 500
+                        && (System.currentTimeMillis() - firstRequestMillis ) < MAX_REBUILD_DELAY) {
                     log.debug("rebuildGroupCacheThread.run() -- delay start of rebuild");
                     delay = 500;
                 } else {                                        
@@ -448,6 +690,9 @@ public class VClassGroupCache implements SearchIndexer.Listener {
 
         synchronized void informOfQueueChange() {
             queueChangeMillis = System.currentTimeMillis();
+            if (!rebuildRequested) {
+                firstRequestMillis = queueChangeMillis;
+            }
             rebuildRequested = true;
             this.notifyAll();
         }
@@ -482,7 +727,10 @@ public class VClassGroupCache implements SearchIndexer.Listener {
                 log.debug("predicate: " + stmt.getPredicate().getURI());
             }
             if (RDF.type.equals(stmt.getPredicate())) {
-                requestCacheUpdate();
+                // The search indexer reports changes to the types of individuals.
+                if (isClassDeclaration(stmt)) {
+                    requestCacheUpdate();
+                }
             } else if (VitroVocabulary.IN_CLASSGROUP.equals(stmt.getPredicate().getURI())) {
                 requestCacheUpdate();
             } else if(VitroVocabulary.DISPLAY_RANK.equals(stmt.getPredicate().getURI())){
@@ -23,6 +23,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.DelimitingTemplate
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.UrlBuilder;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.configuration.EditConfigurationConstants;
 import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader;
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.TemplateDirectoryIndex;
 import edu.cornell.mannlib.vitro.webapp.i18n.freemarker.I18nMethodModel;
 import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
 import edu.cornell.mannlib.vitro.webapp.utils.developer.DeveloperSettings;
@@ -282,6 +283,7 @@ public abstract class FreemarkerConfiguration {
 		@Override
 		public void contextDestroyed(ServletContextEvent sce) {
 			instance = null;
+			TemplateDirectoryIndex.closeAll();
 		}
 	}
 }
@@ -65,12 +65,16 @@ import freemarker.cache.TemplateLoader;
  * If more than one template file qualifies, we choose by best fit, shortest
  * path, and alphabetical order, to insure that identical requests produce
  * identical results.
+ * 
+ * The files are found in a TemplateDirectoryIndex, if the directory can be
+ * watched for changes. Otherwise, we walk the directory tree for each search.
  */
 public class FreemarkerTemplateLoader implements TemplateLoader {
 	private static final Log log = LogFactory
 			.getLog(FreemarkerTemplateLoader.class);
 
 	private final File baseDir;
+	private final TemplateDirectoryIndex index;
 
 	public FreemarkerTemplateLoader(File baseDir) {
 		if (baseDir == null) {
@@ -93,11 +97,12 @@ public class FreemarkerTemplateLoader implements TemplateLoader {
 
 		log.debug("Created template loader - baseDir is '" + path + "'");
 		this.baseDir = baseDir;
+		this.index = TemplateDirectoryIndex.forDirectory(baseDir.toPath());
 	}
 
 	/**
-	 * Get the best template for this name. Walk the tree finding all possible
-	 * matches, then choose our favorite.
+	 * Get the best template for this name. Find all possible matches, then
+	 * choose our favorite.
 	 */
 	@Override
 	public Object findTemplateSource(String name) throws IOException {
@@ -115,6 +120,17 @@ public class FreemarkerTemplateLoader implements TemplateLoader {
 	}
 
 	private SortedSet<PathPieces> findAllMatches(PathPieces searchTerm) {
+		if (index != null) {
+			return index.findMatches(searchTerm);
+		} else {
+			return walkForMatches(searchTerm);
+		}
+	}
+
+	/**
+	 * Walk the tree, finding all possible matches.
+	 */
+	SortedSet<PathPieces> walkForMatches(PathPieces searchTerm) {
 		PathPiecesFileVisitor visitor = new PathPiecesFileVisitor(searchTerm);
 		try {
 			Files.walkFileTree(baseDir.toPath(), visitor);
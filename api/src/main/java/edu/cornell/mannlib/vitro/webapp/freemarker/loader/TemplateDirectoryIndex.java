@@ -0,0 +1,306 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.freemarker.loader;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPieces;
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPiecesComparator;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Remembers the files in a template directory and its sub-directories, so the
+ * FreemarkerTemplateLoader doesn't walk the whole tree for each template.
+ *
+ * The files are grouped by base name and extension. A search finds the group
+ * for the search term, and applies the usual rules for language and region to
+ * the files in the group.
+ *
+ * A WatchService keeps the index current as files and directories are created
+ * or deleted. If the service loses track, the directory is read again.
+ *
+ * There is one index for each directory, shared by all of the template loaders
+ * for that directory, since a new loader is created whenever the theme or the
+ * developer settings change.
+ */
+public class TemplateDirectoryIndex {
+	private static final Log log = LogFactory
+			.getLog(TemplateDirectoryIndex.class);
+
+	private static final Map<Path, TemplateDirectoryIndex> indexes = new HashMap<>();
+
+	/**
+	 * Get the index for this directory, creating it if necessary. If the
+	 * directory can't be watched, return null.
+	 */
+	static synchronized TemplateDirectoryIndex forDirectory(Path baseDir) {
+		Path key = baseDir.toAbsolutePath().normalize();
+		TemplateDirectoryIndex index = indexes.get(key);
+		if (index == null) {
+			try {
+				index = new TemplateDirectoryIndex(baseDir);
+				indexes.put(key, index);
+			} catch (IOException e) {
+				log.warn("Can't watch template directory '" + baseDir
+						+ "'. Templates will be found by searching it.", e);
+				return null;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Stop watching all of the directories.
+	 */
+	public static synchronized void closeAll() {
+		for (TemplateDirectoryIndex index : indexes.values()) {
+			index.close();
+		}
+		indexes.clear();
+	}
+
+	private final Path baseDir;
+	private final WatchService watcher;
+	private final Thread watcherThread;
+
+	/** The watched directories. */
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+
+	/**
+	 * The files, grouped by base name and extension. A rescan builds a new
+	 * map and replaces this one.
+	 */
+	private Map<String, Set<Path>> files = new HashMap<>();
+
+	TemplateDirectoryIndex(Path baseDir) throws IOException {
+		this.baseDir = baseDir;
+		this.watcher = baseDir.getFileSystem().newWatchService();
+		try {
+			addTree(baseDir, files);
+		} catch (IOException e) {
+			watcher.close();
+			throw e;
+		}
+
+		this.watcherThread = new VitroBackgroundThread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "TemplateDirectoryIndex_" + baseDir.getFileName());
+		this.watcherThread.setDaemon(true);
+		this.watcherThread.start();
+	}
+
+	/**
+	 * Find all files that match the search term, ordered by the rules of the
+	 * PathPiecesComparator.
+	 */
+	SortedSet<PathPieces> findMatches(PathPieces searchTerm) {
+		List<Path> candidates;
+		synchronized (this) {
+			Set<Path> paths = files.get(nameKey(searchTerm));
+			if (paths == null) {
+				candidates = new ArrayList<>();
+			} else {
+				candidates = new ArrayList<>(paths);
+			}
+		}
+
+		SortedSet<PathPieces> matches = new TreeSet<>(new PathPiecesComparator(
+				searchTerm));
+		for (Path candidate : candidates) {
+			PathPieces found = new PathPieces(candidate);
+			if (searchTerm.matches(found)) {
+				matches.add(found);
+			}
+		}
+		return matches;
+	}
+
+	synchronized int size() {
+		int size = 0;
+		for (Set<Path> paths : files.values()) {
+			size += paths.size();
+		}
+		return size;
+	}
+
+	void close() {
+		watcherThread.interrupt();
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			log.warn("Failed to close the watch service for '" + baseDir
+					+ "'", e);
+		}
+	}
+
+	private static String nameKey(PathPieces pieces) {
+		return pieces.base + "\u0000" + pieces.extension;
+	}
+
+	// ----------------------------------------------------------------------
+	// Maintaining the index
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Watch each directory before listing its files, so no new file is
+	 * missed.
+	 */
+	private void addTree(Path root, final Map<String, Set<Path>> index)
+			throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir,
+					BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+				synchronized (TemplateDirectoryIndex.this) {
+					directories.put(key, dir);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path,
+					BasicFileAttributes attrs) {
+				addFile(path, index);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void addFile(Path path, Map<String, Set<Path>> index) {
+		if (Files.isDirectory(path)) {
+			return;
+		}
+		String key = nameKey(new PathPieces(path));
+		synchronized (this) {
+			Set<Path> paths = index.get(key);
+			if (paths == null) {
+				paths = new HashSet<>();
+				index.put(key, paths);
+			}
+			paths.add(path);
+		}
+	}
+
+	/** The path may have been a file, or a directory full of files. */
+	private synchronized void remove(Path path) {
+		Iterator<Set<Path>> groups = files.values().iterator();
+		while (groups.hasNext()) {
+			Set<Path> paths = groups.next();
+			Iterator<Path> it = paths.iterator();
+			while (it.hasNext()) {
+				if (it.next().startsWith(path)) {
+					it.remove();
+				}
+			}
+			if (paths.isEmpty()) {
+				groups.remove();
+			}
+		}
+	}
+
+	/**
+	 * Searches keep using the old files until the new map is complete.
+	 *
+	 * The old watch keys are cancelled first: registering a directory again
+	 * may return the same key.
+	 */
+	private void rescan() {
+		log.debug("Reading template directory '" + baseDir + "' again.");
+		synchronized (this) {
+			for (WatchKey key : directories.keySet()) {
+				key.cancel();
+			}
+			directories.clear();
+		}
+		Map<String, Set<Path>> newFiles = new HashMap<>();
+		try {
+			addTree(baseDir, newFiles);
+		} catch (IOException e) {
+			log.warn("Failed to read template directory '" + baseDir + "'", e);
+		}
+		synchronized (this) {
+			files = newFiles;
+		}
+	}
+
+	private void watch() {
+		while (!Thread.currentThread().isInterrupted()) {
+			WatchKey key;
+			try {
+				key = watcher.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			Path dir;
+			synchronized (this) {
+				dir = directories.get(key);
+			}
+
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW || dir == null) {
+					rescan();
+					break;
+				}
+
+				Path path = dir.resolve((Path) event.context());
+				if (event.kind() == ENTRY_CREATE) {
+					created(path);
+				} else if (event.kind() == ENTRY_DELETE) {
+					remove(path);
+				}
+			}
+
+			if (!key.reset()) {
+				synchronized (this) {
+					directories.remove(key);
+				}
+			}
+		}
+	}
+
+	private void created(Path path) {
+		Map<String, Set<Path>> index;
+		synchronized (this) {
+			index = files;
+		}
+		try {
+			if (Files.isDirectory(path)) {
+				addTree(path, index);
+			} else {
+				addFile(path, index);
+			}
+		} catch (IOException e) {
+			log.warn("Failed to read '" + path + "'", e);
+		}
+	}
+}
@@ -7,6 +7,7 @@ import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.ModelMaker;
 
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.HierarchyIndex;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.OntModelSelector;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.ReasoningOption;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService;
@@ -54,4 +55,13 @@ public interface ContextModelAccess {
 
 	/** Get a WebappDaoFactory, based on ASSERTIONS, INFERENCES, or both. */
 	public WebappDaoFactory getWebappDaoFactory(ReasoningOption option);
+
+	/** Get the ASSERTIONS_AND_INFERENCES HierarchyIndex. */
+	public HierarchyIndex getHierarchyIndex();
+
+	/**
+	 * Get the index of the class and property hierarchies in the TBox, based
+	 * on ASSERTIONS, INFERENCES, or both.
+	 */
+	public HierarchyIndex getHierarchyIndex(ReasoningOption option);
 }
@@ -36,6 +36,7 @@ import org.apache.jena.rdf.model.ModelMaker;
 import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactoryConfig;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.HierarchyIndex;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.OntModelSelector;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.OntModelSelectorImpl;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB;
@@ -74,6 +75,7 @@ public class ContextModelAccessImpl implements ContextModelAccess {
 	private final OntModelCache ontModelCache;
 	private final Map<ReasoningOption, OntModelSelector> omsMap;
 	private final Map<ReasoningOption, WebappDaoFactory> wadfMap;
+	private final Map<ReasoningOption, HierarchyIndex> hierarchyMap;
 
 	/**
 	 * Pull all of the items into maps, instead of fetching them from the
@@ -96,6 +98,7 @@ public class ContextModelAccessImpl implements ContextModelAccess {
 		this.modelMakerMap = populateModelMakerMap();
 		this.omsMap = populateOmsMap();
 		this.wadfMap = populateWadfMap();
+		this.hierarchyMap = populateHierarchyMap();
 	}
 
 	@Override
@@ -276,4 +279,38 @@ public class ContextModelAccessImpl implements ContextModelAccess {
 		return wadf;
 	}
 
+	// ----------------------------------------------------------------------
+	// HierarchyIndexes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * The union model doesn't hear about changes to its parts, so its index
+	 * listens to the assertions and the inferences.
+	 */
+	private Map<ReasoningOption, HierarchyIndex> populateHierarchyMap() {
+		OntModel assertions = getOntModel(TBOX_ASSERTIONS);
+		OntModel inferences = getOntModel(TBOX_INFERENCES);
+
+		Map<ReasoningOption, HierarchyIndex> map = new EnumMap<>(
+				ReasoningOption.class);
+		map.put(ASSERTIONS_ONLY, new HierarchyIndex(assertions));
+		map.put(INFERENCES_ONLY, new HierarchyIndex(inferences));
+		map.put(ASSERTIONS_AND_INFERENCES, new HierarchyIndex(
+				getOntModel(TBOX_UNION), assertions, inferences));
+		log.debug("HierarchyIndexMap: " + map);
+		return Collections.unmodifiableMap(map);
+	}
+
+	@Override
+	public HierarchyIndex getHierarchyIndex() {
+		return getHierarchyIndex(ASSERTIONS_AND_INFERENCES);
+	}
+
+	@Override
+	public HierarchyIndex getHierarchyIndex(ReasoningOption option) {
+		HierarchyIndex index = hierarchyMap.get(option);
+		log.debug("getHierarchyIndex: " + index);
+		return index;
+	}
+
 }
@@ -33,6 +33,7 @@ import edu.cornell.mannlib.vitro.webapp.dao.filtering.filters.HideFromDisplayByP
 import edu.cornell.mannlib.vitro.webapp.dao.jena.OntModelSelector;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.OntModelSelectorImpl;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceDataset;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceWriteBatcher;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB.SDBDatasetMode;
 import edu.cornell.mannlib.vitro.webapp.filters.ModelSwitcher;
@@ -81,6 +82,13 @@ import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
  * least of which is that the model switching will not be available on
  * WebappDaoFactories based on ASSERTIONS_ONLY or INFERENCES_ONLY, and similarly
  * for the OntModel.
+ * 
+ * ----------------------------------------
+ * 
+ * The caches are synchronized, since the property list of a profile page may
+ * be populated on several threads at once. That only keeps the caches
+ * consistent: the threads share the RDFService, so they are only used if the
+ * content is in TDB or a SPARQL endpoint. See PropertyListPopulator.
  */
 public class RequestModelAccessImpl implements RequestModelAccess {
 	private static final Log log = LogFactory
@@ -90,6 +98,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 	private final ServletContext ctx;
 	private final ConfigurationProperties props;
 	private final ShortTermCombinedTripleSource source;
+	private RDFServiceWriteBatcher writeBatcher;
 
 	public RequestModelAccessImpl(HttpServletRequest req,
 			ShortTermCombinedTripleSource source) {
@@ -107,13 +116,89 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 				"false"));
 	}
 
+	/**
+	 * The find cache on request datasets is disabled unless they set a maximum
+	 * age for its entries.
+	 */
+	private long getFindCacheMaxAge() {
+		String value = props.getProperty("RDFService.findCache.maxAgeMillis",
+				"0");
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			log.warn("Invalid value for RDFService.findCache.maxAgeMillis: '"
+					+ value + "'");
+			return 0;
+		}
+	}
+
+	/**
+	 * Writes to request datasets are not batched unless they set a batch
+	 * size. All of the datasets for a request share a batcher, so a read from
+	 * any of them sees the writes to all of them.
+	 */
+	private synchronized RDFServiceWriteBatcher getWriteBatcher() {
+		if (writeBatcher == null) {
+			String value = props.getProperty("RDFService.writeBatch.size", "0");
+			try {
+				int batchSize = Integer.parseInt(value.trim());
+				if (batchSize > 0) {
+					writeBatcher = new RDFServiceWriteBatcher(batchSize);
+				}
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value for RDFService.writeBatch.size: '"
+						+ value + "'");
+			}
+		}
+		return writeBatcher;
+	}
+
 	private List<String> getPreferredLanguages() {
 		return LanguageFilteringUtils.localesToLanguages(req.getLocales());
 	}
 
 	@Override
 	public void close() {
-		this.source.close();
+		RuntimeException problem = null;
+		if (writeBatcher != null) {
+			try {
+				writeBatcher.flush();
+			} catch (RuntimeException e) {
+				problem = addProblem(problem, e);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Write batching for request " + req.hashCode()
+						+ ": " + writeBatcher.getStatistics());
+			}
+		}
+		for (Dataset dataset : datasetMap.values()) {
+			try {
+				dataset.close();
+			} catch (RuntimeException e) {
+				problem = addProblem(problem, e);
+			}
+		}
+		try {
+			this.source.close();
+		} catch (RuntimeException e) {
+			problem = addProblem(problem, e);
+		}
+		if (problem != null) {
+			throw problem;
+		}
+	}
+
+	/**
+	 * Keep the first problem, so every resource is closed before it is thrown.
+	 * Later problems are added to it.
+	 */
+	private RuntimeException addProblem(RuntimeException first,
+			RuntimeException e) {
+		if (first == null) {
+			return e;
+		}
+		first.addSuppressed(e);
+		return first;
 	}
 
 	@Override
@@ -133,7 +218,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getRDFService(new RDFServiceKey(options));
 	}
 
-	private RDFService getRDFService(RDFServiceKey key) {
+	private synchronized RDFService getRDFService(RDFServiceKey key) {
 		if (!rdfServiceMap.containsKey(key)) {
 			RDFService rdfService = createRDFService(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
@@ -173,7 +258,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getDataset(new DatasetKey(options));
 	}
 
-	private Dataset getDataset(DatasetKey key) {
+	private synchronized Dataset getDataset(DatasetKey key) {
 		if (!datasetMap.containsKey(key)) {
 			Dataset dataset = createDataset(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
@@ -186,7 +271,11 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 	}
 
 	private Dataset createDataset(DatasetKey key) {
-		return new RDFServiceDataset(getRDFService(key.rdfServiceKey()));
+		RDFServiceDataset dataset = new RDFServiceDataset(
+				getRDFService(key.rdfServiceKey()));
+		dataset.enableFindCache(getFindCacheMaxAge());
+		dataset.setWriteBatcher(getWriteBatcher());
+		return dataset;
 	}
 
 	// ----------------------------------------------------------------------
@@ -205,7 +294,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getOntModel(new OntModelKey(name, options));
 	}
 
-	private OntModel getOntModel(OntModelKey key) {
+	private synchronized OntModel getOntModel(OntModelKey key) {
 		if (!ontModelMap.containsKey(key)) {
 			OntModel ontModel = createOntModel(key);
 			if ( log.isDebugEnabled() ) {
@@ -244,7 +333,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 	/**
 	 * TODO Hack for model switching.
 	 */
-	public void setSpecialWriteModel(OntModel mainOntModel) {
+	public synchronized void setSpecialWriteModel(OntModel mainOntModel) {
 		ontModelMap.put(new OntModelKey(ModelNames.FULL_UNION), mainOntModel);
 	}
 
@@ -260,7 +349,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getOntModelSelector(new OntModelSelectorKey(options));
 	}
 
-	private OntModelSelector getOntModelSelector(OntModelSelectorKey key) {
+	private synchronized OntModelSelector getOntModelSelector(OntModelSelectorKey key) {
 		if (!ontModelSelectorMap.containsKey(key)) {
 			OntModelSelector oms = createOntModelSelector(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
@@ -299,7 +388,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getWebappDaoFactory(new WebappDaoFactoryKey(options));
 	}
 
-	private WebappDaoFactory getWebappDaoFactory(WebappDaoFactoryKey key) {
+	private synchronized WebappDaoFactory getWebappDaoFactory(WebappDaoFactoryKey key) {
 		if (!wadfMap.containsKey(key)) {
 			WebappDaoFactory wadf = createWebappDaoFactory(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
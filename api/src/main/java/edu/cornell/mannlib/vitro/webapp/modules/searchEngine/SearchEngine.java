@@ -57,6 +57,18 @@ public interface SearchEngine extends Application.Module {
 	 */
 	void commit(boolean wait) throws SearchEngineException;
 
+	/**
+	 * Make all pending changes visible to the search, without necessarily
+	 * writing them to durable storage. This is much cheaper than commit().
+	 */
+	void softCommit() throws SearchEngineException;
+
+	/**
+	 * Merge the index into as few segments as possible. This is expensive on a
+	 * large index, so it should only be done after a rebuild or on request.
+	 */
+	void optimize() throws SearchEngineException;
+
 	/**
 	 * Delete documents from the search index, by unique ID.
 	 */
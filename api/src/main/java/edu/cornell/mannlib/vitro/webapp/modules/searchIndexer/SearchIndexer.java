@@ -3,6 +3,7 @@
 package edu.cornell.mannlib.vitro.webapp.modules.searchIndexer;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.jena.rdf.model.Statement;
@@ -112,6 +113,14 @@ public interface SearchIndexer extends Application.Module {
 	 */
 	void rebuildIndex();
 
+	/**
+	 * Commit the index and merge it into as few segments as possible. This is
+	 * expensive on a large index, so it runs in the background.
+	 * 
+	 * If called before startup or after shutdown, this has no effect.
+	 */
+	void optimizeIndex();
+
 	/**
 	 * What is the current status of the indexer?
 	 * 
@@ -156,6 +165,11 @@ public interface SearchIndexer extends Application.Module {
 	/**
 	 * An immutable event object. The event type describes just what happened.
 	 * The status object describes what the indexer is doing now.
+	 * 
+	 * START_URIS and STOP_URIS events also carry the URIs of the task, so a
+	 * listener can see which documents were updated or removed. A STOP_URIS
+	 * event also says whether the changes are known to be visible to searches
+	 * yet.
 	 */
 	public static class Event {
 		public enum Type {
@@ -174,10 +188,24 @@ public interface SearchIndexer extends Application.Module {
 
 		private final Type type;
 		private final SearchIndexerStatus status;
+		private final Collection<String> uris;
+		private final boolean changesVisible;
 
 		public Event(Type type, SearchIndexerStatus status) {
+			this(type, status, Collections.<String> emptySet());
+		}
+
+		public Event(Type type, SearchIndexerStatus status,
+				Collection<String> uris) {
+			this(type, status, uris, false);
+		}
+
+		public Event(Type type, SearchIndexerStatus status,
+				Collection<String> uris, boolean changesVisible) {
 			this.type = type;
 			this.status = status;
+			this.uris = Collections.unmodifiableCollection(uris);
+			this.changesVisible = changesVisible;
 		}
 
 		public Type getType() {
@@ -188,6 +216,21 @@ public interface SearchIndexer extends Application.Module {
 			return status;
 		}
 
+		/**
+		 * The URIs of the task, or an empty collection.
+		 */
+		public Collection<String> getUris() {
+			return uris;
+		}
+
+		/**
+		 * True if searches are known to see the changes of the task. If false,
+		 * they may not see them yet.
+		 */
+		public boolean areChangesVisible() {
+			return changesVisible;
+		}
+
 		@Override
 		public String toString() {
 			return type + ", " + status;
@@ -15,6 +15,10 @@ import java.util.Date;
  * 
  * When the indexer starts up, becomes idle, or shuts down, the counts are
  * NO_COUNTS.
+ * 
+ * The flush statistics describe the batched updates to the search engine, and
+ * the commit statistics describe the commits and optimizations. They are not
+ * specific to the current task.
  */
 public class SearchIndexerStatus {
 	// ----------------------------------------------------------------------
@@ -37,11 +41,37 @@ public class SearchIndexerStatus {
 	private final State state;
 	private final Date since;
 	private final Counts counts;
+	private final FlushStatistics flushStatistics;
+	private final CommitStatistics commitStatistics;
 
 	public SearchIndexerStatus(State state, Date since, Counts counts) {
+		this(state, since, counts, new FlushStatistics(),
+				new CommitStatistics());
+	}
+
+	public SearchIndexerStatus(State state, Date since, Counts counts,
+			FlushStatistics flushStatistics, CommitStatistics commitStatistics) {
 		this.state = state;
 		this.since = since;
 		this.counts = counts;
+		this.flushStatistics = flushStatistics;
+		this.commitStatistics = commitStatistics;
+	}
+
+	/**
+	 * Create a copy of this status, with the current flush statistics.
+	 */
+	public SearchIndexerStatus withFlushStatistics(FlushStatistics stats) {
+		return new SearchIndexerStatus(state, since, counts, stats,
+				commitStatistics);
+	}
+
+	/**
+	 * Create a copy of this status, with the current commit statistics.
+	 */
+	public SearchIndexerStatus withCommitStatistics(CommitStatistics stats) {
+		return new SearchIndexerStatus(state, since, counts, flushStatistics,
+				stats);
 	}
 
 	public State getState() {
@@ -56,6 +86,14 @@ public class SearchIndexerStatus {
 		return counts;
 	}
 
+	public FlushStatistics getFlushStatistics() {
+		return flushStatistics;
+	}
+
+	public CommitStatistics getCommitStatistics() {
+		return commitStatistics;
+	}
+
 	@Override
 	public String toString() {
 		return new SimpleDateFormat().format(since) + ", " + counts;
@@ -175,14 +213,36 @@ public class SearchIndexerStatus {
 		}
 	}
 
+	/**
+	 * A rebuild is a pipeline: URIs are found, individuals are loaded and
+	 * either excluded or built into documents, and the documents are submitted
+	 * to the search engine. Each stage keeps its own count, so the throughput
+	 * of each stage can be seen while the rebuild is running.
+	 */
 	public static class RebuildCounts extends Counts {
 		private final int documentsBefore;
 		private final int documentsAfter;
+		private final int urisFound;
+		private final int individualsLoaded;
+		private final int excluded;
+		private final int documentsBuilt;
+		private final int documentsSubmitted;
 
 		public RebuildCounts(int documentsBefore, int documentsAfter) {
+			this(documentsBefore, documentsAfter, 0, 0, 0, 0, 0);
+		}
+
+		public RebuildCounts(int documentsBefore, int documentsAfter,
+				int urisFound, int individualsLoaded, int excluded,
+				int documentsBuilt, int documentsSubmitted) {
 			super(Type.REBUILD_COUNTS);
 			this.documentsBefore = documentsBefore;
 			this.documentsAfter = documentsAfter;
+			this.urisFound = urisFound;
+			this.individualsLoaded = individualsLoaded;
+			this.excluded = excluded;
+			this.documentsBuilt = documentsBuilt;
+			this.documentsSubmitted = documentsSubmitted;
 		}
 
 		public int getDocumentsBefore() {
@@ -193,10 +253,178 @@ public class SearchIndexerStatus {
 			return documentsAfter;
 		}
 
+		public int getUrisFound() {
+			return urisFound;
+		}
+
+		public int getIndividualsLoaded() {
+			return individualsLoaded;
+		}
+
+		public int getExcluded() {
+			return excluded;
+		}
+
+		public int getDocumentsBuilt() {
+			return documentsBuilt;
+		}
+
+		public int getDocumentsSubmitted() {
+			return documentsSubmitted;
+		}
+
 		@Override
 		public String toString() {
 			return "[documentsBefore=" + documentsBefore + ", documentsAfter="
-					+ documentsAfter + "]";
+					+ documentsAfter + ", urisFound=" + urisFound
+					+ ", individualsLoaded=" + individualsLoaded
+					+ ", excluded=" + excluded + ", documentsBuilt="
+					+ documentsBuilt + ", documentsSubmitted="
+					+ documentsSubmitted + "]";
+		}
+	}
+
+	/**
+	 * How often the batched updates have been sent to the search engine, and
+	 * how long it took. These accumulate over the life of the indexer, not
+	 * just the current task.
+	 */
+	public static class FlushStatistics {
+		private final int flushCount;
+		private final int failedFlushCount;
+		private final int documentsAdded;
+		private final int documentsDeleted;
+		private final long totalFlushMillis;
+		private final long maxFlushMillis;
+		private final long lastFlushMillis;
+
+		public FlushStatistics() {
+			this(0, 0, 0, 0, 0, 0, 0);
+		}
+
+		public FlushStatistics(int flushCount, int failedFlushCount,
+				int documentsAdded, int documentsDeleted,
+				long totalFlushMillis, long maxFlushMillis,
+				long lastFlushMillis) {
+			this.flushCount = flushCount;
+			this.failedFlushCount = failedFlushCount;
+			this.documentsAdded = documentsAdded;
+			this.documentsDeleted = documentsDeleted;
+			this.totalFlushMillis = totalFlushMillis;
+			this.maxFlushMillis = maxFlushMillis;
+			this.lastFlushMillis = lastFlushMillis;
+		}
+
+		public int getFlushCount() {
+			return flushCount;
+		}
+
+		public int getFailedFlushCount() {
+			return failedFlushCount;
+		}
+
+		public int getDocumentsAdded() {
+			return documentsAdded;
+		}
+
+		public int getDocumentsDeleted() {
+			return documentsDeleted;
+		}
+
+		public long getTotalFlushMillis() {
+			return totalFlushMillis;
+		}
+
+		public long getMaxFlushMillis() {
+			return maxFlushMillis;
+		}
+
+		public long getLastFlushMillis() {
+			return lastFlushMillis;
+		}
+
+		public long getAverageFlushMillis() {
+			return (flushCount == 0) ? 0 : totalFlushMillis / flushCount;
+		}
+
+		@Override
+		public String toString() {
+			return "[flushCount=" + flushCount + ", failedFlushCount="
+					+ failedFlushCount + ", documentsAdded=" + documentsAdded
+					+ ", documentsDeleted=" + documentsDeleted
+					+ ", averageFlushMillis=" + getAverageFlushMillis()
+					+ ", maxFlushMillis=" + maxFlushMillis
+					+ ", lastFlushMillis=" + lastFlushMillis + "]";
+		}
+	}
+
+	/**
+	 * How often the search index has been committed or optimized, and how long
+	 * the most recent of each took. These accumulate over the life of the
+	 * indexer.
+	 */
+	public static class CommitStatistics {
+		private final int softCommitCount;
+		private final long lastSoftCommitMillis;
+		private final int hardCommitCount;
+		private final long lastHardCommitMillis;
+		private final int optimizeCount;
+		private final long lastOptimizeMillis;
+		private final int failureCount;
+
+		public CommitStatistics() {
+			this(0, 0, 0, 0, 0, 0, 0);
+		}
+
+		public CommitStatistics(int softCommitCount, long lastSoftCommitMillis,
+				int hardCommitCount, long lastHardCommitMillis,
+				int optimizeCount, long lastOptimizeMillis, int failureCount) {
+			this.softCommitCount = softCommitCount;
+			this.lastSoftCommitMillis = lastSoftCommitMillis;
+			this.hardCommitCount = hardCommitCount;
+			this.lastHardCommitMillis = lastHardCommitMillis;
+			this.optimizeCount = optimizeCount;
+			this.lastOptimizeMillis = lastOptimizeMillis;
+			this.failureCount = failureCount;
+		}
+
+		public int getSoftCommitCount() {
+			return softCommitCount;
+		}
+
+		public long getLastSoftCommitMillis() {
+			return lastSoftCommitMillis;
+		}
+
+		public int getHardCommitCount() {
+			return hardCommitCount;
+		}
+
+		public long getLastHardCommitMillis() {
+			return lastHardCommitMillis;
+		}
+
+		public int getOptimizeCount() {
+			return optimizeCount;
+		}
+
+		public long getLastOptimizeMillis() {
+			return lastOptimizeMillis;
+		}
+
+		public int getFailureCount() {
+			return failureCount;
+		}
+
+		@Override
+		public String toString() {
+			return "[softCommitCount=" + softCommitCount
+					+ ", lastSoftCommitMillis=" + lastSoftCommitMillis
+					+ ", hardCommitCount=" + hardCommitCount
+					+ ", lastHardCommitMillis=" + lastHardCommitMillis
+					+ ", optimizeCount=" + optimizeCount
+					+ ", lastOptimizeMillis=" + lastOptimizeMillis
+					+ ", failureCount=" + failureCount + "]";
 		}
 	}
 
@@ -5,6 +5,8 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice;
 import java.io.InputStream;
 import java.util.List;
 
+import org.apache.jena.rdf.model.Model;
+
 /**
  * Input parameter to changeSetUpdate() method in RDFService.
  * Represents a precondition query and an ordered list of model changes. 
@@ -58,6 +60,26 @@ public interface ChangeSet {
 			               RDFService.ModelSerializationFormat serializationFormat,
 			               String graphURI);
 
+	/**   
+	 * Adds one model change representing an addition to the list of model 
+	 * changes. The model is not serialized unless a caller asks for it, and 
+	 * must not be changed after it is added.
+	 * 
+	 * @param model - an RDF model (collection of triples)  
+	 * @param graphURI - URI of the graph to which the RDF model should be added         
+	 */		
+	public void addAddition(Model model, String graphURI);
+
+	/**   
+	 * Adds one model change representing a deletion to the list of model 
+	 * changes. The model is not serialized unless a caller asks for it, and 
+	 * must not be changed after it is added.
+	 * 
+	 * @param model - an RDF model (collection of triples)  
+	 * @param graphURI - URI of the graph from which the RDF model should be removed         
+	 */		
+	public void addRemoval(Model model, String graphURI);
+
 	/**   
 	 * Creates an instance of the ModelChange class 
 	 * 
@@ -4,6 +4,8 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice;
 
 import java.io.InputStream;
 
+import org.apache.jena.rdf.model.Model;
+
 /**
  * A ModelChange is one component of a ChangeSet.
  * Represents a model (collection of RDF triples), the URI
@@ -22,6 +24,14 @@ public interface ModelChange {
 	 */
 	public InputStream getSerializedModel();
 	
+	/**
+	 * The triples of the change, parsed at most once and shared by every 
+	 * caller. Treat it as read-only.
+	 * 
+	 * @return Model - the model (collection of RDF triples) representing a change to make
+	 */
+	public Model getModel();
+	
 	/**
 	 * @param serializedModel - the serialized model (collection of RDF triples) representing a change to make           
 	 */
@@ -9,9 +9,8 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import org.apache.jena.graph.GraphEvents;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 
 public class RDFServiceBulkUpdater extends AbstractBulkUpdater {
     RDFServiceGraph graph;
@@ -23,10 +22,7 @@ public class RDFServiceBulkUpdater extends AbstractBulkUpdater {
     @Override
     protected void performAddModel(Model model) {
         ChangeSet changeSet = graph.getRDFService().manufactureChangeSet();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        model.write(out, "N-TRIPLE");
-        changeSet.addAddition(new ByteArrayInputStream(
-                        out.toByteArray()), RDFService.ModelSerializationFormat.N3,
+        changeSet.addAddition(ModelFactory.createDefaultModel().add(model),
                 graph.getGraphURI());
         try {
             graph.getRDFService().changeSetUpdate(changeSet);
@@ -38,10 +34,7 @@ public class RDFServiceBulkUpdater extends AbstractBulkUpdater {
     @Override
     protected void performRemoveModel(Model model) {
         ChangeSet changeSet = graph.getRDFService().manufactureChangeSet();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        model.write(out, "N-TRIPLE");
-        changeSet.addRemoval(new ByteArrayInputStream(
-                        out.toByteArray()), RDFService.ModelSerializationFormat.N3,
+        changeSet.addRemoval(ModelFactory.createDefaultModel().add(model),
                 graph.getGraphURI());
         try {
             graph.getRDFService().changeSetUpdate(changeSet);
@@ -83,10 +76,7 @@ public class RDFServiceBulkUpdater extends AbstractBulkUpdater {
                         RDFService.ModelSerializationFormat.N3);
                 if (chunkToRemove.size() > 0) {
                     ChangeSet cs = graph.getRDFService().manufactureChangeSet();
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    chunkToRemove.write(out, "N-TRIPLE");
-                    cs.addRemoval(new ByteArrayInputStream(out.toByteArray()),
-                            RDFService.ModelSerializationFormat.N3, graphURI);
+                    cs.addRemoval(chunkToRemove, graphURI);
                     graph.getRDFService().changeSetUpdate(cs);
                 } else {
                     done = true;
@@ -8,18 +8,29 @@ import java.util.List;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.sparql.engine.binding.Binding;
 
 public class FilteredResultSet implements ResultSet {
 
     protected Iterator<QuerySolution> solutIt;
     protected ResultSet originalResultSet;
+    protected List<String> resultVars;
     protected int rowNum = -1;
     
     public FilteredResultSet (List<QuerySolution> solutions, ResultSet originalResultSet) {
         this.solutIt = solutions.iterator();
         this.originalResultSet = originalResultSet;
     }
+
+    /**
+     * For solutions that were collected by a ResultSetConsumer, after the
+     * original ResultSet has been closed.
+     */
+    public FilteredResultSet (List<QuerySolution> solutions, List<String> resultVars) {
+        this.solutIt = solutions.iterator();
+        this.resultVars = resultVars;
+    }
     
     @Override
     public void remove() {
@@ -28,11 +39,17 @@ public class FilteredResultSet implements ResultSet {
 
     @Override
     public Model getResourceModel() {
+        if (originalResultSet == null) {
+            return ModelFactory.createDefaultModel();
+        }
         return originalResultSet.getResourceModel();
     }
 
     @Override
     public List<String> getResultVars() {
+        if (originalResultSet == null) {
+            return resultVars;
+        }
         return originalResultSet.getResultVars();
     }
 
@@ -10,21 +10,28 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
-import org.apache.jena.query.ResultSetFactory;
-import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelChangedListener;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.sparql.expr.Expr;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
@@ -32,6 +39,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ResultSetInputStream;
 
 public class LanguageFilteringRDFService implements RDFService {
         
@@ -43,6 +51,14 @@ public class LanguageFilteringRDFService implements RDFService {
         this.s = service;
         this.langs = normalizeLangs(langs);
     }
+
+    public RDFService getInnerService() {
+        return s;
+    }
+
+    public List<String> getLanguages() {
+        return Collections.unmodifiableList(langs);
+    }
     
 	private List<String> normalizeLangs(List<String> langs) {
 		log.debug("Preferred languages:" + langs);
@@ -163,161 +179,200 @@ public class LanguageFilteringRDFService implements RDFService {
 		return langStrings.toString();
 	}
 
+	/**
+	 * The solutions are collected from the wrapped service as they are parsed,
+	 * rather than serialized and parsed again. Filtering needs all of them, but
+	 * the filtered results are serialized as they are read.
+	 */
 	@Override
     public InputStream sparqlSelectQuery(String query,
             ResultFormat resultFormat) throws RDFServiceException {        
     	log.debug("sparqlSelectQuery: " + query.replaceAll("\\s+", " "));
-        ResultSet resultSet = ResultSetFactory.fromJSON(
-                s.sparqlSelectQuery(query, RDFService.ResultFormat.JSON));
-        List<QuerySolution> solnList = getSolutionList(resultSet);
-        List<String> vars = resultSet.getResultVars();
-        for (String var : vars) {
-            for (int i = 0; i < solnList.size(); i++) {
-                QuerySolution s = solnList.get(i);
-                if (s == null) {
-                    continue;
-                }
-                RDFNode node = s.get(var);
-                if (node == null || !node.isLiteral()) {
-                    continue;
-                }
-                List<RowIndexedLiteral> candidatesForRemoval =
-                        new ArrayList<RowIndexedLiteral>();
-                candidatesForRemoval.add(new RowIndexedLiteral(node.asLiteral(), i));
-                for (int j = i + 1; j < solnList.size(); j++) {
-                    QuerySolution t = solnList.get(j);
-                    if (t == null) {
-                        continue;
-                    }
-                    if (matchesExceptForVar(s, t, var, vars)) {
-                        candidatesForRemoval.add(
-                                new RowIndexedLiteral(t.getLiteral(var), j));
-                    }
-                }
-                if (candidatesForRemoval.size() == 1) {
-                    continue;
-                }
-                candidatesForRemoval.sort(new RowIndexedLiteralSortByLang());
-                log.debug("sorted RowIndexedLiterals: " + showSortedRILs(candidatesForRemoval));
-                Iterator<RowIndexedLiteral> candIt = candidatesForRemoval.iterator();
-                String langRegister = null;
-                boolean chuckRemaining = false;
-                while (candIt.hasNext()) {
-                    RowIndexedLiteral rlit = candIt.next();
-                    if (chuckRemaining) {
-                        solnList.set(rlit.getIndex(), null);
-                    } else if (langRegister == null) {
-                        langRegister = rlit.getLiteral().getLanguage();
-                    } else if (!langRegister.equals(rlit.getLiteral().getLanguage())) {
-                        chuckRemaining = true;
-                        solnList.set(rlit.getIndex(), null);
-                    }
-                }
+        final List<String> vars = new ArrayList<String>();
+        final List<QuerySolution> filteredList = new ArrayList<QuerySolution>();
+        s.sparqlSelectQuery(query, new ResultSetConsumer() {
+            SolutionFilter filter;
+
+            @Override
+            protected void startProcessing() {
+                vars.addAll(getResultVars());
+                filter = new SolutionFilter(vars, null, filteredList::add);
             }
-        }
-        List<QuerySolution> compactedList = new ArrayList<QuerySolution>();
-        for (QuerySolution soln : solnList) {
-            if (soln != null) {
-                compactedList.add(soln);
+
+            @Override
+            protected void processQuerySolution(QuerySolution qs) {
+                filter.add(qs);
             }
-        }
-        ResultSet filtered = new FilteredResultSet(compactedList, resultSet);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
-        switch (resultFormat) {
-           case CSV:
-              ResultSetFormatter.outputAsCSV(outputStream, filtered);
-              break;
-           case TEXT:
-              ResultSetFormatter.out(outputStream, filtered);
-              break;
-           case JSON:
-              ResultSetFormatter.outputAsJSON(outputStream, filtered);
-              break;
-           case XML:
-              ResultSetFormatter.outputAsXML(outputStream, filtered);
-              break;
-           default: 
-              throw new RDFServiceException("unrecognized result format");
-        }        
-        return new ByteArrayInputStream(outputStream.toByteArray());       
+
+            @Override
+            protected void endProcessing() {
+                filter.finish();
+            }
+        });
+        ResultSet filtered = new FilteredResultSet(filteredList, vars);
+        return ResultSetInputStream.create(filtered, resultFormat, null);
     }
 
+    /**
+     * If the query is ordered by a variable, the filtered solutions are passed
+     * along as each run of that variable is completed. Otherwise, they are
+     * passed along at the end.
+     */
     @Override
     public void sparqlSelectQuery(String query, ResultSetConsumer consumer) throws RDFServiceException {
         log.debug("sparqlSelectQuery: " + query.replaceAll("\\s+", " "));
+        final String orderVar = findLeadingOrderVariable(query);
 
         s.sparqlSelectQuery(query, new ResultSetConsumer.Chaining(consumer) {
-            List<String> vars;
-            List<QuerySolution> solnList = new ArrayList<QuerySolution>();
+            SolutionFilter filter;
 
             @Override
-            protected void processQuerySolution(QuerySolution qs) {
-                solnList.add(qs);
+            protected void startProcessing() {
+                chainStartProcessing();
+                filter = new SolutionFilter(getResultVars(), orderVar,
+                        this::chainProcessQuerySolution);
             }
 
             @Override
-            protected void startProcessing() {
-                vars = getResultVars();
+            protected void processQuerySolution(QuerySolution qs) {
+                filter.add(qs);
             }
 
             @Override
             protected void endProcessing() {
-                chainStartProcessing();
+                filter.finish();
+                chainEndProcessing();
+            }
+        });
+    }
 
-                for (String var : vars) {
-                    for (int i = 0; i < solnList.size(); i++) {
-                        QuerySolution s = solnList.get(i);
-                        if (s == null) {
-                            continue;
-                        }
-                        RDFNode node = s.get(var);
-                        if (node == null || !node.isLiteral()) {
-                            continue;
-                        }
-                        List<RowIndexedLiteral> candidatesForRemoval =
-                                new ArrayList<RowIndexedLiteral>();
-                        candidatesForRemoval.add(new RowIndexedLiteral(node.asLiteral(), i));
-                        for (int j = i + 1; j < solnList.size(); j++) {
-                            QuerySolution t = solnList.get(j);
-                            if (t == null) {
-                                continue;
-                            }
-                            if (matchesExceptForVar(s, t, var, vars)) {
-                                candidatesForRemoval.add(
-                                        new RowIndexedLiteral(t.getLiteral(var), j));
-                            }
-                        }
-                        if (candidatesForRemoval.size() == 1) {
-                            continue;
-                        }
-                        candidatesForRemoval.sort(new RowIndexedLiteralSortByLang());
-                        log.debug("sorted RowIndexedLiterals: " + showSortedRILs(candidatesForRemoval));
-                        Iterator<RowIndexedLiteral> candIt = candidatesForRemoval.iterator();
-                        String langRegister = null;
-                        boolean chuckRemaining = false;
-                        while (candIt.hasNext()) {
-                            RowIndexedLiteral rlit = candIt.next();
-                            if (chuckRemaining) {
-                                solnList.set(rlit.getIndex(), null);
-                            } else if (langRegister == null) {
-                                langRegister = rlit.getLiteral().getLanguage();
-                            } else if (!langRegister.equals(rlit.getLiteral().getLanguage())) {
-                                chuckRemaining = true;
-                                solnList.set(rlit.getIndex(), null);
-                            }
-                        }
-                    }
+    /**
+     * If the first ORDER BY condition is a plain variable, return its name.
+     * Otherwise, return null.
+     */
+    private String findLeadingOrderVariable(String queryString) {
+        try {
+            Query query = QueryFactory.create(queryString, Syntax.syntaxARQ);
+            if (!query.hasOrderBy()) {
+                return null;
+            }
+            Expr expr = query.getOrderBy().get(0).getExpression();
+            return expr.isVariable() ? expr.getVarName() : null;
+        } catch (QueryParseException e) {
+            log.debug("Can't parse the query to look for ORDER BY", e);
+            return null;
+        }
+    }
+
+    /**
+     * Where solutions differ only in the language of a literal, keep only the
+     * ones in the most preferred language.
+     *
+     * For each variable, the solutions that have a literal for that variable
+     * are grouped by their values for the other variables. That takes linear
+     * time. The variables are filtered in order, and the surviving solutions
+     * are passed along in their original order.
+     *
+     * If the results are ordered by a variable, competing solutions have the
+     * same value for that variable, so they are adjacent. Each run of a value
+     * is filtered and passed along when the next value appears. That doesn't
+     * hold if the variable itself is a literal, so in that case we stop
+     * streaming and hold the rest until the end. Solutions already passed
+     * along can't compete with the rest, since they had no literal there.
+     */
+    private class SolutionFilter {
+        private final List<String> vars;
+        private final Consumer<QuerySolution> downstream;
+        private String orderVar;
+
+        private final List<QuerySolution> pending = new ArrayList<QuerySolution>();
+        private RDFNode currentOrderValue;
+
+        SolutionFilter(List<String> vars, String orderVar,
+                Consumer<QuerySolution> downstream) {
+            this.vars = vars;
+            this.downstream = downstream;
+            this.orderVar = vars.contains(orderVar) ? orderVar : null;
+        }
+
+        void add(QuerySolution qs) {
+            if (orderVar != null) {
+                RDFNode value = qs.get(orderVar);
+                if (value != null && value.isLiteral()) {
+                    orderVar = null;
+                } else if (!pending.isEmpty()
+                        && !Objects.equals(value, currentOrderValue)) {
+                    flush();
                 }
+                currentOrderValue = value;
+            }
+            pending.add(qs);
+        }
 
-                for (QuerySolution soln : solnList) {
-                    if (soln != null) {
-                        chainProcessQuerySolution(soln);
-                    }
+        void finish() {
+            flush();
+        }
+
+        private void flush() {
+            List<QuerySolution> solnList = pending;
+            for (String var : vars) {
+                filterOnVariable(solnList, var);
+            }
+            for (QuerySolution soln : solnList) {
+                if (soln != null) {
+                    downstream.accept(soln);
                 }
+            }
+            pending.clear();
+        }
 
-                chainEndProcessing();
+        /**
+         * Set to null any solution that is beaten by a solution in a more
+         * preferred language.
+         */
+        private void filterOnVariable(List<QuerySolution> solnList, String var) {
+            Map<List<RDFNode>, List<RowIndexedLiteral>> groups =
+                    new LinkedHashMap<List<RDFNode>, List<RowIndexedLiteral>>();
+            for (int i = 0; i < solnList.size(); i++) {
+                QuerySolution soln = solnList.get(i);
+                if (soln == null) {
+                    continue;
+                }
+                RDFNode node = soln.get(var);
+                if (node == null || !node.isLiteral()) {
+                    continue;
+                }
+                List<RDFNode> key = new ArrayList<RDFNode>(vars.size());
+                for (String other : vars) {
+                    key.add(other.equals(var) ? null : soln.get(other));
+                }
+                List<RowIndexedLiteral> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<RowIndexedLiteral>(1);
+                    groups.put(key, group);
+                }
+                group.add(new RowIndexedLiteral(node.asLiteral(), i));
             }
-        });
+
+            for (List<RowIndexedLiteral> candidatesForRemoval : groups.values()) {
+                if (candidatesForRemoval.size() == 1) {
+                    continue;
+                }
+                candidatesForRemoval.sort(new RowIndexedLiteralSortByLang());
+                log.debug("sorted RowIndexedLiterals: " + showSortedRILs(candidatesForRemoval));
+                String langRegister = candidatesForRemoval.get(0).getLiteral().getLanguage();
+                boolean chuckRemaining = false;
+                for (RowIndexedLiteral rlit : candidatesForRemoval) {
+                    if (!chuckRemaining
+                            && !langRegister.equals(rlit.getLiteral().getLanguage())) {
+                        chuckRemaining = true;
+                    }
+                    if (chuckRemaining) {
+                        solnList.set(rlit.getIndex(), null);
+                    }
+                }
+            }
+        }
     }
 
 	private String showSortedRILs(List<RowIndexedLiteral> candidatesForRemoval) {
@@ -348,43 +403,6 @@ public class LanguageFilteringRDFService implements RDFService {
         
     }
     
-    private boolean matchesExceptForVar(QuerySolution a, QuerySolution b, 
-            String varName, List<String> varList) {
-        if (varName == null) {
-            throw new RuntimeException("expected non-null variable nane");
-        }
-        for (String var : varList) {
-            RDFNode nodea = a.get(var);
-            RDFNode nodeb = b.get(var);
-            if (var.equals(varName)) {
-                if (nodea == null || !nodea.isLiteral() || nodeb == null || !nodeb.isLiteral()) {
-                    return false;
-                }
-            } else {
-                if (nodea == null && nodeb == null) {
-                    continue;
-                } else if (nodea == null && nodeb != null) {
-                    return false;
-                } else if (nodeb == null && nodea != null) {
-                    return false;
-                }
-                if (!a.get(var).equals(b.get(var))) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-    
-    private List<QuerySolution> getSolutionList(ResultSet resultSet) {
-        List<QuerySolution> solnList = new ArrayList<QuerySolution>();
-        while (resultSet.hasNext()) {
-            QuerySolution soln = resultSet.nextSolution();
-            solnList.add(soln);
-        }
-        return solnList;
-    }
-
     @Override
     public boolean sparqlAskQuery(String query) throws RDFServiceException {
         return s.sparqlAskQuery(query);
@@ -4,6 +4,7 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice.filter;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -135,15 +136,19 @@ public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
         @Override
         public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat) 
                 throws RDFServiceException {
-            ResultSet rs = ResultSetFactory.load(
-                    s.sparqlSelectQuery(query, resultFormat), 
-                            RDFServiceUtils.getJenaResultSetFormat(resultFormat));            
+            ResultSet rs;
             List<QuerySolution> solutions = new ArrayList<QuerySolution>();
-            while (rs.hasNext()) {
-                QuerySolution solution = rs.nextSolution();
-                if (!isRedundant(solution)) {
-                    solutions.add(solution);
+            try (InputStream in = s.sparqlSelectQuery(query, resultFormat)) {
+                rs = ResultSetFactory.load(in,
+                        RDFServiceUtils.getJenaResultSetFormat(resultFormat));
+                while (rs.hasNext()) {
+                    QuerySolution solution = rs.nextSolution();
+                    if (!isRedundant(solution)) {
+                        solutions.add(solution);
+                    }
                 }
+            } catch (IOException e) {
+                throw new RDFServiceException(e);
             }
             ResultSet resultSet = new FilteredResultSet(solutions, rs);
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
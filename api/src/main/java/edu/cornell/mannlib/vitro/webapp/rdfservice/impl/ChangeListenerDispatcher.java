@@ -0,0 +1,464 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel.IDLE;
+import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel.WORKING;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Delivers change notifications to the listeners of the RDFServices.
+ *
+ * A synchronous listener is notified on the thread that made the change, as it
+ * always has been. An asynchronous listener has its own bounded queue and its
+ * own background thread, so the thread that made the change can go on without
+ * waiting for it. Each listener receives its notifications in the order they
+ * were made. If an asynchronous listener falls so far behind that its queue is
+ * full, the thread that made the change waits for room.
+ *
+ * The listeners are registered with many RDFServices (a short-term RDFService
+ * shares or copies the listeners of its long-term parent), so there is one
+ * dispatcher, and one queue for each listener, no matter where the
+ * notification comes from.
+ *
+ * When a listener is released, its queue is drained before its thread stops.
+ * If the listener is registered again in the meantime, the new queue waits
+ * for the old one to finish, so the notifications stay in order.
+ *
+ * Listeners are synchronous unless their class is named in the runtime
+ * properties, or they are set otherwise with setMode().
+ */
+public class ChangeListenerDispatcher {
+    private static final Log log = LogFactory
+            .getLog(ChangeListenerDispatcher.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    public enum Mode {
+        SYNCHRONOUS, ASYNCHRONOUS
+    }
+
+    private static final ChangeListenerDispatcher instance = new ChangeListenerDispatcher();
+
+    public static ChangeListenerDispatcher getInstance() {
+        return instance;
+    }
+
+    private volatile Set<String> asynchronousClassNames = Collections
+            .emptySet();
+    private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+
+    /** Modes that were set for particular listeners. */
+    private final Map<Object, Mode> modes = new IdentityHashMap<>();
+
+    /** The queues of the asynchronous listeners. */
+    private final Map<Object, Channel> channels = new IdentityHashMap<>();
+
+    /** Queues of released listeners that are still delivering. */
+    private final Map<Object, Channel> draining = new IdentityHashMap<>();
+
+    private boolean shutdown = false;
+
+    /**
+     * Listeners whose class has one of these names will be asynchronous, and
+     * their queues will hold this many notifications.
+     */
+    public void configure(Collection<String> classNames, int size) {
+        this.asynchronousClassNames = Collections
+                .unmodifiableSet(new HashSet<>(classNames));
+        this.queueSize = Math.max(1, size);
+    }
+
+    public synchronized void setMode(Object listener, Mode mode) {
+        modes.put(listener, mode);
+    }
+
+    public synchronized Mode getMode(Object listener) {
+        Mode mode = modes.get(listener);
+        if (mode != null) {
+            return mode;
+        }
+        if (asynchronousClassNames.contains(listener.getClass().getName())) {
+            return Mode.ASYNCHRONOUS;
+        }
+        return Mode.SYNCHRONOUS;
+    }
+
+    /**
+     * Notify the listener now, or add the notification to its queue.
+     */
+    public void dispatch(Object listener, Runnable notification) {
+        Channel channel = getChannel(listener);
+        if (channel == null) {
+            notification.run();
+        } else {
+            channel.put(notification);
+        }
+    }
+
+    /**
+     * The listener was unregistered. Its queue will be closed after the
+     * waiting notifications are delivered.
+     */
+    public void release(Object listener) {
+        Channel channel;
+        synchronized (this) {
+            channel = channels.remove(listener);
+            modes.remove(listener);
+            if (channel != null) {
+                draining.put(listener, channel);
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Wait until every asynchronous listener has received all of its
+     * notifications.
+     *
+     * @return true if they did, false if the time ran out or the thread was
+     *         interrupted.
+     */
+    public boolean waitUntilIdle(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Channel channel : getChannels()) {
+            if (!channel.waitUntilIdle(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Status> getStatus() {
+        List<Status> list = new ArrayList<>();
+        for (Channel channel : getChannels()) {
+            list.add(channel.getStatus());
+        }
+        return list;
+    }
+
+    /**
+     * Give the queues a chance to empty, and stop their threads. After this,
+     * every listener is notified synchronously.
+     */
+    public void shutdown(long timeoutMillis) {
+        List<Channel> closing;
+        synchronized (this) {
+            shutdown = true;
+            closing = new ArrayList<>(channels.values());
+            closing.addAll(draining.values());
+            channels.clear();
+            draining.clear();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Channel channel : closing) {
+            channel.close();
+            if (!channel.waitUntilIdle(deadline)) {
+                log.warn("Abandoning " + channel.queue.size()
+                        + " notifications for " + channel.name);
+                channel.thread.interrupt();
+            }
+        }
+    }
+
+    private synchronized Channel getChannel(Object listener) {
+        Channel channel = channels.get(listener);
+        if (channel == null && !shutdown
+                && getMode(listener) == Mode.ASYNCHRONOUS) {
+            channel = new Channel(listener, queueSize, draining.get(listener),
+                    this::finished);
+            channels.put(listener, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * A released channel has delivered all of its notifications.
+     */
+    private synchronized void finished(Channel channel) {
+        draining.values().remove(channel);
+    }
+
+    private synchronized List<Channel> getChannels() {
+        List<Channel> list = new ArrayList<>(channels.values());
+        list.addAll(draining.values());
+        return list;
+    }
+
+    // ----------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------
+
+    private static class Notification {
+        final Runnable runnable;
+        final long created = System.currentTimeMillis();
+
+        Notification(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    private static final Notification CLOSE = new Notification(null);
+
+    /**
+     * A queue and the thread that delivers its notifications to one listener.
+     *
+     * If the listener had a channel that is still draining, this one waits
+     * for it before delivering anything.
+     */
+    private static class Channel implements Runnable {
+        final String name;
+        final BlockingQueue<Notification> queue;
+        final VitroBackgroundThread thread;
+        private final Channel predecessor;
+        private final Consumer<Channel> onFinished;
+
+        private volatile Notification current;
+        private volatile boolean closed;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+
+        Channel(Object listener, int size, Channel predecessor,
+                Consumer<Channel> onFinished) {
+            this.name = listener.getClass().getName();
+            this.queue = new ArrayBlockingQueue<>(size);
+            this.predecessor = predecessor;
+            this.onFinished = onFinished;
+            this.thread = new VitroBackgroundThread(this,
+                    "ChangeListener_" + listener.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+            this.thread.setWorkLevel(IDLE);
+            this.thread.start();
+        }
+
+        void put(Runnable runnable) {
+            Notification notification = new Notification(runnable);
+            if (queue.offer(notification)) {
+                return;
+            }
+            waits.incrementAndGet();
+            log.warn("Queue for " + name + " is full ("
+                    + queue.size() + "); waiting.");
+            try {
+                queue.put(notification);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting; notification for "
+                        + name + " is lost.");
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                queue.put(CLOSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * A closed channel is not idle until its thread has finished.
+         */
+        boolean waitUntilIdle(long deadline) {
+            while (closed || current != null || !isQueueEmpty()) {
+                if (!thread.isAlive()) {
+                    return true;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isQueueEmpty() {
+            Notification head = queue.peek();
+            return head == null || head == CLOSE;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (predecessor != null) {
+                    predecessor.thread.join();
+                }
+                deliver();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                onFinished.accept(this);
+            }
+        }
+
+        private void deliver() throws InterruptedException {
+            while (true) {
+                Notification notification = queue.take();
+                if (notification == CLOSE) {
+                    return;
+                }
+
+                current = notification;
+                thread.setWorkLevel(WORKING);
+                try {
+                    notification.runnable.run();
+                    delivered.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    log.error("Listener " + name + " failed", e);
+                } finally {
+                    current = null;
+                    thread.setWorkLevel(IDLE);
+                }
+            }
+        }
+
+        Status getStatus() {
+            Notification oldest = current;
+            if (oldest == null) {
+                oldest = queue.peek();
+            }
+            long lag = (oldest == null || oldest == CLOSE) ? 0 : System
+                    .currentTimeMillis() - oldest.created;
+            return new Status(name, queue.size(), lag, delivered.get(),
+                    failed.get(), waits.get());
+        }
+    }
+
+    public static class Status {
+        private final String listener;
+        private final int queueDepth;
+        private final long lagMillis;
+        private final long delivered;
+        private final long failed;
+        private final long waits;
+
+        public Status(String listener, int queueDepth, long lagMillis,
+                long delivered, long failed, long waits) {
+            this.listener = listener;
+            this.queueDepth = queueDepth;
+            this.lagMillis = lagMillis;
+            this.delivered = delivered;
+            this.failed = failed;
+            this.waits = waits;
+        }
+
+        public String getListener() {
+            return listener;
+        }
+
+        /** How many notifications are waiting. */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /** How long the oldest undelivered notification has been waiting. */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /** How many times a writer had to wait because the queue was full. */
+        public long getWaits() {
+            return waits;
+        }
+
+        @Override
+        public String toString() {
+            return "Status[listener=" + listener + ", queueDepth="
+                    + queueDepth + ", lagMillis=" + lagMillis
+                    + ", delivered=" + delivered + ", failed=" + failed
+                    + ", waits=" + waits + "]";
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    public static class Setup implements ServletContextListener {
+        private static final String PROPERTY_LISTENERS = "RDFService.listeners.asynchronous";
+        private static final String PROPERTY_QUEUE_SIZE = "RDFService.listeners.queueSize";
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            ServletContext ctx = sce.getServletContext();
+            StartupStatus ss = StartupStatus.getBean(ctx);
+            ConfigurationProperties props = ConfigurationProperties
+                    .getBean(ctx);
+
+            List<String> classNames = new ArrayList<>();
+            for (String name : props.getProperty(PROPERTY_LISTENERS, "")
+                    .split(",")) {
+                if (!name.trim().isEmpty()) {
+                    classNames.add(name.trim());
+                }
+            }
+
+            int size = DEFAULT_QUEUE_SIZE;
+            String sizeString = props.getProperty(PROPERTY_QUEUE_SIZE);
+            if (sizeString != null) {
+                try {
+                    size = Integer.parseInt(sizeString.trim());
+                } catch (NumberFormatException e) {
+                    ss.warning(this, "Invalid value for "
+                            + PROPERTY_QUEUE_SIZE + ": '" + sizeString
+                            + "'. Using " + DEFAULT_QUEUE_SIZE);
+                }
+            }
+
+            getInstance().configure(classNames, size);
+            if (classNames.isEmpty()) {
+                ss.info(this, "All change listeners are synchronous.");
+            } else {
+                ss.info(this, "Asynchronous change listeners: " + classNames
+                        + ", queue size " + size);
+            }
+        }
+
+        @Override
+        public void contextDestroyed(ServletContextEvent sce) {
+            getInstance().shutdown(10000);
+        }
+    }
+}
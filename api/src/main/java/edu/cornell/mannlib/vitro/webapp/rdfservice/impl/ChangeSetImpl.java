@@ -6,6 +6,8 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.jena.rdf.model.Model;
+
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange.Operation;
@@ -58,6 +60,16 @@ public class ChangeSetImpl implements ChangeSet {
 		modelChanges.add(manufactureModelChange(model, format, ModelChange.Operation.REMOVE, graphURI));
 	}
 	
+	@Override
+	public void addAddition(Model model, String graphURI) {
+		modelChanges.add(new ModelChangeImpl(model, ModelChange.Operation.ADD, graphURI));
+	}
+	
+	@Override
+	public void addRemoval(Model model, String graphURI) {
+		modelChanges.add(new ModelChangeImpl(model, ModelChange.Operation.REMOVE, graphURI));
+	}
+	
 	@Override
 	public ModelChange manufactureModelChange() {
 		return new ModelChangeImpl(); 
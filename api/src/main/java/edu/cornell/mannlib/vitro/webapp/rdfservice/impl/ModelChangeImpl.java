@@ -2,18 +2,39 @@
 
 package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.jena.rdf.model.Model;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 
+/**
+ * The triples of a change may be held as a serialized stream, as a parsed
+ * Model, or both.
+ * 
+ * A change that is created from a stream reads it into a buffer the first time
+ * that someone asks for the stream or the Model. Each call to
+ * getSerializedModel() gets a fresh stream from the buffer. The Model is parsed
+ * from the buffer the first time that someone asks for it, and is shared after
+ * that.
+ * 
+ * A change that is created from a Model is only serialized if someone asks for
+ * the stream.
+ */
 public class ModelChangeImpl implements ModelChange {
+	private static final AtomicLong parseCount = new AtomicLong();
+	private static final AtomicLong serializeCount = new AtomicLong();
 
 	private InputStream serializedModel;
+	private byte[] serializedBytes;
+	private Model model;
 	private RDFService.ModelSerializationFormat serializationFormat;
 	private Operation operation;
 	private String graphURI;
@@ -31,14 +52,63 @@ public class ModelChangeImpl implements ModelChange {
 		this.graphURI = graphURI;
 	}
 
+	public ModelChangeImpl(Model model, Operation operation, String graphURI) {
+		this.model = model;
+		this.serializationFormat = RDFService.ModelSerializationFormat.NTRIPLE;
+		this.operation = operation;
+		this.graphURI = graphURI;
+	}
+
+	/**
+	 * Each call gets a fresh stream, so one reader can't leave the stream
+	 * empty for the next one, or for getModel().
+	 */
 	@Override
-	public InputStream getSerializedModel() {
-		return serializedModel;
+	public synchronized InputStream getSerializedModel() {
+		bufferSerializedModel();
+		if (serializedBytes == null && model != null) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			model.write(out, RDFServiceUtils
+					.getSerializationFormatString(serializationFormat));
+			serializedBytes = out.toByteArray();
+			serializeCount.incrementAndGet();
+		}
+		return (serializedBytes == null) ? null : new ByteArrayInputStream(
+				serializedBytes);
 	}
 	
 	@Override
-	public void setSerializedModel(InputStream serializedModel) {
+	public synchronized void setSerializedModel(InputStream serializedModel) {
 		this.serializedModel = serializedModel;
+		this.serializedBytes = null;
+		this.model = null;
+	}
+
+	@Override
+	public synchronized Model getModel() {
+		bufferSerializedModel();
+		if (model == null && serializedBytes != null) {
+			model = RDFServiceUtils.parseModel(new ByteArrayInputStream(
+					serializedBytes), serializationFormat);
+			parseCount.incrementAndGet();
+		}
+		return model;
+	}
+
+	/**
+	 * The original stream can only be read once. Read it into the buffer the
+	 * first time it is needed.
+	 */
+	private void bufferSerializedModel() {
+		if (serializedBytes == null && serializedModel != null) {
+			try {
+				serializedBytes = IOUtils.toByteArray(serializedModel);
+			} catch (IOException e) {
+				throw new RuntimeException(
+						"Failed to read the serialized model", e);
+			}
+			serializedModel = null;
+		}
 	}
 	
 	@Override
@@ -71,16 +141,31 @@ public class ModelChangeImpl implements ModelChange {
 		this.graphURI = graphURI;
 	}
 
+	/**
+	 * How many times, since startup, a change was parsed into a Model.
+	 */
+	public static long getParseCount() {
+		return parseCount.get();
+	}
+
+	/**
+	 * How many times, since startup, a Model was serialized for a caller that
+	 * wanted the stream.
+	 */
+	public static long getSerializeCount() {
+		return serializeCount.get();
+	}
+
 	@Override
 	public String toString() {
 		return "ModelChangeImpl [serializedModel="
-				+ streamToString(serializedModel) + ", serializationFormat="
+				+ streamToString(getSerializedModel()) + ", serializationFormat="
 				+ serializationFormat + ", operation=" + operation
 				+ ", graphURI=" + graphURI + "]";
 	}
 
 	private String streamToString(InputStream stream) {
-		if (!stream.markSupported()) {
+		if (stream == null || !stream.markSupported()) {
 			return String.valueOf(stream);
 		}
 		try {
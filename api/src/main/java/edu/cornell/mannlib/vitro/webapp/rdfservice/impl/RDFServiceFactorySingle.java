@@ -69,6 +69,10 @@ public class RDFServiceFactorySingle implements RDFServiceFactory {
             this.s = rdfService;
         }
 
+        public RDFService getInnerService() {
+            return s;
+        }
+
         @Override
         public boolean changeSetUpdate(ChangeSet changeSet)
                 throws RDFServiceException {
@@ -4,7 +4,9 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -39,6 +41,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange.Operation;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChangeListenerDispatcher.Mode;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
 
 public abstract class RDFServiceImpl implements RDFService {
@@ -48,8 +51,9 @@ public abstract class RDFServiceImpl implements RDFService {
 	        "SELECT DISTINCT ?s WHERE { ?s ?p ?o OPTIONAL { ?ss ?pp ?s } FILTER (!isBlank(?s) || !bound(?ss)) }";
 	
 	protected String defaultWriteGraphURI;
-	protected List<ChangeListener> registeredListeners = new CopyOnWriteArrayList<ChangeListener>();
-	protected List<ModelChangedListener> registeredJenaListeners = new CopyOnWriteArrayList<ModelChangedListener>();
+	protected CopyOnWriteArrayList<ChangeListener> registeredListeners = new CopyOnWriteArrayList<ChangeListener>();
+	protected CopyOnWriteArrayList<ModelChangedListener> registeredJenaListeners = new CopyOnWriteArrayList<ModelChangedListener>();
+	protected ChangeListenerDispatcher listenerDispatcher = ChangeListenerDispatcher.getInstance();
     	
 	@Override
 	public void newIndividual(String individualURI, 
@@ -95,26 +99,26 @@ public abstract class RDFServiceImpl implements RDFService {
 		
 	@Override
 	public synchronized void registerListener(ChangeListener changeListener) throws RDFServiceException {
-		if (!registeredListeners.contains(changeListener)) {
-		   registeredListeners.add(changeListener);
-		}
+		registeredListeners.addIfAbsent(changeListener);
 	}
 	
 	@Override
 	public synchronized void unregisterListener(ChangeListener changeListener) throws RDFServiceException {
-		registeredListeners.remove(changeListener);
+		if (registeredListeners.remove(changeListener)) {
+		    listenerDispatcher.release(changeListener);
+		}
 	}
 	
 	@Override
 	public synchronized void registerJenaModelChangedListener(ModelChangedListener changeListener) throws RDFServiceException {
-	    if (!registeredJenaListeners.contains(changeListener)) {
-	        registeredJenaListeners.add(changeListener);
-	    }
+	    registeredJenaListeners.addIfAbsent(changeListener);
 	}
 
 	@Override
 	public synchronized void unregisterJenaModelChangedListener(ModelChangedListener changeListener) throws RDFServiceException {
-	    registeredJenaListeners.remove(changeListener);
+	    if (registeredJenaListeners.remove(changeListener)) {
+	        listenerDispatcher.release(changeListener);
+	    }
 	}
 
 	public synchronized List<ChangeListener> getRegisteredListeners() {
@@ -140,44 +144,89 @@ public abstract class RDFServiceImpl implements RDFService {
         }
     }
 	
-    protected void notifyListeners(ModelChange modelChange) throws IOException {
-        for (ChangeListener listener : registeredListeners) {
-            modelChange.getSerializedModel().reset();
-            listener.notifyModelChange(modelChange);
+    /**
+     * Each listener is notified now, or later on its own thread, as the
+     * dispatcher decides. The parsed change is shared by all of them.
+     */
+    protected void notifyListeners(final ModelChange modelChange) throws IOException {
+        modelChange.getModel();
+        for (final ChangeListener listener : registeredListeners) {
+            listenerDispatcher.dispatch(listener, new Runnable() {
+                @Override
+                public void run() {
+                    listener.notifyModelChange(modelChange);
+                }
+            });
         }
         log.debug(registeredJenaListeners.size() + " registered Jena listeners");
-        if (registeredJenaListeners.isEmpty()) {
-            return;
+        List<ModelChangedListener> synchronous = new ArrayList<>();
+        for (final ModelChangedListener listener : registeredJenaListeners) {
+            if (listenerDispatcher.getMode(listener) == Mode.SYNCHRONOUS) {
+                synchronous.add(listener);
+            } else {
+                listenerDispatcher.dispatch(listener, new Runnable() {
+                    @Override
+                    public void run() {
+                        notifyJenaListeners(
+                                Collections.singletonList(listener),
+                                modelChange);
+                    }
+                });
+            }
+        }
+        if (!synchronous.isEmpty()) {
+            notifyJenaListeners(synchronous, modelChange);
         }
-        modelChange.getSerializedModel().reset();
+    }
+
+    /**
+     * Jena listeners hear about the change as if it were made to a model that
+     * they are registered with.
+     */
+    private void notifyJenaListeners(List<ModelChangedListener> listeners,
+            ModelChange modelChange) {
         Model tempModel = ModelFactory.createDefaultModel();
-        Iterator<ModelChangedListener> jenaIter = registeredJenaListeners.iterator();
+        Iterator<ModelChangedListener> jenaIter = listeners.iterator();
         while (jenaIter.hasNext()) {
             ModelChangedListener listener = jenaIter.next(); 
             log.debug("\t" + listener.getClass().getSimpleName());
             tempModel.register(listener);
         }
         if (Operation.ADD.equals(modelChange.getOperation())) {
-            tempModel.read(modelChange.getSerializedModel(), null,
-                   RDFServiceUtils.getSerializationFormatString(
-                           modelChange.getSerializationFormat())); 
+            // One statement at a time, as if it were being read.
+            StmtIterator stmts = modelChange.getModel().listStatements();
+            try {
+                while (stmts.hasNext()) {
+                    tempModel.add(stmts.nextStatement());
+                }
+            } finally {
+                stmts.close();
+            }
         } else if (Operation.REMOVE.equals(modelChange.getOperation())) {
-            tempModel.remove(RDFServiceUtils.parseModel(
-                    modelChange.getSerializedModel(), 
-                    modelChange.getSerializationFormat()));
+            tempModel.remove(modelChange.getModel());
         }
         while (jenaIter.hasNext()) {
             tempModel.unregister(jenaIter.next());
         }
     }
     
-    public void notifyListenersOfEvent(Object event) {
-        for (ChangeListener listener : registeredListeners) {
-            // TODO what is the graphURI parameter for?
-            listener.notifyEvent(null, event);
+    public void notifyListenersOfEvent(final Object event) {
+        for (final ChangeListener listener : registeredListeners) {
+            listenerDispatcher.dispatch(listener, new Runnable() {
+                @Override
+                public void run() {
+                    // TODO what is the graphURI parameter for?
+                    listener.notifyEvent(null, event);
+                }
+            });
         }
-        for (ModelChangedListener listener : registeredJenaListeners) {
-            listener.notifyEvent(null, event);
+        for (final ModelChangedListener listener : registeredJenaListeners) {
+            listenerDispatcher.dispatch(listener, new Runnable() {
+                @Override
+                public void run() {
+                    listener.notifyEvent(null, event);
+                }
+            });
         }
     }    
     
@@ -3,6 +3,7 @@
 package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 
@@ -135,11 +136,10 @@ public class RDFServiceUtils {
     	
     	ResultSet resultSet = null;
     	
-        try {
-            InputStream resultStream = rdfService.sparqlSelectQuery(query, RDFService.ResultFormat.JSON);
+        try (InputStream resultStream = rdfService.sparqlSelectQuery(query, RDFService.ResultFormat.JSON)) {
             resultSet = ResultSetFactory.fromJSON(resultStream);
             return resultSet;
-        } catch (RDFServiceException e) {        	
+        } catch (RDFServiceException | IOException e) {        	
             log.error("error executing sparql select query: " + e.getMessage());
         }
         
@@ -0,0 +1,67 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Wraps a stream of query results, and releases the resources behind it when
+ * the stream is exhausted or closed, whichever comes first.
+ *
+ * The resources are released on the thread that reads the last byte or closes
+ * the stream.
+ */
+public class ReleasingInputStream extends FilterInputStream {
+	private static final Log log = LogFactory.getLog(ReleasingInputStream.class);
+
+	private AutoCloseable resources;
+
+	public ReleasingInputStream(InputStream in, AutoCloseable resources) {
+		super(in);
+		this.resources = resources;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b == -1) {
+			releaseResources();
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count = super.read(b, off, len);
+		if (count == -1) {
+			releaseResources();
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			releaseResources();
+		}
+	}
+
+	private void releaseResources() {
+		AutoCloseable r = resources;
+		resources = null;
+		if (r != null) {
+			try {
+				r.close();
+			} catch (Exception e) {
+				log.warn("Failed to release the resources for a query", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,461 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.RDFNode;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+
+/**
+ * Serializes a ResultSet as it is read, a few rows at a time, instead of
+ * writing the whole thing into a buffer first. Memory use does not depend on
+ * the size of the result.
+ *
+ * The resources behind the ResultSet (a QueryExecution, a DatasetWrapper, an
+ * HTTP response) are released when the last row has been read, or when the
+ * stream is closed, whichever comes first. A caller that stops reading early
+ * must close the stream.
+ *
+ * The TEXT format lines up its columns, so it needs to see every row before it
+ * writes the first one. That format is still buffered.
+ */
+public class ResultSetInputStream extends InputStream {
+	private static final Log log = LogFactory.getLog(ResultSetInputStream.class);
+
+	/** Serialize rows until we have at least this many characters. */
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * Create a stream for this ResultSet in this format. The resources will be
+	 * released when the stream is exhausted or closed. If resources is null,
+	 * there is nothing to release.
+	 */
+	public static InputStream create(ResultSet resultSet,
+			ResultFormat resultFormat, AutoCloseable resources)
+			throws RDFServiceException {
+		switch (resultFormat) {
+		case CSV:
+			return new ResultSetInputStream(resultSet, new CsvFormat(),
+					resources);
+		case JSON:
+			return new ResultSetInputStream(resultSet, new JsonFormat(),
+					resources);
+		case XML:
+			return new ResultSetInputStream(resultSet, new XmlFormat(),
+					resources);
+		case TEXT:
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				ResultSetFormatter.out(out, resultSet);
+				return new ByteArrayInputStream(out.toByteArray());
+			} finally {
+				release(resources);
+			}
+		default:
+			release(resources);
+			throw new RDFServiceException("unrecognized result format");
+		}
+	}
+
+	private final ResultSet resultSet;
+	private final RowFormat format;
+	private final List<String> vars;
+	private AutoCloseable resources;
+
+	private byte[] buffer = new byte[0];
+	private int position;
+	private boolean started;
+	private boolean finished;
+
+	private ResultSetInputStream(ResultSet resultSet, RowFormat format,
+			AutoCloseable resources) {
+		this.resultSet = resultSet;
+		this.format = format;
+		this.vars = resultSet.getResultVars();
+		this.resources = resources;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fillBuffer()) {
+			return -1;
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fillBuffer()) {
+			return -1;
+		}
+		int count = Math.min(len, buffer.length - position);
+		System.arraycopy(buffer, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.length - position;
+	}
+
+	@Override
+	public void close() {
+		finished = true;
+		buffer = new byte[0];
+		position = 0;
+		releaseResources();
+	}
+
+	/**
+	 * If the buffer is empty, serialize some more rows into it. Return false
+	 * if there is nothing more to read.
+	 */
+	private boolean fillBuffer() throws IOException {
+		while (position >= buffer.length) {
+			if (finished) {
+				return false;
+			}
+			try {
+				buffer = serializeChunk().getBytes(UTF_8);
+				position = 0;
+			} catch (RuntimeException e) {
+				close();
+				throw new IOException("Failed to read the query results", e);
+			}
+		}
+		return true;
+	}
+
+	private String serializeChunk() {
+		StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 1024);
+		if (!started) {
+			format.writeStart(chunk, vars);
+			started = true;
+		}
+		while (chunk.length() < CHUNK_SIZE && resultSet.hasNext()) {
+			format.writeRow(chunk, vars, resultSet.next());
+		}
+		if (!resultSet.hasNext()) {
+			format.writeEnd(chunk);
+			finished = true;
+			releaseResources();
+		}
+		return chunk.toString();
+	}
+
+	private void releaseResources() {
+		AutoCloseable r = resources;
+		resources = null;
+		release(r);
+	}
+
+	private static void release(AutoCloseable resources) {
+		if (resources != null) {
+			try {
+				resources.close();
+			} catch (Exception e) {
+				log.warn("Failed to release the resources for a query", e);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// The formats
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Writes the parts of a result set. Blank nodes are given labels that are
+	 * consistent within the stream.
+	 */
+	private abstract static class RowFormat {
+		private final Map<String, String> blankNodeLabels = new HashMap<>();
+
+		abstract void writeStart(StringBuilder sb, List<String> vars);
+
+		abstract void writeRow(StringBuilder sb, List<String> vars,
+				QuerySolution solution);
+
+		abstract void writeEnd(StringBuilder sb);
+
+		String blankNodeLabel(RDFNode node) {
+			String id = node.asResource().getId().getLabelString();
+			String label = blankNodeLabels.get(id);
+			if (label == null) {
+				label = "b" + blankNodeLabels.size();
+				blankNodeLabels.put(id, label);
+			}
+			return label;
+		}
+
+		/** Plain strings and language strings don't show a datatype. */
+		static String datatypeOf(Literal literal) {
+			String datatype = literal.getDatatypeURI();
+			if (datatype == null || !literal.getLanguage().isEmpty()
+					|| XSDDatatype.XSDstring.getURI().equals(datatype)) {
+				return null;
+			}
+			return datatype;
+		}
+	}
+
+	/** SPARQL 1.1 Query Results JSON Format */
+	private static class JsonFormat extends RowFormat {
+		private boolean firstRow = true;
+
+		@Override
+		void writeStart(StringBuilder sb, List<String> vars) {
+			sb.append("{\n  \"head\": {\n    \"vars\": [");
+			for (int i = 0; i < vars.size(); i++) {
+				sb.append(i == 0 ? " " : " , ");
+				appendString(sb, vars.get(i));
+			}
+			sb.append(" ]\n  } ,\n  \"results\": {\n    \"bindings\": [");
+		}
+
+		@Override
+		void writeRow(StringBuilder sb, List<String> vars,
+				QuerySolution solution) {
+			sb.append(firstRow ? "\n      {" : " ,\n      {");
+			firstRow = false;
+			boolean firstBinding = true;
+			for (String var : vars) {
+				RDFNode node = solution.get(var);
+				if (node == null) {
+					continue;
+				}
+				sb.append(firstBinding ? "\n        " : " ,\n        ");
+				firstBinding = false;
+				appendString(sb, var);
+				sb.append(": ");
+				appendNode(sb, node);
+			}
+			sb.append("\n      }");
+		}
+
+		@Override
+		void writeEnd(StringBuilder sb) {
+			sb.append("\n    ]\n  }\n}\n");
+		}
+
+		private void appendNode(StringBuilder sb, RDFNode node) {
+			if (node.isLiteral()) {
+				Literal literal = node.asLiteral();
+				sb.append("{ \"type\": \"literal\" , ");
+				String lang = literal.getLanguage();
+				String datatype = datatypeOf(literal);
+				if (!lang.isEmpty()) {
+					sb.append("\"xml:lang\": ");
+					appendString(sb, lang);
+					sb.append(" , ");
+				} else if (datatype != null) {
+					sb.append("\"datatype\": ");
+					appendString(sb, datatype);
+					sb.append(" , ");
+				}
+				sb.append("\"value\": ");
+				appendString(sb, literal.getLexicalForm());
+			} else if (node.isAnon()) {
+				sb.append("{ \"type\": \"bnode\" , \"value\": ");
+				appendString(sb, blankNodeLabel(node));
+			} else {
+				sb.append("{ \"type\": \"uri\" , \"value\": ");
+				appendString(sb, node.asResource().getURI());
+			}
+			sb.append(" }");
+		}
+
+		private static void appendString(StringBuilder sb, String s) {
+			sb.append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+				}
+			}
+			sb.append('"');
+		}
+	}
+
+	/** SPARQL Query Results XML Format */
+	private static class XmlFormat extends RowFormat {
+		@Override
+		void writeStart(StringBuilder sb, List<String> vars) {
+			sb.append("<?xml version=\"1.0\"?>\n");
+			sb.append("<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">\n");
+			sb.append("  <head>\n");
+			for (String var : vars) {
+				sb.append("    <variable name=\"");
+				appendEscaped(sb, var);
+				sb.append("\"/>\n");
+			}
+			sb.append("  </head>\n  <results>\n");
+		}
+
+		@Override
+		void writeRow(StringBuilder sb, List<String> vars,
+				QuerySolution solution) {
+			sb.append("    <result>\n");
+			for (String var : vars) {
+				RDFNode node = solution.get(var);
+				if (node == null) {
+					continue;
+				}
+				sb.append("      <binding name=\"");
+				appendEscaped(sb, var);
+				sb.append("\">\n        ");
+				appendNode(sb, node);
+				sb.append("\n      </binding>\n");
+			}
+			sb.append("    </result>\n");
+		}
+
+		@Override
+		void writeEnd(StringBuilder sb) {
+			sb.append("  </results>\n</sparql>\n");
+		}
+
+		private void appendNode(StringBuilder sb, RDFNode node) {
+			if (node.isLiteral()) {
+				Literal literal = node.asLiteral();
+				String lang = literal.getLanguage();
+				String datatype = datatypeOf(literal);
+				sb.append("<literal");
+				if (!lang.isEmpty()) {
+					sb.append(" xml:lang=\"");
+					appendEscaped(sb, lang);
+					sb.append('"');
+				} else if (datatype != null) {
+					sb.append(" datatype=\"");
+					appendEscaped(sb, datatype);
+					sb.append('"');
+				}
+				sb.append('>');
+				appendEscaped(sb, literal.getLexicalForm());
+				sb.append("</literal>");
+			} else if (node.isAnon()) {
+				sb.append("<bnode>").append(blankNodeLabel(node))
+						.append("</bnode>");
+			} else {
+				sb.append("<uri>");
+				appendEscaped(sb, node.asResource().getURI());
+				sb.append("</uri>");
+			}
+		}
+
+		private static void appendEscaped(StringBuilder sb, String s) {
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				switch (c) {
+				case '&':
+					sb.append("&amp;");
+					break;
+				case '<':
+					sb.append("&lt;");
+					break;
+				case '>':
+					sb.append("&gt;");
+					break;
+				case '"':
+					sb.append("&quot;");
+					break;
+				case '\r':
+					sb.append("&#13;");
+					break;
+				default:
+					sb.append(c);
+				}
+			}
+		}
+	}
+
+	/** SPARQL 1.1 Query Results CSV Format */
+	private static class CsvFormat extends RowFormat {
+		@Override
+		void writeStart(StringBuilder sb, List<String> vars) {
+			for (int i = 0; i < vars.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				appendField(sb, vars.get(i));
+			}
+			sb.append("\r\n");
+		}
+
+		@Override
+		void writeRow(StringBuilder sb, List<String> vars,
+				QuerySolution solution) {
+			for (int i = 0; i < vars.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				RDFNode node = solution.get(vars.get(i));
+				if (node == null) {
+					continue;
+				} else if (node.isLiteral()) {
+					appendField(sb, node.asLiteral().getLexicalForm());
+				} else if (node.isAnon()) {
+					appendField(sb, "_:" + blankNodeLabel(node));
+				} else {
+					appendField(sb, node.asResource().getURI());
+				}
+			}
+			sb.append("\r\n");
+		}
+
+		@Override
+		void writeEnd(StringBuilder sb) {
+			// Nothing to close.
+		}
+
+		private static void appendField(StringBuilder sb, String s) {
+			if (s.indexOf('"') < 0 && s.indexOf(',') < 0
+					&& s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+				sb.append(s);
+			} else {
+				sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+			}
+		}
+	}
+}
@@ -13,7 +13,6 @@ import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.jena.query.QuerySolutionMap;
@@ -31,7 +30,6 @@ import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
-import org.apache.jena.query.ResultSetFormatter;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFNode;
@@ -51,6 +49,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ResultSetInputStream;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
 import edu.cornell.mannlib.vitro.webapp.utils.sparql.ResultSetIterators.ResultSetQuadsIterator;
 import edu.cornell.mannlib.vitro.webapp.utils.sparql.ResultSetIterators.ResultSetTriplesIterator;
@@ -73,13 +72,14 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
 		}
 	}
     
+    /**
+     * Parse each change before we start, so the triples are read once and
+     * shared by the store and the listeners. After this, each call to
+     * getSerializedModel() returns a fresh stream.
+     */
     protected void insureThatInputStreamsAreResettable(ChangeSet changeSet) throws IOException {
 		for (ModelChange modelChange: changeSet.getModelChanges()) {
-            if (!modelChange.getSerializedModel().markSupported()) {
-                byte[] bytes = IOUtils.toByteArray(modelChange.getSerializedModel());
-                modelChange.setSerializedModel(new ByteArrayInputStream(bytes));
-            }
-            modelChange.getSerializedModel().mark(Integer.MAX_VALUE);
+            modelChange.getModel();
         }
 	}
 
@@ -136,10 +136,8 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
 
 		byte[] changeBytes = new byte[0];
 		try {
-			modelChange.getSerializedModel().mark(Integer.MAX_VALUE);
 			changeBytes = StreamUtils
 					.getBytes(modelChange.getSerializedModel());
-			modelChange.getSerializedModel().reset();
 		} catch (IOException e) {
 			// leave it empty.
 		}
@@ -389,10 +387,7 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
     }
     
     private Model parseModel(ModelChange modelChange) {
-        Model model = ModelFactory.createDefaultModel();
-        model.read(modelChange.getSerializedModel(), null,
-                getSerializationFormatString(modelChange.getSerializationFormat()));
-        return model;
+        return modelChange.getModel();
     }
     
     private InputStream getRDFResultStream(String query, boolean construct, 
@@ -454,42 +449,33 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
     }
 
 	/**
-	 * TODO Is there a way to accomplish this without buffering the entire result?
+	 * The results are serialized as they are read. The dataset and the query
+	 * execution stay open until the stream is exhausted or closed.
 	 */
     @Override
     public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat)
             throws RDFServiceException {
         DatasetWrapper dw = getDatasetWrapper();
+        QueryExecution qe = null;
         try {
             Dataset d = dw.getDataset();
             Query q = createQuery(query);
-            QueryExecution qe = createQueryExecution(query, q, d);
-            try {
-                ResultSet resultSet = qe.execSelect();
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
-                switch (resultFormat) {
-                   case CSV:
-                      ResultSetFormatter.outputAsCSV(outputStream,resultSet);
-                      break;
-                   case TEXT:
-                      ResultSetFormatter.out(outputStream,resultSet);
-                      break;
-                   case JSON:
-                      ResultSetFormatter.outputAsJSON(outputStream, resultSet);
-                      break;
-                   case XML:
-                      ResultSetFormatter.outputAsXML(outputStream, resultSet);
-                      break;
-                   default: 
-                      throw new RDFServiceException("unrecognized result format");
-                }              
-                InputStream result = new ByteArrayInputStream(outputStream.toByteArray());
-                return result;
-            } finally {
+            qe = createQueryExecution(query, q, d);
+            ResultSet resultSet = qe.execSelect();
+            QueryExecution execution = qe;
+            return ResultSetInputStream.create(resultSet, resultFormat, () -> {
+                try {
+                    execution.close();
+                } finally {
+                    dw.close();
+                }
+            });
+        } catch (RuntimeException e) {
+            if (qe != null) {
                 qe.close();
             }
-        } finally {
             dw.close();
+            throw e;
         }
     }
 
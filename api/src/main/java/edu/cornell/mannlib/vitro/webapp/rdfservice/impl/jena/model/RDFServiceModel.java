@@ -2,10 +2,8 @@
 
 package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model;
 
-import java.io.ByteArrayInputStream;
 import java.util.Iterator;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -80,11 +78,7 @@ public class RDFServiceModel extends RDFServiceJena implements RDFService {
             }
 
             for (ModelChange modelChange : changeSet.getModelChanges()) {
-                if (!modelChange.getSerializedModel().markSupported()) {
-                    byte[] bytes = IOUtils.toByteArray(modelChange.getSerializedModel());
-                    modelChange.setSerializedModel(new ByteArrayInputStream(bytes));
-                }
-                modelChange.getSerializedModel().mark(Integer.MAX_VALUE);
+                modelChange.getModel();
                 Model m = this.model;
                 if (m == null && dataset != null) {
                     String changeGraphURI = modelChange.getGraphURI();
@@ -37,15 +37,8 @@ public class RDFServiceFactorySDB implements RDFServiceFactory {
     @Override
     public RDFService getShortTermRDFService() {
         try {
-            RDFService rdfService = new RDFServiceSDB(ds.getConnection(), storeDesc);
-            for (ChangeListener cl : ((RDFServiceSDB) longTermRDFService)
-                    .getRegisteredListeners() ) {
-                rdfService.registerListener(cl);    
-            }
-            for (ModelChangedListener cl : ((RDFServiceSDB) longTermRDFService)
-                    .getRegisteredJenaModelChangedListeners() ) {
-                rdfService.registerJenaModelChangedListener(cl);    
-            }
+            RDFServiceSDB rdfService = new RDFServiceSDB(ds.getConnection(), storeDesc);
+            rdfService.shareListenersWith((RDFServiceSDB) longTermRDFService);
             return rdfService;
         } catch (Exception e) {
             log.error(e,e);
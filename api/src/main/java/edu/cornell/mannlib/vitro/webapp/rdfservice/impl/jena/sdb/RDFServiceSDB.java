@@ -63,6 +63,17 @@ public class RDFServiceSDB extends RDFServiceJena implements RDFService {
         this.staticDatasetFactory = new StaticDatasetFactory(getDataset(
                 new SDBConnection(conn)));
     }
+
+    /**
+     * A short-term RDFService uses the listener lists of the long-term one,
+     * rather than a copy. A listener that is registered on either service
+     * after this one was created, like the find cache of a request graph,
+     * still hears the changes that are made through both.
+     */
+    void shareListenersWith(RDFServiceSDB longTermRDFService) {
+        this.registeredListeners = longTermRDFService.registeredListeners;
+        this.registeredJenaListeners = longTermRDFService.registeredJenaListeners;
+    }
     
     @Override
     protected DatasetWrapper getDatasetWrapper() {
@@ -25,6 +25,7 @@ import org.apache.jena.tdb.TDBFactory;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.DatasetWrapper;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ReleasingInputStream;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.RDFServiceJena;
 
 /**
@@ -133,14 +134,21 @@ public class RDFServiceTDB extends RDFServiceJena {
 		}
 	}
 
+	/**
+	 * The read transaction stays open until the stream is exhausted or closed.
+	 * TDB transactions belong to a thread, so the stream should be read on the
+	 * thread that asked for it.
+	 */
 	@Override
 	public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat)
 			throws RDFServiceException {
 		dataset.begin(ReadWrite.READ);
 		try {
-			return super.sparqlSelectQuery(query, resultFormat);
-		} finally {
+			return new ReleasingInputStream(super.sparqlSelectQuery(query,
+					resultFormat), dataset::end);
+		} catch (RDFServiceException | RuntimeException e) {
 			dataset.end();
+			throw e;
 		}
 	}
 
@@ -29,6 +29,10 @@ public class LoggingRDFService implements RDFService {
 		this.innerService = innerService;
 	}
 
+	public RDFService getInnerService() {
+		return innerService;
+	}
+
 	// ----------------------------------------------------------------------
 	// Timed methods
 	// ----------------------------------------------------------------------
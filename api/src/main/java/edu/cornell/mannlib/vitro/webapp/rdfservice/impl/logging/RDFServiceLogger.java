@@ -11,6 +11,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql.SparqlResultCache;
 import edu.cornell.mannlib.vitro.webapp.utils.developer.DeveloperSettings;
 import edu.cornell.mannlib.vitro.webapp.utils.developer.Key;
 import edu.cornell.mannlib.vitro.webapp.utils.developer.loggers.StackTraceUtility;
@@ -33,7 +34,9 @@ import edu.cornell.mannlib.vitro.webapp.utils.developer.loggers.StackTraceUtilit
  * When close() is called, if a start time was recorded, then a log record is
  * produced. This contains the elapsed time, the name of the method, and any
  * arguments passed to the constructor. It may also include a stack trace, if
- * requested.
+ * requested. If the call was answered by a CachingRDFService, the record also
+ * tells whether the result came from the cache, with the hit ratio and the
+ * time that the cache has saved so far.
  * 
  * The stack trace is abbreviated. It will reach into this class, and will not
  * extend past the first reference to the ApplicationFilterChain. It also omits
@@ -59,6 +62,7 @@ public class RDFServiceLogger implements AutoCloseable {
 
 	public RDFServiceLogger(Object... args) {
 		this.args = args;
+		SparqlResultCache.takeLastLookup();
 		this.stackTrace = new StackTraceUtility(LoggingRDFService.class,
 				isEnabled());
 
@@ -119,6 +123,7 @@ public class RDFServiceLogger implements AutoCloseable {
 
 	@Override
 	public void close() {
+		SparqlResultCache.Lookup lookup = SparqlResultCache.takeLastLookup();
 		try {
 			if (startTime != 0L) {
 				long endTime = System.currentTimeMillis();
@@ -128,8 +133,11 @@ public class RDFServiceLogger implements AutoCloseable {
 						"[\\n\\r\\t]+", " ");
 				String formattedTrace = stackTrace.format(traceRequested);
 
-				log.info(String.format("%8.3f %s %s %s", elapsedSeconds,
-						stackTrace.getMethodName(), cleanArgs, formattedTrace));
+				String cacheOutcome = (lookup == null) ? "" : " " + lookup;
+
+				log.info(String.format("%8.3f %s %s%s %s", elapsedSeconds,
+						stackTrace.getMethodName(), cleanArgs, cacheOutcome,
+						formattedTrace));
 			}
 		} catch (Exception e) {
 			log.error("Failed to write log record", e);
@@ -0,0 +1,54 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
+
+/**
+ * How many triples to send in each SPARQL UPDATE request.
+ *
+ * If a target time is set, the size follows the measured speed of the
+ * endpoint: after each request it moves toward the number of triples that the
+ * endpoint could have handled in the target time, but never by more than a
+ * factor of two at once, and never outside the limits. If no target is set,
+ * the size never changes.
+ */
+class AdaptiveChunkSize {
+	static final int MINIMUM = 500;
+	static final int MAXIMUM = 100000;
+
+	private final long targetMillis;
+	private int size;
+
+	/**
+	 * @param targetMillis
+	 *            how long each request should take. If zero or less, the
+	 *            size is fixed.
+	 */
+	AdaptiveChunkSize(int initialSize, long targetMillis) {
+		this.size = Math.max(1, initialSize);
+		this.targetMillis = targetMillis;
+	}
+
+	synchronized int get() {
+		return size;
+	}
+
+	/**
+	 * A request of this many triples took this long.
+	 */
+	synchronized void record(int triples, long elapsedMillis) {
+		if (targetMillis <= 0 || triples < size / 2) {
+			// Fixed size, or a short final chunk that tells us little.
+			return;
+		}
+		double tripleMillis = (double) Math.max(1, elapsedMillis) / triples;
+		long ideal = (long) (targetMillis / tripleMillis);
+		long next = Math.max(size / 2, Math.min(size * 2L, ideal));
+		size = (int) Math.max(MINIMUM, Math.min(MAXIMUM, next));
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "AdaptiveChunkSize[size=" + size + ", targetMillis="
+				+ targetMillis + "]";
+	}
+}
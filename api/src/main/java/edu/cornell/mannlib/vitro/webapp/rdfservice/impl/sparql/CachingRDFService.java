@@ -0,0 +1,393 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelChangedListener;
+import org.apache.jena.rdf.model.RDFNode;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+
+/**
+ * This RDFService wrapper answers repeated SELECT, CONSTRUCT and ASK queries
+ * from a SparqlResultCache, instead of going back to the endpoint.
+ *
+ * The cache hears about changes as a listener on the inner RDFService, and
+ * also from the change sets that pass through here, so a result is discarded
+ * as soon as this service has changed a graph that the query reads.
+ *
+ * A SELECT or CONSTRUCT result is streamed to the caller as it arrives, and
+ * copied on the way. If it grows too large to be cached, the copy is dropped
+ * and the rest is only streamed.
+ *
+ * DESCRIBE queries and the other methods just delegate to the inner
+ * RDFService.
+ */
+public class CachingRDFService implements RDFService {
+	private static final Log log = LogFactory.getLog(CachingRDFService.class);
+
+	private final RDFService innerService;
+	private final SparqlResultCache cache;
+
+	public CachingRDFService(RDFService innerService, SparqlResultCache cache) {
+		this.innerService = innerService;
+		this.cache = cache;
+		try {
+			innerService.registerListener(cache);
+		} catch (RDFServiceException e) {
+			log.warn("Failed to register the cache as a listener; "
+					+ "it will only hear about changes made through "
+					+ "this service.", e);
+		}
+	}
+
+	public SparqlResultCache getCache() {
+		return cache;
+	}
+
+	public RDFService getInnerService() {
+		return innerService;
+	}
+
+	// ----------------------------------------------------------------------
+	// Cached methods
+	// ----------------------------------------------------------------------
+
+	@Override
+	public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat)
+			throws RDFServiceException {
+		String key = "SELECT " + resultFormat + " "
+				+ SparqlResultCache.normalize(query);
+		byte[] cached = cache.get(key);
+		if (cached != null) {
+			return new ByteArrayInputStream(cached);
+		}
+
+		long generation = cache.getGeneration();
+		long start = System.currentTimeMillis();
+		return new CopyingInputStream(innerService.sparqlSelectQuery(query,
+				resultFormat), key, query, generation, start);
+	}
+
+	@Override
+	public void sparqlSelectQuery(String query, ResultSetConsumer consumer)
+			throws RDFServiceException {
+		try (InputStream in = sparqlSelectQuery(query, ResultFormat.XML)) {
+			consumer.processResultSet(ResultSetFactory.fromXML(in));
+		} catch (IOException e) {
+			throw new RDFServiceException(e);
+		}
+	}
+
+	@Override
+	public InputStream sparqlConstructQuery(String query,
+			ModelSerializationFormat resultFormat) throws RDFServiceException {
+		String key = "CONSTRUCT " + resultFormat + " "
+				+ SparqlResultCache.normalize(query);
+		byte[] cached = cache.get(key);
+		if (cached != null) {
+			return new ByteArrayInputStream(cached);
+		}
+
+		long generation = cache.getGeneration();
+		long start = System.currentTimeMillis();
+		return new CopyingInputStream(innerService.sparqlConstructQuery(query,
+				resultFormat), key, query, generation, start);
+	}
+
+	@Override
+	public void sparqlConstructQuery(String query, Model model)
+			throws RDFServiceException {
+		try (InputStream in = sparqlConstructQuery(query,
+				ModelSerializationFormat.NTRIPLE)) {
+			model.read(in, null, "N-TRIPLE");
+		} catch (IOException e) {
+			throw new RDFServiceException(e);
+		}
+	}
+
+	@Override
+	public boolean sparqlAskQuery(String query) throws RDFServiceException {
+		String key = "ASK " + SparqlResultCache.normalize(query);
+		byte[] cached = cache.get(key);
+		if (cached != null) {
+			return cached[0] == 't';
+		}
+
+		long generation = cache.getGeneration();
+		long start = System.currentTimeMillis();
+		boolean result = innerService.sparqlAskQuery(query);
+		store(key, query, String.valueOf(result).getBytes(
+				StandardCharsets.UTF_8), generation, start);
+		return result;
+	}
+
+	private void store(String key, String query, byte[] result,
+			long generation, long start) {
+		long elapsed = System.currentTimeMillis() - start;
+		cache.put(key, result, SparqlResultCache.graphsReadBy(query),
+				generation, elapsed);
+	}
+
+	/**
+	 * Passes the result through to the caller, keeping a copy until it grows
+	 * larger than the cache would keep. When the stream is closed, whatever
+	 * the caller did not read is copied as well, and the complete copy is
+	 * stored.
+	 */
+	private class CopyingInputStream extends FilterInputStream {
+		private final String key;
+		private final String query;
+		private final long generation;
+		private final long start;
+		private final long limit = cache.getMaxEntryBytes();
+		private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		private boolean closed;
+
+		CopyingInputStream(InputStream in, String key, String query,
+				long generation, long start) {
+			super(in);
+			this.key = key;
+			this.query = query;
+			this.generation = generation;
+			this.start = start;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b >= 0) {
+				copy(new byte[] { (byte) b }, 0, 1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = in.read(b, off, len);
+			if (count > 0) {
+				copy(b, off, count);
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			copy = null;
+			return in.skip(n);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void copy(byte[] b, int off, int len) {
+			if (copy == null) {
+				return;
+			}
+			if (copy.size() + len > limit) {
+				copy = null;
+			} else {
+				copy.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				byte[] buffer = new byte[8192];
+				while (copy != null && read(buffer, 0, buffer.length) >= 0) {
+					// Keep copying.
+				}
+				if (copy != null) {
+					store(key, query, copy.toByteArray(), generation, start);
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Methods that change the data
+	// ----------------------------------------------------------------------
+
+	@Override
+	public boolean changeSetUpdate(ChangeSet changeSet)
+			throws RDFServiceException {
+		try {
+			return innerService.changeSetUpdate(changeSet);
+		} finally {
+			// The listener has probably heard already, but be sure.
+			Set<String> graphURIs = new HashSet<>();
+			for (ModelChange change : changeSet.getModelChanges()) {
+				graphURIs.add(change.getGraphURI());
+			}
+			if (!graphURIs.isEmpty()) {
+				cache.invalidate(graphURIs);
+			}
+		}
+	}
+
+	@Override
+	public void newIndividual(String individualURI, String individualTypeURI)
+			throws RDFServiceException {
+		try {
+			innerService.newIndividual(individualURI, individualTypeURI);
+		} finally {
+			cache.invalidate(Collections.singleton((String) null));
+		}
+	}
+
+	@Override
+	public void newIndividual(String individualURI, String individualTypeURI,
+			String graphURI) throws RDFServiceException {
+		try {
+			innerService.newIndividual(individualURI, individualTypeURI,
+					graphURI);
+		} finally {
+			cache.invalidate(Collections.singleton(graphURI));
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Uncached methods
+	// ----------------------------------------------------------------------
+
+	@Override
+	public InputStream sparqlDescribeQuery(String query,
+			ModelSerializationFormat resultFormat) throws RDFServiceException {
+		return innerService.sparqlDescribeQuery(query, resultFormat);
+	}
+
+	@Override
+	public List<String> getGraphURIs() throws RDFServiceException {
+		return innerService.getGraphURIs();
+	}
+
+	@Override
+	public void getGraphMetadata() throws RDFServiceException {
+		innerService.getGraphMetadata();
+	}
+
+	@Override
+	public String getDefaultWriteGraphURI() throws RDFServiceException {
+		return innerService.getDefaultWriteGraphURI();
+	}
+
+	@Override
+	public void serializeAll(OutputStream outputStream)
+			throws RDFServiceException {
+		innerService.serializeAll(outputStream);
+	}
+
+	@Override
+	public void serializeGraph(String graphURI, OutputStream outputStream)
+			throws RDFServiceException {
+		innerService.serializeGraph(graphURI, outputStream);
+	}
+
+	@Override
+	public boolean isEquivalentGraph(String graphURI,
+			InputStream serializedGraph,
+			ModelSerializationFormat serializationFormat)
+			throws RDFServiceException {
+		return innerService.isEquivalentGraph(graphURI, serializedGraph,
+				serializationFormat);
+	}
+
+	@Override
+	public boolean isEquivalentGraph(String graphURI, Model graph)
+			throws RDFServiceException {
+		return innerService.isEquivalentGraph(graphURI, graph);
+	}
+
+	@Override
+	public void registerListener(ChangeListener changeListener)
+			throws RDFServiceException {
+		innerService.registerListener(changeListener);
+	}
+
+	@Override
+	public void unregisterListener(ChangeListener changeListener)
+			throws RDFServiceException {
+		innerService.unregisterListener(changeListener);
+	}
+
+	@Override
+	public void registerJenaModelChangedListener(
+			ModelChangedListener changeListener) throws RDFServiceException {
+		innerService.registerJenaModelChangedListener(changeListener);
+	}
+
+	@Override
+	public void unregisterJenaModelChangedListener(
+			ModelChangedListener changeListener) throws RDFServiceException {
+		innerService.unregisterJenaModelChangedListener(changeListener);
+	}
+
+	@Override
+	public ChangeSet manufactureChangeSet() {
+		return innerService.manufactureChangeSet();
+	}
+
+	@Override
+	public long countTriples(RDFNode subject, RDFNode predicate, RDFNode object)
+			throws RDFServiceException {
+		return innerService.countTriples(subject, predicate, object);
+	}
+
+	@Override
+	public Model getTriples(RDFNode subject, RDFNode predicate,
+			RDFNode object, long limit, long offset) throws RDFServiceException {
+		return innerService.getTriples(subject, predicate, object, limit,
+				offset);
+	}
+
+	@Override
+	public boolean preferPreciseOptionals() {
+		return innerService.preferPreciseOptionals();
+	}
+
+	@Override
+	public void close() {
+		try {
+			innerService.unregisterListener(cache);
+		} catch (RDFServiceException e) {
+			log.warn("Failed to unregister the cache.", e);
+		}
+		cache.clear();
+		innerService.close();
+	}
+
+	@Override
+	public String toString() {
+		return "CachingRDFService[inner=" + innerService + ", cache="
+				+ cache.getStatistics() + "]";
+	}
+}
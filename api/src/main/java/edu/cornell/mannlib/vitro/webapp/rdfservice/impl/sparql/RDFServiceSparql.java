@@ -7,16 +7,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.Consts;
@@ -68,9 +72,12 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChangeSetImpl;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ReleasingInputStream;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ResultSetInputStream;
 import edu.cornell.mannlib.vitro.webapp.utils.http.HttpClientFactory;
 import edu.cornell.mannlib.vitro.webapp.utils.sparql.ResultSetIterators.ResultSetQuadsIterator;
 import edu.cornell.mannlib.vitro.webapp.utils.sparql.ResultSetIterators.ResultSetTriplesIterator;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 /*
  * API to write, read, and update Vitro's RDF store, with support
@@ -88,6 +95,10 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 
 	protected HttpClient httpClient;
 
+	private volatile AdaptiveChunkSize chunkSize = new AdaptiveChunkSize(CHUNK_SIZE, 0);
+	private volatile int updateThreads = 1;
+	private ExecutorService updateExecutor;
+
 	protected boolean rebuildGraphURICache = true;
 	private List<String> graphURIs = null;
 
@@ -113,11 +124,11 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	}
 
 	protected void testConnection() {
-		try {
-			this.sparqlSelectQuery(
+		try (InputStream in = this.sparqlSelectQuery(
 					"SELECT ?s WHERE { ?s a " +
 							"<http://vitro.mannlib.cornell.edu/ns/vitro/nonsense/> }",
-					RDFService.ResultFormat.JSON);
+					RDFService.ResultFormat.JSON)) {
+			// Just checking that the query succeeds.
 		} catch (Exception e) {
 			throw new RuntimeException("Unable to connect to endpoint at " +
 					readEndpointURI, e);
@@ -147,8 +158,36 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 		this(endpointURI, endpointURI, null);
 	}
 
+	/**
+	 * Send the chunks of a large update on this many threads at once, and
+	 * size the chunks so each one takes about targetMillis. If threads is 1
+	 * the chunks are sent one after another; if targetMillis is 0 they are
+	 * always the same size.
+	 */
+	public synchronized void setUpdatePipelining(int threads, long targetMillis) {
+		this.chunkSize = new AdaptiveChunkSize(CHUNK_SIZE, targetMillis);
+		this.updateThreads = Math.max(1, threads);
+		if (updateExecutor != null) {
+			updateExecutor.shutdown();
+			updateExecutor = null;
+		}
+		if (updateThreads > 1) {
+			updateExecutor = Executors.newFixedThreadPool(updateThreads,
+					new VitroBackgroundThread.Factory("RDFServiceSparql_update"));
+		}
+	}
+
+	private synchronized ExecutorService getUpdateExecutor() {
+		return updateExecutor;
+	}
+
 	public void close() {
-		// nothing for now
+		synchronized (this) {
+			if (updateExecutor != null) {
+				updateExecutor.shutdown();
+				updateExecutor = null;
+			}
+		}
 	}
 
 	/**
@@ -180,11 +219,6 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 			}
 
 			for (ModelChange modelChange : changeSet.getModelChanges()) {
-				if (!modelChange.getSerializedModel().markSupported()) {
-					byte[] bytes = IOUtils.toByteArray(modelChange.getSerializedModel());
-					modelChange.setSerializedModel(new ByteArrayInputStream(bytes));
-				}
-				modelChange.getSerializedModel().mark(Integer.MAX_VALUE);
 				performChange(modelChange);
 			}
 			
@@ -304,31 +338,18 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 					throw new RDFServiceException("Unable to perform SPARQL SELECT");
 				}
 
-				try (InputStream in = response.getEntity().getContent()) {
-					ResultSet resultSet = ResultSetFactory.fromXML(in);
-					ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-					switch (resultFormat) {
-						case CSV:
-							ResultSetFormatter.outputAsCSV(outputStream, resultSet);
-							break;
-						case TEXT:
-							ResultSetFormatter.out(outputStream, resultSet);
-							break;
-						case JSON:
-							ResultSetFormatter.outputAsJSON(outputStream, resultSet);
-							break;
-						case XML:
-							ResultSetFormatter.outputAsXML(outputStream, resultSet);
-							break;
-						default:
-							throw new RDFServiceException("unrecognized result format");
-					}
-					InputStream result = new ByteArrayInputStream(
-							outputStream.toByteArray());
-					return result;
+				// The connection is released when the stream is exhausted or closed.
+				InputStream in = response.getEntity().getContent();
+				if (resultFormat == RDFService.ResultFormat.XML) {
+					return new ReleasingInputStream(in, meth::releaseConnection);
+				} else {
+					return ResultSetInputStream.create(
+							ResultSetFactory.fromXML(in), resultFormat,
+							meth::releaseConnection);
 				}
-			} finally {
-				EntityUtils.consume(response.getEntity());
+			} catch (RDFServiceException | IOException | RuntimeException e) {
+				meth.releaseConnection();
+				throw e;
 			}
 		} catch (IOException | URISyntaxException ioe) {
 			throw new RuntimeException(ioe);
@@ -469,7 +490,9 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	 */
 	@Override
 	public synchronized void unregisterListener(ChangeListener changeListener) throws RDFServiceException {
-		registeredListeners.remove(changeListener);
+		if (registeredListeners.remove(changeListener)) {
+			listenerDispatcher.release(changeListener);
+		}
 	}
 
 	/**
@@ -494,10 +517,41 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	}
 
 	protected void executeUpdate(String updateString) throws RDFServiceException {
+		HttpPost meth = new HttpPost(updateEndpointURI);
+		meth.addHeader("Content-Type", "application/x-www-form-urlencoded; charset="+Consts.UTF_8);
+		meth.setEntity(new UrlEncodedFormEntity(Arrays.asList(new BasicNameValuePair("update", updateString)),Consts.UTF_8));
+		executeUpdateRequest(meth, updateString);
+	}
+
+	/**
+	 * Insert or delete these triples as a single request. The request body is
+	 * written straight to the connection, not built as a string.
+	 */
+	protected void executeDataUpdate(String verb, String graphURI, List<Triple> triples) throws RDFServiceException {
+		HttpPost meth = new HttpPost(updateEndpointURI);
+		SparqlUpdateEntity entity = new SparqlUpdateEntity(getDataOperation(verb),
+				graphURI, triples, getDataUpdateMimeType());
+		meth.setEntity(entity);
+		executeUpdateRequest(meth, entity);
+	}
+
+	/**
+	 * The operation for a data update: "INSERT DATA" or "DELETE DATA".
+	 */
+	protected String getDataOperation(String verb) {
+		return verb + " DATA";
+	}
+
+	protected String getDataUpdateMimeType() {
+		return SparqlUpdateEntity.SPARQL_UPDATE;
+	}
+
+	/**
+	 * Send an update request. The update is only used for logging: it is
+	 * either the update string or the entity that writes it.
+	 */
+	protected void executeUpdateRequest(HttpPost meth, Object update) throws RDFServiceException {
 		try {
-			HttpPost meth = new HttpPost(updateEndpointURI);
-			meth.addHeader("Content-Type", "application/x-www-form-urlencoded; charset="+Consts.UTF_8);
-			meth.setEntity(new UrlEncodedFormEntity(Arrays.asList(new BasicNameValuePair("update", updateString)),Consts.UTF_8));
 			HttpContext context = getContext(meth);
 			HttpResponse response = context != null ? httpClient.execute(meth, context) : httpClient.execute(meth);
 			try {
@@ -511,7 +565,9 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 				EntityUtils.consume(response.getEntity());
 			}
 		} catch (Exception e) {
-			log.debug("update string: \n" + updateString);
+			if (log.isDebugEnabled()) {
+				log.debug("update string: \n" + update);
+			}
 			throw new RDFServiceException("Unable to perform change set update", e);
 		}
 	}
@@ -535,30 +591,115 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	}
 
 	private void verbModel(Model model, String graphURI, String verb) throws RDFServiceException {
-		Model m = ModelFactory.createDefaultModel();
+		UpdatePipeline pipeline = new UpdatePipeline(verb, graphURI);
 		StmtIterator stmtIt = model.listStatements();
-		int count = 0;
 		try {
+			List<Triple> chunk = new ArrayList<>();
+			int limit = chunkSize.get();
 			while (stmtIt.hasNext()) {
-				count++;
-				m.add(stmtIt.nextStatement());
-				if (count % CHUNK_SIZE == 0 || !stmtIt.hasNext()) {
-					StringWriter sw = new StringWriter();
-					m.write(sw, "N-TRIPLE");
-					StringBuilder updateStringBuff = new StringBuilder();
-					updateStringBuff.append(verb).append(" DATA { ").append((graphURI != null) ? "GRAPH <" + graphURI + "> { " : "");
-					updateStringBuff.append(sw);
-					updateStringBuff.append((graphURI != null) ? " } " : "").append(" }");
+				chunk.add(stmtIt.nextStatement().asTriple());
+				if (chunk.size() >= limit) {
+					pipeline.send(chunk);
+					chunk = new ArrayList<>();
+					limit = chunkSize.get();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				pipeline.send(chunk);
+			}
+		} catch (RDFServiceException | RuntimeException e) {
+			stmtIt.close();
+			try {
+				pipeline.finish();
+			} catch (RDFServiceException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+		stmtIt.close();
+		pipeline.finish();
+	}
+
+	/**
+	 * Sends the chunks of one update. If there is an executor, up to
+	 * updateThreads chunks may be in flight at once; the update is not
+	 * finished until they all are. Otherwise, each chunk is sent before the
+	 * next one is built.
+	 */
+	private class UpdatePipeline {
+		private final String verb;
+		private final String graphURI;
+		private final ExecutorService executor = getUpdateExecutor();
+		private final Semaphore inFlight = new Semaphore(updateThreads);
+		private final List<Future<?>> futures = new ArrayList<>();
+		private volatile boolean failed;
+
+		UpdatePipeline(String verb, String graphURI) {
+			this.verb = verb;
+			this.graphURI = graphURI;
+		}
 
-					String updateString = updateStringBuff.toString();
+		void send(final List<Triple> chunk) throws RDFServiceException {
+			if (executor == null) {
+				sendChunk(chunk);
+				return;
+			}
+			try {
+				inFlight.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RDFServiceException("Interrupted while sending an update", e);
+			}
+			if (failed) {
+				inFlight.release();
+				throw new RDFServiceException("Unable to perform change set update");
+			}
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try {
+						sendChunk(chunk);
+						return null;
+					} catch (Exception e) {
+						failed = true;
+						throw e;
+					} finally {
+						inFlight.release();
+					}
+				}
+			}));
+		}
 
-					executeUpdate(updateString);
+		private void sendChunk(List<Triple> chunk) throws RDFServiceException {
+			long start = System.currentTimeMillis();
+			executeDataUpdate(verb, graphURI, chunk);
+			long elapsed = System.currentTimeMillis() - start;
+			chunkSize.record(chunk.size(), elapsed);
+			log.debug(elapsed + " ms to " + verb + " " + chunk.size() + " triples");
+		}
 
-					m.removeAll();
+		/** Wait for the chunks in flight, and report the first failure. */
+		void finish() throws RDFServiceException {
+			RDFServiceException failure = null;
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = (e.getCause() instanceof RDFServiceException)
+								? (RDFServiceException) e.getCause()
+								: new RDFServiceException(e.getCause());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					if (failure == null) {
+						failure = new RDFServiceException("Interrupted while sending an update", e);
+					}
 				}
 			}
-		} finally {
-			stmtIt.close();
+			if (failure != null) {
+				throw failure;
+			}
 		}
 	}
 
@@ -855,10 +996,7 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	}
 
 	private Model parseModel(ModelChange modelChange) {
-		Model model = ModelFactory.createDefaultModel();
-		model.read(modelChange.getSerializedModel(), null,
-				getSerializationFormatString(modelChange.getSerializationFormat()));
-		return model;
+		return modelChange.getModel();
 	}
 
 	@Override
@@ -876,14 +1014,18 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	}
 
 	private void serialize(OutputStream outputStream, String query) throws RDFServiceException {
-		InputStream resultStream = sparqlSelectQuery(query, RDFService.ResultFormat.JSON);
-		ResultSet resultSet = ResultSetFactory.fromJSON(resultStream);
-		if (resultSet.getResultVars().contains("g")) {
-			Iterator<Quad> quads = new ResultSetQuadsIterator(resultSet);
-			RDFDataMgr.writeQuads(outputStream, quads);
-		} else {
-			Iterator<Triple> triples = new ResultSetTriplesIterator(resultSet);
-			RDFDataMgr.writeTriples(outputStream, triples);
+		try (InputStream resultStream = sparqlSelectQuery(query,
+				RDFService.ResultFormat.JSON)) {
+			ResultSet resultSet = ResultSetFactory.fromJSON(resultStream);
+			if (resultSet.getResultVars().contains("g")) {
+				Iterator<Quad> quads = new ResultSetQuadsIterator(resultSet);
+				RDFDataMgr.writeQuads(outputStream, quads);
+			} else {
+				Iterator<Triple> triples = new ResultSetTriplesIterator(resultSet);
+				RDFDataMgr.writeTriples(outputStream, triples);
+			}
+		} catch (IOException e) {
+			throw new RDFServiceException(e);
 		}
 	}
 
@@ -6,8 +6,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
-import org.apache.jena.query.ResultSet;
-import org.apache.jena.query.ResultSetFormatter;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.sparql.engine.http.QueryEngineHTTP;
@@ -16,6 +14,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ResultSetInputStream;
 
 /**
  * This is a RDFService that passes SPARQL queries to
@@ -124,34 +123,15 @@ public class RDFServiceSparqlHttp extends RDFServiceSparql {
 	public InputStream sparqlSelectQuery(String queryStr, RDFService.ResultFormat resultFormat) throws RDFServiceException {		                
 
 		QueryEngineHTTP qeh = new QueryEngineHTTP( readEndpointURI, queryStr);
-        
-        try {
-        	ResultSet resultSet = qeh.execSelect();        	        	
-        	ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
-        	
-        	switch (resultFormat) {
-        	   case CSV:
-        		  ResultSetFormatter.outputAsCSV(outputStream,resultSet);
-        		  break;
-        	   case TEXT:
-        		  ResultSetFormatter.out(outputStream,resultSet);
-        		  break;
-        	   case JSON:
-        		  ResultSetFormatter.outputAsJSON(outputStream, resultSet);
-        		  break;
-        	   case XML:
-        		  ResultSetFormatter.outputAsXML(outputStream, resultSet);
-        		  break;
-        	   default: 
-        		  throw new RDFServiceException("unrecognized result format");
-        	}
-        	
-        	InputStream result = new ByteArrayInputStream(outputStream.toByteArray());
-        	return result;
-        	
-        } finally {
-            qeh.close();
-        }
+
+		// The query engine is closed when the stream is exhausted or closed.
+		try {
+			return ResultSetInputStream.create(qeh.execSelect(), resultFormat,
+					qeh::close);
+		} catch (RuntimeException e) {
+			qeh.close();
+			throw e;
+		}
 	}
 
 	@Override
@@ -0,0 +1,497 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprFunction;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementBind;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementMinus;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.ElementOptional;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.sparql.syntax.ElementUnion;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+
+/**
+ * Remembers the results of read queries, up to a limit on the total size.
+ *
+ * Each result remembers the graphs that its query reads. A change to one of
+ * those graphs discards it. If we can't tell which graphs a query reads (it
+ * reads the default graph, which is the union of all graphs, or it uses a
+ * variable in a GRAPH clause), any change discards it. A change with no graph
+ * discards everything.
+ *
+ * A result that is computed while a change is being made is not remembered,
+ * since it may already be out of date.
+ *
+ * The outcome of the latest lookup on each thread is available to the
+ * logging RDFService.
+ */
+public class SparqlResultCache implements ChangeListener {
+	private static final Log log = LogFactory.getLog(SparqlResultCache.class);
+
+	private static final ThreadLocal<Lookup> lastLookup = new ThreadLocal<>();
+
+	/**
+	 * What happened on this thread at the latest lookup? Returns null if there
+	 * has been no lookup since the last call.
+	 */
+	public static Lookup takeLastLookup() {
+		Lookup lookup = lastLookup.get();
+		lastLookup.remove();
+		return lookup;
+	}
+
+	private final long maxBytes;
+	private final long maxAgeMillis;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16,
+			0.75f, true);
+	private final Map<String, Set<String>> keysByGraph = new HashMap<>();
+	private final Set<String> keysForAnyGraph = new HashSet<>();
+	private long bytes;
+
+	/** Incremented by every change. */
+	private long generation;
+
+	private long hits;
+	private long misses;
+	private long invalidations;
+	private long savedMillis;
+
+	/**
+	 * @param maxAgeMillis
+	 *            if more than zero, a result is discarded after this long, in
+	 *            case the endpoint was changed by someone else.
+	 */
+	public SparqlResultCache(long maxBytes, long maxAgeMillis) {
+		this.maxBytes = maxBytes;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * Call this before running a query, and pass the result to put().
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * A result larger than this is never kept, so there is no point in
+	 * collecting it.
+	 */
+	public long getMaxEntryBytes() {
+		return maxBytes / 4;
+	}
+
+	public synchronized byte[] get(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null && maxAgeMillis > 0
+				&& System.currentTimeMillis() - entry.created > maxAgeMillis) {
+			remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			lastLookup.set(new Lookup(false, 0, getStatistics()));
+			return null;
+		}
+		hits++;
+		savedMillis += entry.roundTripMillis;
+		lastLookup.set(new Lookup(true, entry.roundTripMillis,
+				getStatistics()));
+		return entry.value;
+	}
+
+	/**
+	 * Remember this result, unless there has been a change since the query
+	 * started, or it would take too large a part of the cache.
+	 *
+	 * @param graphs
+	 *            the graphs that the query reads, or null if it might read
+	 *            any graph.
+	 */
+	public synchronized void put(String key, byte[] value, Set<String> graphs,
+			long startingGeneration, long roundTripMillis) {
+		if (startingGeneration != generation || value.length > getMaxEntryBytes()) {
+			return;
+		}
+		remove(key);
+		entries.put(key, new Entry(value, graphs, roundTripMillis));
+		bytes += value.length;
+		if (graphs == null) {
+			keysForAnyGraph.add(key);
+		} else {
+			for (String graph : graphs) {
+				Set<String> keys = keysByGraph.get(graph);
+				if (keys == null) {
+					keys = new HashSet<>();
+					keysByGraph.put(graph, keys);
+				}
+				keys.add(key);
+			}
+		}
+
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet()
+				.iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			Map.Entry<String, Entry> e = eldest.next();
+			eldest.remove();
+			forget(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * These graphs have changed. A null graph URI means that anything may have
+	 * changed.
+	 */
+	public synchronized void invalidate(Collection<String> graphURIs) {
+		generation++;
+		invalidations++;
+		if (graphURIs.contains(null)) {
+			clear();
+			return;
+		}
+		Set<String> doomed = new HashSet<>(keysForAnyGraph);
+		for (String graphURI : graphURIs) {
+			Set<String> keys = keysByGraph.get(graphURI);
+			if (keys != null) {
+				doomed.addAll(keys);
+			}
+		}
+		for (String key : doomed) {
+			remove(key);
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+		keysByGraph.clear();
+		keysForAnyGraph.clear();
+		bytes = 0;
+	}
+
+	public synchronized Statistics getStatistics() {
+		return new Statistics(entries.size(), bytes, hits, misses,
+				invalidations, savedMillis);
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			forget(key, entry);
+		}
+	}
+
+	/** The entry is already gone from the map; the indexes are not. */
+	private void forget(String key, Entry entry) {
+		bytes -= entry.value.length;
+		if (entry.graphs == null) {
+			keysForAnyGraph.remove(key);
+		} else {
+			for (String graph : entry.graphs) {
+				Set<String> keys = keysByGraph.get(graph);
+				if (keys != null) {
+					keys.remove(key);
+					if (keys.isEmpty()) {
+						keysByGraph.remove(graph);
+					}
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// ChangeListener
+	// ----------------------------------------------------------------------
+
+	@Override
+	public void notifyModelChange(ModelChange modelChange) {
+		invalidate(Collections.singleton(modelChange.getGraphURI()));
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Events don't change the triples.
+	}
+
+	// ----------------------------------------------------------------------
+	// Query analysis
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Collapse the white space in the query, except inside quoted strings, so
+	 * the same query with different formatting has the same key.
+	 */
+	static String normalize(String query) {
+		StringBuilder sb = new StringBuilder(query.length());
+		char quote = 0;
+		boolean space = false;
+		for (int i = 0; i < query.length(); i++) {
+			char c = query.charAt(i);
+			if (quote != 0) {
+				sb.append(c);
+				if (c == '\\' && i + 1 < query.length()) {
+					sb.append(query.charAt(++i));
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (Character.isWhitespace(c)) {
+				space = true;
+			} else {
+				if (space && sb.length() > 0) {
+					sb.append(' ');
+				}
+				space = false;
+				sb.append(c);
+				if (c == '"' || c == '\'') {
+					quote = c;
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Which graphs does this query read? Returns null if it might read any
+	 * graph, or if we can't tell.
+	 */
+	static Set<String> graphsReadBy(String queryString) {
+		try {
+			Query query = QueryFactory.create(queryString);
+			Set<String> graphs = new HashSet<>();
+			if (addGraphs(query, graphs)) {
+				return graphs;
+			}
+		} catch (Exception e) {
+			log.debug("Can't analyze the query: " + queryString, e);
+		}
+		return null;
+	}
+
+	/** Returns false if the query might read any graph. */
+	private static boolean addGraphs(Query query, Set<String> graphs) {
+		return addGraphs(query.getQueryPattern(), null, query, graphs);
+	}
+
+	/**
+	 * @param graphName
+	 *            the graph that this element is in, or null if it is in the
+	 *            default graph.
+	 */
+	private static boolean addGraphs(Element element, Node graphName,
+			Query query, Set<String> graphs) {
+		if (element == null || element instanceof ElementBind
+				|| element instanceof ElementData) {
+			return true;
+		}
+		if (element instanceof ElementTriplesBlock
+				|| element instanceof ElementPathBlock) {
+			return addGraph(graphName, query, graphs);
+		}
+		if (element instanceof ElementNamedGraph) {
+			ElementNamedGraph named = (ElementNamedGraph) element;
+			return addGraphs(named.getElement(), named.getGraphNameNode(),
+					query, graphs);
+		}
+		if (element instanceof ElementGroup) {
+			for (Element e : ((ElementGroup) element).getElements()) {
+				if (!addGraphs(e, graphName, query, graphs)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (element instanceof ElementUnion) {
+			for (Element e : ((ElementUnion) element).getElements()) {
+				if (!addGraphs(e, graphName, query, graphs)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (element instanceof ElementOptional) {
+			return addGraphs(((ElementOptional) element).getOptionalElement(),
+					graphName, query, graphs);
+		}
+		if (element instanceof ElementMinus) {
+			return addGraphs(((ElementMinus) element).getMinusElement(),
+					graphName, query, graphs);
+		}
+		if (element instanceof ElementFilter) {
+			// FILTER EXISTS reads a pattern that we don't look at.
+			return !hasPattern(((ElementFilter) element).getExpr());
+		}
+		if (element instanceof ElementSubQuery) {
+			Query sub = ((ElementSubQuery) element).getQuery();
+			return addGraphs(sub.getQueryPattern(), graphName, query, graphs);
+		}
+		// SERVICE, or something else that we don't understand.
+		return false;
+	}
+
+	private static boolean addGraph(Node graphName, Query query,
+			Set<String> graphs) {
+		if (graphName == null) {
+			// The default graph is the union of all graphs, unless FROM says
+			// otherwise.
+			if (query.getGraphURIs().isEmpty()) {
+				return false;
+			}
+			graphs.addAll(query.getGraphURIs());
+			return true;
+		}
+		if (graphName.isURI()) {
+			graphs.add(graphName.getURI());
+			return true;
+		}
+		// GRAPH ?g reads any named graph, unless FROM NAMED says otherwise.
+		if (query.getNamedGraphURIs().isEmpty()) {
+			return false;
+		}
+		graphs.addAll(query.getNamedGraphURIs());
+		return true;
+	}
+
+	private static boolean hasPattern(Expr expr) {
+		if (expr instanceof ExprFunctionOp) {
+			return true;
+		}
+		if (expr instanceof ExprFunction) {
+			for (Expr arg : ((ExprFunction) expr).getArgs()) {
+				if (hasPattern(arg)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class Entry {
+		final byte[] value;
+		final Set<String> graphs;
+		final long roundTripMillis;
+		final long created = System.currentTimeMillis();
+
+		Entry(byte[] value, Set<String> graphs, long roundTripMillis) {
+			this.value = value;
+			this.graphs = graphs;
+			this.roundTripMillis = roundTripMillis;
+		}
+	}
+
+	public static class Lookup {
+		private final boolean hit;
+		private final long savedMillis;
+		private final Statistics statistics;
+
+		public Lookup(boolean hit, long savedMillis, Statistics statistics) {
+			this.hit = hit;
+			this.savedMillis = savedMillis;
+			this.statistics = statistics;
+		}
+
+		public boolean isHit() {
+			return hit;
+		}
+
+		/** How long the query took when it went to the endpoint. */
+		public long getSavedMillis() {
+			return savedMillis;
+		}
+
+		public Statistics getStatistics() {
+			return statistics;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("[cache %s, saved %.3f; %s]",
+					hit ? "hit" : "miss", savedMillis / 1000.0F, statistics);
+		}
+	}
+
+	public static class Statistics {
+		private final int size;
+		private final long bytes;
+		private final long hits;
+		private final long misses;
+		private final long invalidations;
+		private final long savedMillis;
+
+		public Statistics(int size, long bytes, long hits, long misses,
+				long invalidations, long savedMillis) {
+			this.size = size;
+			this.bytes = bytes;
+			this.hits = hits;
+			this.misses = misses;
+			this.invalidations = invalidations;
+			this.savedMillis = savedMillis;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		/** The total time of the round trips that were not made. */
+		public long getSavedMillis() {
+			return savedMillis;
+		}
+
+		public double getHitRatio() {
+			long lookups = hits + misses;
+			return (lookups == 0) ? 0.0 : (double) hits / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%d entries, %d bytes, %.1f%% hits, %.3f saved in all",
+					size, bytes, getHitRatio() * 100, savedMillis / 1000.0F);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+
+/**
+ * The body of a SPARQL UPDATE request that inserts or deletes a list of
+ * triples, like "INSERT DATA { GRAPH &lt;g&gt; { ... } }".
+ *
+ * The triples are written as N-Triples directly to the connection when the
+ * request is sent, so the update is never built up as a String. The entity is
+ * repeatable, in case the request must be sent again for authentication.
+ */
+class SparqlUpdateEntity extends AbstractHttpEntity {
+	static final String SPARQL_UPDATE = "application/sparql-update";
+
+	private final byte[] opening;
+	private final byte[] closing;
+	private final List<Triple> triples;
+
+	/**
+	 * @param operation
+	 *            "INSERT DATA", "DELETE DATA", or something similar.
+	 * @param graphURI
+	 *            may be null, for the default graph.
+	 */
+	SparqlUpdateEntity(String operation, String graphURI,
+			List<Triple> triples, String mimeType) {
+		String open = operation + " { "
+				+ ((graphURI == null) ? "" : "GRAPH <" + graphURI + "> { ")
+				+ "\n";
+		String close = ((graphURI == null) ? "" : " } ") + " }";
+		this.opening = open.getBytes(StandardCharsets.UTF_8);
+		this.closing = close.getBytes(StandardCharsets.UTF_8);
+		this.triples = triples;
+		setContentType(mimeType + "; charset=UTF-8");
+		setChunked(true);
+	}
+
+	int getTripleCount() {
+		return triples.size();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(opening);
+		RDFDataMgr.writeTriples(out, triples.iterator());
+		out.write(closing);
+		out.flush();
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	/**
+	 * Only for logging and for clients that insist on reading the content:
+	 * this does build the whole update in memory.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeTo(out);
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		try (InputStream in = getContent()) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return "SparqlUpdateEntity[" + triples.size() + " triples]";
+		}
+	}
+}
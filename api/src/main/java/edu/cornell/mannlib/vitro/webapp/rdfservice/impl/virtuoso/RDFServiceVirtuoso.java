@@ -84,9 +84,17 @@ public class RDFServiceVirtuoso extends RDFServiceSparql {
 			throws RDFServiceException {
 		updateString = tweakUpdateStringSyntax(updateString);
 		log.debug("UPDATE STRING: " + updateString);
+		executeUpdateRequest(createHttpRequest(updateString), updateString);
+	}
 
+	/**
+	 * Both update strings and data updates come through here, so a failure
+	 * is logged with Virtuoso's response either way.
+	 */
+	@Override
+	protected void executeUpdateRequest(HttpPost request, Object update)
+			throws RDFServiceException {
 		try {
-			HttpPost request = createHttpRequest(updateString);
 			HttpContext context = getContext(request);
 			HttpResponse response = context != null ? httpClient.execute(request, context) : httpClient.execute(request);
 			try {
@@ -109,12 +117,23 @@ public class RDFServiceVirtuoso extends RDFServiceSparql {
 				EntityUtils.consume(response.getEntity());
 			}
 		} catch (Exception e) {
-			log.error("Failed to update: " + updateString, e);
+			log.error("Failed to update: " + update, e);
 			throw new RDFServiceException(
 					"Unable to perform change set update", e);
 		}
 	}
 
+	/** Virtuoso wants "INSERT", not "INSERT DATA". See tweakUpdateStringSyntax(). */
+	@Override
+	protected String getDataOperation(String verb) {
+		return "INSERT".equals(verb) ? verb : super.getDataOperation(verb);
+	}
+
+	@Override
+	protected String getDataUpdateMimeType() {
+		return "application/sparql-query";
+	}
+
 	private String tweakUpdateStringSyntax(String updateString) {
 		if (updateString.startsWith("INSERT DATA")) {
 			return updateString.replaceFirst("INSERT DATA", "INSERT");
@@ -0,0 +1,262 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel.IDLE;
+import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel.WORKING;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Holds the URIs of individuals whose ABox inferences must be recomputed, and
+ * recomputes them on background threads.
+ *
+ * A URI that is already waiting is not queued again, so a bulk edit that
+ * touches the same individual many times only recomputes it once. An
+ * individual is never recomputed by two workers at once: if it changes while
+ * a worker has it, it waits in the queue until that worker is finished.
+ */
+public class ABoxReasoningQueue {
+    private static final Log log = LogFactory.getLog(ABoxReasoningQueue.class);
+
+    private final Consumer<Queue<String>> recomputer;
+    private final int batchSize;
+    private final List<VitroBackgroundThread> workers = new ArrayList<>();
+
+    /** Waiting URIs, in order of arrival, with the time they arrived. */
+    private final Map<String, Long> pending = new LinkedHashMap<>();
+    private final Set<String> inProgress = new HashSet<>();
+    private boolean shutdown = false;
+
+    private final AtomicLong urisQueued = new AtomicLong();
+    private final AtomicLong urisRecomputed = new AtomicLong();
+    private final AtomicLong batchesRecomputed = new AtomicLong();
+
+    /**
+     * @param recomputer
+     *            recomputes the inferences for a batch of individuals. It may
+     *            add more URIs to the batch while it works.
+     */
+    public ABoxReasoningQueue(Consumer<Queue<String>> recomputer,
+            int workerThreads, int batchSize) {
+        this.recomputer = recomputer;
+        this.batchSize = Math.max(1, batchSize);
+        for (int i = 0; i < Math.max(1, workerThreads); i++) {
+            VitroBackgroundThread worker = new VitroBackgroundThread(
+                    new Worker(), "ABoxReasoningQueue_" + i);
+            worker.setDaemon(true);
+            worker.setWorkLevel(IDLE);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public synchronized void enqueue(Collection<String> individualURIs) {
+        if (shutdown) {
+            log.warn("Reasoning queue is shut down; ignoring "
+                    + individualURIs.size() + " individuals.");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String uri : individualURIs) {
+            if (!pending.containsKey(uri)) {
+                pending.put(uri, now);
+                urisQueued.incrementAndGet();
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait until nothing is waiting and nothing is being recomputed.
+     *
+     * @return true if the queue became quiescent, false if the time ran out
+     *         or the thread was interrupted.
+     */
+    public synchronized boolean waitUntilQuiescent(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!isQuiescent()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean isQuiescent() {
+        return pending.isEmpty() && inProgress.isEmpty();
+    }
+
+    /** Stop the workers. Anything still waiting is abandoned. */
+    public void shutdown() {
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                log.warn("Shutting down with " + pending.size()
+                        + " individuals waiting for inferences.");
+            }
+            shutdown = true;
+            pending.clear();
+            notifyAll();
+        }
+        for (VitroBackgroundThread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    public synchronized Statistics getStatistics() {
+        long lag = 0;
+        if (!pending.isEmpty()) {
+            lag = System.currentTimeMillis()
+                    - pending.values().iterator().next();
+        }
+        return new Statistics(pending.size(), inProgress.size(), lag,
+                urisQueued.get(), urisRecomputed.get(),
+                batchesRecomputed.get());
+    }
+
+    /**
+     * Wait for some work, then take up to batchSize URIs that no other worker
+     * has. Returns null if we are shut down.
+     */
+    private synchronized List<String> takeBatch() throws InterruptedException {
+        while (true) {
+            if (shutdown) {
+                return null;
+            }
+            List<String> batch = new ArrayList<>();
+            Iterator<String> it = pending.keySet().iterator();
+            while (it.hasNext() && batch.size() < batchSize) {
+                String uri = it.next();
+                if (!inProgress.contains(uri)) {
+                    it.remove();
+                    batch.add(uri);
+                }
+            }
+            if (!batch.isEmpty()) {
+                inProgress.addAll(batch);
+                return batch;
+            }
+            wait();
+        }
+    }
+
+    private synchronized void finishBatch(List<String> batch) {
+        inProgress.removeAll(batch);
+        urisRecomputed.addAndGet(batch.size());
+        batchesRecomputed.incrementAndGet();
+        notifyAll();
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            VitroBackgroundThread me = (VitroBackgroundThread) Thread
+                    .currentThread();
+            while (true) {
+                List<String> batch;
+                try {
+                    batch = takeBatch();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch == null) {
+                    return;
+                }
+
+                me.setWorkLevel(WORKING);
+                try {
+                    long start = System.currentTimeMillis();
+                    Queue<String> uris = new IndividualURIQueue<String>();
+                    uris.addAll(batch);
+                    recomputer.accept(uris);
+                    log.debug((System.currentTimeMillis() - start)
+                            + " ms to recompute " + batch.size()
+                            + " individuals");
+                } catch (Exception e) {
+                    log.error("Failed to recompute inferences for "
+                            + batch.size() + " individuals", e);
+                } finally {
+                    finishBatch(batch);
+                    me.setWorkLevel(IDLE);
+                }
+            }
+        }
+    }
+
+    public static class Statistics {
+        private final int queueDepth;
+        private final int inProgress;
+        private final long lagMillis;
+        private final long urisQueued;
+        private final long urisRecomputed;
+        private final long batchesRecomputed;
+
+        public Statistics(int queueDepth, int inProgress, long lagMillis,
+                long urisQueued, long urisRecomputed, long batchesRecomputed) {
+            this.queueDepth = queueDepth;
+            this.inProgress = inProgress;
+            this.lagMillis = lagMillis;
+            this.urisQueued = urisQueued;
+            this.urisRecomputed = urisRecomputed;
+            this.batchesRecomputed = batchesRecomputed;
+        }
+
+        /** How many individuals are waiting. */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /** How many individuals are being recomputed right now. */
+        public int getInProgress() {
+            return inProgress;
+        }
+
+        /** How long the oldest waiting individual has been waiting. */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public long getUrisQueued() {
+            return urisQueued;
+        }
+
+        public long getUrisRecomputed() {
+            return urisRecomputed;
+        }
+
+        public long getBatchesRecomputed() {
+            return batchesRecomputed;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics[queueDepth=" + queueDepth + ", inProgress="
+                    + inProgress + ", lagMillis=" + lagMillis
+                    + ", urisQueued=" + urisQueued + ", urisRecomputed="
+                    + urisRecomputed + ", batchesRecomputed="
+                    + batchesRecomputed + "]";
+        }
+    }
+}
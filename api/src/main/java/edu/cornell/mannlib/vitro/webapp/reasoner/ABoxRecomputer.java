@@ -2,19 +2,27 @@
 
 package edu.cornell.mannlib.vitro.webapp.reasoner;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,8 +37,6 @@ import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFactory;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.NodeIterator;
-import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
@@ -48,6 +54,8 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.reasoner.ABoxTypeCache.TypeList;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 public class ABoxRecomputer {
 
@@ -61,11 +69,16 @@ public class ABoxRecomputer {
     private SimpleReasoner simpleReasoner;
     private Object lock1 = new Object();
     private volatile boolean recomputing = false;
-    private boolean stopRequested = false;
+    private volatile boolean stopRequested = false;
 
     private final int BATCH_SIZE = 500;
     private final int REPORTING_INTERVAL = 1000;
 
+    private int recomputeThreads = 1;
+    private Path checkpointFile = null;
+    private volatile FullRecompute fullRecompute = null;
+    private final ABoxTypeCache typeCache = new ABoxTypeCache();
+
     /**
      * @param tboxModel - input.  This model contains both asserted and inferred TBox axioms
      * @param aboxModel - input.  This model contains asserted ABox statements
@@ -92,6 +105,47 @@ public class ABoxRecomputer {
         return recomputing;
     }
 
+    /**
+     * How many threads recompute individuals during a full recompute. If 1,
+     * the individuals are recomputed on the thread that finds them.
+     */
+    public void setRecomputeThreads(int recomputeThreads) {
+        this.recomputeThreads = Math.max(1, recomputeThreads);
+    }
+
+    /**
+     * During a full recompute, record each class as its individuals are
+     * finished. If the recompute is interrupted, the next one will skip those
+     * classes. The file is deleted when a recompute completes.
+     */
+    public void setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * True if a full recompute was interrupted, and the next one will resume
+     * from its checkpoint.
+     */
+    public boolean hasCheckpoint() {
+        return checkpointFile != null && Files.exists(checkpointFile);
+    }
+
+    /**
+     * The types that go with each set of asserted types. Invalidate it when
+     * the TBox changes.
+     */
+    public ABoxTypeCache getTypeCache() {
+        return typeCache;
+    }
+
+    /**
+     * How far the current full recompute has come, or null if there is none.
+     */
+    public RecomputeProgress getRecomputeProgress() {
+        FullRecompute current = fullRecompute;
+        return (current == null) ? null : current.getProgress();
+    }
+
     /**
      * Recompute all individuals
      */
@@ -111,14 +165,20 @@ public class ABoxRecomputer {
                 searchIndexer.rebuildIndex();
             }
             log.info("Recomputing ABox inferences.");
-            log.info("Finding individuals in ABox.");
-            Queue<String>individualURIs = this.getAllIndividualURIs();
-            log.info("Recomputing inferences for " + individualURIs.size() + " individuals");
-            // Create a type cache for this execution and pass it to the recompute function
-            // Ensures that caches are only valid for the length of one recompute
-            recomputeIndividuals(individualURIs, new TypeCaches());
-            log.info("Finished recomputing inferences");
+            // A full recompute is often requested because the TBox changed
+            // without the reasoner seeing it, so start with an empty cache
+            typeCache.invalidate();
+            fullRecompute = new FullRecompute();
+            if (fullRecompute.run()) {
+                log.info("Finished recomputing inferences: "
+                        + fullRecompute.getProgress() + ". Type cache: "
+                        + typeCache.getStatistics());
+            } else {
+                log.info("Recompute of inferences was stopped: "
+                        + fullRecompute.getProgress());
+            }
         } finally {
+            fullRecompute = null;
             if(searchIndexer != null) {
                 searchIndexer.unpause();
             }
@@ -151,17 +211,19 @@ public class ABoxRecomputer {
      * individual URIs
      */
     private void recomputeIndividuals(Queue<String> individuals) {
-        recomputeIndividuals(individuals, new TypeCaches());
+        recomputeIndividuals(individuals, typeCache);
     }
     
     /*
      * Recompute the ABox inference graph for the specified collection of
-     * individual URIs
+     * individual URIs. Return false if any of them failed, or if a stop was
+     * requested before they were finished.
      */
-    protected void recomputeIndividuals(Queue<String> individuals, TypeCaches caches) {
+    protected boolean recomputeIndividuals(Queue<String> individuals, ABoxTypeCache caches) {
         if (individuals == null) {
-            return;
+            return true;
         }
+        boolean succeeded = true;
         long start = System.currentTimeMillis();
         int size = individuals.size();
         int numInds = 0;
@@ -190,30 +252,32 @@ public class ABoxRecomputer {
                 }
                 if (stopRequested) {
                     log.info("a stopRequested signal was received during recomputeIndividuals. Halting Processing.");
-                    return;
+                    return false;
                 }
             } catch (Exception e) {
                 log.error("Error recomputing inferences for individual <" + individualURI + ">", e);
+                succeeded = false;
             }
         }
         if(additionalInferences.size() > 0) {
             log.debug("Writing additional inferences generated by reasoner plugins.");
             ChangeSet change = rdfService.manufactureChangeSet();
-            change.addAddition(makeN3InputStream(additionalInferences), 
-                    RDFService.ModelSerializationFormat.N3, ModelNames.ABOX_INFERENCES);
+            change.addAddition(additionalInferences, ModelNames.ABOX_INFERENCES);
             try {
                 rdfService.changeSetUpdate(change);
             } catch (RDFServiceException e) {
                 log.error("Unable to write additional inferences from reasoner plugins", e);
+                succeeded = false;
             }
         }
+        return succeeded;
     }
 
     private static final boolean RUN_PLUGINS = true;
     private static final boolean SKIP_PLUGINS = !RUN_PLUGINS;
 
     private Model recomputeIndividual(String individualURI, 
-            Model rebuildModel, TypeCaches caches, Collection<String> individualQueue) 
+            Model rebuildModel, ABoxTypeCache caches, Collection<String> individualQueue) 
                     throws RDFServiceException {
         long start = System.currentTimeMillis();
         Model assertions = getAssertions(individualURI);
@@ -252,7 +316,7 @@ public class ABoxRecomputer {
      *         individuals
      */
     private Model recomputeIndividual(String individualURI, String aliasURI, 
-            Model assertions, Model rebuildModel, TypeCaches caches, boolean runPlugins)
+            Model assertions, Model rebuildModel, ABoxTypeCache caches, boolean runPlugins)
                     throws RDFServiceException {
 
         Model additionalInferences = ModelFactory.createDefaultModel();
@@ -316,23 +380,23 @@ public class ABoxRecomputer {
         return model;
     }
 
-    private Model getInferredTypes(Resource individual, Model assertedTypes, TypeCaches caches) {
+    private Model getInferredTypes(Resource individual, Model assertedTypes, ABoxTypeCache caches) {
         if (caches == null) {
             return getInferredTypes(individual, assertedTypes);
         }
 
         TypeList key = new TypeList(assertedTypes, RDF.type);
+        long generation = caches.getGeneration();
         Model inferredTypes = caches.getInferredTypesToModel(key, individual);
         if (inferredTypes == null) {
             inferredTypes = getInferredTypes(individual, assertedTypes);
-            caches.cacheInferredTypes(key, inferredTypes);
+            caches.cacheInferredTypes(key, inferredTypes, generation);
         }
 
         return inferredTypes;
     }
 
     private Model getInferredTypes(Resource individual, Model assertedTypes) {
-        new TypeList(assertedTypes, RDF.type);
         String queryStr = "CONSTRUCT { \n" +
                 "    <" + individual.getURI() + "> a ?type \n" +
                 "} WHERE { \n" +
@@ -356,16 +420,17 @@ public class ABoxRecomputer {
         }
     }
 
-    private Model getMostSpecificTypes(Resource individual, Model assertedTypes, TypeCaches caches) {
+    private Model getMostSpecificTypes(Resource individual, Model assertedTypes, ABoxTypeCache caches) {
         if (caches == null) {
             return getMostSpecificTypes(individual, assertedTypes);
         }
 
         TypeList key = new TypeList(assertedTypes, RDF.type);
+        long generation = caches.getGeneration();
         Model mostSpecificTypes = caches.getMostSpecificTypesToModel(key, individual);
         if (mostSpecificTypes == null) {
             mostSpecificTypes = getMostSpecificTypes(individual, assertedTypes);
-            caches.cacheMostSpecificTypes(key, mostSpecificTypes);
+            caches.cacheMostSpecificTypes(key, mostSpecificTypes, generation);
         }
         return mostSpecificTypes;
     }
@@ -431,10 +496,9 @@ public class ABoxRecomputer {
     }
 
     /*
-     * Get the URIs for all individuals in the system
+     * Get the URIs of all the classes in the TBox
      */
-    protected Queue<String> getAllIndividualURIs() {
-        Queue<String> individualURIs = new IndividualURIQueue<String>();
+    protected List<String> getClassURIs() {
         List<String> classList = new ArrayList<String>();
         tboxModel.enterCriticalSection(Lock.READ);
         try {
@@ -451,53 +515,42 @@ public class ABoxRecomputer {
         } finally {
             tboxModel.leaveCriticalSection();
         }
-        for (String classURI : classList) {
-            String queryString = "SELECT ?s WHERE { ?s a <" + classURI + "> } ";
-            getIndividualURIs(queryString, individualURIs);
-        }
-        return individualURIs;
+        return classList;
     }
 
-    protected void getIndividualURIs(String queryString, final Queue<String> individuals) {
-        final int batchSize = 50000;
-        int offset = 0;
-        final AtomicBoolean done = new AtomicBoolean(false);
-        while (!done.get()) {
-            String queryStr = queryString + " LIMIT " + batchSize + " OFFSET " + offset;
-            if(log.isDebugEnabled()) {
-                log.debug(queryStr);
-            }
-            try {
-                rdfService.sparqlSelectQuery(queryStr, new ResultSetConsumer() {
-                    private int count = 0;
-
-                    @Override
-                    protected void processQuerySolution(QuerySolution qs) {
-                        count++;
-                        Resource resource = qs.getResource("s");
-
-                        if ((resource != null) && !resource.isAnon()) {
-                            individuals.add(resource.getURI());
-                        }
-                    }
-
-                    @Override
-                    protected void endProcessing() {
-                        super.endProcessing();
+    /*
+     * Get the individuals of this class with a single query, streamed through
+     * a consumer. There is no ORDER BY or DISTINCT, so the store can answer
+     * from its index without sorting the whole class. The caller removes the
+     * duplicates.
+     *
+     * The URIs are collected before any of them are recomputed, so the query
+     * is finished before the inference graph is written.
+     */
+    protected List<String> getIndividualURIs(String classURI) {
+        StringBuilder queryStr = new StringBuilder("SELECT ?s WHERE { \n")
+                .append("    ?s a <").append(classURI).append("> . \n")
+                .append("    FILTER (isURI(?s)) \n")
+                .append("}");
+        if(log.isDebugEnabled()) {
+            log.debug(queryStr);
+        }
 
-                        if (count < batchSize) {
-                            done.set(true);
-                        }
+        final List<String> uris = new ArrayList<String>();
+        try {
+            rdfService.sparqlSelectQuery(queryStr.toString(), new ResultSetConsumer() {
+                @Override
+                protected void processQuerySolution(QuerySolution qs) {
+                    Resource resource = qs.getResource("s");
+                    if ((resource != null) && !resource.isAnon()) {
+                        uris.add(resource.getURI());
                     }
-                });
-            } catch (RDFServiceException e) {
-                throw new RuntimeException(e);
-            }
-            if(log.isDebugEnabled()) {
-                log.debug(individuals.size() + " in set");
-            }
-            offset += batchSize;
+                }
+            });
+        } catch (RDFServiceException e) {
+            throw new RuntimeException(e);
         }
+        return uris;
     }
 
     protected void addInferenceStatementsFor(String individualUri, Model addTo) throws RDFServiceException {
@@ -530,12 +583,10 @@ public class ABoxRecomputer {
             long start = System.currentTimeMillis();
             ChangeSet change = rdfService.manufactureChangeSet();
             if (retractions.size() > 0) {
-                change.addRemoval(makeN3InputStream(retractions),
-                        RDFService.ModelSerializationFormat.N3, ModelNames.ABOX_INFERENCES);
+                change.addRemoval(retractions, ModelNames.ABOX_INFERENCES);
             }
             if (additions.size() > 0) {
-                change.addAddition(makeN3InputStream(additions),
-                        RDFService.ModelSerializationFormat.N3, ModelNames.ABOX_INFERENCES);
+                change.addAddition(additions, ModelNames.ABOX_INFERENCES);
             }
             rdfService.changeSetUpdate(change);
             log.debug((System.currentTimeMillis() - start) +
@@ -544,11 +595,6 @@ public class ABoxRecomputer {
         }
     }
 
-    private InputStream makeN3InputStream(Model m) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        m.write(out, "N3");
-        return new ByteArrayInputStream(out.toByteArray());
-    }
 
     public Set<String> getSameAsIndividuals(String individualURI) {
         HashSet<String> sameAsInds = new HashSet<String>();
@@ -598,112 +644,301 @@ public class ABoxRecomputer {
     }
 
     /**
-     * Caches for types -> inferred types, and types -> most specific type
+     * Recompute all individuals, class by class. Individuals are found a page
+     * at a time, and recomputed in batches by a pool of workers that share the
+     * type caches.
      */
-    private static class TypeCaches {
-        private Map<TypeList, TypeList> inferredTypes     = new HashMap<TypeList, TypeList>();
-        private Map<TypeList, TypeList> mostSpecificTypes = new HashMap<TypeList, TypeList>();
+    private class FullRecompute {
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        private final Set<String> completedClasses;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicLong individualsFound = new AtomicLong();
+        private final AtomicLong individualsRecomputed = new AtomicLong();
+        private final AtomicInteger classesCompleted = new AtomicInteger();
+        private final AtomicInteger classesFailed = new AtomicInteger();
+        private volatile int classCount = 0;
+
+        private ExecutorService pool;
+        private Semaphore outstandingBatches;
+
+        FullRecompute() {
+            this.completedClasses = readCheckpoint();
+            if (!completedClasses.isEmpty()) {
+                log.info("Resuming an interrupted recompute: "
+                        + completedClasses.size() + " classes are already done.");
+            }
+        }
 
-        void cacheInferredTypes(TypeList key, Model model) {
-            inferredTypes.put(key, new TypeList(model, RDF.type));
+        /**
+         * @return true if every class was attempted, false if stopped.
+         */
+        boolean run() {
+            if (recomputeThreads > 1) {
+                pool = Executors.newFixedThreadPool(recomputeThreads,
+                        new VitroBackgroundThread.Factory("ABoxRecomputer_worker"));
+                outstandingBatches = new Semaphore(recomputeThreads * 2);
+            }
+            try {
+                List<String> classURIs = getClassURIs();
+                classCount = classURIs.size();
+                log.info("Recomputing inferences for individuals of " + classCount
+                        + " classes, on " + recomputeThreads + " threads.");
+                for (String classURI : classURIs) {
+                    if (stopRequested) {
+                        break;
+                    }
+                    if (completedClasses.contains(classURI)) {
+                        classesCompleted.incrementAndGet();
+                    } else {
+                        recomputeClass(classURI);
+                    }
+                }
+            } finally {
+                if (pool != null) {
+                    pool.shutdown();
+                    awaitWorkers();
+                }
+            }
+            if (stopRequested) {
+                return false;
+            }
+            if (classesFailed.get() > 0) {
+                log.warn("Inferences for some individuals of "
+                        + classesFailed.get() + " classes were not "
+                        + "recomputed. See the earlier errors. The checkpoint "
+                        + "is kept, so the next recompute will retry them.");
+            } else {
+                deleteCheckpoint();
+            }
+            return true;
         }
 
-        Model getInferredTypesToModel(TypeList key, Resource individual) {
-            TypeList types = inferredTypes.get(key);
-            if (types != null) {
-                return types.constructModel(individual, RDF.type);
+        private void awaitWorkers() {
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.info("Waiting for recompute workers: " + getProgress());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
             }
-            return null;
         }
 
-        void cacheMostSpecificTypes(TypeList key, Model model) {
-            mostSpecificTypes.put(key, new TypeList(model, model.createProperty(VitroVocabulary.MOST_SPECIFIC_TYPE)));
+        private void recomputeClass(String classURI) {
+            // One count for the search itself, one more for each batch.
+            ClassCounter counter = new ClassCounter(classURI);
+            try {
+                List<String> batch = new ArrayList<String>();
+                for (String uri : getIndividualURIs(classURI)) {
+                    if (stopRequested) {
+                        break;
+                    }
+                    if (seen.add(uri)) {
+                        individualsFound.incrementAndGet();
+                        batch.add(uri);
+                        if (batch.size() >= BATCH_SIZE) {
+                            submit(batch, counter);
+                            batch = new ArrayList<String>();
+                        }
+                    }
+                }
+                if (!batch.isEmpty() && !stopRequested) {
+                    submit(batch, counter);
+                }
+            } catch (Exception e) {
+                log.error("Failed to find the individuals of " + classURI, e);
+                counter.fail();
+            } finally {
+                counter.release();
+            }
         }
 
-        Model getMostSpecificTypesToModel(TypeList key, Resource individual) {
-            TypeList types = mostSpecificTypes.get(key);
-            if (types != null) {
-                return types.constructModel(individual, VitroVocabulary.MOST_SPECIFIC_TYPE);
+        private void submit(final List<String> batch, final ClassCounter counter) {
+            counter.acquire();
+            if (pool == null) {
+                recomputeBatch(batch, counter);
+                return;
             }
-            return null;
+            try {
+                outstandingBatches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopRequested = true;
+                counter.release();
+                return;
+            }
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        recomputeBatch(batch, counter);
+                    } finally {
+                        outstandingBatches.release();
+                    }
+                }
+            });
         }
-    }
 
-    /**
-     * Bundle of type URIs
-     */
-    private static class TypeList {
-        private List<String> typeUris = new ArrayList<String>();
+        private void recomputeBatch(List<String> batch, ClassCounter counter) {
+            try {
+                Queue<String> individuals = new IndividualURIQueue<String>();
+                individuals.addAll(batch);
+                if (!recomputeIndividuals(individuals, typeCache)) {
+                    counter.fail();
+                }
+                long done = individualsRecomputed.addAndGet(batch.size());
+                if (done / REPORTING_INTERVAL 
+                        != (done - batch.size()) / REPORTING_INTERVAL) {
+                    log.info("Still recomputing inferences: " + getProgress());
+                }
+            } catch (Exception e) {
+                log.error("Failed to recompute a batch of " + batch.size() 
+                        + " individuals", e);
+                counter.fail();
+            } finally {
+                counter.release();
+            }
+        }
 
-        private Integer hashCode = null;
+        RecomputeProgress getProgress() {
+            return new RecomputeProgress(classCount, classesCompleted.get(),
+                    individualsFound.get(), individualsRecomputed.get(),
+                    System.currentTimeMillis() - startTime);
+        }
 
         /**
-         * Extract type uris - either RDF type or most specific type - from a Model
+         * Counts the outstanding work for a class. When it reaches zero, the
+         * class is finished and goes into the checkpoint, unless some of its
+         * work failed. A resumed recompute will try that class again.
          */
-        TypeList(Model model, Property property) {
-            NodeIterator iterator = model.listObjectsOfProperty(property);
-            while (iterator.hasNext()) {
-                RDFNode node = iterator.next();
-                String uri = node.asResource().getURI();
-                if (!typeUris.contains(uri)) {
-                    typeUris.add(uri);
-                }
+        private class ClassCounter {
+            private final String classURI;
+            private final AtomicInteger outstanding = new AtomicInteger(1);
+            private volatile boolean failed;
+
+            ClassCounter(String classURI) {
+                this.classURI = classURI;
+            }
+
+            void acquire() {
+                outstanding.incrementAndGet();
             }
-        }
 
-        Model constructModel(Resource individual, Property property) {
-            Model model = ModelFactory.createDefaultModel();
-            for (String uri : typeUris) {
-                model.add(individual, property, model.createResource(uri));
+            void fail() {
+                failed = true;
             }
 
-            return model;
+            void release() {
+                if (outstanding.decrementAndGet() == 0 && !stopRequested) {
+                    if (failed) {
+                        classesFailed.incrementAndGet();
+                        log.warn("Some individuals of " + classURI
+                                + " were not recomputed; the class is not "
+                                + "recorded in the checkpoint.");
+                    } else {
+                        classesCompleted.incrementAndGet();
+                        writeCheckpoint(classURI);
+                    }
+                }
+            }
         }
+    }
 
-        Model constructModel(Resource individual, String property) {
-            Model model = ModelFactory.createDefaultModel();
-            for (String uri : typeUris) {
-                model.add(individual, model.createProperty(property), model.createResource(uri));
+    private Set<String> readCheckpoint() {
+        Set<String> classes = new HashSet<String>();
+        if (hasCheckpoint()) {
+            try {
+                for (String line : Files.readAllLines(checkpointFile, UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        classes.add(line.trim());
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read the recompute checkpoint at "
+                        + checkpointFile + "; starting from the beginning.", e);
+                classes.clear();
             }
+        }
+        return classes;
+    }
 
-            return model;
+    private synchronized void writeCheckpoint(String classURI) {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            Files.write(checkpointFile,
+                    Collections.singletonList(classURI), UTF_8, CREATE, APPEND);
+        } catch (IOException e) {
+            log.warn("Failed to write the recompute checkpoint at "
+                    + checkpointFile, e);
         }
+    }
 
-        public void addUri(String uri) {
-            if (!typeUris.contains(uri)) {
-                typeUris.add(uri);
-                hashCode = null;
-            }
+    private synchronized void deleteCheckpoint() {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            log.warn("Failed to delete the recompute checkpoint at "
+                    + checkpointFile, e);
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof TypeList)) {
-                return false;
-            }
+    /**
+     * A snapshot of the progress of a full recompute.
+     */
+    public static class RecomputeProgress {
+        private final int classCount;
+        private final int classesCompleted;
+        private final long individualsFound;
+        private final long individualsRecomputed;
+        private final long elapsedMillis;
 
-            TypeList otherKey = (TypeList)obj;
+        public RecomputeProgress(int classCount, int classesCompleted,
+                long individualsFound, long individualsRecomputed,
+                long elapsedMillis) {
+            this.classCount = classCount;
+            this.classesCompleted = classesCompleted;
+            this.individualsFound = individualsFound;
+            this.individualsRecomputed = individualsRecomputed;
+            this.elapsedMillis = elapsedMillis;
+        }
 
-            if (typeUris.size() != otherKey.typeUris.size()) {
-                return false;
-            }
+        public int getClassCount() {
+            return classCount;
+        }
 
-            return typeUris.containsAll(otherKey.typeUris);
+        public int getClassesCompleted() {
+            return classesCompleted;
         }
 
-        @Override
-        public int hashCode() {
-            if (hashCode == null) {
-                Collections.sort(typeUris);
-                StringBuilder builder = new StringBuilder();
-                for (String key : typeUris) {
-                    builder.append('<').append(key).append('>');
-                }
+        public long getIndividualsFound() {
+            return individualsFound;
+        }
 
-                hashCode = builder.toString().hashCode();
-            }
+        public long getIndividualsRecomputed() {
+            return individualsRecomputed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getIndividualsPerSecond() {
+            return (elapsedMillis == 0) ? 0 
+                    : individualsRecomputed * 1000.0 / elapsedMillis;
+        }
 
-            return hashCode;
+        @Override
+        public String toString() {
+            return classesCompleted + "/" + classCount + " classes, "
+                    + individualsRecomputed + "/" + individualsFound
+                    + " individuals, "
+                    + String.format("%.1f", getIndividualsPerSecond())
+                    + " individuals per second";
         }
     }
 }
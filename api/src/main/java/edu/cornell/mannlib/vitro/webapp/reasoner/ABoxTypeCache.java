@@ -0,0 +1,229 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+
+import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+
+/**
+ * Remembers the inferred types and the most specific types that go with a set
+ * of asserted types. Many individuals have the same asserted types, so this
+ * saves most of the TBox queries when recomputing them.
+ *
+ * The answers depend only on the TBox, so the cache lives as long as the
+ * reasoner, and is shared by all of the threads that recompute individuals.
+ * It must be invalidated when the TBox changes. An answer that was computed
+ * before an invalidation is not stored after it.
+ */
+public class ABoxTypeCache {
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final Property MOST_SPECIFIC_TYPE = ResourceFactory
+            .createProperty(VitroVocabulary.MOST_SPECIFIC_TYPE);
+
+    private final Map<TypeList, TypeList> inferredTypes;
+    private final Map<TypeList, TypeList> mostSpecificTypes;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ABoxTypeCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ABoxTypeCache(int maxEntries) {
+        this.inferredTypes = new LruMap<>(maxEntries);
+        this.mostSpecificTypes = new LruMap<>(maxEntries);
+    }
+
+    /**
+     * Get this before computing an answer, and pass it when storing the
+     * answer.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Discard everything. Call this when the TBox changes.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            inferredTypes.clear();
+            mostSpecificTypes.clear();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    Model getInferredTypesToModel(TypeList key, Resource individual) {
+        TypeList types = lookup(inferredTypes, key);
+        return (types == null) ? null
+                : types.constructModel(individual, RDF.type);
+    }
+
+    void cacheInferredTypes(TypeList key, Model model, long asOfGeneration) {
+        store(inferredTypes, key, new TypeList(model, RDF.type),
+                asOfGeneration);
+    }
+
+    Model getMostSpecificTypesToModel(TypeList key, Resource individual) {
+        TypeList types = lookup(mostSpecificTypes, key);
+        return (types == null) ? null
+                : types.constructModel(individual, MOST_SPECIFIC_TYPE);
+    }
+
+    void cacheMostSpecificTypes(TypeList key, Model model, long asOfGeneration) {
+        store(mostSpecificTypes, key, new TypeList(model, MOST_SPECIFIC_TYPE),
+                asOfGeneration);
+    }
+
+    private synchronized TypeList lookup(Map<TypeList, TypeList> map,
+            TypeList key) {
+        TypeList types = map.get(key);
+        if (types == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return types;
+    }
+
+    private synchronized void store(Map<TypeList, TypeList> map, TypeList key,
+            TypeList types, long asOfGeneration) {
+        if (asOfGeneration == generation.get()) {
+            map.put(key, types);
+        }
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(inferredTypes.size() + mostSpecificTypes.size(),
+                hits.get(), misses.get(), invalidations.get());
+    }
+
+    // ----------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------
+
+    /**
+     * Bundle of type URIs. Immutable, so it may be shared among threads.
+     */
+    static class TypeList {
+        private final List<String> typeUris;
+        private final int hashCode;
+
+        /**
+         * Extract type uris - either RDF type or most specific type - from a Model
+         */
+        TypeList(Model model, Property property) {
+            List<String> uris = new ArrayList<String>();
+            NodeIterator iterator = model.listObjectsOfProperty(property);
+            while (iterator.hasNext()) {
+                RDFNode node = iterator.next();
+                String uri = node.asResource().getURI();
+                if (!uris.contains(uri)) {
+                    uris.add(uri);
+                }
+            }
+            Collections.sort(uris);
+            this.typeUris = Collections.unmodifiableList(uris);
+            this.hashCode = typeUris.hashCode();
+        }
+
+        Model constructModel(Resource individual, Property property) {
+            Model model = ModelFactory.createDefaultModel();
+            for (String uri : typeUris) {
+                model.add(individual, property, model.createResource(uri));
+            }
+            return model;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TypeList)) {
+                return false;
+            }
+            return typeUris.equals(((TypeList) obj).typeUris);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    public static class Statistics {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long invalidations;
+
+        public Statistics(int size, long hits, long misses,
+                long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+        }
+
+        /** How many answers are held, of both kinds. */
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return (lookups == 0) ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics[size=" + size + ", hits=" + hits + ", misses="
+                    + misses + ", hitRate="
+                    + String.format("%.2f", getHitRate()) + ", invalidations="
+                    + invalidations + "]";
+        }
+    }
+}
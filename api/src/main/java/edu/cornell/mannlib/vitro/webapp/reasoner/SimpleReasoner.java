@@ -2,6 +2,7 @@
 
 package edu.cornell.mannlib.vitro.webapp.reasoner;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -45,8 +46,8 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.adapters.VitroModelFactory;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+import edu.cornell.mannlib.vitro.webapp.reasoner.ABoxRecomputer.RecomputeProgress;
 
 /**
  * Allows for real-time incremental materialization or retraction of RDFS-
@@ -77,6 +78,7 @@ public class SimpleReasoner extends StatementListener
 	private ABoxRecomputer recomputer = null;
 	private List<ReasonerPlugin> pluginList = new CopyOnWriteArrayList<ReasonerPlugin>();   
     private boolean doSameAs = true;
+    private volatile ABoxReasoningQueue reasoningQueue = null;
 
 	/**
 	 * @param tboxModel - input.  This model contains both asserted and inferred TBox axioms
@@ -162,6 +164,40 @@ public class SimpleReasoner extends StatementListener
     public boolean getSameAsEnabled() {
         return this.doSameAs;
     }
+
+    /**
+     * Instead of recomputing inferences on the thread that made the change,
+     * queue the affected individuals and recompute them in batches on
+     * background threads.
+     */
+    public synchronized void enableAsynchronousABoxReasoning(int workerThreads, 
+            int batchSize) {
+        if (reasoningQueue == null) {
+            reasoningQueue = new ABoxReasoningQueue(
+                    uris -> recomputer.recompute(uris), workerThreads, batchSize);
+            log.info("ABox reasoning is asynchronous, with " + workerThreads 
+                    + " worker threads.");
+        }
+    }
+
+    /**
+     * The queue of individuals waiting for asynchronous reasoning, or null if 
+     * reasoning is synchronous.
+     */
+    public ABoxReasoningQueue getABoxReasoningQueue() {
+        return reasoningQueue;
+    }
+
+    /**
+     * Wait until there are no individuals waiting for asynchronous reasoning. 
+     * Returns immediately if reasoning is synchronous.
+     * 
+     * @return false if the time ran out first.
+     */
+    public boolean waitUntilQuiescent(long timeoutMillis) {
+        ABoxReasoningQueue queue = reasoningQueue;
+        return (queue == null) || queue.waitUntilQuiescent(timeoutMillis);
+    }
   
     public void notifyModelChange(ModelChange modelChange) {
         if(isABoxInferenceGraph(modelChange.getGraphURI()) 
@@ -169,8 +205,7 @@ public class SimpleReasoner extends StatementListener
             return;
         }
         Queue<String> individualURIs = new IndividualURIQueue<String>();
-        Model m = RDFServiceUtils.parseModel(modelChange.getSerializedModel(), 
-                modelChange.getSerializationFormat());
+        Model m = modelChange.getModel();
         StmtIterator sit = m.listStatements();
         while(sit.hasNext()) {
             queueRelevantIndividuals(sit.nextStatement(), individualURIs);
@@ -226,6 +261,11 @@ public class SimpleReasoner extends StatementListener
     }
 
     private void recomputeIndividuals(Queue<String> individualURIs) {
+        ABoxReasoningQueue queue = reasoningQueue;
+        if (queue != null) {
+            queue.enqueue(individualURIs);
+            return;
+        }
         long start = System.currentTimeMillis();
         int size = individualURIs.size();
         recomputer.recompute(individualURIs);
@@ -1099,22 +1139,78 @@ public class SimpleReasoner extends StatementListener
 		    recomputer.recompute();
 		}
 	}
+
+	/**
+	 * How many threads recompute individuals during a full recompute.
+	 */
+	public void setRecomputeThreads(int recomputeThreads) {
+		if (recomputer != null) {
+		    recomputer.setRecomputeThreads(recomputeThreads);
+		}
+	}
+
+	/**
+	 * Where a full recompute records its progress, so it can resume if it is
+	 * interrupted.
+	 */
+	public void setRecomputeCheckpointFile(Path checkpointFile) {
+		if (recomputer != null) {
+		    recomputer.setCheckpointFile(checkpointFile);
+		}
+	}
+
+	/**
+	 * True if a full recompute was interrupted before it finished.
+	 */
+	public boolean isRecomputeInterrupted() {
+		return (recomputer != null) && recomputer.hasCheckpoint();
+	}
+
+	/**
+	 * Forget the types that were computed for each set of asserted types. 
+	 * Called when the TBox changes.
+	 */
+	public void invalidateTypeCache() {
+		if (recomputer != null) {
+		    recomputer.getTypeCache().invalidate();
+		}
+	}
+
+	/**
+	 * Hits, misses and size of the type cache, or null if there is none.
+	 */
+	public ABoxTypeCache.Statistics getTypeCacheStatistics() {
+		return (recomputer == null) ? null 
+		        : recomputer.getTypeCache().getStatistics();
+	}
+
+	/**
+	 * How far the current full recompute has come, or null if there is none.
+	 */
+	public RecomputeProgress getRecomputeProgress() {
+		return (recomputer == null) ? null : recomputer.getRecomputeProgress();
+	}
 	
 	/**
 	 * This is called when the application shuts down.
 	 */
 	public void setStopRequested() {
+	    ABoxReasoningQueue queue = reasoningQueue;
+	    if (queue != null) {
+	        queue.shutdown();
+	    }
 	    if (recomputer != null) {
 	    	recomputer.setStopRequested();
 	    }
 	}
 	  
 	/**
-	 * Asynchronous reasoning mode (DeltaComputer) no longer used 
-	 * in the case of batch removals. 
+	 * True if some individuals are still waiting for asynchronous reasoning, 
+	 * so the inferences may not be complete. 
 	 */
 	public boolean isABoxReasoningAsynchronous() {
-         return false;
+	    ABoxReasoningQueue queue = reasoningQueue;
+	    return (queue != null) && !queue.isQuiescent();
 	}
 	
     boolean isABoxInferenceGraph(String graphURI) {
@@ -62,6 +62,11 @@ public class SimpleReasonerTBoxListener extends StatementListener {
 	}
 	
 	private synchronized void processUpdate(ModelUpdate mu) {
+		// The cached types may depend on this statement. Forget them now,
+		// rather than when the update is processed, so no individual is 
+		// recomputed from stale types in the meantime.
+		simpleReasoner.invalidateTypeCache();
+
 		if (!processingUpdates && (modelUpdates.peek() != null)) {
 			log.warn("TBoxProcessor thread was not running and work queue is not empty. size = " + modelUpdates.size() + " The work will be processed now.");
 		}
@@ -28,6 +28,8 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Res
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.CommitStatistics;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.FlushStatistics;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.RebuildCounts;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.StatementCounts;
@@ -56,15 +58,18 @@ public class IndexController extends FreemarkerHttpServlet {
 	 * DISPLAY (default) -- Send the template that will contain the status display. 
 	 * STATUS  -- Send the current status and history.
 	 * REBUILD -- Initiate a rebuild. Then act like DISPLAY.
+	 * OPTIMIZE -- Initiate an optimize. Then act like DISPLAY.
 	 * </pre>
 	 */
 	private enum RequestType {
-		DISPLAY, STATUS, REBUILD;
+		DISPLAY, STATUS, REBUILD, OPTIMIZE;
 
 		/** What type of request is this? */
 		static RequestType fromRequest(HttpServletRequest req) {
 			if (hasParameter(req, "rebuild")) {
 				return REBUILD;
+			} else if (hasParameter(req, "optimize")) {
+				return OPTIMIZE;
 			} else if (hasParameter(req, "status")) {
 				return STATUS;
 			} else {
@@ -137,6 +142,9 @@ public class IndexController extends FreemarkerHttpServlet {
 				Thread.currentThread().interrupt();
 			}
 			return new RedirectResponseValues(PAGE_URL);
+		case OPTIMIZE:
+			indexer.optimizeIndex();
+			return new RedirectResponseValues(PAGE_URL);
 		default:
 			return showDisplay();
 		}
@@ -146,6 +154,8 @@ public class IndexController extends FreemarkerHttpServlet {
 		HashMap<String, Object> body = new HashMap<>();
 		body.put("statusUrl", UrlBuilder.getUrl(PAGE_URL, "status", "true"));
 		body.put("rebuildUrl", UrlBuilder.getUrl(PAGE_URL, "rebuild", "true"));
+		body.put("optimizeUrl",
+				UrlBuilder.getUrl(PAGE_URL, "optimize", "true"));
 		return new TemplateResponseValues(PAGE_TEMPLATE_NAME, body);
 	}
 
@@ -163,6 +173,8 @@ public class IndexController extends FreemarkerHttpServlet {
 			body.put("statusUrl", UrlBuilder.getUrl(PAGE_URL, "status", "true"));
 			body.put("rebuildUrl",
 					UrlBuilder.getUrl(PAGE_URL, "rebuild", "true"));
+			body.put("optimizeUrl",
+					UrlBuilder.getUrl(PAGE_URL, "optimize", "true"));
 			body.put("status", buildStatusMap(indexer.getStatus()));
 			if (history != null) {
 				body.put("history", history.toMaps());
@@ -213,10 +225,45 @@ public class IndexController extends FreemarkerHttpServlet {
 			RebuildCounts counts = status.getCounts().asRebuildCounts();
 			map.put("documentsBefore", counts.getDocumentsBefore());
 			map.put("documentsAfter", counts.getDocumentsAfter());
+			map.put("urisFound", counts.getUrisFound());
+			map.put("individualsLoaded", counts.getIndividualsLoaded());
+			map.put("excluded", counts.getExcluded());
+			map.put("documentsBuilt", counts.getDocumentsBuilt());
+			map.put("documentsSubmitted", counts.getDocumentsSubmitted());
+			map.put("elapsed", breakDownElapsedTime(status.getSince()));
+			map.put("findRate",
+					figureRatePerSecond(status.getSince(), counts.getUrisFound()));
+			map.put("loadRate",
+					figureRatePerSecond(status.getSince(),
+							counts.getIndividualsLoaded()));
+			map.put("buildRate",
+					figureRatePerSecond(status.getSince(),
+							counts.getDocumentsBuilt()));
+			map.put("submitRate",
+					figureRatePerSecond(status.getSince(),
+							counts.getDocumentsSubmitted()));
 		} else {
 			// nothing for IDLE or SHUTDOWN, except what's already there.
 		}
 
+		FlushStatistics flushes = status.getFlushStatistics();
+		map.put("flushCount", flushes.getFlushCount());
+		map.put("failedFlushCount", flushes.getFailedFlushCount());
+		map.put("flushedAdds", flushes.getDocumentsAdded());
+		map.put("flushedDeletes", flushes.getDocumentsDeleted());
+		map.put("averageFlushMillis", flushes.getAverageFlushMillis());
+		map.put("maxFlushMillis", flushes.getMaxFlushMillis());
+		map.put("lastFlushMillis", flushes.getLastFlushMillis());
+
+		CommitStatistics commits = status.getCommitStatistics();
+		map.put("softCommitCount", commits.getSoftCommitCount());
+		map.put("lastSoftCommitMillis", commits.getLastSoftCommitMillis());
+		map.put("hardCommitCount", commits.getHardCommitCount());
+		map.put("lastHardCommitMillis", commits.getLastHardCommitMillis());
+		map.put("optimizeCount", commits.getOptimizeCount());
+		map.put("lastOptimizeMillis", commits.getLastOptimizeMillis());
+		map.put("commitFailureCount", commits.getFailureCount());
+
 		return map;
 	}
 
@@ -239,6 +286,14 @@ public class IndexController extends FreemarkerHttpServlet {
 		return new Date(expectedDuration + startTime.getTime());
 	}
 
+	private long figureRatePerSecond(Date startTime, long completedCount) {
+		long elapsedMillis = new Date().getTime() - startTime.getTime();
+		if (elapsedMillis <= 0) {
+			return 0;
+		}
+		return completedCount * 1000L / elapsedMillis;
+	}
+
 	private int[] breakDownElapsedTime(Date since) {
 		long elapsedMillis = new Date().getTime() - since.getTime();
 		long seconds = (elapsedMillis / 1000L) % 60L;
@@ -100,6 +100,11 @@ public class IndexHistory implements SearchIndexer.Listener {
 	private void addCounts(RebuildCounts counts, Map<String, Object> map) {
 		map.put("documentsBefore", counts.getDocumentsBefore());
 		map.put("documentsAfter", counts.getDocumentsAfter());
+		map.put("urisFound", counts.getUrisFound());
+		map.put("individualsLoaded", counts.getIndividualsLoaded());
+		map.put("excluded", counts.getExcluded());
+		map.put("documentsBuilt", counts.getDocumentsBuilt());
+		map.put("documentsSubmitted", counts.getDocumentsSubmitted());
 	}
 
 }
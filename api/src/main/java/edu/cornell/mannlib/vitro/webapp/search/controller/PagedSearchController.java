@@ -11,6 +11,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -196,19 +197,7 @@ public class PagedSearchController extends FreemarkerHttpServlet {
                 return doNoHits(queryText,format, vreq);
             }            
             
-            List<Individual> individuals = new ArrayList<Individual>(docs.size());
-            for (SearchResultDocument doc : docs) {
-                try {
-                    String uri = doc.getStringValue(VitroSearchTermNames.URI);
-                    Individual ind = iDao.getIndividualByURI(uri);
-                    if (ind != null) {
-                        ind.setSearchSnippet(getSnippet(doc, response));
-                        individuals.add(ind);
-                    }
-                } catch (Exception e) {
-                    log.error("Problem getting usable individuals from search hits. ", e);
-                }
-            }          
+            List<Individual> individuals = getIndividuals(iDao, docs, response);
   
             ParamMap pagingLinkParams = new ParamMap();
             pagingLinkParams.put(PARAM_QUERY_TEXT, queryText);
@@ -449,6 +438,47 @@ public class PagedSearchController extends FreemarkerHttpServlet {
         return typesInHits;
     }
     
+    /**
+     * Load all of the hits at once, rather than one query at a time. If that
+     * fails, load them one at a time, so one bad hit doesn't cost the whole
+     * page.
+     */
+    private List<Individual> getIndividuals(IndividualDao iDao,
+            SearchResultDocumentList docs, SearchResponse response) {
+        Map<String, SearchResultDocument> docsByUri = new LinkedHashMap<String, SearchResultDocument>();
+        for (SearchResultDocument doc : docs) {
+            docsByUri.put(doc.getStringValue(VitroSearchTermNames.URI), doc);
+        }
+        List<Individual> individuals = new ArrayList<Individual>(docs.size());
+        try {
+            for (Individual ind : iDao.getIndividualsByURIs(docsByUri.keySet())) {
+                try {
+                    ind.setSearchSnippet(getSnippet(docsByUri.get(ind.getURI()), response));
+                    individuals.add(ind);
+                } catch (Exception e) {
+                    log.error("Problem getting usable individuals from search hits. ", e);
+                }
+            }
+            return individuals;
+        } catch (Exception e) {
+            log.warn("Failed to load the search hits at once; loading them one at a time.", e);
+        }
+
+        individuals.clear();
+        for (SearchResultDocument doc : docsByUri.values()) {
+            try {
+                Individual ind = iDao.getIndividualByURI(doc.getStringValue(VitroSearchTermNames.URI));
+                if (ind != null) {
+                    ind.setSearchSnippet(getSnippet(doc, response));
+                    individuals.add(ind);
+                }
+            } catch (Exception e) {
+                log.error("Problem getting usable individuals from search hits. ", e);
+            }
+        }
+        return individuals;
+    }
+
     private String getSnippet(SearchResultDocument doc, SearchResponse response) {
         String docId = doc.getStringValue(VitroSearchTermNames.DOCID);
         StringBuilder text = new StringBuilder();
@@ -151,6 +151,18 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		innerEngine.commit(wait);
 	}
 
+	@Override
+	public void softCommit() throws SearchEngineException {
+		confirmActive();
+		innerEngine.softCommit();
+	}
+
+	@Override
+	public void optimize() throws SearchEngineException {
+		confirmActive();
+		innerEngine.optimize();
+	}
+
 	@Override
 	public void deleteById(String... ids) throws SearchEngineException {
 		try (SearchEngineLogger l = SearchEngineLogger.doDeleteById(ids)) {
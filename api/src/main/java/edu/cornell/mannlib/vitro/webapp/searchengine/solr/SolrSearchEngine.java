@@ -111,7 +111,6 @@ public class SolrSearchEngine implements SearchEngine {
 	public void commit() throws SearchEngineException {
 		try {
 			updateEngine.commit();
-			updateEngine.optimize();
 		} catch (SolrServerException | IOException e) {
 			throw appropriateException("Failed to commit to Solr server.", e);
 		}
@@ -121,12 +120,30 @@ public class SolrSearchEngine implements SearchEngine {
 	public void commit(boolean wait) throws SearchEngineException {
 		try {
 			updateEngine.commit(wait, wait);
-			updateEngine.optimize(wait, wait);
 		} catch (SolrServerException | IOException e) {
 			throw appropriateException("Failed to commit to Solr server.", e);
 		}
 	}
 
+	@Override
+	public void softCommit() throws SearchEngineException {
+		try {
+			updateEngine.commit(true, true, true);
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException(
+					"Failed to soft commit to Solr server.", e);
+		}
+	}
+
+	@Override
+	public void optimize() throws SearchEngineException {
+		try {
+			updateEngine.optimize();
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException("Failed to optimize Solr server.", e);
+		}
+	}
+
 	@Override
 	public void deleteById(String... ids) throws SearchEngineException {
 		deleteById(Arrays.asList(ids));
@@ -0,0 +1,332 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.DOCID;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Predicate;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputField;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.FlushStatistics;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Collects documents to be added to the search engine, and IDs of documents to
+ * be deleted from it. Sends them to the search engine in batches, rather than
+ * one request per document.
+ *
+ * A batch is flushed when it holds the maximum number of documents, when the
+ * estimated size of its documents reaches the maximum number of bytes, or when
+ * the oldest entry in the batch has waited for the maximum time. A batch may
+ * also be flushed on request, as when a task completes.
+ *
+ * An add and a delete for the same document cancel each other, so the order
+ * of operations within a batch doesn't matter. A batch is swapped out and sent
+ * under a single lock, so the batches reach the search engine in the order
+ * they were filled: a delete can't overtake an earlier add of the same
+ * document.
+ *
+ * Errors from the search engine are logged, not thrown. That is how the work
+ * units have always handled them.
+ */
+public class SearchEngineBatcher {
+	private static final Log log = LogFactory.getLog(SearchEngineBatcher.class);
+
+	private final SearchEngine searchEngine;
+	private final int maxDocuments;
+	private final long maxBytes;
+	private final long maxMillis;
+
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * A batch is swapped out and sent while holding this lock, so the batches
+	 * reach the search engine in order. Acquire it before the batcher's own
+	 * lock, never after.
+	 */
+	private final Object flushLock = new Object();
+
+	private Batch current = new Batch();
+
+	private int flushCount;
+	private int documentsAdded;
+	private int documentsDeleted;
+	private int failedFlushCount;
+	private long totalFlushMillis;
+	private long maxFlushMillis;
+	private long lastFlushMillis;
+
+	public SearchEngineBatcher(SearchEngine searchEngine, int maxDocuments,
+			long maxBytes, long maxMillis) {
+		this.searchEngine = searchEngine;
+		this.maxDocuments = maxDocuments;
+		this.maxBytes = maxBytes;
+		this.maxMillis = maxMillis;
+
+		this.timer = Executors
+				.newSingleThreadScheduledExecutor(new VitroBackgroundThread.Factory(
+						"SearchIndexer_BatchTimer"));
+		long interval = Math.max(1L, maxMillis / 2);
+		this.timer.scheduleWithFixedDelay(this::flushIfExpired, interval,
+				interval, MILLISECONDS);
+	}
+
+	/**
+	 * Queue a document to be added. If there is no DOCID, it can't be batched
+	 * with deletions, so send it right away, after anything already queued.
+	 */
+	public void add(SearchInputDocument doc) {
+		String id = getId(doc);
+		if (id == null) {
+			log.warn("Document has no " + DOCID + "; adding it unbatched.");
+			synchronized (flushLock) {
+				flushCurrent(batch -> true);
+				send(Batch.singleton(doc));
+			}
+			return;
+		}
+
+		boolean full;
+		synchronized (this) {
+			current.add(id, doc, estimateSize(doc));
+			full = isFull(current);
+		}
+		if (full) {
+			flushCurrent(this::isFull);
+		}
+	}
+
+	/**
+	 * Queue a document to be deleted.
+	 */
+	public void delete(String id) {
+		boolean full;
+		synchronized (this) {
+			current.delete(id);
+			full = isFull(current);
+		}
+		if (full) {
+			flushCurrent(this::isFull);
+		}
+	}
+
+	/**
+	 * Send anything that has been queued. Return when it has been sent.
+	 */
+	public void flush() {
+		flushCurrent(batch -> true);
+	}
+
+	/**
+	 * Stop the timer, and send anything that has been queued.
+	 */
+	public void shutdown() {
+		timer.shutdown();
+		flush();
+	}
+
+	public synchronized FlushStatistics getStatistics() {
+		return new FlushStatistics(flushCount, failedFlushCount,
+				documentsAdded, documentsDeleted, totalFlushMillis,
+				maxFlushMillis, lastFlushMillis);
+	}
+
+	private void flushIfExpired() {
+		flushCurrent(batch -> !batch.isEmpty() && batch.age() >= maxMillis);
+	}
+
+	private boolean isFull(Batch batch) {
+		return batch.size() >= maxDocuments || batch.bytes() >= maxBytes;
+	}
+
+	/**
+	 * If the current batch satisfies the condition, swap it out and send it.
+	 * 
+	 * The swap and the send are both done while holding the flush lock, so the
+	 * batches are sent in the order they were swapped out. Other threads may
+	 * continue to fill the new batch while this one is being sent.
+	 */
+	private void flushCurrent(Predicate<Batch> condition) {
+		synchronized (flushLock) {
+			Batch batch;
+			synchronized (this) {
+				if (!condition.test(current)) {
+					return;
+				}
+				batch = current;
+				current = new Batch();
+			}
+			send(batch);
+		}
+	}
+
+	/** Call only while holding the flush lock. */
+	private void send(Batch batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+		boolean success = true;
+		if (!batch.deletes.isEmpty()) {
+			success &= sendDeletes(batch);
+		}
+		if (!batch.adds.isEmpty()) {
+			success &= sendAdds(batch);
+		}
+		recordFlush(batch, success, System.currentTimeMillis() - startTime);
+	}
+
+	private boolean sendDeletes(Batch batch) {
+		try {
+			searchEngine.deleteById(new ArrayList<>(batch.deletes));
+			log.debug("deleted " + batch.deletes.size()
+					+ " documents from the search index.");
+			return true;
+		} catch (SearchEngineNotRespondingException e) {
+			log.warn("Failed to delete " + batch.deletes.size()
+					+ " documents from the search index: "
+					+ "the search engine is not responding.");
+		} catch (Exception e) {
+			log.warn("Failed to delete " + batch.deletes.size()
+					+ " documents from the search index: " + batch.deletes, e);
+		}
+		return false;
+	}
+
+	private boolean sendAdds(Batch batch) {
+		try {
+			searchEngine.add(new ArrayList<>(batch.adds.values()));
+			log.debug("added " + batch.adds.size()
+					+ " documents to the search index.");
+			return true;
+		} catch (SearchEngineNotRespondingException e) {
+			log.warn("Failed to add " + batch.adds.size()
+					+ " documents to the search index: "
+					+ "the search engine is not responding.");
+		} catch (Exception e) {
+			log.warn("Failed to add " + batch.adds.size()
+					+ " documents to the search index: "
+					+ batch.adds.keySet(), e);
+		}
+		return false;
+	}
+
+	private synchronized void recordFlush(Batch batch, boolean success,
+			long elapsed) {
+		flushCount++;
+		if (success) {
+			documentsAdded += batch.adds.size();
+			documentsDeleted += batch.deletes.size();
+		} else {
+			failedFlushCount++;
+		}
+		totalFlushMillis += elapsed;
+		maxFlushMillis = Math.max(maxFlushMillis, elapsed);
+		lastFlushMillis = elapsed;
+	}
+
+	private static String getId(SearchInputDocument doc) {
+		SearchInputField field = doc.getField(DOCID);
+		if (field == null) {
+			return null;
+		}
+		Object value = field.getFirstValue();
+		return (value == null) ? null : String.valueOf(value);
+	}
+
+	/**
+	 * A rough estimate of the size of the document: the number of characters
+	 * in the field names and values.
+	 */
+	private static long estimateSize(SearchInputDocument doc) {
+		long size = 0;
+		for (SearchInputField field : doc.getFieldMap().values()) {
+			size += field.getName().length();
+			for (Object value : field.getValues()) {
+				size += String.valueOf(value).length();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchEngineBatcher[maxDocuments=" + maxDocuments
+				+ ", maxBytes=" + maxBytes + ", maxMillis=" + maxMillis + "]";
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * The documents to add and the IDs to delete. Not thread-safe: access it
+	 * only while synchronized on the batcher, or after it has been swapped out.
+	 */
+	private static class Batch {
+		static Batch singleton(SearchInputDocument doc) {
+			Batch batch = new Batch();
+			batch.adds.put("", doc);
+			return batch;
+		}
+
+		private final Map<String, SearchInputDocument> adds = new LinkedHashMap<>();
+		private final Set<String> deletes = new LinkedHashSet<>();
+		private final Map<String, Long> sizes = new LinkedHashMap<>();
+		private long bytes;
+		private long createdAt;
+
+		void add(String id, SearchInputDocument doc, long size) {
+			deletes.remove(id);
+			adds.put(id, doc);
+			Long previous = sizes.put(id, size);
+			bytes += size - ((previous == null) ? 0 : previous);
+			noteCreation();
+		}
+
+		void delete(String id) {
+			if (adds.remove(id) != null) {
+				bytes -= sizes.remove(id);
+			}
+			deletes.add(id);
+			noteCreation();
+		}
+
+		private void noteCreation() {
+			if (createdAt == 0) {
+				createdAt = System.currentTimeMillis();
+			}
+		}
+
+		boolean isEmpty() {
+			return adds.isEmpty() && deletes.isEmpty();
+		}
+
+		int size() {
+			return adds.size() + deletes.size();
+		}
+
+		long bytes() {
+			return bytes;
+		}
+
+		long age() {
+			return System.currentTimeMillis() - createdAt;
+		}
+	}
+}
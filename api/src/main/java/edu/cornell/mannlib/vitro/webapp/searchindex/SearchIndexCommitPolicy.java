@@ -0,0 +1,231 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.CommitStatistics;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Decides when the search index should be committed, and when it should be
+ * optimized.
+ *
+ * After an incremental update, a soft commit makes the changes visible to the
+ * search, without the cost of writing them to durable storage. (This may be
+ * turned off, in which case the changes become visible according to the search
+ * engine's own configuration.)
+ *
+ * If there have been changes since the last hard commit, a hard commit is done
+ * on a schedule. A hard commit is also done at the end of a rebuild, and at
+ * shutdown.
+ *
+ * The index is optimized only at the end of a rebuild, or when an
+ * administrator requests it. Optimizing a large index is expensive.
+ *
+ * Each commit and optimize is timed, and the statistics are available for the
+ * SearchIndexerStatus.
+ */
+public class SearchIndexCommitPolicy {
+	private static final Log log = LogFactory
+			.getLog(SearchIndexCommitPolicy.class);
+
+	private final SearchEngine searchEngine;
+	private final boolean softCommitAfterUpdates;
+	private final long hardCommitIntervalMillis;
+
+	private final ScheduledExecutorService scheduler;
+
+	/** Have there been changes since the last hard commit? */
+	private final AtomicBoolean uncommittedChanges = new AtomicBoolean();
+
+	private final Timings softCommits = new Timings();
+	private final Timings hardCommits = new Timings();
+	private final Timings optimizes = new Timings();
+
+	/**
+	 * @param hardCommitIntervalMillis
+	 *            if not positive, there are no scheduled hard commits.
+	 */
+	public SearchIndexCommitPolicy(SearchEngine searchEngine,
+			boolean softCommitAfterUpdates, long hardCommitIntervalMillis) {
+		this.searchEngine = searchEngine;
+		this.softCommitAfterUpdates = softCommitAfterUpdates;
+		this.hardCommitIntervalMillis = hardCommitIntervalMillis;
+
+		this.scheduler = Executors
+				.newSingleThreadScheduledExecutor(new VitroBackgroundThread.Factory(
+						"SearchIndexer_CommitPolicy"));
+		if (hardCommitIntervalMillis > 0) {
+			this.scheduler.scheduleWithFixedDelay(this::scheduledHardCommit,
+					hardCommitIntervalMillis, hardCommitIntervalMillis,
+					MILLISECONDS);
+		}
+	}
+
+	/**
+	 * An incremental update has been sent to the search engine.
+	 *
+	 * @return true if the update is known to be visible to searches: that is,
+	 *         if a soft commit was done and it succeeded.
+	 */
+	public boolean updatesCompleted() {
+		uncommittedChanges.set(true);
+		if (softCommitAfterUpdates) {
+			return softCommit();
+		}
+		return false;
+	}
+
+	/**
+	 * A rebuild has been sent to the search engine. Commit it and optimize it.
+	 */
+	public void rebuildCompleted() {
+		hardCommit();
+		optimize();
+	}
+
+	/**
+	 * An administrator has asked for the index to be optimized. Do it on the
+	 * scheduler thread, so the request doesn't wait for it.
+	 */
+	public void requestOptimize() {
+		try {
+			scheduler.execute(() -> {
+				hardCommit();
+				optimize();
+			});
+		} catch (RejectedExecutionException e) {
+			log.warn("Optimize request was rejected: shutting down.");
+		}
+	}
+
+	/**
+	 * Stop the scheduler. If there are uncommitted changes, commit them.
+	 */
+	public void shutdown() {
+		scheduler.shutdown();
+		try {
+			if (!scheduler.awaitTermination(1, MINUTES)) {
+				log.warn("Commit policy scheduler did not shut down "
+						+ "within 1 minute.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (uncommittedChanges.get()) {
+			hardCommit();
+		}
+	}
+
+	public CommitStatistics getStatistics() {
+		return new CommitStatistics(softCommits.count(),
+				softCommits.lastMillis(), hardCommits.count(),
+				hardCommits.lastMillis(), optimizes.count(),
+				optimizes.lastMillis(), softCommits.failures()
+						+ hardCommits.failures() + optimizes.failures());
+	}
+
+	private void scheduledHardCommit() {
+		if (uncommittedChanges.get()) {
+			hardCommit();
+		}
+	}
+
+	private boolean softCommit() {
+		long startTime = System.currentTimeMillis();
+		try {
+			searchEngine.softCommit();
+			softCommits.record(System.currentTimeMillis() - startTime);
+			return true;
+		} catch (SearchEngineException e) {
+			softCommits.recordFailure();
+			warn("soft commit", e);
+			return false;
+		}
+	}
+
+	private void hardCommit() {
+		uncommittedChanges.set(false);
+		long startTime = System.currentTimeMillis();
+		try {
+			searchEngine.commit();
+			hardCommits.record(System.currentTimeMillis() - startTime);
+		} catch (SearchEngineException e) {
+			uncommittedChanges.set(true);
+			hardCommits.recordFailure();
+			warn("commit", e);
+		}
+	}
+
+	private void optimize() {
+		long startTime = System.currentTimeMillis();
+		try {
+			searchEngine.optimize();
+			optimizes.record(System.currentTimeMillis() - startTime);
+		} catch (SearchEngineException e) {
+			optimizes.recordFailure();
+			warn("optimize", e);
+		}
+	}
+
+	private void warn(String operation, SearchEngineException e) {
+		if (e instanceof SearchEngineNotRespondingException) {
+			log.warn("Failed to " + operation + " the search index: "
+					+ "the search engine is not responding.");
+		} else {
+			log.warn("Failed to " + operation + " the search index.", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SearchIndexCommitPolicy[softCommitAfterUpdates="
+				+ softCommitAfterUpdates + ", hardCommitIntervalMillis="
+				+ hardCommitIntervalMillis + "]";
+	}
+
+	/**
+	 * Counts and timings for one kind of operation. All methods are
+	 * synchronized.
+	 */
+	private static class Timings {
+		private int count;
+		private int failures;
+		private long lastMillis;
+
+		synchronized void record(long elapsed) {
+			count++;
+			lastMillis = elapsed;
+			log.debug("completed in " + elapsed + "ms");
+		}
+
+		synchronized void recordFailure() {
+			failures++;
+		}
+
+		synchronized int count() {
+			return count;
+		}
+
+		synchronized int failures() {
+			return failures;
+		}
+
+		synchronized long lastMillis() {
+			return lastMillis;
+		}
+	}
+}
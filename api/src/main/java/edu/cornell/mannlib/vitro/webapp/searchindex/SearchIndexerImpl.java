@@ -23,6 +23,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -86,12 +87,26 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.Work
 public class SearchIndexerImpl implements SearchIndexer {
 	private static final Log log = LogFactory.getLog(SearchIndexerImpl.class);
 
+	private static final int DEFAULT_REBUILD_PAGE_SIZE = 500;
+	private static final int DEFAULT_BATCH_MAX_DOCUMENTS = 100;
+	private static final long DEFAULT_BATCH_MAX_BYTES = 1000000L;
+	private static final long DEFAULT_BATCH_MAX_MILLIS = 2000L;
+	private static final long DEFAULT_HARD_COMMIT_INTERVAL_SECONDS = 300L;
+
 	private final ListenerList listeners = new ListenerList();
 	private final TaskQueue taskQueue = new TaskQueue();
 	private final Scheduler scheduler = new Scheduler(taskQueue);
 
 	private Integer threadPoolSize;
+	private int rebuildPageSize = DEFAULT_REBUILD_PAGE_SIZE;
+	private int batchMaxDocuments = DEFAULT_BATCH_MAX_DOCUMENTS;
+	private long batchMaxBytes = DEFAULT_BATCH_MAX_BYTES;
+	private long batchMaxMillis = DEFAULT_BATCH_MAX_MILLIS;
+	private boolean softCommitAfterUpdates = true;
+	private long hardCommitIntervalSeconds = DEFAULT_HARD_COMMIT_INTERVAL_SECONDS;
 	private WorkerThreadPool pool;
+	private SearchEngineBatcher batcher;
+	private SearchIndexCommitPolicy commitPolicy;
 
 	private ServletContext ctx;
 	private List<SearchIndexExcluder> excluders;
@@ -115,8 +130,70 @@ public class SearchIndexerImpl implements SearchIndexer {
 		threadPoolSize = Integer.parseInt(size);
 	}
 
+	/**
+	 * During a rebuild, URIs are handed to the worker threads in pages of this
+	 * size.
+	 */
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#rebuildPageSize", maxOccurs = 1)
+	public void setRebuildPageSize(String size) {
+		rebuildPageSize = Integer.parseInt(size);
+	}
+
+	/**
+	 * Updates are sent to the search engine in batches. A batch is sent when
+	 * it holds this many documents...
+	 */
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#batchMaxDocuments", maxOccurs = 1)
+	public void setBatchMaxDocuments(String count) {
+		batchMaxDocuments = Integer.parseInt(count);
+	}
+
+	/**
+	 * ... or when its documents hold (roughly) this many bytes...
+	 */
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#batchMaxBytes", maxOccurs = 1)
+	public void setBatchMaxBytes(String bytes) {
+		batchMaxBytes = Long.parseLong(bytes);
+	}
+
+	/**
+	 * ... or when its oldest entry has waited this many milliseconds.
+	 */
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#batchMaxMillis", maxOccurs = 1)
+	public void setBatchMaxMillis(String millis) {
+		batchMaxMillis = Long.parseLong(millis);
+	}
+
+	/**
+	 * After each incremental update, should we do a soft commit?
+	 */
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#softCommitAfterUpdates", maxOccurs = 1)
+	public void setSoftCommitAfterUpdates(String flag) {
+		softCommitAfterUpdates = Boolean.parseBoolean(flag);
+	}
+
+	/**
+	 * If there are uncommitted updates, how often should we do a hard commit?
+	 * Zero means never (except after a rebuild, or at shutdown).
+	 */
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hardCommitIntervalSeconds", maxOccurs = 1)
+	public void setHardCommitIntervalSeconds(String seconds) {
+		hardCommitIntervalSeconds = Long.parseLong(seconds);
+	}
+
 	@Validation
 	public void validate() throws Exception {
+		if (rebuildPageSize < 1) {
+			throw new IllegalStateException(
+					"rebuildPageSize must be a positive number: "
+							+ rebuildPageSize);
+		}
+		if (batchMaxDocuments < 1 || batchMaxBytes < 1 || batchMaxMillis < 1) {
+			throw new IllegalStateException("batch limits must be positive: "
+					+ "batchMaxDocuments=" + batchMaxDocuments
+					+ ", batchMaxBytes=" + batchMaxBytes + ", batchMaxMillis="
+					+ batchMaxMillis);
+		}
 		this.pool = new WorkerThreadPool(threadPoolSize);
 	}
 
@@ -136,13 +213,20 @@ public class SearchIndexerImpl implements SearchIndexer {
 		try {
 			this.ctx = application.getServletContext();
 			this.wadf = getFilteredWebappDaoFactory();
+			this.batcher = new SearchEngineBatcher(
+					application.getSearchEngine(), batchMaxDocuments,
+					batchMaxBytes, batchMaxMillis);
+			this.commitPolicy = new SearchIndexCommitPolicy(
+					application.getSearchEngine(), softCommitAfterUpdates,
+					hardCommitIntervalSeconds * 1000L);
 			loadConfiguration();
 
 			fireEvent(STARTUP);
 			scheduler.start();
 
 			ss.info("Configured SearchIndexer: excluders=" + excluders
-					+ ", modifiers=" + modifiers + ", uriFinders=" + uriFinders);
+					+ ", modifiers=" + modifiers + ", uriFinders=" + uriFinders
+					+ ", batcher=" + batcher + ", commitPolicy=" + commitPolicy);
 		} catch (Exception e) {
 			ss.fatal("Failed to configure the SearchIndexer", e);
 		}
@@ -180,6 +264,12 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 		taskQueue.shutdown();
 		pool.shutdown();
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+		if (commitPolicy != null) {
+			commitPolicy.shutdown();
+		}
 
 		for (DocumentModifier dm : modifiers) {
 			try {
@@ -247,7 +337,14 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 	@Override
 	public SearchIndexerStatus getStatus() {
-		return taskQueue.getStatus();
+		SearchIndexerStatus status = taskQueue.getStatus();
+		if (batcher != null) {
+			status = status.withFlushStatistics(batcher.getStatistics());
+		}
+		if (commitPolicy != null) {
+			status = status.withCommitStatistics(commitPolicy.getStatistics());
+		}
+		return status;
 	}
 
 	private void fireEvent(Type type) {
@@ -334,6 +431,20 @@ public class SearchIndexerImpl implements SearchIndexer {
 		log.debug("Scheduled a full rebuild.");
 	}
 
+	@Override
+	public void optimizeIndex() {
+		if (isShutdown()) {
+			log.warn("Call to optimizeIndex after shutdown.");
+			return;
+		}
+		if (commitPolicy == null) {
+			log.warn("Call to optimizeIndex before startup.");
+			return;
+		}
+		commitPolicy.requestOptimize();
+		log.debug("Requested an optimize.");
+	}
+
 	private SearchIndexExcluderList createExcludersList() {
 		if (isDeveloperOptionSet()) {
 			return new SearchIndexExcluderListDeveloper(excluders);
@@ -577,6 +688,12 @@ public class SearchIndexerImpl implements SearchIndexer {
 		public ListenerList listenerList();
 
 		public WorkerThreadPool workerThreadPool();
+
+		public int rebuildPageSize();
+
+		public SearchEngineBatcher searchEngineBatcher();
+
+		public SearchIndexCommitPolicy commitPolicy();
 	}
 
 	/**
@@ -620,6 +737,21 @@ public class SearchIndexerImpl implements SearchIndexer {
 		public WorkerThreadPool workerThreadPool() {
 			return sii.pool;
 		}
+
+		@Override
+		public int rebuildPageSize() {
+			return sii.rebuildPageSize;
+		}
+
+		@Override
+		public SearchEngineBatcher searchEngineBatcher() {
+			return sii.batcher;
+		}
+
+		@Override
+		public SearchIndexCommitPolicy commitPolicy() {
+			return sii.commitPolicy;
+		}
 	}
 
 	public static interface Task extends Runnable {
@@ -640,7 +772,9 @@ public class SearchIndexerImpl implements SearchIndexer {
 	 * pool is idle to know that all of its units have completed.
 	 * 
 	 * When shutting down, no attempt is made to interrupt the currently
-	 * executing work units, since they are assumed to be small.
+	 * executing work units, since they are assumed to be small. A work unit
+	 * that is rejected because the pool has shut down is reported to its task
+	 * as completed, so a task that counts its units doesn't wait for it.
 	 */
 	public static class WorkerThreadPool {
 		private final ThreadPoolExecutor pool;
@@ -650,7 +784,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 					10, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(50),
 					new VitroBackgroundThread.Factory(
 							"SearchIndexer_ThreadPool"),
-					new ThreadPoolExecutor.CallerRunsPolicy());
+					new CallerRunsUnlessShutdown());
 		}
 
 		public void submit(Runnable workUnit, Task task) {
@@ -664,6 +798,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 					log.error("Work unit was rejected: " + workUnit + " for "
 							+ task, e);
 				}
+				task.notifyWorkUnitCompletion(workUnit);
 			}
 		}
 
@@ -693,6 +828,21 @@ public class SearchIndexerImpl implements SearchIndexer {
 			}
 		}
 
+		/**
+		 * Like CallerRunsPolicy, but if the pool has shut down, throw an
+		 * exception instead of silently discarding the work unit.
+		 */
+		private static class CallerRunsUnlessShutdown implements
+				RejectedExecutionHandler {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+				if (executor.isShutdown()) {
+					throw new RejectedExecutionException("Pool is shut down.");
+				}
+				r.run();
+			}
+		}
+
 		private static class WorkUnitWrapper implements Runnable {
 			private final Runnable workUnit;
 			private final Task task;
@@ -2,32 +2,43 @@
 
 package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
 
+import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.PROGRESS;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.START_REBUILD;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.STOP_REBUILD;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State.REBUILDING;
 
 import java.text.SimpleDateFormat;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.RebuildCounts;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchEngineBatcher;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexCommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.WorkerThreadPool;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluderList;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 /**
  * Get the URIs of all individuals in the model. Update each of their search
@@ -35,6 +46,22 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExclud
  * 
  * Delete all search documents that have not been updated since this rebuild
  * began. That removes all obsolete documents from the index.
+ * 
+ * The rebuild runs as a pipeline, so the stages overlap:
+ * 
+ * The URIs are read from the IndividualDao as a stream, and grouped into pages.
+ * 
+ * Each page is a work unit for the thread pool. The work unit loads each
+ * individual, checks the exclusions, and builds the search document. The pages
+ * are handed to the pool by a feeder thread, through a bounded queue. When the
+ * pool is full, the feeder runs the work unit itself, the queue fills, and the
+ * task thread stops reading URIs until the workers catch up. A work unit never
+ * runs on the task thread, since the DAO may hold a read transaction open
+ * while it streams the URIs.
+ * 
+ * The finished documents are put on a bounded queue, and a single submitter
+ * thread passes them to the SearchEngineBatcher, which sends them to the search
+ * engine in batches. If the search engine falls behind, the workers will wait.
  */
 public class RebuildIndexTask implements Task {
 	private static final Log log = LogFactory.getLog(RebuildIndexTask.class);
@@ -72,51 +99,59 @@ public class RebuildIndexTask implements Task {
 	}
 
     private static class RebuildIndexTaskImpl implements Task {
-        private final IndexerConfig config;
-
         private final IndividualDao indDao;
         private final SearchIndexExcluderList excluders;
         private final DocumentModifierList modifiers;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final SearchEngineBatcher batcher;
+        private final SearchIndexCommitPolicy commitPolicy;
         private final SearchEngine searchEngine;
+        private final int pageSize;
 
         private final Date requestedAt;
+        private final Date startedAt;
         private final int documentsBefore;
+        private volatile int documentsAfter;
 
-        private volatile SearchIndexerStatus status;
+        private final StageCounts counts = new StageCounts();
+        private final PendingPages pendingPages = new PendingPages();
+        private volatile DocumentSubmitter submitter;
+        private PageFeeder feeder;
+        private List<String> page;
+        private boolean stoppedReading;
 
         public RebuildIndexTaskImpl(IndexerConfig config, Date requestedAt) {
-            this.config = config;
             this.excluders = config.excluderList();
             this.modifiers = config.documentModifierList();
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.pageSize = config.rebuildPageSize();
+            this.batcher = config.searchEngineBatcher();
+            this.commitPolicy = config.commitPolicy();
 
             this.searchEngine = ApplicationUtils.instance().getSearchEngine();
 
             this.requestedAt = requestedAt;
+            this.startedAt = new Date();
             this.documentsBefore = getDocumentCount();
-            this.status = buildStatus(REBUILDING, 0);
+            this.page = new ArrayList<>(pageSize);
         }
 
         @Override
         public void run() {
-            listeners.fireEvent(new Event(START_REBUILD, status));
+            listeners.fireEvent(new Event(START_REBUILD, getStatus()));
 
-            Collection<String> uris = getAllUrisInTheModel();
+            updateAllUrisInTheModel();
 
             if (!isInterrupted()) {
-                updateTheUris(uris);
-                if (!isInterrupted()) {
-                    deleteOutdatedDocuments();
-                }
-                finalizeIndexing();
+                deleteOutdatedDocuments();
             }
+            finalizeIndexing();
 
-            status = buildStatus(REBUILDING, getDocumentCount());
-            listeners.fireEvent(new Event(STOP_REBUILD, status));
+            documentsAfter = getDocumentCount();
+            listeners.fireEvent(new Event(STOP_REBUILD, getStatus()));
         }
 
         private boolean isInterrupted() {
@@ -128,26 +163,82 @@ public class RebuildIndexTask implements Task {
             }
         }
 
-        private Collection<String> getAllUrisInTheModel() {
-            return indDao.getAllIndividualUris();
-        }
+        private void updateAllUrisInTheModel() {
+            excluders.startIndexing();
+            modifiers.startIndexing();
+
+            submitter = new DocumentSubmitter(batcher, pageSize, counts);
+            submitter.start();
+            feeder = new PageFeeder(this);
+            feeder.start();
+            try {
+                try {
+                    streamUrisInPages();
+                } finally {
+                    feeder.finish();
+                }
+                pendingPages.waitUntilNone();
+            } finally {
+                submitter.finish();
+            }
 
-        private void updateTheUris(Collection<String> uris) {
-            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool);
+            excluders.stopIndexing();
+            modifiers.stopIndexing();
+            log.debug("Finished updating: " + counts);
         }
 
-        private void finalizeIndexing() {
+        /**
+         * If interrupted, throw an exception to stop reading. The exception
+         * may come back to us wrapped by the DAO or the RDFService.
+         */
+        private void streamUrisInPages() {
             try {
-                searchEngine.commit();
-            } catch (SearchEngineNotRespondingException e) {
-                log.warn("Failed to finalize search index: "
-                        + "the search engine is not responding.");
-            } catch (SearchEngineException e) {
-                log.warn("Failed to finalize "
-                        + "from the search index", e);
+                indDao.streamAllIndividualUris(this::acceptUri);
+                submitPage();
+            } catch (RuntimeException e) {
+                if (stoppedReading) {
+                    log.info("Interrupted: " + getStatus());
+                } else {
+                    throw e;
+                }
+            }
+        }
+
+        private void acceptUri(String uri) {
+            if (isInterrupted()) {
+                stoppedReading = true;
+                throw new RebuildInterruptedException();
+            }
+            if (uri == null) {
+                return;
+            }
+            counts.urisFound.incrementAndGet();
+            page.add(uri);
+            if (page.size() >= pageSize) {
+                submitPage();
+            }
+        }
+
+        private void submitPage() {
+            if (!page.isEmpty()) {
+                pendingPages.increment();
+                if (!feeder.put(page)) {
+                    pendingPages.decrement();
+                    stoppedReading = true;
+                    throw new RebuildInterruptedException();
+                }
+                page = new ArrayList<>(pageSize);
             }
         }
 
+        /**
+         * Commit and optimize. This is the only time the index is optimized,
+         * unless an administrator asks for it.
+         */
+        private void finalizeIndexing() {
+            commitPolicy.rebuildCompleted();
+        }
+
         private void deleteOutdatedDocuments() {
             String query = "indexedTime:[ * TO " + requestedAt.getTime() + " ]";
             try {
@@ -174,20 +265,20 @@ public class RebuildIndexTask implements Task {
             }
         }
 
-        private SearchIndexerStatus buildStatus(State state, int documentsAfter) {
-            return new SearchIndexerStatus(state, new Date(), new RebuildCounts(
-                    documentsBefore, documentsAfter));
-        }
-
         @Override
         public SearchIndexerStatus getStatus() {
-            return status;
+            return new SearchIndexerStatus(REBUILDING, startedAt,
+                    new RebuildCounts(documentsBefore, documentsAfter,
+                            counts.urisFound.get(),
+                            counts.individualsLoaded.get(),
+                            counts.excluded.get(), counts.documentsBuilt.get(),
+                            counts.documentsSubmitted.get()));
         }
 
         @Override
         public void notifyWorkUnitCompletion(Runnable workUnit) {
-            // We don't submit any work units, so we won't see any calls to this.
-            log.error("Why was this called?");
+            pendingPages.decrement();
+            listeners.fireEvent(new Event(PROGRESS, getStatus()));
         }
 
         @Override
@@ -196,4 +287,299 @@ public class RebuildIndexTask implements Task {
                     + new SimpleDateFormat().format(requestedAt) + "]";
         }
     }
+
+    // ----------------------------------------------------------------------
+    // helper classes
+    // ----------------------------------------------------------------------
+
+    /**
+     * Load the individuals for a page of URIs, and build a search document for
+     * each one that is not excluded. Pass the documents to the submitter.
+     * 
+     * If there is no individual for a URI, or if the individual is excluded,
+     * there is nothing to do: the old document (if any) will be deleted as
+     * outdated at the end of the rebuild.
+     */
+    private static class LoadPageWorkUnit implements Runnable {
+        private final List<String> uris;
+        private final RebuildIndexTaskImpl parent;
+
+        public LoadPageWorkUnit(List<String> uris, RebuildIndexTaskImpl parent) {
+            this.uris = uris;
+            this.parent = parent;
+        }
+
+        @Override
+        public void run() {
+            for (Individual ind : parent.indDao.getIndividualsByURIs(uris)) {
+                parent.counts.individualsLoaded.incrementAndGet();
+
+                if (parent.excluders.isExcluded(ind)) {
+                    parent.counts.excluded.incrementAndGet();
+                    continue;
+                }
+
+                SearchInputDocument doc = buildDocument(ind);
+                if (doc != null) {
+                    parent.counts.documentsBuilt.incrementAndGet();
+                    parent.submitter.put(doc);
+                }
+            }
+        }
+
+        private SearchInputDocument buildDocument(Individual ind) {
+            try {
+                return UpdateDocumentWorkUnit.buildDocument(
+                        parent.searchEngine, ind, parent.modifiers);
+            } catch (Exception e) {
+                log.warn("Failed to build a search document for '" + ind
+                        + "'.", e);
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "LoadPageWorkUnit[" + uris.size() + " uris]";
+        }
+    }
+
+    /**
+     * Takes pages of URIs from a bounded queue and submits them to the thread
+     * pool, on a thread of its own. If the pool runs a work unit on the
+     * submitting thread, it runs here, not inside the DAO's stream.
+     */
+    private static class PageFeeder implements Runnable {
+        private static final List<String> END = new ArrayList<>();
+
+        private final RebuildIndexTaskImpl parent;
+        private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(
+                4);
+        private final Thread thread;
+
+        public PageFeeder(RebuildIndexTaskImpl parent) {
+            this.parent = parent;
+            this.thread = new VitroBackgroundThread(this,
+                    "SearchIndexer_RebuildFeeder");
+        }
+
+        public void start() {
+            thread.start();
+        }
+
+        /**
+         * Wait for room in the queue. Return false if interrupted.
+         */
+        public boolean put(List<String> page) {
+            try {
+                queue.put(page);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Let the queue empty, and wait for the thread to end.
+         */
+        public void finish() {
+            boolean interrupted = Thread.interrupted();
+            try {
+                queue.put(END);
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                thread.interrupt();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                List<String> page;
+                try {
+                    page = queue.take();
+                } catch (InterruptedException e) {
+                    log.warn("Page feeder was interrupted.");
+                    discardPages();
+                    return;
+                }
+                if (page == END) {
+                    return;
+                }
+                try {
+                    parent.pool.submit(new LoadPageWorkUnit(page, parent),
+                            parent);
+                } catch (RuntimeException e) {
+                    log.error("Failed to load a page of " + page.size()
+                            + " URIs.", e);
+                    parent.pendingPages.decrement();
+                }
+            }
+        }
+
+        /** Nobody will load these pages, so count them as done. */
+        private void discardPages() {
+            List<List<String>> left = new ArrayList<>();
+            queue.drainTo(left);
+            for (List<String> page : left) {
+                if (page != END) {
+                    parent.pendingPages.decrement();
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes documents from a bounded queue and passes them to the batcher, on
+     * a thread of its own. The batcher may block while sending a batch to the
+     * search engine, but the workers can continue until the queue is full.
+     * 
+     * put() blocks while the queue is full, so the workers can't get too far
+     * ahead of the search engine. If a document can't be submitted, the
+     * failure is logged and the submitter goes on to the next one. If the
+     * submitter stops, put() stops waiting and discards the document, so the
+     * workers can't be left waiting forever.
+     */
+    private static class DocumentSubmitter implements Runnable {
+        private final SearchEngineBatcher batcher;
+        private final StageCounts counts;
+        private final BlockingQueue<SearchInputDocument> queue;
+        private final Thread thread;
+        private volatile boolean finishing;
+        private volatile boolean stopped;
+
+        public DocumentSubmitter(SearchEngineBatcher batcher, int queueSize,
+                StageCounts counts) {
+            this.batcher = batcher;
+            this.counts = counts;
+            this.queue = new ArrayBlockingQueue<>(queueSize * 2);
+            this.thread = new VitroBackgroundThread(this,
+                    "SearchIndexer_RebuildSubmitter");
+        }
+
+        public void start() {
+            thread.start();
+        }
+
+        public void put(SearchInputDocument doc) {
+            try {
+                while (!stopped) {
+                    if (queue.offer(doc, 1, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                }
+                log.warn("Document submitter has stopped; discarding a "
+                        + "document.");
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while waiting to submit a document.");
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Submit whatever is left in the queue, wait for the thread to end, and
+         * flush the batcher.
+         */
+        public void finish() {
+            finishing = true;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batcher.flush();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!(finishing && queue.isEmpty())) {
+                    SearchInputDocument doc;
+                    try {
+                        doc = queue.poll(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        log.warn("Document submitter was interrupted.");
+                        return;
+                    }
+                    if (doc != null) {
+                        submit(doc);
+                    }
+                }
+            } finally {
+                stopped = true;
+                queue.clear();
+            }
+        }
+
+        private void submit(SearchInputDocument doc) {
+            try {
+                batcher.add(doc);
+                counts.documentsSubmitted.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.warn("Failed to submit a search document.", e);
+            }
+        }
+    }
+
+    /**
+     * The number of pages that have been submitted to the thread pool, but not
+     * yet completed. All methods are synchronized.
+     */
+    private static class PendingPages {
+        private int count;
+
+        public synchronized void increment() {
+            count++;
+        }
+
+        public synchronized void decrement() {
+            count--;
+            notifyAll();
+        }
+
+        /**
+         * If the task is interrupted (e.g. on shutdown), stop waiting.
+         */
+        public synchronized void waitUntilNone() {
+            while (count > 0) {
+                try {
+                    wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A count for each stage of the pipeline. All counts are thread-safe.
+     */
+    private static class StageCounts {
+        final AtomicInteger urisFound = new AtomicInteger();
+        final AtomicInteger individualsLoaded = new AtomicInteger();
+        final AtomicInteger excluded = new AtomicInteger();
+        final AtomicInteger documentsBuilt = new AtomicInteger();
+        final AtomicInteger documentsSubmitted = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            return "[urisFound=" + urisFound + ", individualsLoaded="
+                    + individualsLoaded + ", excluded=" + excluded
+                    + ", documentsBuilt=" + documentsBuilt
+                    + ", documentsSubmitted=" + documentsSubmitted + "]";
+        }
+    }
+
+    /**
+     * Thrown from the URI consumer to stop reading URIs.
+     */
+    private static class RebuildInterruptedException extends RuntimeException {
+        // Nothing more.
+    }
 }
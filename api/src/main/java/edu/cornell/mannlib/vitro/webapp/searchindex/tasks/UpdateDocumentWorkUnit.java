@@ -33,9 +33,9 @@ import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.ObjectPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerUtils;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchEngineBatcher;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifier;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 
@@ -49,11 +49,14 @@ public class UpdateDocumentWorkUnit implements Runnable {
 
 	private final Individual ind;
 	private final DocumentModifierList modifiers;
+	private final SearchEngineBatcher batcher;
 	private final SearchEngine searchEngine;
 
-	public UpdateDocumentWorkUnit(Individual ind, DocumentModifierList modifiers) {
+	public UpdateDocumentWorkUnit(Individual ind,
+			DocumentModifierList modifiers, SearchEngineBatcher batcher) {
 		this.ind = ind;
 		this.modifiers = modifiers;
+		this.batcher = batcher;
 		this.searchEngine = ApplicationUtils.instance().getSearchEngine();
 	}
 
@@ -61,22 +64,32 @@ public class UpdateDocumentWorkUnit implements Runnable {
 		return ind;
 	}
 
+	/**
+	 * The document goes to the batcher, which will send it to the search
+	 * engine along with others.
+	 */
 	@Override
 	public void run() {
 		try {
-			SearchInputDocument doc = searchEngine.createInputDocument();
-			modifiers.modifyDocument(ind, doc);
-			addIndexedTime(doc);
-			searchEngine.add(doc);
-		} catch (SearchEngineNotRespondingException e) {
-			log.warn("Failed to add '" + ind + "' to the search index: "
-					+ "the search engine is not responding.");
+			batcher.add(buildDocument(searchEngine, ind, modifiers));
 		} catch (Exception e) {
 			log.warn("Failed to add '" + ind + "' to the search index.", e);
 		}
 	}
 
-	private void addIndexedTime(SearchInputDocument doc) {
+	/**
+	 * Create the search document for this individual, but don't add it to the
+	 * search engine.
+	 */
+	static SearchInputDocument buildDocument(SearchEngine searchEngine,
+			Individual ind, DocumentModifierList modifiers) {
+		SearchInputDocument doc = searchEngine.createInputDocument();
+		modifiers.modifyDocument(ind, doc);
+		addIndexedTime(doc);
+		return doc;
+	}
+
+	private static void addIndexedTime(SearchInputDocument doc) {
 		doc.addField(INDEXEDTIME, (Object) new DateTime().getMillis());
 	}
 
@@ -23,6 +23,8 @@ import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.StatementCounts;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchEngineBatcher;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexCommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
@@ -87,6 +89,8 @@ public class UpdateStatementsTask implements Task {
         private final IndividualDao indDao;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final SearchEngineBatcher batcher;
+        private final SearchIndexCommitPolicy commitPolicy;
 
         private final Set<String> uris;
         private final Status status;
@@ -99,6 +103,8 @@ public class UpdateStatementsTask implements Task {
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.batcher = config.searchEngineBatcher();
+            this.commitPolicy = config.commitPolicy();
 
             this.uris = Collections.synchronizedSet(new HashSet<String>());
 
@@ -153,7 +159,8 @@ public class UpdateStatementsTask implements Task {
         }
 
         private void updateTheUris() {
-            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool);
+            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners,
+                    pool, batcher, commitPolicy);
         }
 
         @Override
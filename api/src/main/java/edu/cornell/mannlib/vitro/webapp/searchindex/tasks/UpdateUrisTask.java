@@ -15,17 +15,15 @@ import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.UriCounts;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerUtils;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchEngineBatcher;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexCommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
@@ -42,11 +40,12 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExclud
  * if the individual has no VClasses assigned to it, or if the individual is
  * excluded by one of the excluders.
  * 
- * Deletions are done synchronously, but updates are scheduled to run on the
- * thread pool.
+ * Deletions are queued on the task thread, but updates are scheduled to run on
+ * the thread pool. Both deletions and updates are sent to the SearchEngine in
+ * batches, and the last batch is sent before the task completes.
  * 
- * Commit requests are issued to the SearchEngine at each progress event and
- * again at the end of the task.
+ * When the last batch has been sent, the commit policy is notified, so it can
+ * make the changes visible.
  */
 public class UpdateUrisTask implements Task {
     private static final Log log = LogFactory.getLog(UpdateUrisTask.class);
@@ -64,9 +63,10 @@ public class UpdateUrisTask implements Task {
 
 	static void runNow(Collection<String> uris,
 			SearchIndexExcluderList excluders, DocumentModifierList modifiers,
-			IndividualDao indDao, ListenerList listeners, WorkerThreadPool pool) {
+			IndividualDao indDao, ListenerList listeners, WorkerThreadPool pool,
+			SearchEngineBatcher batcher, SearchIndexCommitPolicy commitPolicy) {
 		UpdateUrisTaskImpl impl = new UpdateUrisTaskImpl(uris, excluders,
-				modifiers, indDao, listeners, pool);
+				modifiers, indDao, listeners, pool, batcher, commitPolicy);
 		impl.run();
 	}
 
@@ -95,9 +95,10 @@ public class UpdateUrisTask implements Task {
         private final DocumentModifierList modifiers;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final SearchEngineBatcher batcher;
+        private final SearchIndexCommitPolicy commitPolicy;
 
         private final Status status;
-        private final SearchEngine searchEngine;
 
         public UpdateUrisTaskImpl(IndexerConfig config, Collection<String> uris) {
             this.excluders = config.excluderList();
@@ -105,17 +106,18 @@ public class UpdateUrisTask implements Task {
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.batcher = config.searchEngineBatcher();
+            this.commitPolicy = config.commitPolicy();
 
             this.uris = uris;
             this.status = new Status(this, uris.size(), 500);
-
-            this.searchEngine = ApplicationUtils.instance().getSearchEngine();
         }
 
 		public UpdateUrisTaskImpl(Collection<String> uris,
 				SearchIndexExcluderList excluders,
 				DocumentModifierList modifiers, IndividualDao indDao,
-				ListenerList listeners, WorkerThreadPool pool) {
+				ListenerList listeners, WorkerThreadPool pool,
+				SearchEngineBatcher batcher, SearchIndexCommitPolicy commitPolicy) {
 			log.debug("Updating " + uris.size() + " uris.");
         	this.uris = uris;
             this.excluders = excluders;
@@ -123,14 +125,15 @@ public class UpdateUrisTask implements Task {
             this.indDao = indDao;
             this.listeners = listeners;
             this.pool = pool;
+            this.batcher = batcher;
+            this.commitPolicy = commitPolicy;
             this.status = new Status(this, uris.size(), 500);
-
-            this.searchEngine = ApplicationUtils.instance().getSearchEngine();
         }
 
         @Override
         public void run() {
-            listeners.fireEvent(new Event(START_URIS, status.getSearchIndexerStatus()));
+            listeners.fireEvent(new Event(START_URIS,
+                    status.getSearchIndexerStatus(), uris));
             excluders.startIndexing();
             modifiers.startIndexing();
 
@@ -152,10 +155,13 @@ public class UpdateUrisTask implements Task {
                 }
             }
             pool.waitUntilIdle();
+            batcher.flush();
+            boolean visible = commitPolicy.updatesCompleted();
 
             excluders.stopIndexing();
             modifiers.stopIndexing();
-            listeners.fireEvent(new Event(STOP_URIS, status.getSearchIndexerStatus()));
+            listeners.fireEvent(new Event(STOP_URIS,
+                    status.getSearchIndexerStatus(), uris, visible));
         }
 
         private boolean isInterrupted() {
@@ -180,39 +186,26 @@ public class UpdateUrisTask implements Task {
         }
 
         /**
-         * A delete is fast enough to be done synchronously.
+         * A delete is fast enough to be queued synchronously.
          */
         private void deleteDocument(String uri) {
-            try {
-                searchEngine.deleteById(SearchIndexerUtils.getIdForUri(uri));
-                status.incrementDeletes();
-                log.debug("deleted '" + uri + "' from search index.");
-            } catch (SearchEngineNotRespondingException e) {
-                log.warn("Failed to delete '" + uri + "' from search index: "
-                        + "the search engine is not responding.");
-            } catch (Exception e) {
-                log.warn("Failed to delete '" + uri + "' from search index", e);
-            }
+            batcher.delete(SearchIndexerUtils.getIdForUri(uri));
+            status.incrementDeletes();
+            log.debug("queued delete of '" + uri + "' from search index.");
         }
 
         /**
          * An exclusion is just a delete for different reasons.
          */
         private void excludeDocument(String uri) {
-            try {
-                searchEngine.deleteById(SearchIndexerUtils.getIdForUri(uri));
-                status.incrementExclusions();
-                log.debug("excluded '" + uri + "' from search index.");
-            } catch (SearchEngineNotRespondingException e) {
-                log.warn("Failed to exclude '" + uri + "' from search index: "
-                        + "the search engine is not responding.", e);
-            } catch (Exception e) {
-                log.warn("Failed to exclude '" + uri + "' from search index", e);
-            }
+            batcher.delete(SearchIndexerUtils.getIdForUri(uri));
+            status.incrementExclusions();
+            log.debug("queued exclusion of '" + uri + "' from search index.");
         }
 
         private void updateDocument(Individual ind) {
-            Runnable workUnit = new UpdateDocumentWorkUnit(ind, modifiers);
+            Runnable workUnit = new UpdateDocumentWorkUnit(ind, modifiers,
+                    batcher);
             pool.submit(workUnit, this);
             log.debug("scheduled update to " + ind);
         }
@@ -221,14 +214,6 @@ public class UpdateUrisTask implements Task {
             listeners.fireEvent(event);
         }
 
-        private void commitChanges() {
-            try {
-                searchEngine.commit();
-            } catch (SearchEngineException e) {
-                log.warn("Failed to commit changes.", e);
-            }
-        }
-
         @Override
         public void notifyWorkUnitCompletion(Runnable workUnit) {
             log.debug("completed update to "
@@ -0,0 +1,136 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.services.shortview;
+
+import static edu.cornell.mannlib.vitro.webapp.utils.developer.Key.DEFEAT_FREEMARKER_CACHE;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import edu.cornell.mannlib.vitro.webapp.beans.BaseResourceBean.RoleLevel;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.ShortViewContext;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.NodeIndexedCache;
+import edu.cornell.mannlib.vitro.webapp.utils.developer.DeveloperSettings;
+
+/**
+ * Remembers the rendered HTML of short views, so a popular browse or index
+ * page doesn't run the same data getters and templates each time it is shown.
+ *
+ * The key holds the individual, the view context, the locale, the role level
+ * of the viewer, and the theme. If the caller adds other values to the
+ * template model, they must be simple values, and they become part of the key.
+ * Search results are not cached, since each one includes a snippet of the
+ * search.
+ *
+ * Each entry remembers the URIs that it depends on: the individual and every
+ * URI in the results of the data getters. When a statement about one of those
+ * URIs is added or removed, the entry is discarded. A change to the types of
+ * the individual is a statement about the individual, so it is seen. A change
+ * to one of the type classes is not, so editing a class doesn't discard the
+ * views of all its members.
+ *
+ * The rendering must not depend on the template that includes it, so the
+ * IndividualShortViewDirective renders a cacheable view in its own data
+ * model.
+ *
+ * A data getter may also read nodes that it doesn't return: a title, say,
+ * found through a vcard that isn't in the results. Changes to those nodes are
+ * not seen, so an entry is also discarded when it reaches the maximum age.
+ *
+ * The cache is disabled until it is configured with a maximum size in bytes.
+ * It is bypassed while the developer panel defeats the template cache.
+ */
+public class ShortViewFragmentCache extends NodeIndexedCache<String> {
+	private static final ShortViewFragmentCache instance = new ShortViewFragmentCache();
+
+	public static ShortViewFragmentCache getInstance() {
+		return instance;
+	}
+
+	ShortViewFragmentCache() {
+		// Use getInstance(), except in unit tests.
+	}
+
+	/**
+	 * Build a key for this rendering, or return null if it can't be cached.
+	 *
+	 * @param modelValues
+	 *            the values that the caller adds to the template model, other
+	 *            than the individual itself.
+	 */
+	public String key(Individual individual, ShortViewContext context,
+			Map<String, Object> modelValues, VitroRequest vreq) {
+		if (!isEnabled() || context == ShortViewContext.SEARCH
+				|| DeveloperSettings.getInstance().getBoolean(
+						DEFEAT_FREEMARKER_CACHE)) {
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(individual.getURI()).append('|').append(context)
+				.append('|').append(vreq.getLocale()).append('|')
+				.append(RoleLevel.getRoleFromLoginStatus(vreq)).append('|')
+				.append(vreq.getAppBean().getThemeDir());
+		for (Map.Entry<String, Object> e : new TreeMap<>(modelValues)
+				.entrySet()) {
+			Object value = e.getValue();
+			if (value != null && !(value instanceof String)
+					&& !(value instanceof Number)
+					&& !(value instanceof Boolean)) {
+				return null;
+			}
+			sb.append('|').append(e.getKey()).append('=').append(value);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the remembered HTML, or null.
+	 */
+	public String get(String key) {
+		return lookup(key);
+	}
+
+	/**
+	 * Remember this HTML, unless there has been a change since the data
+	 * getters started, or it would take too large a part of the cache.
+	 */
+	public void put(String key, String html, Individual individual,
+			Map<String, Object> supplementalData, long startingGeneration) {
+		Set<String> nodes = new HashSet<>();
+		nodes.add(individual.getURI());
+		addUris(supplementalData, nodes);
+		store(key, html, nodes, sizeOf(key, html), startingGeneration);
+	}
+
+	/** Two bytes for each character, near enough. */
+	private static long sizeOf(String key, String html) {
+		return 2L * (key.length() + html.length());
+	}
+
+	/**
+	 * The data getters return maps and lists of strings. Any string that looks
+	 * like a URI may be a node that the rendering depends on.
+	 */
+	private static void addUris(Object value, Set<String> nodes) {
+		if (value instanceof String) {
+			String s = (String) value;
+			if (s.startsWith("http://") || s.startsWith("https://")) {
+				nodes.add(s);
+			}
+		} else if (value instanceof Map) {
+			for (Object v : ((Map<?, ?>) value).values()) {
+				addUris(v, nodes);
+			}
+		} else if (value instanceof Collection) {
+			for (Object v : (Collection<?>) value) {
+				addUris(v, nodes);
+			}
+		}
+	}
+}
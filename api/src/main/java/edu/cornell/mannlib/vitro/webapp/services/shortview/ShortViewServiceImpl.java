@@ -44,6 +44,17 @@ public class ShortViewServiceImpl implements ShortViewService {
 	public String renderShortView(Individual individual,
 			ShortViewContext context, Map<String, Object> modelMap,
 			VitroRequest vreq) {
+		ShortViewFragmentCache cache = ShortViewFragmentCache.getInstance();
+		Map<String, Object> modelValues = new HashMap<String, Object>(modelMap);
+		modelValues.remove("individual");
+		String key = cache.key(individual, context, modelValues, vreq);
+		if (key != null) {
+			String html = cache.get(key);
+			if (html != null) {
+				return html;
+			}
+		}
+		long generation = cache.getGeneration();
 
 		TemplateAndSupplementalData tsd = getShortViewInfo(individual, context,
 				vreq);
@@ -63,7 +74,11 @@ public class ShortViewServiceImpl implements ShortViewService {
 						+ "' for " + individual.getName() + "</p>";
 			}
 
-			return fps.renderTemplate(templateName, fullModelMap, vreq);
+			String html = fps.renderTemplate(templateName, fullModelMap, vreq);
+			if (key != null) {
+				cache.put(key, html, individual, supplementalData, generation);
+			}
+			return html;
 		} catch (TemplateParsingException e) {
 			log.error(e, e);
 			return "<p>Can't parse the short view template '" + templateName
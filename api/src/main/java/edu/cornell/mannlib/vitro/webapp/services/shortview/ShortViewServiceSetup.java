@@ -6,15 +6,28 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.FakeApplicationOntologyService.ShortViewConfigException;
 import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
 
 /**
- * Set up the ShortViewService.
+ * Set up the ShortViewService, and the cache of rendered short views if a size
+ * is configured for it.
  */
 public class ShortViewServiceSetup implements ServletContextListener {
+	private static final Log log = LogFactory
+			.getLog(ShortViewServiceSetup.class);
+
 	private static final String ATTRIBUTE_NAME = ShortViewService.class
 			.getName();
+	private static final String PROPERTY_CACHE_MAX_BYTES = "shortview.fragmentCache.maxBytes";
+	private static final String PROPERTY_CACHE_MAX_AGE = "shortview.fragmentCache.maxAgeMillis";
+	private static final long DEFAULT_CACHE_MAX_AGE = 600000;
 
 	@Override
 	public void contextInitialized(ServletContextEvent sce) {
@@ -35,11 +48,76 @@ public class ShortViewServiceSetup implements ServletContextListener {
 
 		ss.info(this,
 				"Started the Short View Service with a ShortViewServiceImpl");
+
+		startCache(ctx, ss);
+	}
+
+	private void startCache(ServletContext ctx, StartupStatus ss) {
+		String value = ConfigurationProperties.getBean(ctx).getProperty(
+				PROPERTY_CACHE_MAX_BYTES);
+		if (value == null || value.trim().isEmpty()) {
+			return;
+		}
+
+		long maxBytes;
+		try {
+			maxBytes = Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			ss.warning(this, "Invalid value for " + PROPERTY_CACHE_MAX_BYTES
+					+ ": '" + value + "'. The cache is disabled.");
+			return;
+		}
+		if (maxBytes <= 0) {
+			return;
+		}
+
+		ShortViewFragmentCache cache = ShortViewFragmentCache.getInstance();
+		try {
+			RDFServiceUtils.getRDFServiceFactory(ctx).registerListener(cache);
+		} catch (RDFServiceException e) {
+			ss.warning(this, "Failed to listen for changes. "
+					+ "The short view cache is disabled.", e);
+			return;
+		}
+		long maxAgeMillis = figureMaxAge(ctx, ss);
+		cache.setMaxAgeMillis(maxAgeMillis);
+		cache.setMaxBytes(maxBytes);
+		ss.info(this, "Caching up to " + maxBytes
+				+ " bytes of rendered short views, for up to " + maxAgeMillis
+				+ " milliseconds.");
+	}
+
+	private long figureMaxAge(ServletContext ctx, StartupStatus ss) {
+		String value = ConfigurationProperties.getBean(ctx).getProperty(
+				PROPERTY_CACHE_MAX_AGE);
+		if (value == null || value.trim().isEmpty()) {
+			return DEFAULT_CACHE_MAX_AGE;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			ss.warning(this, "Invalid value for " + PROPERTY_CACHE_MAX_AGE
+					+ ": '" + value + "'. Using " + DEFAULT_CACHE_MAX_AGE
+					+ ".");
+			return DEFAULT_CACHE_MAX_AGE;
+		}
 	}
 
 	@Override
 	public void contextDestroyed(ServletContextEvent sce) {
 		sce.getServletContext().removeAttribute(ATTRIBUTE_NAME);
+
+		ShortViewFragmentCache cache = ShortViewFragmentCache.getInstance();
+		if (cache.isEnabled()) {
+			log.info("Short view cache: " + cache.getStatistics());
+			try {
+				RDFServiceUtils.getRDFServiceFactory(sce.getServletContext())
+						.unregisterListener(cache);
+			} catch (RDFServiceException e) {
+				log.warn("Failed to unregister the short view cache.", e);
+			}
+			cache.setMaxBytes(0);
+		}
 	}
 
 	public static ShortViewService getService(ServletContext ctx) {
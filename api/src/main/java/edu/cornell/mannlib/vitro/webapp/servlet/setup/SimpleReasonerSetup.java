@@ -8,6 +8,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,6 +26,7 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
@@ -93,6 +96,8 @@ public class SimpleReasonerSetup implements ServletContextListener {
                 }
             }
             simpleReasoner.setPluginList(pluginList);
+            configureAsynchronousReasoning(ctx, simpleReasoner);
+            configureRecompute(ctx, simpleReasoner);
             
             SimpleReasonerTBoxListener simpleReasonerTBoxListener = new SimpleReasonerTBoxListener(simpleReasoner);
             sce.getServletContext().setAttribute(SimpleReasonerTBoxListener.class.getName(),simpleReasonerTBoxListener);
@@ -100,6 +105,10 @@ public class SimpleReasonerSetup implements ServletContextListener {
             tboxInferencesModel.register(simpleReasonerTBoxListener);
             
             RecomputeMode mode = getRecomputeRequired(ctx);
+            if (mode == null && simpleReasoner.isRecomputeInterrupted()) {
+                log.info("Resuming an interrupted ABox inference recompute.");
+                mode = RecomputeMode.BACKGROUND;
+            }
             if (RecomputeMode.FOREGROUND.equals(mode)) {
                 log.info("ABox inference recompute required.");
                 simpleReasoner.recompute();
@@ -115,6 +124,56 @@ public class SimpleReasonerSetup implements ServletContextListener {
         }        
     }
     
+    private static final String PROPERTY_ASYNCHRONOUS = "reasoner.abox.asynchronous";
+    private static final String PROPERTY_WORKER_THREADS = "reasoner.abox.workerThreads";
+    private static final String PROPERTY_BATCH_SIZE = "reasoner.abox.batchSize";
+
+    private void configureAsynchronousReasoning(ServletContext ctx,
+            SimpleReasoner simpleReasoner) {
+        ConfigurationProperties props = ConfigurationProperties.getBean(ctx);
+        if (Boolean.valueOf(props.getProperty(PROPERTY_ASYNCHRONOUS, "false"))) {
+            simpleReasoner.enableAsynchronousABoxReasoning(
+                    intProperty(props, PROPERTY_WORKER_THREADS, 2),
+                    intProperty(props, PROPERTY_BATCH_SIZE, 100));
+        }
+    }
+
+    private static final String PROPERTY_RECOMPUTE_THREADS = "reasoner.abox.recomputeThreads";
+    private static final String RECOMPUTE_CHECKPOINT_FILE = "reasoner/abox-recompute.checkpoint";
+
+    private void configureRecompute(ServletContext ctx,
+            SimpleReasoner simpleReasoner) {
+        ConfigurationProperties props = ConfigurationProperties.getBean(ctx);
+        simpleReasoner.setRecomputeThreads(intProperty(props,
+                PROPERTY_RECOMPUTE_THREADS,
+                Runtime.getRuntime().availableProcessors()));
+
+        Path checkpointFile = ApplicationUtils.instance().getHomeDirectory()
+                .getPath().resolve(RECOMPUTE_CHECKPOINT_FILE);
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            simpleReasoner.setRecomputeCheckpointFile(checkpointFile);
+        } catch (IOException e) {
+            log.warn("Can't create a directory for " + checkpointFile
+                    + "; an interrupted recompute will start over.", e);
+        }
+    }
+
+    private int intProperty(ConfigurationProperties props, String name,
+            int defaultValue) {
+        String value = props.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + name + ": '" + value
+                    + "'; using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         log.info("received contextDestroyed notification");
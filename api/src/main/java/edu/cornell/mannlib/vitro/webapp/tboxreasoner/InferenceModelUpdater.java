@@ -2,6 +2,7 @@
 
 package edu.cornell.mannlib.vitro.webapp.tboxreasoner;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -15,6 +16,7 @@ import edu.cornell.mannlib.vitro.webapp.tboxreasoner.ConfiguredReasonerListener;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.ConfiguredReasonerListener.Suspension;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.ReasonerStatementPattern;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxReasoner;
+import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxReasoner.Delta;
 import edu.cornell.mannlib.vitro.webapp.utils.jena.criticalsection.LockableModel;
 import edu.cornell.mannlib.vitro.webapp.utils.jena.criticalsection.LockableOntModel;
 import edu.cornell.mannlib.vitro.webapp.utils.jena.criticalsection.LockedModel;
@@ -60,16 +62,53 @@ public class InferenceModelUpdater {
 	 * 
 	 * If a statement exists anywhere in the full TBox, don't bother adding it
 	 * to the inferences model.
+	 * 
+	 * If the reasoner can tell us which statements it touched, only those are
+	 * examined. Otherwise, the filtered models are compared in full.
 	 */
 	public void update(List<ReasonerStatementPattern> patternList) {
-		List<Statement> filteredReasonerStatements = reasoner
-				.filterResults(patternList);
-		addNewInferences(filteredReasonerStatements);
-		removeOldInferences(filterInferencesModel(patternList),
-				filteredReasonerStatements);
+		Delta delta = reasoner.getLastDelta();
+		if (delta == null) {
+			List<Statement> filteredReasonerStatements = reasoner
+					.filterResults(patternList);
+			addNewInferences(filteredReasonerStatements);
+			removeOldInferences(filterInferencesModel(patternList),
+					filteredReasonerStatements);
+		} else {
+			log.debug("Applying " + delta);
+			addNewInferences(filterStatements(delta.getPresent(), patternList));
+			removeTouchedInferences(filterStatements(delta.getAbsent(),
+					patternList));
+		}
 		log.debug("Added: " + addCount + ", Retracted: " + retractCount);
 	}
 
+	private List<Statement> filterStatements(List<Statement> statements,
+			List<ReasonerStatementPattern> patternList) {
+		List<Statement> filtered = new ArrayList<>();
+		for (Statement stmt : statements) {
+			for (ReasonerStatementPattern pattern : patternList) {
+				if (pattern.matches(stmt)) {
+					filtered.add(stmt);
+					break;
+				}
+			}
+		}
+		return filtered;
+	}
+
+	private void removeTouchedInferences(List<Statement> absentStatements) {
+		for (Statement stmt : absentStatements) {
+			try (LockedModel inferenceModel = lockableInferencesModel.write();
+					Suspension susp = listener.suspend()) {
+				if (inferenceModel.contains(stmt)) {
+					retractCount++;
+					inferenceModel.remove(stmt);
+				}
+			}
+		}
+	}
+
 	private void addNewInferences(List<Statement> filteredReasonerModel) {
 		for (Statement stmt : filteredReasonerModel) {
 			if (!fullModelContainsStatement(stmt)) {
@@ -66,6 +66,20 @@ public class ReasonerStatementPattern {
 		return sMatch && pMatch && oMatch;
 	}
 
+	/**
+	 * Does this statement satisfy the pattern? The object of the statement may
+	 * be a literal, which only a wild card will match.
+	 */
+	public boolean matches(Statement stmt) {
+		boolean sMatch = this.subject == null
+				|| this.subject.equals(stmt.getSubject());
+		boolean pMatch = this.predicate == null
+				|| this.predicate.equals(stmt.getPredicate());
+		boolean oMatch = this.object == null
+				|| this.object.equals(stmt.getObject());
+		return sMatch && pMatch && oMatch;
+	}
+
 	/**
 	 * Get a list of statements from this model that match this pattern.
 	 */
@@ -2,6 +2,8 @@
 
 package edu.cornell.mannlib.vitro.webapp.tboxreasoner;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.jena.ontology.DatatypeProperty;
@@ -51,6 +53,13 @@ public interface TBoxReasoner {
 	 * updating and reasoning.
 	 */
 	List<Statement> filterResults(List<ReasonerStatementPattern> patternList);
+
+	/**
+	 * The statements that may have entered or left the reasoner model during
+	 * the most recent reasoning. If the reasoner can't say, return null, and
+	 * the caller must compare the whole model.
+	 */
+	Delta getLastDelta();
 	
 	public static class Status {
 		public static final Status SUCCESS = new Status(true, false, "");
@@ -84,4 +93,35 @@ public interface TBoxReasoner {
 		}
 	}
 
+	/**
+	 * The present statements are in the reasoner model, and the absent ones
+	 * are not. Either group may include statements that didn't actually
+	 * change.
+	 */
+	public static class Delta {
+		private final List<Statement> present;
+		private final List<Statement> absent;
+
+		public Delta(List<Statement> present, List<Statement> absent) {
+			this.present = Collections.unmodifiableList(new ArrayList<>(
+					present));
+			this.absent = Collections.unmodifiableList(new ArrayList<>(
+					absent));
+		}
+
+		public List<Statement> getPresent() {
+			return present;
+		}
+
+		public List<Statement> getAbsent() {
+			return absent;
+		}
+
+		@Override
+		public String toString() {
+			return "Delta[present=" + present.size() + ", absent="
+					+ absent.size() + "]";
+		}
+	}
+
 }
@@ -0,0 +1,199 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.tboxreasoner.impl.jfact;
+
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * Translate a single statement into the axiom that it represents, for simple
+ * statements about named classes and properties.
+ *
+ * If the statement is part of a larger structure (a restriction, a list, an
+ * annotated axiom), or if we can't be sure what kind of entity is involved,
+ * return null. The caller must then find the changes some other way.
+ */
+class JFactAxiomTranslator {
+	private static final String OWL_NS = OWL.getURI();
+	private static final String RDF_NS = RDF.getURI();
+	private static final String RDFS_NS = RDFS.getURI();
+
+	/**
+	 * These predicates produce the same axiom in either direction.
+	 */
+	static boolean isSymmetric(Property predicate) {
+		return OWL.equivalentClass.equals(predicate)
+				|| OWL.disjointWith.equals(predicate)
+				|| OWL.inverseOf.equals(predicate);
+	}
+
+	private final Model assertions;
+	private final OWLDataFactory factory = OWLManager.getOWLDataFactory();
+
+	JFactAxiomTranslator(Model assertions) {
+		this.assertions = assertions;
+	}
+
+	OWLAxiom translate(Statement stmt, OWLOntology ontology) {
+		if (!stmt.getSubject().isURIResource()) {
+			return null;
+		}
+		Resource subject = stmt.getSubject();
+		Property predicate = stmt.getPredicate();
+		RDFNode object = stmt.getObject();
+
+		if (object.isLiteral()) {
+			return translateLiteralAnnotation(subject, predicate,
+					object.asLiteral(), ontology);
+		}
+		if (!object.isURIResource()) {
+			return null;
+		}
+		if (isSymmetric(predicate) && subject.equals(object)) {
+			return null;
+		}
+
+		IRI s = iri(subject);
+		IRI o = iri(object.asResource());
+		if (RDF.type.equals(predicate)) {
+			return translateDeclaration(s, object.asResource());
+		} else if (RDFS.subClassOf.equals(predicate)) {
+			return factory.getOWLSubClassOfAxiom(owlClass(s), owlClass(o));
+		} else if (OWL.equivalentClass.equals(predicate)) {
+			return factory.getOWLEquivalentClassesAxiom(owlClass(s),
+					owlClass(o));
+		} else if (OWL.disjointWith.equals(predicate)) {
+			return factory.getOWLDisjointClassesAxiom(owlClass(s), owlClass(o));
+		} else if (OWL.inverseOf.equals(predicate)) {
+			return factory.getOWLInverseObjectPropertiesAxiom(
+					objectProperty(s), objectProperty(o));
+		} else if (RDFS.subPropertyOf.equals(predicate)) {
+			return translateSubProperty(subject, object.asResource(), ontology);
+		} else if (isAnnotationProperty(predicate, ontology)) {
+			return annotation(predicate, s, o);
+		} else {
+			return null;
+		}
+	}
+
+	private OWLAxiom translateDeclaration(IRI s, Resource type) {
+		if (OWL.Class.equals(type)) {
+			return factory.getOWLDeclarationAxiom(owlClass(s));
+		} else if (OWL.ObjectProperty.equals(type)) {
+			return factory.getOWLDeclarationAxiom(objectProperty(s));
+		} else if (OWL.DatatypeProperty.equals(type)) {
+			return factory.getOWLDeclarationAxiom(factory
+					.getOWLDataProperty(s));
+		} else if (OWL.AnnotationProperty.equals(type)) {
+			return factory.getOWLDeclarationAxiom(factory
+					.getOWLAnnotationProperty(s));
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Both properties must be of the same kind, and we must know which kind.
+	 */
+	private OWLAxiom translateSubProperty(Resource sub, Resource sup,
+			OWLOntology ontology) {
+		IRI s = iri(sub);
+		IRI o = iri(sup);
+		if (isObjectProperty(sub, ontology) && isObjectProperty(sup, ontology)
+				&& !isDataProperty(sub, ontology)
+				&& !isDataProperty(sup, ontology)) {
+			return factory.getOWLSubObjectPropertyOfAxiom(objectProperty(s),
+					objectProperty(o));
+		}
+		if (isDataProperty(sub, ontology) && isDataProperty(sup, ontology)
+				&& !isObjectProperty(sub, ontology)
+				&& !isObjectProperty(sup, ontology)) {
+			return factory.getOWLSubDataPropertyOfAxiom(
+					factory.getOWLDataProperty(s),
+					factory.getOWLDataProperty(o));
+		}
+		return null;
+	}
+
+	/**
+	 * Labels and comments, or any property that isn't part of the OWL
+	 * vocabulary and isn't known to be a data property.
+	 */
+	private OWLAxiom translateLiteralAnnotation(Resource subject,
+			Property predicate, Literal literal, OWLOntology ontology) {
+		String ns = predicate.getNameSpace();
+		if (OWL_NS.equals(ns) || RDF_NS.equals(ns)) {
+			return null;
+		}
+		if (RDFS_NS.equals(ns) && !RDFS.label.equals(predicate)
+				&& !RDFS.comment.equals(predicate)) {
+			return null;
+		}
+		if (isDataProperty(predicate, ontology)
+				|| isObjectProperty(predicate, ontology)) {
+			return null;
+		}
+
+		String lang = literal.getLanguage();
+		if (lang != null && !lang.isEmpty()) {
+			return annotation(predicate, iri(subject),
+					factory.getOWLLiteral(literal.getLexicalForm(), lang));
+		} else {
+			return annotation(predicate, iri(subject), factory.getOWLLiteral(
+					literal.getLexicalForm(),
+					factory.getOWLDatatype(IRI.create(literal.getDatatypeURI()))));
+		}
+	}
+
+	private OWLAxiom annotation(Property predicate, IRI subject,
+			OWLAnnotationValue value) {
+		OWLAnnotationProperty property = factory.getOWLAnnotationProperty(iri(
+				predicate));
+		return factory.getOWLAnnotationAssertionAxiom(property, subject, value);
+	}
+
+	private boolean isObjectProperty(Resource r, OWLOntology ontology) {
+		return assertions.contains(r, RDF.type, OWL.ObjectProperty)
+				|| ontology.containsObjectPropertyInSignature(iri(r));
+	}
+
+	private boolean isDataProperty(Resource r, OWLOntology ontology) {
+		return assertions.contains(r, RDF.type, OWL.DatatypeProperty)
+				|| ontology.containsDataPropertyInSignature(iri(r));
+	}
+
+	private boolean isAnnotationProperty(Property p, OWLOntology ontology) {
+		return (assertions.contains(p, RDF.type, OWL.AnnotationProperty) || ontology
+				.containsAnnotationPropertyInSignature(iri(p)))
+				&& !isObjectProperty(p, ontology)
+				&& !isDataProperty(p, ontology);
+	}
+
+	private OWLClass owlClass(IRI iri) {
+		return factory.getOWLClass(iri);
+	}
+
+	private OWLObjectProperty objectProperty(IRI iri) {
+		return factory.getOWLObjectProperty(iri);
+	}
+
+	private IRI iri(Resource r) {
+		return IRI.create(r.getURI());
+	}
+}
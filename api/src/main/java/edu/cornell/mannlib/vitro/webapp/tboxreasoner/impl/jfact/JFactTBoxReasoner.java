@@ -5,13 +5,22 @@ package edu.cornell.mannlib.vitro.webapp.tboxreasoner.impl.jfact;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
 import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.reasoner.OWLReasonerConfiguration;
@@ -36,6 +45,7 @@ import org.apache.jena.vocabulary.RDF;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.ReasonerStatementPattern;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxChanges;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxReasoner;
+import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxReasoner.Delta;
 import edu.cornell.mannlib.vitro.webapp.tboxreasoner.impl.TBoxInferencesAccumulator;
 
 import static org.semanticweb.owlapi.vocab.OWLRDFVocabulary.OWL_AXIOM;
@@ -46,12 +56,23 @@ import static org.semanticweb.owlapi.vocab.OWLRDFVocabulary.OWL_AXIOM;
  * It maintains a model of all the assertions it has been given, adding or
  * removing statements as change sets are received.
  * 
- * Each time a change is received, it will create a fresh ontology from the
- * assertions model, and apply a reasoner to that ontology. A model of
- * inferences is built by querying the reasoner.
+ * The first time it reasons, it creates an ontology from the assertions model.
+ * After that, each change is applied to that ontology as axioms to add or
+ * remove, and the reasoner works from the axioms already in memory, rather than
+ * from a freshly serialized and parsed copy of the model.
+ * 
+ * Simple statements about named classes and properties are translated directly
+ * into axioms. If a change includes anything else, a fresh ontology is created
+ * from the assertions model, and only the axioms that differ are applied to the
+ * persistent ontology. If none of the changed axioms affects the classification
+ * (labels, for example), the reasoner is not consulted.
+ * 
+ * A model of inferences is built by querying the reasoner.
  * 
  * The assertions and inferences are combined into an OntModel, which is kept to
- * answer queries.
+ * answer queries. After the first time, only the statements that were changed,
+ * or that entered or left the inferences, are updated in the combined model.
+ * Those statements are offered as the delta.
  * 
  * -----------------
  * 
@@ -63,10 +84,27 @@ public class JFactTBoxReasoner implements
 
 	private final OWLReasonerFactory reasonerFactory;
 	private final TBoxInferencesAccumulator accumulator;
+	private final JFactAxiomTranslator axiomTranslator;
 
 	private final Model filteredAssertionsModel;
 	private final OntModel combinedInferencedModel;
 
+	/**
+	 * Statements that have been added or removed since the last reasoning.
+	 * Their fate is decided by the assertions model.
+	 */
+	private final Set<Statement> pendingStatements = new LinkedHashSet<>();
+	private boolean propertiesDeleted;
+
+	private OWLOntologyManager manager;
+	private OWLOntology ontology;
+	private OWLReasoner reasoner;
+
+	/** The inferences from the last successful reasoning, if any. */
+	private Model inferencesModel;
+	private boolean fullMergeNeeded = true;
+	private Delta lastDelta;
+
 	public JFactTBoxReasoner() {
 		this.filteredAssertionsModel = ModelFactory.createDefaultModel();
 		this.combinedInferencedModel = ModelFactory
@@ -74,6 +112,7 @@ public class JFactTBoxReasoner implements
 
 		this.reasonerFactory = new JFactFactory();
 		this.accumulator = new TBoxInferencesAccumulator();
+		this.axiomTranslator = new JFactAxiomTranslator(filteredAssertionsModel);
 	}
 
 	@Override
@@ -82,6 +121,12 @@ public class JFactTBoxReasoner implements
 				+ ", removing " + changes.getRemovedStatements().size());
 		filteredAssertionsModel.add(changes.getAddedStatements());
 		filteredAssertionsModel.remove(changes.getRemovedStatements());
+		pendingStatements.addAll(changes.getAddedStatements());
+		pendingStatements.addAll(changes.getRemovedStatements());
+		if (!changes.getDeletedDataPropertyUris().isEmpty()
+				|| !changes.getDeletedObjectPropertyUris().isEmpty()) {
+			propertiesDeleted = true;
+		}
 		clearEmptyAxiomStatements();
 	}
 	
@@ -125,39 +170,180 @@ public class JFactTBoxReasoner implements
 
 	@Override
 	public Status performReasoning() {
+		lastDelta = null;
 		try {
-			OWLOntology ont = copyModelToOntology(filteredAssertionsModel);
-
-			OWLReasoner reasoner = createReasoner(ont);
-			reasoner.precomputeInferences(InferenceType.values());
+			boolean reasoningNeeded = synchronizeOntology()
+					|| inferencesModel == null;
+			if (reasoningNeeded) {
+				replaceReasoner();
+				reasoner.precomputeInferences(InferenceType.values());
 
-			try {
-				if (!reasoner.isConsistent()) {
-					return Status.inconsistent("Reasoner axioms are not "
-							+ "consistent");
+				try {
+					if (!reasoner.isConsistent()) {
+						inferencesModel = null;
+						fullMergeNeeded = true;
+						return Status.inconsistent("Reasoner axioms are not "
+								+ "consistent");
+					}
+				} catch (Exception e) {
+					log.error(e);
+					inferencesModel = null;
+					fullMergeNeeded = true;
+					return Status.ERROR;
 				}
-			} catch (Exception e) {
-				log.error(e);
-				return Status.ERROR;
+			} else {
+				log.debug("No change affects the classification; "
+						+ "keeping the previous inferences.");
 			}
 
-			Model inferences = accumulator.populateModelFromReasonerQueries(reasoner);
+			Model inferences = reasoningNeeded ? accumulator
+					.populateModelFromReasonerQueries(reasoner)
+					: inferencesModel;
 			mergeModels(filteredAssertionsModel, inferences);
 			return Status.SUCCESS;
 		} catch (Exception e) {
 			log.error(e);
+			discardOntology();
 			return Status.ERROR;
 		}
 	}
 
-	private OWLOntology copyModelToOntology(Model m)
+	@Override
+	public Delta getLastDelta() {
+		return lastDelta;
+	}
+
+	/**
+	 * Bring the ontology into line with the assertions model. Return true if
+	 * any axiom that affects the classification was added or removed.
+	 */
+	private boolean synchronizeOntology() throws OWLOntologyCreationException {
+		if (ontology == null) {
+			manager = OWLManager.createOWLOntologyManager();
+			ontology = copyModelToOntology(filteredAssertionsModel, manager);
+			return true;
+		}
+
+		List<OWLOntologyChange> changes = translateStatements();
+		if (changes == null) {
+			changes = diffAgainstAssertions();
+		}
+		if (changes.isEmpty()) {
+			return false;
+		}
+
+		log.debug("Applying " + changes.size() + " axiom changes.");
+		manager.applyChanges(changes);
+
+		for (OWLOntologyChange change : changes) {
+			if (change.getAxiom().isLogicalAxiom()
+					|| change.getAxiom().isOfType(AxiomType.DECLARATION)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Translate each pending statement to the axiom it represents, and add or
+	 * remove that axiom, according to whether the statement is in the
+	 * assertions model. If any statement can't be translated, return null.
+	 */
+	private List<OWLOntologyChange> translateStatements() {
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		for (Statement stmt : pendingStatements) {
+			OWLAxiom axiom = axiomTranslator.translate(stmt, ontology);
+			if (axiom == null) {
+				log.debug("Can't translate " + stmt
+						+ "; comparing the whole ontology.");
+				return null;
+			}
+
+			if (isAsserted(stmt)) {
+				if (!ontology.containsAxiomIgnoreAnnotations(axiom)) {
+					changes.add(new AddAxiom(ontology, axiom));
+				}
+			} else {
+				for (OWLAxiom existing : ontology
+						.getAxiomsIgnoreAnnotations(axiom)) {
+					changes.add(new RemoveAxiom(ontology, existing));
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Some predicates are symmetric, so the axiom remains as long as the
+	 * statement is asserted in either direction.
+	 */
+	private boolean isAsserted(Statement stmt) {
+		if (filteredAssertionsModel.contains(stmt)) {
+			return true;
+		}
+		if (JFactAxiomTranslator.isSymmetric(stmt.getPredicate())) {
+			return filteredAssertionsModel.contains(stmt.getObject()
+					.asResource(), stmt.getPredicate(), stmt.getSubject());
+		}
+		return false;
+	}
+
+	/**
+	 * Create a fresh ontology from the assertions model, and find the axioms
+	 * that differ from the persistent ontology.
+	 */
+	private List<OWLOntologyChange> diffAgainstAssertions()
+			throws OWLOntologyCreationException {
+		OWLOntology fresh = copyModelToOntology(filteredAssertionsModel,
+				OWLManager.createOWLOntologyManager());
+		Set<OWLAxiom> wanted = fresh.axioms().collect(Collectors.toSet());
+		Set<OWLAxiom> current = ontology.axioms().collect(Collectors.toSet());
+
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		for (OWLAxiom axiom : current) {
+			if (!wanted.contains(axiom)) {
+				changes.add(new RemoveAxiom(ontology, axiom));
+			}
+		}
+		for (OWLAxiom axiom : wanted) {
+			if (!current.contains(axiom)) {
+				changes.add(new AddAxiom(ontology, axiom));
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * JFact loads the axioms straight from the ontology, so nothing is
+	 * serialized or parsed. Its own incremental mode, and flushing a buffering
+	 * reasoner after a change, both fail in this version: the reasoner must be
+	 * replaced.
+	 */
+	private void replaceReasoner() {
+		if (reasoner != null) {
+			reasoner.dispose();
+		}
+		reasoner = createReasoner(ontology);
+	}
+
+	private void discardOntology() {
+		if (reasoner != null) {
+			reasoner.dispose();
+		}
+		reasoner = null;
+		ontology = null;
+		manager = null;
+		inferencesModel = null;
+		fullMergeNeeded = true;
+	}
+
+	private OWLOntology copyModelToOntology(Model m, OWLOntologyManager mgr)
 			throws OWLOntologyCreationException {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		m.write(out, "RDF/XML");
 
 		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-		return OWLManager.createOWLOntologyManager()
-				.loadOntologyFromOntologyDocument(in);
+		return mgr.loadOntologyFromOntologyDocument(in);
 	}
 
 	private OWLReasoner createReasoner(OWLOntology ont) {
@@ -166,13 +352,50 @@ public class JFactTBoxReasoner implements
 		return reasoner;
 	}
 
+	/**
+	 * The first time, or after a problem, fill the combined model from
+	 * scratch. Otherwise, only look at the statements that changed, or that
+	 * entered or left the inferences.
+	 */
 	private void mergeModels(Model assertions, Model inferences) {
-		combinedInferencedModel.removeAll();
-		combinedInferencedModel.add(assertions);
-		combinedInferencedModel.add(inferences);
+		if (fullMergeNeeded) {
+			combinedInferencedModel.removeAll();
+			combinedInferencedModel.add(assertions);
+			combinedInferencedModel.add(inferences);
+		} else {
+			Set<Statement> touched = new LinkedHashSet<>(pendingStatements);
+			if (inferences != inferencesModel) {
+				touched.addAll(inferencesModel.difference(inferences)
+						.listStatements().toList());
+				touched.addAll(inferences.difference(inferencesModel)
+						.listStatements().toList());
+			}
+
+			List<Statement> present = new ArrayList<>();
+			List<Statement> absent = new ArrayList<>();
+			for (Statement stmt : touched) {
+				if (assertions.contains(stmt) || inferences.contains(stmt)) {
+					combinedInferencedModel.add(stmt);
+					present.add(stmt);
+				} else {
+					combinedInferencedModel.remove(stmt);
+					absent.add(stmt);
+				}
+			}
+
+			// Deleted properties call for a full comparison.
+			if (!propertiesDeleted) {
+				lastDelta = new Delta(present, absent);
+			}
+		}
+
 		log.debug("Assertions: " + assertions.size() + ", inferences: "
 				+ inferences.size() + ", combined:  "
-				+ combinedInferencedModel.size());
+				+ combinedInferencedModel.size() + ", delta: " + lastDelta);
+		inferencesModel = inferences;
+		fullMergeNeeded = false;
+		pendingStatements.clear();
+		propertiesDeleted = false;
 	}
 
 	@Override
@@ -5,6 +5,7 @@ package edu.cornell.mannlib.vitro.webapp.triplesource.impl.sparql;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.ModelMaker;
 
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceDataset;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceModelMaker;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.adapters.MemoryMappingModelMaker;
@@ -17,7 +18,9 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceFactory;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceFactorySingle;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.logging.LoggingRDFServiceFactory;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql.CachingRDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql.RDFServiceSparql;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql.SparqlResultCache;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
 
@@ -32,6 +35,11 @@ import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
  * Memory-map the small content models, and add the standard decorators.
  */
 public class ContentTripleSourceSPARQL extends ContentTripleSource {
+	private static final String PROPERTY_UPDATE_THREADS = "RDFService.sparql.updateThreads";
+	private static final String PROPERTY_UPDATE_TARGET_MILLIS = "RDFService.sparql.updateTargetMillis";
+	private static final String PROPERTY_CACHE_MAX_BYTES = "RDFService.sparql.resultCache.maxBytes";
+	private static final String PROPERTY_CACHE_MAX_AGE_MILLIS = "RDFService.sparql.resultCache.maxAgeMillis";
+
 	private String endpointURI;
 	private String updateEndpointURI; // Optional
 
@@ -52,7 +60,10 @@ public class ContentTripleSourceSPARQL extends ContentTripleSource {
 
 	@Override
 	public void startup(Application application, ComponentStartupStatus ss) {
-		this.rdfServiceFactory = createRDFServiceFactory(createRDFService(ss));
+		RDFService service = createRDFService(ss);
+		configureUpdatePipelining(application, service, ss);
+		service = addResultCache(application, service, ss);
+		this.rdfServiceFactory = createRDFServiceFactory(service);
 		this.rdfService = this.rdfServiceFactory.getRDFService();
 		this.dataset = createDataset();
 		this.modelMaker = createModelMaker();
@@ -69,6 +80,63 @@ public class ContentTripleSourceSPARQL extends ContentTripleSource {
 		}
 	}
 
+	/**
+	 * Large updates may be sent in several chunks at once, with the chunk
+	 * size following the speed of the endpoint.
+	 */
+	private void configureUpdatePipelining(Application application,
+			RDFService service, ComponentStartupStatus ss) {
+		if (!(service instanceof RDFServiceSparql)) {
+			return;
+		}
+		ConfigurationProperties props = ConfigurationProperties
+				.getBean(application.getServletContext());
+		int threads = parseNumber(props, PROPERTY_UPDATE_THREADS, 1, ss);
+		int targetMillis = parseNumber(props, PROPERTY_UPDATE_TARGET_MILLIS,
+				0, ss);
+		((RDFServiceSparql) service).setUpdatePipelining(threads,
+				targetMillis);
+		if (threads > 1 || targetMillis > 0) {
+			ss.info("Sending updates on " + threads
+					+ " threads, with a target of " + targetMillis
+					+ " ms per chunk.");
+		}
+	}
+
+	/**
+	 * Repeated read queries may be answered from memory, if a cache size is
+	 * configured.
+	 */
+	private RDFService addResultCache(Application application,
+			RDFService service, ComponentStartupStatus ss) {
+		ConfigurationProperties props = ConfigurationProperties
+				.getBean(application.getServletContext());
+		int maxBytes = parseNumber(props, PROPERTY_CACHE_MAX_BYTES, 0, ss);
+		int maxAgeMillis = parseNumber(props, PROPERTY_CACHE_MAX_AGE_MILLIS,
+				0, ss);
+		if (maxBytes <= 0) {
+			return service;
+		}
+		ss.info("Caching query results, up to " + maxBytes + " bytes.");
+		return new CachingRDFService(service, new SparqlResultCache(maxBytes,
+				maxAgeMillis));
+	}
+
+	private int parseNumber(ConfigurationProperties props, String key,
+			int defaultValue, ComponentStartupStatus ss) {
+		String value = props.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			ss.warning("Invalid value for " + key + ": '" + value
+					+ "'. Using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
 	private RDFServiceFactory createRDFServiceFactory(RDFService service) {
 		return new LoggingRDFServiceFactory(
 				new RDFServiceFactorySingle(service));
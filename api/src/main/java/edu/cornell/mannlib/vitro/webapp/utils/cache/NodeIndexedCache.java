@@ -0,0 +1,296 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+
+/**
+ * A cache whose entries depend on the statements about some URIs. Register it
+ * as a ChangeListener: when a statement about one of those URIs is added or
+ * removed, the entries that depend on it are discarded.
+ *
+ * The least recently used entries are evicted to stay within a number of
+ * entries, a number of bytes, or both. The cache is disabled until one of those
+ * limits is set. If there is a maximum age, older entries are discarded when
+ * they are found, whether or not anything has changed.
+ *
+ * Each change increments a generation count. Read it before computing a value,
+ * and pass it to store(): if there was a change in the meantime, the value may
+ * be out of date, and is not stored.
+ *
+ * All methods are synchronized.
+ */
+public class NodeIndexedCache<V> implements ChangeListener {
+	private final Map<String, Entry<V>> entries = new LinkedHashMap<>(16,
+			0.75f, true);
+	private final Map<String, Set<String>> keysByNode = new HashMap<>();
+	private int maxEntries;
+	private long maxBytes;
+	private long maxAgeMillis;
+	private long bytes;
+
+	/** Incremented by every change. */
+	private long generation;
+
+	private long hits;
+	private long misses;
+	private long invalidations;
+
+	public synchronized void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+		if (!isEnabled()) {
+			clear();
+		}
+	}
+
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		if (!isEnabled()) {
+			clear();
+		}
+	}
+
+	/**
+	 * If more than zero, an entry is discarded after this long, in case it
+	 * depends on something that was not recorded.
+	 */
+	public synchronized void setMaxAgeMillis(long maxAgeMillis) {
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	public synchronized boolean isEnabled() {
+		return maxEntries > 0 || maxBytes > 0;
+	}
+
+	/**
+	 * Call this before computing a value, and pass the result to store().
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the remembered value, or null.
+	 */
+	protected synchronized V lookup(String key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && maxAgeMillis > 0
+				&& System.currentTimeMillis() - entry.created > maxAgeMillis) {
+			remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Remember this value, unless there has been a change since it was
+	 * computed, or it would take too large a part of the cache.
+	 *
+	 * @param nodes
+	 *            the URIs that the value depends on.
+	 * @param size
+	 *            the size of the entry in bytes, if there is a limit on bytes.
+	 */
+	protected synchronized void store(String key, V value, Set<String> nodes,
+			long size, long startingGeneration) {
+		if (!isEnabled() || startingGeneration != generation
+				|| (maxBytes > 0 && size > maxBytes / 4)) {
+			return;
+		}
+
+		remove(key);
+		entries.put(key, new Entry<>(value, nodes, size));
+		bytes += size;
+		for (String node : nodes) {
+			Set<String> keys = keysByNode.get(node);
+			if (keys == null) {
+				keys = new HashSet<>();
+				keysByNode.put(node, keys);
+			}
+			keys.add(key);
+		}
+
+		Iterator<Map.Entry<String, Entry<V>>> eldest = entries.entrySet()
+				.iterator();
+		while (isOverLimit() && eldest.hasNext()) {
+			Map.Entry<String, Entry<V>> e = eldest.next();
+			eldest.remove();
+			forget(e.getKey(), e.getValue());
+		}
+	}
+
+	private boolean isOverLimit() {
+		return (maxEntries > 0 && entries.size() > maxEntries)
+				|| (maxBytes > 0 && bytes > maxBytes);
+	}
+
+	/**
+	 * Statements about these URIs have changed.
+	 */
+	public synchronized void invalidate(Collection<String> nodes) {
+		generation++;
+		Set<String> doomed = new HashSet<>();
+		for (String node : nodes) {
+			Set<String> keys = keysByNode.get(node);
+			if (keys != null) {
+				doomed.addAll(keys);
+			}
+		}
+		invalidations += doomed.size();
+		for (String key : doomed) {
+			remove(key);
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+		keysByNode.clear();
+		bytes = 0;
+	}
+
+	public synchronized Statistics getStatistics() {
+		return new Statistics(entries.size(), bytes, hits, misses,
+				invalidations);
+	}
+
+	private void remove(String key) {
+		Entry<V> entry = entries.remove(key);
+		if (entry != null) {
+			forget(key, entry);
+		}
+	}
+
+	/** The entry is already gone from the map; the index is not. */
+	private void forget(String key, Entry<V> entry) {
+		bytes -= entry.size;
+		for (String node : entry.nodes) {
+			Set<String> keys = keysByNode.get(node);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					keysByNode.remove(node);
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// ChangeListener
+	// ----------------------------------------------------------------------
+
+	@Override
+	public void notifyModelChange(ModelChange modelChange) {
+		if (!isEnabled()) {
+			return;
+		}
+		Set<String> nodes = new HashSet<>();
+		StmtIterator stmts = modelChange.getModel().listStatements();
+		try {
+			while (stmts.hasNext()) {
+				Statement stmt = stmts.next();
+				addUri(stmt.getSubject(), nodes);
+				addUri(stmt.getObject(), nodes);
+			}
+		} finally {
+			stmts.close();
+		}
+		invalidate(nodes);
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Events don't change the triples.
+	}
+
+	private void addUri(RDFNode node, Set<String> nodes) {
+		if (node.isURIResource()) {
+			nodes.add(node.asResource().getURI());
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class Entry<V> {
+		final V value;
+		final Set<String> nodes;
+		final long size;
+		final long created = System.currentTimeMillis();
+
+		Entry(V value, Set<String> nodes, long size) {
+			this.value = value;
+			this.nodes = nodes;
+			this.size = size;
+		}
+	}
+
+	public static class Statistics {
+		private final int size;
+		private final long bytes;
+		private final long hits;
+		private final long misses;
+		private final long invalidations;
+
+		public Statistics(int size, long bytes, long hits, long misses,
+				long invalidations) {
+			this.size = size;
+			this.bytes = bytes;
+			this.hits = hits;
+			this.misses = misses;
+			this.invalidations = invalidations;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		public double getHitRatio() {
+			long lookups = hits + misses;
+			return (lookups == 0) ? 0.0 : (double) hits / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%d entries, %d bytes, %d hits, %d misses (%.1f%%), "
+							+ "%d invalidated", size, bytes, hits, misses,
+					getHitRatio() * 100, invalidations);
+		}
+	}
+}
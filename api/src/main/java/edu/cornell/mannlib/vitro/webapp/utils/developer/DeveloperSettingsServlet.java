@@ -21,6 +21,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.controller.ajax.VitroAjaxController;
 import edu.cornell.mannlib.vitro.webapp.services.freemarker.FreemarkerProcessingService.TemplateProcessingException;
 import edu.cornell.mannlib.vitro.webapp.services.freemarker.FreemarkerProcessingServiceSetup;
+import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewFragmentCache;
 
 /**
  * Accept an AJAX request to update the developer settings. Return an HTML
@@ -77,6 +78,13 @@ public class DeveloperSettingsServlet extends VitroAjaxController {
 		
 		Map<String, Object> bodyMap = new HashMap<>();
 		bodyMap.put("settings", settingsMap);
+
+		ShortViewFragmentCache shortViewCache = ShortViewFragmentCache
+				.getInstance();
+		if (shortViewCache.isEnabled()) {
+			bodyMap.put("shortViewCacheStatistics", shortViewCache
+					.getStatistics().toString());
+		}
 		return bodyMap;
 	}
 
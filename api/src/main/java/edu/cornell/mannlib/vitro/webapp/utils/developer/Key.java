@@ -86,6 +86,13 @@ public enum Key {
 	PAGE_CONTENTS_LOG_CUSTOM_SHORT_VIEW(
 			"developer.pageContents.logCustomShortView", true),
 
+	/**
+	 * Tell the PropertyListPopulator to log how long it took to build each
+	 * property on a profile page.
+	 */
+	PAGE_CONTENTS_LOG_PROPERTY_TIMINGS(
+			"developer.pageContents.logPropertyTimings", true),
+
 	/**
 	 * Tell the SearchEngineLogger to log all indexing operations.
 	 */
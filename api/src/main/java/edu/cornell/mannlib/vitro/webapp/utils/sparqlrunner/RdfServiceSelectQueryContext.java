@@ -102,9 +102,8 @@ class RdfServiceSelectQueryContext implements SelectQueryContext {
 
 		@Override
 		public void writeToOutput(OutputStream output) {
-			try {
-				InputStream resultStream = rdfService.sparqlSelectQuery(
-						query.getQueryString(), JSON);
+			try (InputStream resultStream = rdfService.sparqlSelectQuery(
+					query.getQueryString(), JSON)) {
 				IOUtils.copy(resultStream, output);
 			} catch (Exception e) {
 				log.error(
@@ -19,10 +19,12 @@ import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
+import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewFragmentCache;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewServiceSetup;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.ShortViewContext;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.TemplateAndSupplementalData;
+import edu.cornell.mannlib.vitro.webapp.web.templatemodels.individual.IndividualTemplateModelBuilder;
 import freemarker.core.Environment;
 import freemarker.template.ObjectWrapper;
 import freemarker.template.Template;
@@ -30,6 +32,7 @@ import freemarker.template.TemplateDirectiveBody;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
 
 /**
  * Find the short-view template for the specified Individual in the specified
@@ -87,8 +90,16 @@ public class IndividualShortViewDirective extends BaseTemplateDirectiveModel {
 			return;
 		}
 		
+		VitroRequest vreq = new VitroRequest(request);
+		Map<String, Object> modelValues = getOuterValues(env);
+		if (ShortViewFragmentCache.getInstance().key(individual, svContext,
+				modelValues, vreq) != null) {
+			renderIsolated(env, svs, individual, svContext, modelValues, vreq);
+			return;
+		}
+
 		TemplateAndSupplementalData svInfo = svs.getShortViewInfo(individual,
-				svContext, new VitroRequest(request));
+				svContext, vreq);
 
 		ObjectWrapper objectWrapper = env.getConfiguration().getObjectWrapper();
 
@@ -117,6 +128,47 @@ public class IndividualShortViewDirective extends BaseTemplateDirectiveModel {
 		}
 	}
 
+	/**
+	 * A cached short view must not depend on the variables of the template
+	 * that includes it. So render it on its own, as the ShortViewService does
+	 * for the JSON controllers, with only the individual and the values that
+	 * are part of the cache key.
+	 */
+	private void renderIsolated(Environment env, ShortViewService svs,
+			Individual individual, ShortViewContext svContext,
+			Map<String, Object> modelValues, VitroRequest vreq) {
+		Map<String, Object> modelMap = new HashMap<String, Object>(
+				modelValues);
+		modelMap.put("individual",
+				IndividualTemplateModelBuilder.build(individual, vreq));
+		String html = svs.renderShortView(individual, svContext, modelMap,
+				vreq);
+		try {
+			env.getOut().write(html);
+		} catch (IOException e) {
+			log.error("Could not write the short view for "
+					+ individual.getURI(), e);
+		}
+	}
+
+	/**
+	 * The browse view shows the types of the individual other than the class
+	 * being browsed, so pass that along if the including template has it.
+	 */
+	private Map<String, Object> getOuterValues(Environment env) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		try {
+			TemplateModel vclass = env.getVariable("vclass");
+			if (vclass instanceof TemplateScalarModel) {
+				values.put("vclass",
+						((TemplateScalarModel) vclass).getAsString());
+			}
+		} catch (TemplateModelException e) {
+			log.warn("Failed to read the vclass variable", e);
+		}
+		return values;
+	}
+
 	/** If there is a problem rendering the custom view, do this instead. */
 	private void renderErrorMessage(Individual individual) {
 		Environment env = Environment.getCurrentEnvironment();
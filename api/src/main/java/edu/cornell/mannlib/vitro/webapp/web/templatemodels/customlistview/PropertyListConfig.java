@@ -6,7 +6,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import org.apache.commons.lang3.StringUtils;
@@ -29,6 +32,8 @@ public class PropertyListConfig {
 	
     private static final String CONFIG_FILE_PATH = "/config/";
     private static final String DEFAULT_CONFIG_FILE_NAME = "listViewConfig-default.xml";
+
+    private static final ConcurrentMap<String, CompiledConfig> compiledConfigs = new ConcurrentHashMap<>();
     
     /* NB The default post-processor is not the same as the post-processor for the default view. The latter
      * actually defines its own post-processor, whereas the default post-processor is used for custom views
@@ -70,7 +75,7 @@ public class PropertyListConfig {
         
         try {
             File config = new File(configFilePath);            
-            if ( ! isDefaultConfig(configFileName) && ! config.exists() ) {
+            if ( ! isDefaultConfig(configFileName) && config.lastModified() == 0L ) {
                 log.warn("Can't find config file " + configFilePath + " for object property " + op.getURI() + "\n" +
                         ". Using default config file instead.");
                 configFilePath = getConfigFilePath(DEFAULT_CONFIG_FILE_NAME);
@@ -135,59 +140,41 @@ public class PropertyListConfig {
     
     private void setValuesFromConfigFile(String configFilePath, WebappDaoFactory wdf, 
             boolean editing) {
-		try {
-			FileReader reader = new FileReader(configFilePath);
-			CustomListViewConfigFile configFileContents = new CustomListViewConfigFile(reader);
-			
-			boolean collated = optm instanceof CollatedObjectPropertyTemplateModel;
-
-			selectQuery = configFileContents.getSelectQuery(collated, editing, ListConfigUtils.getUsePreciseSubquery(vreq));
-			templateName = configFileContents.getTemplateName();
-			constructQueries = configFileContents.getConstructQueries();
-
-			String postprocessorName = configFileContents.getPostprocessorName();
-			postprocessor = getPostProcessor(postprocessorName, optm, wdf, configFilePath);
-		} catch (Exception e) {
-			log.error("Error processing config file " + configFilePath, e);
-		}
+		boolean collated = optm instanceof CollatedObjectPropertyTemplateModel;
+		CompiledConfig compiled = getCompiledConfig(configFilePath, collated,
+				editing, ListConfigUtils.getUsePreciseSubquery(vreq));
+
+		selectQuery = compiled.selectQuery;
+		templateName = compiled.templateName;
+		constructQueries = compiled.constructQueries;
+		postprocessor = compiled.createPostProcessor(optm, wdf);
     }
-    
-	private ObjectPropertyDataPostProcessor getPostProcessor(
-			String className,
-			ObjectPropertyTemplateModel optm,
-			WebappDaoFactory wdf, String configFilePath) {
-		try {
-			if (StringUtils.isBlank(className)) {
-				return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
-			}
-			
-			Class<?> clazz = Class.forName(className);
-			Constructor<?> constructor = clazz.getConstructor(ObjectPropertyTemplateModel.class, WebappDaoFactory.class);
-			return (ObjectPropertyDataPostProcessor) constructor.newInstance(optm, wdf);
-		} catch (ClassNotFoundException e) {
-			log.warn("Error processing config file '" + configFilePath
-					+ "': can't load postprocessor class '" + className
-					+ "'. " + "Using default postprocessor.", e);
-			return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
-		} catch (NoSuchMethodException e) {
-			log.warn("Error processing config file '" + configFilePath
-					+ "': postprocessor class '" + className
-					+ "' does not have a constructor that takes "
-					+ "ObjectPropertyTemplateModel and WebappDaoFactory. "
-					+ "Using default postprocessor.", e);
-			return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
-		} catch (ClassCastException e) {
-			log.warn("Error processing config file '" + configFilePath
-					+ "': postprocessor class '" + className + "' does "
-					+ "not implement ObjectPropertyDataPostProcessor. "
-					+ "Using default postprocessor.", e);
-			return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
-		} catch (Exception e) {
-			log.warn("Error processing config file '" + configFilePath
-					+ "': can't create postprocessor instance of class '"
-					+ className + "'. " + "Using default postprocessor.", e);
-			return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
-		}           
+
+	/**
+	 * Parsing the file and finding the postprocessor class are done once for
+	 * each file and combination of flags, and again only if the file is
+	 * modified.
+	 */
+	private static CompiledConfig getCompiledConfig(String configFilePath,
+			boolean collated, boolean editing, boolean usePreciseSubquery) {
+		String key = configFilePath + "|" + collated + "|" + editing + "|"
+				+ usePreciseSubquery;
+		long lastModified = new File(configFilePath).lastModified();
+
+		CompiledConfig compiled = compiledConfigs.get(key);
+		if (compiled == null || compiled.lastModified != lastModified) {
+			compiled = new CompiledConfig(configFilePath, lastModified,
+					collated, editing, usePreciseSubquery);
+			compiledConfigs.put(key, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Forget the compiled configurations, so each file will be read again.
+	 */
+	public static void clearCompiledConfigs() {
+		compiledConfigs.clear();
 	}
 
     private String getConfigFilePath(String filename) {
@@ -213,4 +200,106 @@ public class PropertyListConfig {
 	public ObjectPropertyDataPostProcessor getPostprocessor() {
 		return this.postprocessor;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The parsed contents of a config file, for one combination of flags.
+	 * 
+	 * Immutable, so it may be shared by all requests. Only the postprocessor
+	 * is created anew for each property, since it holds the template model.
+	 */
+	private static class CompiledConfig {
+		private final String configFilePath;
+		private final long lastModified;
+		private final String selectQuery;
+		private final Set<String> constructQueries;
+		private final String templateName;
+		private final String postprocessorName;
+
+		/** If null, use the default postprocessor. */
+		private final Constructor<? extends ObjectPropertyDataPostProcessor> postprocessorConstructor;
+
+		CompiledConfig(String configFilePath, long lastModified,
+				boolean collated, boolean editing, boolean usePreciseSubquery) {
+			this.configFilePath = configFilePath;
+			this.lastModified = lastModified;
+
+			String select = null;
+			Set<String> constructs = null;
+			String template = null;
+			String ppName = null;
+			try (FileReader reader = new FileReader(configFilePath)) {
+				CustomListViewConfigFile configFileContents = new CustomListViewConfigFile(
+						reader);
+				select = configFileContents.getSelectQuery(collated, editing,
+						usePreciseSubquery);
+				template = configFileContents.getTemplateName();
+				constructs = Collections.unmodifiableSet(configFileContents
+						.getConstructQueries());
+				ppName = configFileContents.getPostprocessorName();
+			} catch (Exception e) {
+				log.error("Error processing config file " + configFilePath, e);
+			}
+
+			this.selectQuery = select;
+			this.constructQueries = constructs;
+			this.templateName = template;
+			this.postprocessorName = ppName;
+			this.postprocessorConstructor = (ppName == null) ? null
+					: findPostProcessorConstructor(ppName);
+		}
+
+		private Constructor<? extends ObjectPropertyDataPostProcessor> findPostProcessorConstructor(
+				String className) {
+			try {
+				if (StringUtils.isBlank(className)) {
+					return null;
+				}
+
+				Class<? extends ObjectPropertyDataPostProcessor> clazz = Class
+						.forName(className).asSubclass(
+								ObjectPropertyDataPostProcessor.class);
+				return clazz.getConstructor(ObjectPropertyTemplateModel.class,
+						WebappDaoFactory.class);
+			} catch (ClassNotFoundException e) {
+				log.warn("Error processing config file '" + configFilePath
+						+ "': can't load postprocessor class '" + className
+						+ "'. " + "Using default postprocessor.", e);
+				return null;
+			} catch (NoSuchMethodException e) {
+				log.warn("Error processing config file '" + configFilePath
+						+ "': postprocessor class '" + className
+						+ "' does not have a constructor that takes "
+						+ "ObjectPropertyTemplateModel and WebappDaoFactory. "
+						+ "Using default postprocessor.", e);
+				return null;
+			} catch (ClassCastException e) {
+				log.warn("Error processing config file '" + configFilePath
+						+ "': postprocessor class '" + className + "' does "
+						+ "not implement ObjectPropertyDataPostProcessor. "
+						+ "Using default postprocessor.", e);
+				return null;
+			} catch (Exception e) {
+				log.warn("Error processing config file '" + configFilePath
+						+ "': can't use postprocessor class '" + className
+						+ "'. " + "Using default postprocessor.", e);
+				return null;
+			}
+		}
+
+		ObjectPropertyDataPostProcessor createPostProcessor(
+				ObjectPropertyTemplateModel optm, WebappDaoFactory wdf) {
+			if (postprocessorConstructor == null) {
+				return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
+			}
+			try {
+				return postprocessorConstructor.newInstance(optm, wdf);
+			} catch (Exception e) {
+				log.warn("Error processing config file '" + configFilePath
+						+ "': can't create postprocessor instance of class '"
+						+ postprocessorName + "'. "
+						+ "Using default postprocessor.", e);
+				return new DefaultObjectPropertyDataPostProcessor(optm, wdf);
+			}
+		}
+	}
+}
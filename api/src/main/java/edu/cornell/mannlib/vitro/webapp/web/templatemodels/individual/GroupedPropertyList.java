@@ -136,10 +136,19 @@ public class GroupedPropertyList extends BaseTemplateModel {
         // Build the template data model from the groupList
         groups = new ArrayList<PropertyGroupTemplateModel>(
                 propertyGroupList.size());
-        for (PropertyGroup propertyGroup : propertyGroupList) {
-            groups.add(new PropertyGroupTemplateModel(vreq, propertyGroup,
-                    subject, editing, populatedDataPropertyList,
-                    populatedObjectPropertyList));
+        PropertyListPopulator populator = new PropertyListPopulator(vreq,
+                subject.getURI());
+        try {
+            for (PropertyGroup propertyGroup : propertyGroupList) {
+                groups.add(new PropertyGroupTemplateModel(vreq, propertyGroup,
+                        subject, editing, populatedDataPropertyList,
+                        populatedObjectPropertyList, populator));
+            }
+            for (PropertyGroupTemplateModel group : groups) {
+                group.collect();
+            }
+        } finally {
+            populator.close();
         }
         
         if (!editing) {
@@ -7,6 +7,8 @@ import static edu.cornell.mannlib.vitro.webapp.auth.requestedAction.RequestedAct
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,40 +37,74 @@ public class PropertyGroupTemplateModel extends BaseTemplateModel {
 
 
 
-    PropertyGroupTemplateModel(VitroRequest vreq, PropertyGroup group, 
-            Individual subject, boolean editing, 
-            List<DataProperty> populatedDataPropertyList, 
-            List<ObjectProperty> populatedObjectPropertyList) {
+    /** Template models that may still be under construction. */
+    private List<Future<PropertyTemplateModel>> pending;
+
+    PropertyGroupTemplateModel(final VitroRequest vreq, PropertyGroup group, 
+            final Individual subject, final boolean editing, 
+            final List<DataProperty> populatedDataPropertyList, 
+            final List<ObjectProperty> populatedObjectPropertyList,
+            PropertyListPopulator populator) {
 
         this.name = group.getName();
         
         List<Property> propertyList = group.getPropertyList();
         properties = new ArrayList<PropertyTemplateModel>(propertyList.size());
+        pending = new ArrayList<Future<PropertyTemplateModel>>(propertyList.size());
         
+        // Check the policies here, on the request thread. The template models
+        // may be built on other threads.
         for (Property p : propertyList)  {
             if (p instanceof ObjectProperty) {
-                ObjectProperty op = (ObjectProperty) p;
+                final ObjectProperty op = (ObjectProperty) p;
                 if (!allowedToDisplay(vreq, op, subject)) {
                     continue;
                 }
-                ObjectPropertyTemplateModel tm = ObjectPropertyTemplateModel.getObjectPropertyTemplateModel(
-                        op, subject, vreq, editing, populatedObjectPropertyList);
-                if (!tm.isEmpty() || (editing && !tm.getAddUrl().isEmpty())) {
-                    properties.add(tm);                    
-                }
+                pending.add(populator.submit(op, new Callable<PropertyTemplateModel>() {
+                    @Override
+                    public PropertyTemplateModel call() {
+                        ObjectPropertyTemplateModel tm = ObjectPropertyTemplateModel.getObjectPropertyTemplateModel(
+                                op, subject, vreq, editing, populatedObjectPropertyList);
+                        if (!tm.isEmpty() || (editing && !tm.getAddUrl().isEmpty())) {
+                            return tm;
+                        }
+                        return null;
+                    }
+                }));
 
             } else if (p instanceof DataProperty){
-                DataProperty dp = (DataProperty) p;
+                final DataProperty dp = (DataProperty) p;
                 if (!allowedToDisplay(vreq, dp, subject))  {
                     continue;
                 }
-                properties.add(new DataPropertyTemplateModel(dp, subject, vreq, editing, populatedDataPropertyList));
+                pending.add(populator.submit(dp, new Callable<PropertyTemplateModel>() {
+                    @Override
+                    public PropertyTemplateModel call() {
+                        return new DataPropertyTemplateModel(dp, subject, vreq, editing, populatedDataPropertyList);
+                    }
+                }));
             } else {
                 log.debug(p.getURI() + " is neither an ObjectProperty nor a DataProperty; skipping display");
             }
         }
     }
 
+    /**
+     * Wait for the template models, and keep them in the order of the group.
+     */
+    void collect() {
+        if (pending == null) {
+            return;
+        }
+        for (Future<PropertyTemplateModel> future : pending) {
+            PropertyTemplateModel tm = PropertyListPopulator.collect(future);
+            if (tm != null) {
+                properties.add(tm);
+            }
+        }
+        pending = null;
+    }
+
 	/**
 	 * See if the property is permitted in its own right. If not, the property
 	 * statement might still be permitted to a self-editor.
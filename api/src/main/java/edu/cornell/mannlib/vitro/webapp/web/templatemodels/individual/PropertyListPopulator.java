@@ -0,0 +1,182 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.web.templatemodels.individual;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.beans.Property;
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.modules.tripleSource.ContentTripleSource;
+import edu.cornell.mannlib.vitro.webapp.triplesource.impl.sparql.ContentTripleSourceSPARQL;
+import edu.cornell.mannlib.vitro.webapp.triplesource.impl.tdb.ContentTripleSourceTDB;
+import edu.cornell.mannlib.vitro.webapp.utils.developer.DeveloperSettings;
+import edu.cornell.mannlib.vitro.webapp.utils.developer.Key;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Builds the template models for the properties of a profile page.
+ *
+ * If the runtime properties allow more than one thread, the template models
+ * are built on a small pool of threads that belongs to this request, so the
+ * queries for the different properties can run at the same time. Otherwise,
+ * each template model is built as soon as it is submitted, just as before.
+ *
+ * The threads share the RDFService of the request. That is only safe if the
+ * content comes from TDB or a SPARQL endpoint. An SDB RDFService holds a single
+ * JDBC connection, so with SDB content the properties are always built one at
+ * a time.
+ *
+ * Either way, the caller collects the results in the order it submitted them,
+ * so the page is the same. Call close() when finished, to release the threads.
+ *
+ * If enabled in the developer settings (and log levels), log the time it took
+ * to build each property.
+ */
+class PropertyListPopulator {
+    private static final Log log = LogFactory
+            .getLog(PropertyListPopulator.class);
+
+    static final String PROPERTY_THREADS = "individual.propertyList.threads";
+
+    private final String subjectUri;
+    private final ExecutorService executor;
+
+    PropertyListPopulator(VitroRequest vreq, String subjectUri) {
+        this(vreq, subjectUri, getThreadCount(vreq) > 1
+                && isContentThreadSafe());
+    }
+
+    PropertyListPopulator(VitroRequest vreq, String subjectUri,
+            boolean contentIsThreadSafe) {
+        this.subjectUri = subjectUri;
+
+        int threads = getThreadCount(vreq);
+        if (threads > 1 && !contentIsThreadSafe) {
+            log.debug("Content can't be read on several threads at once. "
+                    + "Ignoring " + PROPERTY_THREADS);
+            threads = 1;
+        }
+        if (threads > 1) {
+            this.executor = Executors.newFixedThreadPool(threads,
+                    new VitroBackgroundThread.Factory("PropertyListPopulator"));
+        } else {
+            this.executor = null;
+        }
+    }
+
+    private static int getThreadCount(VitroRequest vreq) {
+        String value = ConfigurationProperties.getBean(vreq).getProperty(
+                PROPERTY_THREADS, "1");
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + PROPERTY_THREADS + ": '" + value
+                    + "'. Using one thread.");
+            return 1;
+        }
+    }
+
+    /**
+     * Is the content RDFService safe to share among threads? The SDB
+     * RDFService isn't, and we don't know about any others.
+     */
+    private static boolean isContentThreadSafe() {
+        try {
+            ContentTripleSource source = ApplicationUtils.instance()
+                    .getContentTripleSource();
+            return source instanceof ContentTripleSourceTDB
+                    || source instanceof ContentTripleSourceSPARQL;
+        } catch (RuntimeException e) {
+            log.warn("Can't find the content triple source. "
+                    + "Building properties one at a time.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Build the template model for this property, now or on another thread.
+     */
+    <T> Future<T> submit(Property p, Callable<T> builder) {
+        Callable<T> timed = new TimedBuilder<>(p, builder);
+        if (executor == null) {
+            FutureTask<T> task = new FutureTask<>(timed);
+            task.run();
+            return task;
+        } else {
+            return executor.submit(timed);
+        }
+    }
+
+    /**
+     * Wait for the template model. Problems are thrown just as if the model
+     * had been built on this thread.
+     */
+    static <T> T collect(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while building the property list", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isLogging() {
+        if (!log.isInfoEnabled()) {
+            return false;
+        }
+        DeveloperSettings settings = DeveloperSettings.getInstance();
+        return settings.getBoolean(Key.PAGE_CONTENTS_LOG_PROPERTY_TIMINGS);
+    }
+
+    private class TimedBuilder<T> implements Callable<T> {
+        private final Property p;
+        private final Callable<T> builder;
+
+        TimedBuilder(Property p, Callable<T> builder) {
+            this.p = p;
+            this.builder = builder;
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (!isLogging()) {
+                return builder.call();
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                return builder.call();
+            } finally {
+                log.info(String.format("%5d ms for %s on %s (%s)",
+                        System.currentTimeMillis() - start, p.getURI(),
+                        subjectUri, Thread.currentThread().getName()));
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.DisplayVocabulary;
+
+public class DisplayModelIndexTest extends AbstractTestClass {
+    private static final String NS = "http://test/";
+    private static final String PAGE = NS + "page";
+    private static final String HOME = NS + "home";
+    private static final String DATA_GETTER = NS + "dg";
+    private static final String DATA_GETTER_TYPE = NS + "SomeDataGetter";
+    private static final String ACTION = NS + "action";
+
+    private OntModel displayModel;
+    private PageDaoJena pageDao;
+    private DisplayModelIndex index;
+
+    @Before
+    public void setup() {
+        displayModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        Resource page = displayModel.createResource(PAGE);
+        page.addProperty(RDF.type,
+                displayModel.createResource(DisplayVocabulary.PAGE_TYPE));
+        page.addProperty(DisplayVocabulary.URL_MAPPING, "/people");
+        page.addProperty(displayModel.createProperty(DisplayVocabulary.TITLE),
+                "People");
+        page.addProperty(DisplayVocabulary.REQUIRES_BODY_TEMPLATE,
+                "people.ftl");
+        page.addProperty(
+                displayModel.createProperty(DisplayVocabulary.HAS_DATA_GETTER),
+                displayModel.createResource(DATA_GETTER));
+        page.addProperty(
+                displayModel.createProperty(DisplayVocabulary.REQUIRES_ACTIONS),
+                displayModel.createResource(ACTION));
+        displayModel.createResource(DATA_GETTER).addProperty(RDF.type,
+                displayModel.createResource(DATA_GETTER_TYPE));
+
+        Resource home = displayModel.createResource(HOME);
+        home.addProperty(RDF.type,
+                displayModel.createResource(DisplayVocabulary.PAGE_TYPE));
+        home.addProperty(RDF.type,
+                displayModel.createResource(DisplayVocabulary.HOME_PAGE_TYPE));
+        home.addProperty(DisplayVocabulary.URL_MAPPING, "/");
+
+        SimpleOntModelSelector oms = new SimpleOntModelSelector();
+        oms.setDisplayModel(displayModel);
+        pageDao = new PageDaoJena(new WebappDaoFactoryJena(oms));
+
+        index = new DisplayModelIndex(displayModel);
+    }
+
+    @After
+    public void cleanup() {
+        DisplayModelIndex.setInstance(null);
+        index.close();
+    }
+
+    @Test
+    public void indexAnswersLikeTheQueries() {
+        Map<String, String> mappings = pageDao.getPageMappings();
+        Map<String, Object> page = pageDao.getPage(PAGE);
+        String homePageUri = pageDao.getHomePageUri();
+        List<String> dataGetterClasses = pageDao.getDataGetterClass(PAGE);
+        List<String> actions = pageDao.getRequiredActions(PAGE);
+        Map<String, Object> missing = pageDao.getPage(NS + "missing");
+
+        DisplayModelIndex.setInstance(index);
+        assertTrue(pageDao.getIndex() == index);
+        assertEquals(mappings, pageDao.getPageMappings());
+        assertEquals(page, pageDao.getPage(PAGE));
+        assertEquals(homePageUri, pageDao.getHomePageUri());
+        assertEquals(dataGetterClasses, pageDao.getDataGetterClass(PAGE));
+        assertEquals(actions, pageDao.getRequiredActions(PAGE));
+        assertEquals(missing, pageDao.getPage(NS + "missing"));
+        assertNull(pageDao.getDataGetterClass(HOME));
+
+        assertEquals("/people", page.get("urlMapping"));
+        assertEquals("People", page.get("title"));
+        assertEquals(Collections.singletonList(DATA_GETTER),
+                page.get("dataGetterURIs"));
+        assertEquals(1, index.getRebuildCount());
+    }
+
+    @Test
+    public void changeToAPageRebuildsTheIndex() {
+        assertEquals(new HashSet<>(Arrays.asList("/people", "/")),
+                index.getPageMappings().keySet());
+
+        displayModel.createResource(PAGE).addProperty(
+                DisplayVocabulary.URL_MAPPING, "/folks");
+        assertEquals(PAGE, index.getPageMappings().get("/folks"));
+        assertEquals(2, index.getRebuildCount());
+    }
+
+    @Test
+    public void pageWithoutAMappingIsNotMapped() {
+        displayModel.createResource(NS + "unmapped").addProperty(RDF.type,
+                displayModel.createResource(DisplayVocabulary.PAGE_TYPE));
+
+        Map<String, String> mappings = pageDao.getPageMappings();
+        DisplayModelIndex.setInstance(index);
+        assertEquals(mappings, pageDao.getPageMappings());
+        assertEquals(new HashSet<>(Arrays.asList("/people", "/")),
+                index.getPageMappings().keySet());
+    }
+
+    @Test
+    public void unrelatedChangeKeepsTheIndex() {
+        index.getPageMappings();
+        displayModel.createResource(PAGE).addProperty(RDFS.comment,
+                "Not indexed");
+        index.getPageMappings();
+        assertEquals(1, index.getRebuildCount());
+    }
+
+    @Test
+    public void otherModelIsNotCovered() {
+        assertTrue(index.covers(displayModel));
+        assertFalse(index.covers(ModelFactory
+                .createOntologyModel(OntModelSpec.OWL_MEM)));
+    }
+}
@@ -0,0 +1,182 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.VClassDao;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.adapters.VitroModelFactory;
+
+public class HierarchyIndexTest extends AbstractTestClass {
+    private static final String NS = "http://test/";
+
+    private OntModel tbox;
+    private HierarchyIndex index;
+
+    @Before
+    public void setup() {
+        tbox = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        subClass("A", "B");
+        subClass("B", "C");
+        subClass("C", "D");
+        subClass("X", "C");
+        subProperty("p1", "p2");
+        subProperty("p2", "p3");
+    }
+
+    @After
+    public void cleanup() {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Test
+    public void daoAnswersLikeTheWalk() {
+        SimpleOntModelSelector oms = new SimpleOntModelSelector();
+        oms.setTBoxModel(tbox);
+        WebappDaoFactoryJena wadf = new WebappDaoFactoryJena(oms);
+        VClassDao vcDao = wadf.getVClassDao();
+
+        List<String> subs = vcDao.getAllSubClassURIs(NS + "C");
+        List<String> supers = vcDao.getAllSuperClassURIs(NS + "A");
+        List<String> subProps = wadf.getObjectPropertyDao()
+                .getAllSubPropertyURIs(NS + "p3");
+        List<String> superProps = wadf.getObjectPropertyDao()
+                .getAllSuperPropertyURIs(NS + "p1");
+
+        index = new HierarchyIndex(tbox);
+        assertTrue(index.covers(tbox));
+        assertEquals(set(subs), set(vcDao.getAllSubClassURIs(NS + "C")));
+        assertEquals(set(supers), set(vcDao.getAllSuperClassURIs(NS + "A")));
+        assertEquals(set(subProps), set(wadf.getObjectPropertyDao()
+                .getAllSubPropertyURIs(NS + "p3")));
+        assertEquals(set(superProps), set(wadf.getObjectPropertyDao()
+                .getAllSuperPropertyURIs(NS + "p1")));
+
+        assertEquals(uris("A", "B", "X"), set(subs));
+        assertEquals(uris("A", "B", "C", "D"), set(supers));
+        assertEquals(1, index.getRebuildCount());
+    }
+
+    @Test
+    public void addedStatementPatchesTheIndex() {
+        index = new HierarchyIndex(tbox);
+        long version = index.getVersion();
+        assertFalse(index.isSubClassOf(NS + "A", NS + "E"));
+
+        subClass("D", "E");
+        assertTrue(index.isSubClassOf(NS + "A", NS + "E"));
+        assertEquals(uris("A", "B", "C", "D", "X"),
+                set(index.getSubClassURIs(NS + "E")));
+        assertTrue(index.getVersion() > version);
+        assertEquals(1, index.getRebuildCount());
+    }
+
+    @Test
+    public void removedStatementRebuildsTheIndex() {
+        index = new HierarchyIndex(tbox);
+        assertTrue(index.isSubPropertyOf(NS + "p1", NS + "p3"));
+
+        tbox.remove(res("p2"), RDFS.subPropertyOf, res("p3"));
+        assertFalse(index.isSubPropertyOf(NS + "p1", NS + "p3"));
+        assertEquals(uris("p2"), set(index.getSuperPropertyURIs(NS + "p1")));
+        assertEquals(2, index.getRebuildCount());
+    }
+
+    @Test
+    public void cycleIsHandled() {
+        subClass("D", "A");
+        index = new HierarchyIndex(tbox);
+        assertEquals(uris("A", "B", "C", "D"),
+                set(index.getSuperClassURIs(NS + "A")));
+        assertTrue(index.isSubClassOf(NS + "X", NS + "A"));
+    }
+
+    @Test
+    public void unionIsIndexedThroughItsParts() {
+        OntModel inferences = ModelFactory
+                .createOntologyModel(OntModelSpec.OWL_MEM);
+        OntModel union = VitroModelFactory.createUnion(tbox, inferences);
+        index = new HierarchyIndex(union, tbox, inferences);
+
+        assertTrue(index.covers(union));
+        assertNull(HierarchyIndex.forModel(tbox));
+        assertFalse(index.isSubClassOf(NS + "D", NS + "Z"));
+
+        inferences.add(res("D"), RDFS.subClassOf, res("Z"));
+        assertTrue(index.isSubClassOf(NS + "A", NS + "Z"));
+        inferences.remove(res("D"), RDFS.subClassOf, res("Z"));
+        assertFalse(index.isSubClassOf(NS + "A", NS + "Z"));
+    }
+
+    @Test
+    public void largeHierarchyIsFast() {
+        OntModel big = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        for (int i = 1; i < 2000; i++) {
+            big.add(res("c" + i), RDFS.subClassOf, res("c" + (i - 1) / 3));
+        }
+        index = new HierarchyIndex(big);
+        assertEquals(1999, index.getSubClassURIs(NS + "c0").size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 2000; i++) {
+            index.isSubClassOf(NS + "c" + i, NS + "c0");
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue("2000 lookups took " + elapsed + " ns",
+                elapsed < 2000 * 100000L);
+    }
+
+    // ----------------------------------------------------------------------
+    // Helper methods
+    // ----------------------------------------------------------------------
+
+    private void subClass(String sub, String sup) {
+        tbox.add(res(sub), RDF.type, OWL.Class);
+        tbox.add(res(sup), RDF.type, OWL.Class);
+        tbox.add(res(sub), RDFS.subClassOf, res(sup));
+    }
+
+    private void subProperty(String sub, String sup) {
+        tbox.add(res(sub), RDF.type, OWL.ObjectProperty);
+        tbox.add(res(sup), RDF.type, OWL.ObjectProperty);
+        tbox.add(res(sub), RDFS.subPropertyOf, res(sup));
+    }
+
+    private Resource res(String localName) {
+        return tbox.getResource(NS + localName);
+    }
+
+    private Set<String> uris(String... localNames) {
+        Set<String> set = new HashSet<>();
+        for (String localName : localNames) {
+            set.add(NS + localName);
+        }
+        return set;
+    }
+
+    private Set<String> set(List<String> list) {
+        return new HashSet<>(list);
+    }
+}
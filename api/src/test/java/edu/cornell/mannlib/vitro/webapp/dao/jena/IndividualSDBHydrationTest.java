@@ -0,0 +1,154 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.DataPropertyStatement;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.beans.ObjectPropertyStatement;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+/**
+ * A hydrated individual should give the same answers as one that goes to the
+ * triple store for each of them.
+ */
+public class IndividualSDBHydrationTest extends AbstractTestClass {
+	private static final String NS = "http://example.com/";
+	private static final String DATA = "" //
+			+ "@prefix ex: <http://example.com/> . \n" //
+			+ "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> . \n" //
+			+ "@prefix vitro: <http://vitro.mannlib.cornell.edu/ns/vitro/0.7#> . \n" //
+			+ "@prefix public: <http://vitro.mannlib.cornell.edu/ns/vitro/public#> . \n" //
+			+ "ex:alice rdfs:label \"Alice\" ; \n" //
+			+ "    a ex:Person ; \n" //
+			+ "    vitro:mostSpecificType ex:Person ; \n" //
+			+ "    vitro:searchBoostAnnot \"2.5\" ; \n" //
+			+ "    ex:email \"alice@example.com\" ; \n" //
+			+ "    ex:knows ex:bob, ex:carol, ex:nobody ; \n" //
+			+ "    public:mainImage ex:image . \n" //
+			+ "ex:image public:thumbnailImage ex:thumb . \n" //
+			+ "ex:bob rdfs:label \"Bob\" ; a ex:Person . \n" //
+			+ "ex:carol ex:email \"carol@example.com\" . \n" //
+			+ "ex:dave rdfs:label \"Dave\" . \n";
+
+	private IndividualDaoSDB dao;
+
+	@Before
+	public void setup() {
+		OntModel model = ModelFactory
+				.createOntologyModel(OntModelSpec.OWL_MEM);
+		model.read(new StringReader(DATA), null, "TTL");
+		WebappDaoFactorySDB wadf = new WebappDaoFactorySDB(
+				new RDFServiceModel(model), new SimpleOntModelSelector(model));
+		dao = (IndividualDaoSDB) wadf.getIndividualDao();
+	}
+
+	@Test
+	public void hydratedAnswersMatchTheQueries() {
+		Individual plain = dao.getIndividualByURI(NS + "alice");
+		IndividualSDB hydrated = hydrated("alice");
+		assertTrue(hydrated.isHydrated());
+
+		assertEquals(plain.getMostSpecificTypeURIs(),
+				hydrated.getMostSpecificTypeURIs());
+		assertEquals(plain.getSearchBoost(), hydrated.getSearchBoost());
+		assertEquals(plain.hasThumb(), hydrated.hasThumb());
+		assertEquals(plain.getRdfsLabel(), hydrated.getRdfsLabel());
+		assertEquals(data(plain.getDataPropertyStatements(NS + "email")),
+				data(hydrated.getDataPropertyStatements(NS + "email")));
+		assertEquals(objects(plain.getObjectPropertyStatements(NS + "knows")),
+				objects(hydrated.getObjectPropertyStatements(NS + "knows")));
+		assertEquals(names(plain.getRelatedIndividuals(NS + "knows")),
+				names(hydrated.getRelatedIndividuals(NS + "knows")));
+	}
+
+	@Test
+	public void linkedIndividualsWithoutLabelOrTypeStillExist() {
+		List<String> names = names(hydrated("alice").getRelatedIndividuals(
+				NS + "knows"));
+		assertEquals(Arrays.asList("Bob", "carol"), names);
+	}
+
+	@Test
+	public void missingValues() {
+		IndividualSDB dave = hydrated("dave");
+		assertNull(dave.getSearchBoost());
+		assertFalse(dave.hasThumb());
+		assertTrue(dave.getMostSpecificTypeURIs().isEmpty());
+		assertNull(dave.getRelatedIndividual(NS + "knows"));
+	}
+
+	@Test
+	public void batchKeepsOrderAndSkipsUnknownURIs() {
+		List<Individual> individuals = dao.getHydratedIndividuals(Arrays
+				.asList(NS + "dave", NS + "nobody", NS + "alice", NS + "dave"));
+		assertEquals(2, individuals.size());
+		assertEquals(NS + "dave", individuals.get(0).getURI());
+		assertEquals(NS + "alice", individuals.get(1).getURI());
+	}
+
+	@Test
+	public void individualsByURIsAreHydrated() {
+		List<Individual> individuals = dao.getIndividualsByURIs(Arrays
+				.asList(NS + "alice", "", NS + "nobody", NS + "dave"));
+		assertEquals(2, individuals.size());
+		assertEquals(NS + "alice", individuals.get(0).getURI());
+		assertTrue(((IndividualSDB) individuals.get(0)).isHydrated());
+		assertEquals(NS + "dave", individuals.get(1).getURI());
+		assertTrue(((IndividualSDB) individuals.get(1)).isHydrated());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private IndividualSDB hydrated(String localName) {
+		return (IndividualSDB) dao.getHydratedIndividuals(
+				Collections.singletonList(NS + localName)).get(0);
+	}
+
+	private List<String> names(List<Individual> individuals) {
+		List<String> names = new ArrayList<>();
+		for (Individual ind : individuals) {
+			names.add(ind.getName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private List<String> objects(List<ObjectPropertyStatement> stmts) {
+		List<String> objects = new ArrayList<>();
+		for (ObjectPropertyStatement stmt : stmts) {
+			objects.add(stmt.getSubjectURI() + " " + stmt.getPropertyURI()
+					+ " " + stmt.getObjectURI());
+		}
+		Collections.sort(objects);
+		return objects;
+	}
+
+	private List<String> data(List<DataPropertyStatement> stmts) {
+		List<String> data = new ArrayList<>();
+		for (DataPropertyStatement stmt : stmts) {
+			data.add(stmt.getData() + " " + stmt.getDatatypeURI() + " "
+					+ stmt.getLanguage());
+		}
+		return data;
+	}
+}
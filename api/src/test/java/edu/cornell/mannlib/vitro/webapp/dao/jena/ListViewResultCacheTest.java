@@ -0,0 +1,155 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+
+public class ListViewResultCacheTest extends AbstractTestClass {
+    private static final String NS = "http://test/";
+    private static final String SELECT = ""
+            + "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> \n"
+            + "SELECT ?object ?label WHERE { \n"
+            + "  ?subject ?property ?object . \n"
+            + "  ?object rdfs:label ?label \n"
+            + "} ORDER BY ASC(?label)";
+    private static final String CONSTRUCT = ""
+            + "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> \n"
+            + "CONSTRUCT { ?subject ?property ?object . \n"
+            + "            ?object rdfs:label ?label } WHERE { \n"
+            + "  ?subject ?property ?object . \n"
+            + "  ?object rdfs:label ?label \n"
+            + "}";
+
+    private OntModel ontModel;
+    private WebappDaoFactoryJena wadf;
+    private ObjectPropertyStatementDaoJena dao;
+    private ListViewResultCache cache;
+
+    @Before
+    public void setup() throws RDFServiceException {
+        ontModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        Resource s = ontModel.createResource(NS + "s");
+        Property p = ontModel.createProperty(NS + "p");
+        Resource o = ontModel.createResource(NS + "o");
+        ontModel.add(s, p, o);
+        ontModel.add(o, RDFS.label, "One");
+
+        wadf = new WebappDaoFactoryJena(new SimpleOntModelSelector(ontModel));
+        dao = (ObjectPropertyStatementDaoJena) wadf
+                .getObjectPropertyStatementDao();
+
+        cache = new ListViewResultCache();
+        cache.setMaxEntries(10);
+        dao.listViewCache = cache;
+        cache.listenTo(wadf.rdfService, "CONTENT");
+    }
+
+    @Test
+    public void repeatedListViewIsAnsweredFromTheCache() {
+        List<Map<String, String>> first = listView();
+        first.get(0).put("label", "Modified by a postprocessor");
+
+        List<Map<String, String>> second = listView();
+        assertEquals("One", second.get(0).get("label"));
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void changeToALinkedNodeDiscardsTheListView()
+            throws RDFServiceException {
+        listView();
+        change(NS + "o", "Two");
+        assertEquals("Two", listView().get(0).get("label"));
+        assertEquals(0, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void changeToAnUnrelatedNodeKeepsTheListView()
+            throws RDFServiceException {
+        listView();
+        change(NS + "unrelated", "Three");
+        listView();
+        assertEquals(1, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void listViewFromAnotherStoreIsNotCached() {
+        WebappDaoFactoryJena otherWadf = new WebappDaoFactoryJena(
+                new SimpleOntModelSelector(ontModel));
+        dao = (ObjectPropertyStatementDaoJena) otherWadf
+                .getObjectPropertyStatementDao();
+        dao.listViewCache = cache;
+
+        listView();
+        listView();
+        assertEquals(0, cache.getStatistics().getSize());
+        assertEquals(0, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void resultOfAnInterruptedQueryIsNotKept() {
+        long generation = cache.getGeneration();
+        cache.invalidate(Collections.singleton(NS + "other"));
+        cache.put("key", Collections.<Map<String, String>> emptyList(),
+                Collections.singleton(NS + "s"), generation);
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void leastRecentlyUsedListViewIsEvicted() {
+        cache.setMaxEntries(2);
+        Set<String> nodes = new HashSet<>();
+        List<Map<String, String>> rows = Collections.emptyList();
+        cache.put("a", rows, nodes, cache.getGeneration());
+        cache.put("b", rows, nodes, cache.getGeneration());
+        cache.get("a");
+        cache.put("c", rows, nodes, cache.getGeneration());
+        assertEquals(rows, cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    // ----------------------------------------------------------------------
+    // Helper methods
+    // ----------------------------------------------------------------------
+
+    private List<Map<String, String>> listView() {
+        return dao.getObjectPropertyStatementsForIndividualByProperty(
+                NS + "s", NS + "p", "object", null, null, SELECT,
+                Collections.singleton(CONSTRUCT), "asc");
+    }
+
+    private void change(String uri, String label) throws RDFServiceException {
+        ChangeSet cs = wadf.rdfService.manufactureChangeSet();
+        cs.addRemoval(model(uri, "One"), null);
+        cs.addAddition(model(uri, label), null);
+        wadf.rdfService.changeSetUpdate(cs);
+    }
+
+    private Model model(String uri, String label) {
+        Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(uri), RDFS.label, label);
+        return model;
+    }
+}
@@ -0,0 +1,134 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.StringReader;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class RDFServiceGraphFindCacheTest extends AbstractTestClass {
+	private static final String NS = "http://example.com/";
+	private static final String DATA = "" //
+			+ "@prefix ex: <http://example.com/> . \n" //
+			+ "ex:a ex:p ex:b, ex:c . \n" //
+			+ "ex:a ex:q \"label\" . \n" //
+			+ "ex:b ex:p ex:c . \n";
+
+	private static final Node A = uri("a");
+	private static final Node B = uri("b");
+	private static final Node D = uri("d");
+	private static final Node P = uri("p");
+
+	private CountingRDFService rdfService;
+	private RDFServiceGraph graph;
+
+	@Before
+	public void setup() {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(DATA), null, "TTL");
+		rdfService = new CountingRDFService(model);
+		graph = new RDFServiceGraph(rdfService);
+		graph.enableFindCache(60000);
+	}
+
+	@After
+	public void closeGraph() {
+		graph.close();
+	}
+
+	@Test
+	public void repeatedFindIsAnsweredFromTheCache() {
+		assertEquals(2, graph.find(A, P, null).toList().size());
+		assertEquals(2, graph.find(A, P, null).toList().size());
+		assertEquals(1, rdfService.queries);
+	}
+
+	@Test
+	public void disabledCacheRunsEveryQuery() {
+		graph.disableFindCache();
+		graph.find(A, P, null).toList();
+		graph.find(A, P, null).toList();
+		assertEquals(2, rdfService.queries);
+	}
+
+	@Test
+	public void ownWritesClearTheCache() {
+		graph.find(A, P, null).toList();
+		graph.add(new Triple(A, P, D));
+		assertEquals(3, graph.find(A, P, null).toList().size());
+		assertEquals(2, rdfService.queries);
+	}
+
+	@Test
+	public void otherWritersClearTheCache() {
+		assertEquals(2, graph.find(A, P, null).toList().size());
+		new RDFServiceGraph(rdfService).delete(new Triple(A, P, B));
+		assertEquals(1, graph.find(A, P, null).toList().size());
+		assertEquals(2, rdfService.queries);
+	}
+
+	@Test
+	public void resultsOfAQueryInterruptedByAChangeAreNotCached() {
+		rdfService.duringQuery = () -> new RDFServiceGraph(rdfService)
+				.add(new Triple(A, P, D));
+		assertEquals(2, graph.find(A, P, null).toList().size());
+
+		rdfService.duringQuery = null;
+		assertEquals(3, graph.find(A, P, null).toList().size());
+	}
+
+	@Test
+	public void closedGraphStopsListening() {
+		graph.close();
+		assertFalse(graph.isFindCacheEnabled());
+		assertEquals(0, rdfService.getRegisteredListeners().size());
+	}
+
+	@Test
+	public void sizeUsesASingleCount() {
+		assertEquals(4, graph.size());
+		assertEquals(1, rdfService.queries);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private static Node uri(String localName) {
+		return NodeFactory.createURI(NS + localName);
+	}
+
+	private static class CountingRDFService extends RDFServiceModel {
+		int queries;
+		Runnable duringQuery;
+
+		CountingRDFService(Model model) {
+			super(model);
+		}
+
+		@Override
+		public void sparqlSelectQuery(String query, ResultSetConsumer consumer)
+				throws RDFServiceException {
+			queries++;
+			super.sparqlSelectQuery(query, consumer);
+			if (duringQuery != null) {
+				duringQuery.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.update.UpdateAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.event.EditEvent;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class RDFServiceWriteBatcherTest extends AbstractTestClass {
+	private static final String NS = "http://example.com/";
+
+	private static final Node A = uri("a");
+	private static final Node B = uri("b");
+	private static final Node C = uri("c");
+	private static final Node P = uri("p");
+
+	private CountingRDFService rdfService;
+	private RDFServiceWriteBatcher batcher;
+	private RDFServiceGraph graph;
+
+	@Before
+	public void setup() {
+		rdfService = new CountingRDFService(ModelFactory.createDefaultModel());
+		batcher = new RDFServiceWriteBatcher(100);
+		graph = new RDFServiceGraph(rdfService);
+		graph.setWriteBatcher(batcher);
+	}
+
+	@Test
+	public void writesAreHeldUntilTheGraphIsRead() {
+		graph.add(new Triple(A, P, B));
+		graph.add(new Triple(A, P, C));
+		graph.delete(new Triple(A, P, C));
+		assertEquals(0, rdfService.changeSets);
+
+		assertEquals(1, graph.find(A, P, null).toList().size());
+		assertEquals(1, rdfService.changeSets);
+	}
+
+	@Test
+	public void bulkOperationIsOneChangeSet() {
+		GraphUtil.add(graph,
+				Arrays.asList(new Triple(A, P, B), new Triple(A, P, C)));
+		assertEquals(1, rdfService.changeSets);
+	}
+
+	@Test
+	public void fullBatchIsWritten() {
+		batcher = new RDFServiceWriteBatcher(2);
+		graph.setWriteBatcher(batcher);
+		graph.add(new Triple(A, P, B));
+		graph.add(new Triple(A, P, C));
+		graph.add(new Triple(B, P, C));
+		assertEquals(1, rdfService.changeSets);
+
+		graph.close();
+		assertEquals(2, rdfService.changeSets);
+		assertEquals(1, batcher.getStatistics().getChangeSetsAvoided());
+	}
+
+	@Test
+	public void readingAnotherGraphInTheGroupWritesTheHeldTriples() {
+		RDFServiceGraph other = new RDFServiceGraph(rdfService);
+		other.setWriteBatcher(batcher);
+		graph.add(new Triple(A, P, B));
+		assertTrue(other.contains(A, P, B));
+	}
+
+	@Test
+	public void editEventEndsTheBatch() {
+		Model model = RDFServiceGraph.createRDFServiceModel(graph);
+		graph.add(new Triple(A, P, B));
+		graph.add(new Triple(A, P, C));
+		model.notifyEvent(new EditEvent(null, false));
+		// One for the triples, one for the event.
+		assertEquals(2, rdfService.changeSets);
+	}
+
+	@Test
+	public void updateToTheDefaultGraphIsOneChangeSet() {
+		RDFServiceDataset dataset = new RDFServiceDataset(rdfService);
+		dataset.begin(ReadWrite.WRITE);
+		UpdateAction.parseExecute("INSERT DATA { <" + NS + "a> <" + NS
+				+ "p> <" + NS + "b> . <" + NS + "a> <" + NS + "p> <" + NS
+				+ "c> . }", dataset);
+		dataset.commit();
+		dataset.end();
+		assertEquals(1, rdfService.changeSets);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private static Node uri(String localName) {
+		return NodeFactory.createURI(NS + localName);
+	}
+
+	private static class CountingRDFService extends RDFServiceModel {
+		int changeSets;
+
+		CountingRDFService(Model model) {
+			super(model);
+		}
+
+		@Override
+		public boolean changeSetUpdate(ChangeSet changeSet)
+				throws RDFServiceException {
+			changeSets++;
+			return super.changeSetUpdate(changeSet);
+		}
+	}
+}
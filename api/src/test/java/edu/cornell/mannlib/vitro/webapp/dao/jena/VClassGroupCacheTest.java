@@ -3,6 +3,8 @@
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,8 +14,14 @@ import org.apache.jena.ontology.OntModel;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 
+import edu.cornell.mannlib.vitro.webapp.beans.VClass;
+import edu.cornell.mannlib.vitro.webapp.beans.VClassGroup;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.VClassGroupCache.IndexTally;
+
 public class VClassGroupCacheTest {
 
     @Before
@@ -74,6 +82,57 @@ public class VClassGroupCacheTest {
         Assert.assertTrue("Expected it to NOT be a name change but it was.",  notNameChange);
     }
 
+    @Test
+    public void testAdjustCounts() {
+        VClass person = new VClass("http://test/Person");
+        person.setEntityCount(10);
+        VClass student = new VClass("http://test/Student");
+        VClassGroup people = new VClassGroup("http://test/people", "people");
+        people.add(person);
+        people.add(student);
+        people.setIndividualCount(10);
+
+        VClass place = new VClass("http://test/Place");
+        place.setEntityCount(3);
+        VClassGroup places = new VClassGroup("http://test/places", "places");
+        places.add(place);
+        places.setIndividualCount(3);
+
+        // One person becomes a student, a new student is added, a place is deleted.
+        IndexTally before = new IndexTally();
+        before.add(values("http://test/Person"), values("http://test/people"));
+        before.add(values("http://test/Place"), values("http://test/places"));
+        IndexTally after = new IndexTally();
+        after.add(values("http://test/Person", "http://test/Student"), values("http://test/people"));
+        after.add(values("http://test/Person", "http://test/Student"), values("http://test/people"));
+
+        List<VClassGroup> groups = Arrays.asList(people, places);
+        VClassGroupCache.adjustCounts(groups, before, after);
+
+        Assert.assertEquals(11, person.getEntityCount());
+        Assert.assertEquals(2, student.getEntityCount());
+        Assert.assertEquals(11, people.getIndividualCount());
+        Assert.assertEquals(2, place.getEntityCount());
+        Assert.assertEquals(2, places.getIndividualCount());
+    }
+
+    @Test
+    public void testIsClassDeclaration() {
+        Assert.assertTrue(VClassGroupCache.isClassDeclaration(
+                ResourceFactory.createStatement(
+                        ResourceFactory.createResource("http://test/Person"),
+                        RDF.type, OWL.Class)));
+        Assert.assertFalse(VClassGroupCache.isClassDeclaration(
+                ResourceFactory.createStatement(
+                        ResourceFactory.createResource("http://test/individual1"),
+                        RDF.type,
+                        ResourceFactory.createResource("http://test/Person"))));
+    }
+
+    private static List<Object> values(Object... values) {
+        return Arrays.asList(values);
+    }
+
     static final String prefixes = 
     "@prefix dc:      <http://purl.org/dc/elements/1.1/> . \n" +
     "@prefix pvs:     <http://vivoweb.org/ontology/provenance-support#> . \n" +
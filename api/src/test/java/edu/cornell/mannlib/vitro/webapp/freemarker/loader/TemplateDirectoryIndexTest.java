@@ -0,0 +1,147 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.freemarker.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPieces;
+
+public class TemplateDirectoryIndexTest extends AbstractTestClass {
+	private static final Log log = LogFactory
+			.getLog(TemplateDirectoryIndexTest.class);
+
+	private static final int DIRECTORIES = 40;
+	private static final int TEMPLATES_PER_DIRECTORY = 25;
+
+	private File baseDir;
+	private FreemarkerTemplateLoader loader;
+
+	@Before
+	public void setup() throws IOException {
+		baseDir = createTempDirectory("TemplateDirectoryIndexTest");
+		for (int d = 0; d < DIRECTORIES; d++) {
+			File dir = new File(new File(baseDir, "group" + (d % 4)), "dir"
+					+ d);
+			dir.mkdirs();
+			for (int t = 0; t < TEMPLATES_PER_DIRECTORY; t++) {
+				String name = "template" + (t + d * 3);
+				createFile(dir, name + ".ftl", "");
+				if (t % 5 == 0) {
+					createFile(dir, name + "_es.ftl", "");
+					createFile(dir, name + "_es_MX.ftl", "");
+				}
+			}
+		}
+		createFile(baseDir, "template7.ftl", "");
+		loader = new FreemarkerTemplateLoader(baseDir);
+	}
+
+	@After
+	public void cleanup() {
+		TemplateDirectoryIndex.closeAll();
+		purgeDirectoryRecursively(baseDir);
+	}
+
+	@Test
+	public void indexAgreesWithTreeWalk() throws IOException {
+		for (String name : searchTerms()) {
+			assertEquals(name, best(loader.walkForMatches(new PathPieces(name))),
+					loader.findTemplateSource(name));
+		}
+		assertEquals(new File(baseDir, "template7.ftl"),
+				loader.findTemplateSource("admin/template7.ftl"));
+	}
+
+	/**
+	 * Only logs the times: a timing assertion would fail on a busy machine.
+	 */
+	@Test
+	public void timeIndexAgainstTreeWalk() throws IOException {
+		String[] names = searchTerms();
+
+		long walkStart = System.nanoTime();
+		for (String name : names) {
+			loader.walkForMatches(new PathPieces(name));
+		}
+		long walkTime = System.nanoTime() - walkStart;
+
+		long indexStart = System.nanoTime();
+		for (String name : names) {
+			loader.findTemplateSource(name);
+		}
+		long indexTime = System.nanoTime() - indexStart;
+
+		log.debug(String.format(
+				"%d lookups in %d files: walk %d ms, index %d ms",
+				names.length, index().size(), walkTime / 1000000,
+				indexTime / 1000000));
+	}
+
+	@Test
+	public void newTemplateIsFound() throws Exception {
+		assertNull(loader.findTemplateSource("brandNew.ftl"));
+
+		File dir = new File(baseDir, "newDir");
+		dir.mkdir();
+		File brandNew = createFile(dir, "brandNew_es.ftl", "");
+		assertEquals(brandNew, waitFor("brandNew.ftl", true));
+	}
+
+	@Test
+	public void deletedTemplateIsForgotten() throws Exception {
+		File dir = new File(new File(baseDir, "group3"), "dir39");
+		assertEquals(new File(dir, "template141.ftl"),
+				loader.findTemplateSource("template141.ftl"));
+
+		purgeDirectoryRecursively(dir);
+		assertNull(waitFor("template141.ftl", false));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private String[] searchTerms() {
+		return new String[] { "template0.ftl", "template0_es.ftl",
+				"template0_es_MX.ftl", "template5_fr.ftl", "template7.ftl",
+				"template30.ftl", "template30_es_MX.ftl", "template99.ftl",
+				"template140_es.ftl", "missing.ftl", "template12.txt" };
+	}
+
+	private TemplateDirectoryIndex index() {
+		return TemplateDirectoryIndex.forDirectory(baseDir.toPath());
+	}
+
+	private File best(SortedSet<PathPieces> matches) {
+		return matches.isEmpty() ? null : matches.last().path.toFile();
+	}
+
+	/**
+	 * The WatchService takes a moment to report the change. Where it polls
+	 * instead of using native events (on macOS, every 10 seconds), it can take
+	 * a good deal longer, so give it a minute.
+	 */
+	private Object waitFor(String name, boolean present) throws Exception {
+		long deadline = System.currentTimeMillis() + 60000;
+		while (System.currentTimeMillis() < deadline) {
+			Object source = loader.findTemplateSource(name);
+			if ((source != null) == present) {
+				return source;
+			}
+			Thread.sleep(100);
+		}
+		return loader.findTemplateSource(name);
+	}
+}
@@ -0,0 +1,132 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+/**
+ * Run SELECT queries through the filter, and check which solutions survive.
+ */
+public class LanguageFilteringSelectQueryTest extends AbstractTestClass {
+	private static final String DATA = "" //
+			+ "@prefix ex: <http://example.com/> . \n" //
+			+ "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> . \n" //
+			+ "ex:a rdfs:label \"A en\"@en, \"A fr\"@fr, \"A none\" . \n" //
+			+ "ex:b rdfs:label \"B fr\"@fr . \n" //
+			+ "ex:c rdfs:label \"C es\"@es, \"C en-US\"@en-US . \n" //
+			+ "ex:a ex:type ex:T1, ex:T2 . \n";
+
+	private static final String PREFIXES = "" //
+			+ "PREFIX ex: <http://example.com/> \n" //
+			+ "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> \n";
+
+	private static final List<String> EXPECTED_LABELS = Arrays.asList(
+			"a A en", "b B fr", "c C en-US");
+
+	private LanguageFilteringRDFService filtering;
+
+	@Before
+	public void setup() {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(DATA), null, "TTL");
+		filtering = new LanguageFilteringRDFService(new RDFServiceModel(
+				model), Arrays.asList("en-US"));
+	}
+
+	@Test
+	public void unorderedConsumer() throws Exception {
+		assertEquals(EXPECTED_LABELS, sorted(consume(PREFIXES
+				+ "SELECT ?s ?label WHERE { ?s rdfs:label ?label }")));
+	}
+
+	@Test
+	public void orderedBySubjectConsumer() throws Exception {
+		assertEquals(EXPECTED_LABELS, consume(PREFIXES
+				+ "SELECT ?s ?label WHERE { ?s rdfs:label ?label } ORDER BY ?s"));
+	}
+
+	@Test
+	public void orderedByLiteralConsumer() throws Exception {
+		assertEquals(EXPECTED_LABELS, sorted(consume(PREFIXES
+				+ "SELECT ?s ?label WHERE { ?s rdfs:label ?label } ORDER BY ?label")));
+	}
+
+	@Test
+	public void orderedByExpressionConsumer() throws Exception {
+		assertEquals(EXPECTED_LABELS, sorted(consume(PREFIXES
+				+ "SELECT ?s ?label WHERE { ?s rdfs:label ?label } "
+				+ "ORDER BY DESC(STR(?label))")));
+	}
+
+	@Test
+	public void otherVariablesKeepSolutionsApart() throws Exception {
+		List<String> expected = Arrays.asList(
+				"a A en http://example.com/T1", "a A en http://example.com/T2");
+		assertEquals(expected, sorted(consume(PREFIXES
+				+ "SELECT ?s ?label ?type WHERE { "
+				+ "?s rdfs:label ?label . ?s ex:type ?type } ORDER BY ?s")));
+	}
+
+	@Test
+	public void jsonStream() throws Exception {
+		try (InputStream in = filtering.sparqlSelectQuery(PREFIXES
+				+ "SELECT ?s ?label WHERE { ?s rdfs:label ?label }",
+				ResultFormat.JSON)) {
+			ResultSet rs = ResultSetFactory.fromJSON(in);
+			List<String> labels = new ArrayList<>();
+			while (rs.hasNext()) {
+				labels.add(describe(rs.next()));
+			}
+			assertEquals(EXPECTED_LABELS, sorted(labels));
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private List<String> consume(String query) throws Exception {
+		final List<String> labels = new ArrayList<>();
+		filtering.sparqlSelectQuery(query, new ResultSetConsumer() {
+			@Override
+			protected void processQuerySolution(QuerySolution qs) {
+				labels.add(describe(qs));
+			}
+		});
+		return labels;
+	}
+
+	private String describe(QuerySolution qs) {
+		String s = qs.getResource("s").getLocalName();
+		String label = qs.getLiteral("label").getLexicalForm();
+		RDFNode type = qs.get("type");
+		return s + " " + label + ((type == null) ? "" : " " + type);
+	}
+
+	private List<String> sorted(List<String> list) {
+		List<String> copy = new ArrayList<>(list);
+		Collections.sort(copy);
+		return copy;
+	}
+}
@@ -0,0 +1,237 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat.N3;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChangeListenerDispatcher.Mode;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChangeListenerDispatcher.Status;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class ChangeListenerDispatcherTest extends AbstractTestClass {
+	private final CountDownLatch gate = new CountDownLatch(1);
+	private ChangeListenerDispatcher dispatcher;
+	private RDFServiceModel rdfService;
+
+	@Before
+	public void setup() {
+		setLoggerLevel(ChangeListenerDispatcher.class, Level.OFF);
+		dispatcher = new ChangeListenerDispatcher();
+		rdfService = new RDFServiceModel(ModelFactory.createDefaultModel());
+		rdfService.listenerDispatcher = dispatcher;
+	}
+
+	@After
+	public void shutdown() {
+		gate.countDown();
+		dispatcher.shutdown(5000);
+	}
+
+	@Test
+	public void synchronousListenerIsNotifiedOnTheWritersThread()
+			throws RDFServiceException {
+		RecordingListener listener = new RecordingListener(false);
+		rdfService.registerListener(listener);
+		add("a");
+		assertEquals(Arrays.asList("ADD a"), listener.heard);
+		assertSame(Thread.currentThread(), listener.thread);
+		assertTrue(dispatcher.getStatus().isEmpty());
+	}
+
+	@Test
+	public void asynchronousListenerHearsEverythingInOrder()
+			throws RDFServiceException {
+		RecordingListener listener = new RecordingListener(true);
+		dispatcher.setMode(listener, Mode.ASYNCHRONOUS);
+		rdfService.registerListener(listener);
+
+		add("a");
+		add("b");
+		rdfService.notifyListenersOfEvent("event");
+		add("c");
+
+		// The writer did not wait for the listener.
+		assertTrue(listener.heard.size() <= 1);
+		Status status = dispatcher.getStatus().get(0);
+		assertTrue(status.getQueueDepth() >= 3);
+		assertTrue(status.getLagMillis() >= 0);
+
+		gate.countDown();
+		assertTrue(dispatcher.waitUntilIdle(5000));
+		assertEquals(Arrays.asList("ADD a", "ADD b", "event", "ADD c"),
+				listener.heard);
+		assertNotSame(Thread.currentThread(), listener.thread);
+		assertEquals(4, dispatcher.getStatus().get(0).getDelivered());
+	}
+
+	@Test
+	public void modeCanComeFromTheClassName() {
+		RecordingListener listener = new RecordingListener(false);
+		assertEquals(Mode.SYNCHRONOUS, dispatcher.getMode(listener));
+		dispatcher.configure(Collections.singleton(RecordingListener.class
+				.getName()), 10);
+		assertEquals(Mode.ASYNCHRONOUS, dispatcher.getMode(listener));
+	}
+
+	@Test
+	public void fullQueueMakesTheWriterWait() throws Exception {
+		dispatcher.configure(Collections.<String> emptyList(), 1);
+		RecordingListener listener = new RecordingListener(true);
+		dispatcher.setMode(listener, Mode.ASYNCHRONOUS);
+		rdfService.registerListener(listener);
+
+		add("a");
+		waitForDelivery(listener, "a");
+		add("b");
+
+		final CountDownLatch written = new CountDownLatch(1);
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					add("c");
+				} catch (RDFServiceException e) {
+					throw new RuntimeException(e);
+				}
+				written.countDown();
+			}
+		};
+		writer.start();
+		assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(1, dispatcher.getStatus().get(0).getWaits());
+
+		gate.countDown();
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+		assertTrue(dispatcher.waitUntilIdle(5000));
+		assertEquals(Arrays.asList("ADD a", "ADD b", "ADD c"), listener.heard);
+	}
+
+	@Test
+	public void failingListenerDoesNotStopTheQueue()
+			throws RDFServiceException {
+		RecordingListener listener = new RecordingListener(false) {
+			@Override
+			public void notifyEvent(String graphURI, Object event) {
+				throw new IllegalStateException("failed");
+			}
+		};
+		dispatcher.setMode(listener, Mode.ASYNCHRONOUS);
+		rdfService.registerListener(listener);
+
+		rdfService.notifyListenersOfEvent("event");
+		add("a");
+
+		assertTrue(dispatcher.waitUntilIdle(5000));
+		assertEquals(Arrays.asList("ADD a"), listener.heard);
+		assertEquals(1, dispatcher.getStatus().get(0).getFailed());
+	}
+
+	@Test
+	public void unregisteredListenerIsReleased() throws RDFServiceException {
+		RecordingListener listener = new RecordingListener(false);
+		dispatcher.setMode(listener, Mode.ASYNCHRONOUS);
+		rdfService.registerListener(listener);
+		add("a");
+		rdfService.unregisterListener(listener);
+		assertTrue(dispatcher.waitUntilIdle(5000));
+		assertTrue(dispatcher.getStatus().isEmpty());
+		assertEquals(Arrays.asList("ADD a"), listener.heard);
+	}
+
+	@Test
+	public void reregisteredListenerWaitsForItsOldQueueToDrain()
+			throws RDFServiceException {
+		RecordingListener listener = new RecordingListener(true);
+		dispatcher.setMode(listener, Mode.ASYNCHRONOUS);
+		rdfService.registerListener(listener);
+		add("a");
+		add("b");
+		rdfService.unregisterListener(listener);
+
+		dispatcher.setMode(listener, Mode.ASYNCHRONOUS);
+		rdfService.registerListener(listener);
+		add("c");
+		assertEquals(2, dispatcher.getStatus().size());
+
+		gate.countDown();
+		assertTrue(dispatcher.waitUntilIdle(5000));
+		assertEquals(Arrays.asList("ADD a", "ADD b", "ADD c"), listener.heard);
+		assertEquals(1, dispatcher.getStatus().size());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private void add(String localName) throws RDFServiceException {
+		ChangeSet cs = rdfService.manufactureChangeSet();
+		cs.addAddition(RDFServiceUtils.toInputStream("<http://test/"
+				+ localName + "> <http://test/p> \"" + localName + "\" ."),
+				N3, null);
+		rdfService.changeSetUpdate(cs);
+	}
+
+	private void waitForDelivery(RecordingListener listener, String localName)
+			throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			if (listener.heard.contains("ADD " + localName)) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private class RecordingListener implements ChangeListener {
+		final List<String> heard = Collections
+				.synchronizedList(new ArrayList<String>());
+		final boolean gated;
+		volatile Thread thread;
+
+		RecordingListener(boolean gated) {
+			this.gated = gated;
+		}
+
+		@Override
+		public void notifyModelChange(ModelChange modelChange) {
+			thread = Thread.currentThread();
+			String object = modelChange.getModel().listObjects().next()
+					.asLiteral().getString();
+			heard.add(modelChange.getOperation() + " " + object);
+			if (gated) {
+				try {
+					gate.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		public void notifyEvent(String graphURI, Object event) {
+			heard.add(String.valueOf(event));
+		}
+	}
+}
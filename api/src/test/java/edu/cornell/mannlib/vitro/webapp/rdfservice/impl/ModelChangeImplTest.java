@@ -0,0 +1,154 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat.N3;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+/**
+ * A change set should be parsed no more than once, no matter how many
+ * listeners look at it.
+ */
+public class ModelChangeImplTest extends AbstractTestClass {
+	private static final String TRIPLES = "" //
+			+ "<http://example.com/a> <http://example.com/p> <http://example.com/b> . \n" //
+			+ "<http://example.com/a> <http://example.com/q> \"label\" . \n";
+
+	private Model store;
+	private RDFServiceModel rdfService;
+	private List<Integer> changeSizes;
+	private List<Statement> jenaAdds;
+
+	@Before
+	public void setup() throws RDFServiceException {
+		store = ModelFactory.createDefaultModel();
+		rdfService = new RDFServiceModel(store);
+		changeSizes = new ArrayList<>();
+		jenaAdds = new ArrayList<>();
+
+		rdfService.registerListener(new SizeListener());
+		rdfService.registerListener(new SizeListener());
+		rdfService.registerJenaModelChangedListener(new StatementListener() {
+			@Override
+			public void addedStatement(Statement s) {
+				jenaAdds.add(s);
+			}
+		});
+	}
+
+	@Test
+	public void streamIsParsedOnceForStoreAndAllListeners()
+			throws RDFServiceException {
+		ChangeSet cs = rdfService.manufactureChangeSet();
+		cs.addAddition(RDFServiceUtils.toInputStream(TRIPLES), N3, null);
+
+		long parses = ModelChangeImpl.getParseCount();
+		rdfService.changeSetUpdate(cs);
+
+		assertEquals(1, ModelChangeImpl.getParseCount() - parses);
+		assertEquals(2, store.size());
+		assertEquals(Arrays.asList(2, 2), changeSizes);
+		assertEquals(2, jenaAdds.size());
+	}
+
+	@Test
+	public void modelIsNeverParsedOrSerialized() throws RDFServiceException {
+		Model addition = ModelFactory.createDefaultModel();
+		addition.read(new StringReader(TRIPLES), null, "N-TRIPLE");
+		ChangeSet cs = rdfService.manufactureChangeSet();
+		cs.addAddition(addition, null);
+
+		long parses = ModelChangeImpl.getParseCount();
+		long serializations = ModelChangeImpl.getSerializeCount();
+		rdfService.changeSetUpdate(cs);
+
+		assertEquals(0, ModelChangeImpl.getParseCount() - parses);
+		assertEquals(0, ModelChangeImpl.getSerializeCount() - serializations);
+		assertEquals(2, store.size());
+		assertEquals(Arrays.asList(2, 2), changeSizes);
+		assertEquals(2, jenaAdds.size());
+
+		cs = rdfService.manufactureChangeSet();
+		cs.addRemoval(addition, null);
+		rdfService.changeSetUpdate(cs);
+		assertTrue(store.isEmpty());
+	}
+
+	@Test
+	public void modelCanStillBeReadAsAStream() {
+		Model addition = ModelFactory.createDefaultModel();
+		addition.read(new StringReader(TRIPLES), null, "N-TRIPLE");
+		ModelChange change = new ModelChangeImpl(addition,
+				ModelChange.Operation.ADD, null);
+
+		Model reparsed = RDFServiceUtils.parseModel(
+				change.getSerializedModel(), change.getSerializationFormat());
+		assertTrue(reparsed.isIsomorphicWith(addition));
+		assertSame(addition, change.getModel());
+	}
+
+	@Test
+	public void parsedStreamCanBeReadAgain() {
+		ModelChange change = new ModelChangeImpl(
+				RDFServiceUtils.toInputStream(TRIPLES), N3,
+				ModelChange.Operation.ADD, null);
+		Model parsed = change.getModel();
+
+		assertSame(parsed, change.getModel());
+		for (int i = 0; i < 2; i++) {
+			Model reparsed = RDFServiceUtils.parseModel(
+					change.getSerializedModel(),
+					change.getSerializationFormat());
+			assertTrue(reparsed.isIsomorphicWith(parsed));
+		}
+	}
+
+	@Test
+	public void drainedStreamCanStillBeParsed() throws IOException {
+		ModelChange change = new ModelChangeImpl(
+				RDFServiceUtils.toInputStream(TRIPLES), N3,
+				ModelChange.Operation.ADD, null);
+		IOUtils.toByteArray(change.getSerializedModel());
+
+		assertEquals(2, change.getModel().size());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private class SizeListener implements ChangeListener {
+		@Override
+		public void notifyModelChange(ModelChange modelChange) {
+			changeSizes.add((int) modelChange.getModel().size());
+		}
+
+		@Override
+		public void notifyEvent(String graphURI, Object event) {
+			// Nothing to do.
+		}
+	}
+}
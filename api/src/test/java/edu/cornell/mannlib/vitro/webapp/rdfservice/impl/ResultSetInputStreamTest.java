@@ -0,0 +1,132 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat.CSV;
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat.JSON;
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat.XML;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+
+public class ResultSetInputStreamTest extends AbstractTestClass {
+	private static final String QUERY = "SELECT ?s ?o WHERE { ?s ?p ?o } ORDER BY ?s ?o";
+
+	private static final String DATA = "" //
+			+ "@prefix ex: <http://example.com/> . \n" //
+			+ "@prefix xsd: <http://www.w3.org/2001/XMLSchema#> . \n" //
+			+ "ex:a ex:p \"plain\" . \n" //
+			+ "ex:b ex:p \"tagged\"@en-US . \n" //
+			+ "ex:c ex:p \"42\"^^xsd:int . \n" //
+			+ "ex:d ex:p \"quote \\\" comma , <tag> & \\n newline\" . \n" //
+			+ "ex:e ex:p [ ex:q ex:f ] . \n";
+
+	private Model model;
+	private AtomicBoolean released;
+
+	@Before
+	public void setup() {
+		model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(DATA), null, "TTL");
+		released = new AtomicBoolean();
+	}
+
+	@Test
+	public void jsonMatchesTheResultSet() throws Exception {
+		String json = IOUtils.toString(stream(JSON), UTF_8);
+		assertEquals(expected(), solutions(ResultSetFactory.fromJSON(IOUtils
+				.toInputStream(json, UTF_8))));
+	}
+
+	@Test
+	public void xmlMatchesTheResultSet() throws Exception {
+		String xml = IOUtils.toString(stream(XML), UTF_8);
+		assertEquals(expected(), solutions(ResultSetFactory.fromXML(IOUtils
+				.toInputStream(xml, UTF_8))));
+	}
+
+	@Test
+	public void csvQuotesWhereNeeded() throws Exception {
+		String csv = IOUtils.toString(stream(CSV), UTF_8);
+		assertTrue(csv.startsWith("s,o\r\n"));
+		assertTrue(csv.contains("\r\nhttp://example.com/a,plain\r\n"));
+		assertTrue(csv
+				.contains("http://example.com/d,\"quote \"\" comma , <tag> & \n newline\"\r\n"));
+	}
+
+	@Test
+	public void resourcesAreReleasedAtTheEnd() throws Exception {
+		InputStream in = stream(JSON);
+		assertFalse(released.get());
+		IOUtils.toString(in, UTF_8);
+		assertTrue(released.get());
+	}
+
+	@Test
+	public void resourcesAreReleasedWhenClosedEarly() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			model.add(model.createResource("http://example.com/x" + i),
+					model.createProperty("http://example.com/p"), "value " + i);
+		}
+		InputStream in = stream(XML);
+		in.read();
+		assertFalse(released.get());
+		in.close();
+		assertTrue(released.get());
+		assertEquals(-1, in.read());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private InputStream stream(ResultFormat format) throws RDFServiceException {
+		QueryExecution qe = QueryExecutionFactory.create(QUERY, model);
+		return ResultSetInputStream.create(qe.execSelect(), format, () -> {
+			qe.close();
+			released.set(true);
+		});
+	}
+
+	private List<String> expected() {
+		try (QueryExecution qe = QueryExecutionFactory.create(QUERY, model)) {
+			return solutions(qe.execSelect());
+		}
+	}
+
+	/** Blank node labels are not preserved, so don't compare them. */
+	private List<String> solutions(ResultSet rs) {
+		List<String> list = new ArrayList<>();
+		while (rs.hasNext()) {
+			QuerySolution qs = rs.next();
+			String s = qs.get("s").isAnon() ? "_:" : qs.get("s").toString();
+			String o = qs.get("o").isAnon() ? "_:" : qs.get("o").toString();
+			list.add(s + " " + o);
+		}
+		Collections.sort(list);
+		return list;
+	}
+}
@@ -0,0 +1,197 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
+
+public class RDFServiceSparqlUpdateTest extends AbstractTestClass {
+	private RecordingRDFService rdfService;
+
+	@Before
+	public void setup() {
+		setLoggerLevel(RDFServiceImpl.class, Level.OFF);
+		rdfService = new RecordingRDFService();
+	}
+
+	@After
+	public void close() {
+		rdfService.close();
+	}
+
+	@Test
+	public void serialUpdateSendsFixedChunks() throws RDFServiceException {
+		insert(12000);
+		assertEquals(Arrays.asList(5000, 5000, 2000), rdfService.chunkSizes());
+		assertEquals(1, rdfService.maxInFlight.get());
+	}
+
+	@Test
+	public void pipelinedUpdateSendsChunksAtOnce() throws RDFServiceException {
+		rdfService.setUpdatePipelining(3, 0);
+		rdfService.delayMillis = 50;
+		insert(30000);
+
+		assertEquals(30000, rdfService.tripleCount());
+		assertEquals(6, rdfService.chunkSizes().size());
+		assertTrue(rdfService.maxInFlight.get() > 1);
+		assertTrue(rdfService.maxInFlight.get() <= 3);
+	}
+
+	@Test(expected = RDFServiceException.class)
+	public void failedChunkFailsTheUpdate() throws RDFServiceException {
+		rdfService.setUpdatePipelining(2, 0);
+		rdfService.failures = 1;
+		insert(20000);
+	}
+
+	@Test
+	public void failureInFlightIsSuppressedNotLost() {
+		rdfService.setUpdatePipelining(2, 0);
+		rdfService.delayMillis = 50;
+		rdfService.failures = 1;
+		try {
+			insert(20000);
+			fail("update should fail");
+		} catch (RDFServiceException e) {
+			Throwable thrown = e.getCause();
+			assertEquals("Unable to perform change set update",
+					thrown.getMessage());
+			assertEquals(1, thrown.getSuppressed().length);
+			assertEquals("endpoint failed",
+					thrown.getSuppressed()[0].getMessage());
+		}
+	}
+
+	@Test
+	public void chunkSizeFollowsTheEndpoint() {
+		AdaptiveChunkSize size = new AdaptiveChunkSize(5000, 1000);
+		size.record(5000, 100);
+		assertEquals(10000, size.get());
+		size.record(10000, 4000);
+		assertEquals(5000, size.get());
+		size.record(5000, 1000);
+		assertEquals(5000, size.get());
+		size.record(100, 1);
+		assertEquals(5000, size.get());
+	}
+
+	@Test
+	public void fixedChunkSizeNeverChanges() {
+		AdaptiveChunkSize size = new AdaptiveChunkSize(5000, 0);
+		size.record(5000, 1);
+		assertEquals(5000, size.get());
+	}
+
+	@Test
+	public void entityWritesTheWholeUpdate() {
+		Triple t = new Triple(NodeFactory.createURI("http://test/s"),
+				NodeFactory.createURI("http://test/p"),
+				NodeFactory.createLiteral("o"));
+		SparqlUpdateEntity entity = new SparqlUpdateEntity("INSERT DATA",
+				"http://test/g", Collections.singletonList(t),
+				SparqlUpdateEntity.SPARQL_UPDATE);
+
+		assertEquals("INSERT DATA { GRAPH <http://test/g> { \n"
+				+ "<http://test/s> <http://test/p> \"o\" .\n }  }",
+				entity.toString());
+		assertEquals("application/sparql-update; charset=UTF-8", entity
+				.getContentType().getValue());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private void insert(int count) throws RDFServiceException {
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < count; i++) {
+			model.add(ResourceFactory.createResource("http://test/s" + i),
+					ResourceFactory.createProperty("http://test/p"), "o" + i);
+		}
+		ChangeSet cs = rdfService.manufactureChangeSet();
+		cs.addAddition(model, "http://test/g");
+		if (!rdfService.changeSetUpdate(cs)) {
+			throw new RDFServiceException("update failed");
+		}
+	}
+
+	/**
+	 * Record the chunks instead of sending them. Because this is a subclass,
+	 * the constructor does not test the connection.
+	 */
+	private static class RecordingRDFService extends RDFServiceSparql {
+		final List<List<Triple>> chunks = Collections
+				.synchronizedList(new ArrayList<List<Triple>>());
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		volatile long delayMillis;
+		volatile int failures;
+
+		RecordingRDFService() {
+			super("http://test/sparql");
+		}
+
+		@Override
+		protected void executeDataUpdate(String verb, String graphURI,
+				List<Triple> triples) throws RDFServiceException {
+			int now = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(now, Math::max);
+			try {
+				Thread.sleep(delayMillis);
+				if (failures > 0) {
+					failures--;
+					throw new RDFServiceException("endpoint failed");
+				}
+				chunks.add(triples);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		@Override
+		protected void executeUpdate(String updateString) {
+			// Nothing with blank nodes in these tests.
+		}
+
+		List<Integer> chunkSizes() {
+			List<Integer> sizes = new ArrayList<>();
+			for (List<Triple> chunk : chunks) {
+				sizes.add(chunk.size());
+			}
+			return sizes;
+		}
+
+		int tripleCount() {
+			int count = 0;
+			for (List<Triple> chunk : chunks) {
+				count += chunk.size();
+			}
+			return count;
+		}
+	}
+}
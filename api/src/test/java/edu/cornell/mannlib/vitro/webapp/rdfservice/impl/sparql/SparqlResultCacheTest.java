@@ -0,0 +1,229 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
+
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat.JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class SparqlResultCacheTest extends AbstractTestClass {
+	private static final String G1 = "http://test/g1";
+	private static final String G2 = "http://test/g2";
+	private static final String SELECT_G1 = "SELECT ?o WHERE { GRAPH <" + G1
+			+ "> { ?s ?p ?o } }";
+	private static final String SELECT_ALL = "SELECT ?o WHERE { ?s ?p ?o }";
+
+	private CountingRDFService inner;
+	private CachingRDFService rdfService;
+
+	@Before
+	public void setup() throws RDFServiceException {
+		inner = new CountingRDFService();
+		rdfService = new CachingRDFService(inner, new SparqlResultCache(
+				1000000, 0));
+		add(G1, "a");
+	}
+
+	@After
+	public void close() {
+		rdfService.close();
+	}
+
+	@Test
+	public void repeatedQueryIsAnsweredFromTheCache() throws Exception {
+		String first = select(SELECT_G1);
+		String second = select("SELECT ?o\n  WHERE {\tGRAPH <" + G1
+				+ "> { ?s ?p ?o } }");
+		assertEquals(first, second);
+		assertEquals(1, inner.selects);
+
+		SparqlResultCache.Statistics stats = rdfService.getCache()
+				.getStatistics();
+		assertEquals(1, stats.getHits());
+		assertEquals(0.5, stats.getHitRatio(), 0.001);
+	}
+
+	@Test
+	public void changeToAnotherGraphKeepsTheResult() throws Exception {
+		select(SELECT_G1);
+		add(G2, "b");
+		select(SELECT_G1);
+		assertEquals(1, inner.selects);
+	}
+
+	@Test
+	public void changeToTheGraphDiscardsTheResult() throws Exception {
+		select(SELECT_G1);
+		add(G1, "b");
+		assertTrue(select(SELECT_G1).contains("\"b\""));
+		assertEquals(2, inner.selects);
+	}
+
+	@Test
+	public void anyChangeDiscardsAQueryOfTheDefaultGraph() throws Exception {
+		select(SELECT_ALL);
+		add(G2, "b");
+		select(SELECT_ALL);
+		assertEquals(2, inner.selects);
+	}
+
+	@Test
+	public void consumerAndAskAreCached() throws Exception {
+		final int[] rows = new int[1];
+		for (int i = 0; i < 2; i++) {
+			rdfService.sparqlSelectQuery(SELECT_G1, new ResultSetConsumer() {
+				@Override
+				protected void processQuerySolution(QuerySolution qs) {
+					rows[0]++;
+				}
+			});
+			assertTrue(rdfService.sparqlAskQuery("ASK { GRAPH <" + G1
+					+ "> { ?s ?p \"a\" } }"));
+		}
+		assertEquals(2, rows[0]);
+		assertEquals(1, inner.selects);
+		assertEquals(1, inner.asks);
+	}
+
+	@Test
+	public void resultTooLargeToKeepIsStreamedButNotCached() throws Exception {
+		rdfService.close();
+		inner = new CountingRDFService();
+		rdfService = new CachingRDFService(inner, new SparqlResultCache(400,
+				0));
+		for (int i = 0; i < 20; i++) {
+			add(G1, "value" + i);
+		}
+
+		String first = select(SELECT_G1);
+		assertTrue(first.contains("\"value19\""));
+		assertEquals(first, select(SELECT_G1));
+		assertEquals(2, inner.selects);
+		assertEquals(0, rdfService.getCache().getStatistics().getSize());
+	}
+
+	@Test
+	public void resultClosedBeforeTheEndIsCachedWhole() throws Exception {
+		try (InputStream in = rdfService.sparqlSelectQuery(SELECT_G1, JSON)) {
+			in.read(new byte[10]);
+		}
+		assertTrue(select(SELECT_G1).contains("\"a\""));
+		assertEquals(1, inner.selects);
+	}
+
+	@Test
+	public void leastRecentlyUsedResultIsEvicted() {
+		SparqlResultCache cache = new SparqlResultCache(100, 0);
+		cache.put("a", new byte[20], null, cache.getGeneration(), 1);
+		cache.put("b", new byte[20], null, cache.getGeneration(), 1);
+		cache.get("a");
+		cache.put("c", new byte[20], null, cache.getGeneration(), 1);
+		cache.put("d", new byte[20], null, cache.getGeneration(), 1);
+		cache.put("e", new byte[20], null, cache.getGeneration(), 1);
+		cache.put("f", new byte[20], null, cache.getGeneration(), 1);
+
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(100, cache.getStatistics().getBytes());
+	}
+
+	@Test
+	public void resultOfAnInterruptedQueryIsNotKept() {
+		SparqlResultCache cache = new SparqlResultCache(100, 0);
+		long generation = cache.getGeneration();
+		cache.invalidate(Collections.singleton(G1));
+		cache.put("a", new byte[1], null, generation, 1);
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void graphsAreFoundInTheQuery() {
+		assertEquals(new HashSet<>(Arrays.asList(G1, G2)),
+				SparqlResultCache.graphsReadBy("SELECT * WHERE { GRAPH <"
+						+ G1 + "> { ?s ?p ?o } OPTIONAL { GRAPH <" + G2
+						+ "> { ?s ?q ?x } } }"));
+		assertEquals(Collections.singleton(G2),
+				SparqlResultCache.graphsReadBy("SELECT * FROM <" + G2
+						+ "> WHERE { ?s ?p ?o }"));
+		assertNull(SparqlResultCache.graphsReadBy(SELECT_ALL));
+		assertNull(SparqlResultCache
+				.graphsReadBy("SELECT * WHERE { GRAPH ?g { ?s ?p ?o } }"));
+		assertNull(SparqlResultCache.graphsReadBy("SELECT * WHERE { GRAPH <"
+				+ G1 + "> { ?s ?p ?o } FILTER NOT EXISTS { ?s ?q ?o } }"));
+		assertNull(SparqlResultCache.graphsReadBy("not a query"));
+	}
+
+	@Test
+	public void normalizingKeepsTheStrings() {
+		assertEquals("ASK { ?s ?p \"a  b\" }",
+				SparqlResultCache.normalize("  ASK {\n ?s  ?p \"a  b\" }\n"));
+		assertEquals("ASK { ?s ?p 'a  b' }",
+				SparqlResultCache.normalize("ASK { ?s ?p 'a  b' }"));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private void add(String graphURI, String value) throws RDFServiceException {
+		Model model = ModelFactory.createDefaultModel();
+		model.add(ResourceFactory.createResource("http://test/s"),
+				ResourceFactory.createProperty("http://test/p"), value);
+		ChangeSet cs = rdfService.manufactureChangeSet();
+		cs.addAddition(model, graphURI);
+		rdfService.changeSetUpdate(cs);
+	}
+
+	private String select(String query) throws RDFServiceException,
+			IOException {
+		try (InputStream in = rdfService.sparqlSelectQuery(query, JSON)) {
+			return IOUtils.toString(in, "UTF-8");
+		}
+	}
+
+	private static class CountingRDFService extends RDFServiceModel {
+		int selects;
+		int asks;
+
+		CountingRDFService() {
+			super(DatasetFactory.createGeneral());
+		}
+
+		@Override
+		public InputStream sparqlSelectQuery(String query,
+				ResultFormat resultFormat) throws RDFServiceException {
+			selects++;
+			return super.sparqlSelectQuery(query, resultFormat);
+		}
+
+		@Override
+		public boolean sparqlAskQuery(String query) throws RDFServiceException {
+			asks++;
+			return super.sparqlAskQuery(query);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.reasoner.ABoxReasoningQueue.Statistics;
+
+public class ABoxReasoningQueueTest extends SimpleReasonerTBoxHelper {
+	private final List<String> recomputed = Collections
+			.synchronizedList(new ArrayList<String>());
+	private final CountDownLatch gate = new CountDownLatch(1);
+	private ABoxReasoningQueue queue;
+
+	@Before
+	public void suppressLogging() {
+		setLoggerLevel(SimpleReasoner.class, Level.OFF);
+	}
+
+	@After
+	public void shutdownQueue() {
+		gate.countDown();
+		if (queue != null) {
+			queue.shutdown();
+		}
+	}
+
+	@Test
+	public void repeatedURIsAreRecomputedOnce() {
+		queue = new ABoxReasoningQueue(this::gatedRecompute, 1, 100);
+		queue.enqueue(Arrays.asList("a"));
+		waitForRecompute(1);
+		queue.enqueue(Arrays.asList("b", "c", "b"));
+		queue.enqueue(Arrays.asList("c", "b"));
+
+		Statistics stats = queue.getStatistics();
+		assertEquals(2, stats.getQueueDepth());
+		assertEquals(1, stats.getInProgress());
+		assertFalse(queue.isQuiescent());
+
+		gate.countDown();
+		assertTrue(queue.waitUntilQuiescent(5000));
+		assertEquals(Arrays.asList("a", "b", "c"), recomputed);
+		assertEquals(3, queue.getStatistics().getUrisRecomputed());
+		assertEquals(2, queue.getStatistics().getBatchesRecomputed());
+	}
+
+	@Test
+	public void anIndividualIsNotRecomputedTwiceAtOnce() {
+		queue = new ABoxReasoningQueue(this::gatedRecompute, 2, 100);
+		queue.enqueue(Arrays.asList("a"));
+		waitForRecompute(1);
+		queue.enqueue(Arrays.asList("a"));
+		sleep(100);
+		assertEquals(1, recomputed.size());
+
+		gate.countDown();
+		assertTrue(queue.waitUntilQuiescent(5000));
+		assertEquals(Arrays.asList("a", "a"), recomputed);
+	}
+
+	@Test
+	public void waitTimesOutIfNotQuiescent() {
+		queue = new ABoxReasoningQueue(this::gatedRecompute, 1, 100);
+		queue.enqueue(Arrays.asList("a"));
+		assertFalse(queue.waitUntilQuiescent(50));
+		assertTrue(queue.getStatistics().getLagMillis() >= 0);
+	}
+
+	@Test
+	public void asynchronousReasonerInfersTypes() {
+		OntModel tBox = createTBoxModel();
+		OntClass classA = createClass(tBox, "http://test.vivo/A", "class A");
+		OntClass classB = createClass(tBox, "http://test.vivo/B", "class B");
+		addSubclass(classA, classB);
+
+		Model inf = ModelFactory.createDefaultModel();
+		OntModel aBox = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+		SimpleReasoner simpleReasoner = new SimpleReasoner(tBox, aBox, inf);
+		simpleReasoner.enableAsynchronousABoxReasoning(2, 10);
+		aBox.register(simpleReasoner);
+		try {
+			Resource ind_x = aBox.createResource("http://test.vivo/x");
+			aBox.add(ind_x, RDF.type, classB);
+
+			assertTrue(simpleReasoner.waitUntilQuiescent(10000));
+			assertFalse(simpleReasoner.isABoxReasoningAsynchronous());
+			assertTrue(inf.contains(ind_x, RDF.type, classA));
+		} finally {
+			simpleReasoner.setStopRequested();
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	/** Record the URIs, but hold the first batch until the gate opens. */
+	private void gatedRecompute(Queue<String> uris) {
+		boolean first = recomputed.isEmpty();
+		recomputed.addAll(uris);
+		if (first) {
+			try {
+				gate.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void waitForRecompute(int count) {
+		for (int i = 0; i < 500 && recomputed.size() < count; i++) {
+			sleep(10);
+		}
+	}
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
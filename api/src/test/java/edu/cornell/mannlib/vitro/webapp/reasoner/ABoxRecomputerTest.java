@@ -0,0 +1,176 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class ABoxRecomputerTest extends SimpleReasonerTBoxHelper {
+	private OntModel tBox;
+	private OntClass classA;
+	private OntClass classB;
+	private OntClass classC;
+	private OntClass classD;
+	private Model inf;
+	private OntModel aBox;
+	private SimpleReasoner simpleReasoner;
+	private Path checkpoint;
+
+	@Before
+	public void setup() throws IOException {
+		setLoggerLevel(ABoxRecomputer.class, Level.OFF);
+
+		tBox = createTBoxModel();
+		classA = createClass(tBox, "http://test.vivo/A", "class A");
+		classB = createClass(tBox, "http://test.vivo/B", "class B");
+		classC = createClass(tBox, "http://test.vivo/C", "class C");
+		classD = createClass(tBox, "http://test.vivo/D", "class D");
+		addSubclass(classA, classB);
+		addSubclass(classC, classD);
+
+		inf = ModelFactory.createDefaultModel();
+		aBox = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+		simpleReasoner = new SimpleReasoner(tBox, aBox, inf);
+
+		File tempDir = createTempDirectory("ABoxRecomputerTest");
+		checkpoint = tempDir.toPath().resolve("recompute.checkpoint");
+		simpleReasoner.setRecomputeCheckpointFile(checkpoint);
+	}
+
+	@Test
+	public void recomputeFindsEveryIndividualAndDeletesTheCheckpoint() {
+		Resource ind_x = aBox.createResource("http://test.vivo/x");
+		Resource ind_y = aBox.createResource("http://test.vivo/y");
+		aBox.add(ind_x, RDF.type, classB);
+		aBox.add(ind_y, RDF.type, classD);
+
+		simpleReasoner.recompute();
+
+		assertTrue(inf.contains(ind_x, RDF.type, classA));
+		assertTrue(inf.contains(ind_y, RDF.type, classC));
+		assertFalse(Files.exists(checkpoint));
+		assertFalse(simpleReasoner.isRecomputeInterrupted());
+		assertNull(simpleReasoner.getRecomputeProgress());
+	}
+
+	@Test
+	public void recomputeResumesFromTheCheckpoint() throws IOException {
+		Resource ind_x = aBox.createResource("http://test.vivo/x");
+		Resource ind_y = aBox.createResource("http://test.vivo/y");
+		aBox.add(ind_x, RDF.type, classB);
+		aBox.add(ind_y, RDF.type, classD);
+		Files.write(checkpoint, Arrays.asList(classB.getURI()), UTF_8);
+		assertTrue(simpleReasoner.isRecomputeInterrupted());
+
+		simpleReasoner.recompute();
+
+		assertFalse(inf.contains(ind_x, RDF.type, classA));
+		assertTrue(inf.contains(ind_y, RDF.type, classC));
+		assertFalse(simpleReasoner.isRecomputeInterrupted());
+	}
+
+	@Test
+	public void classWithAFailureIsNotCheckpointed() throws IOException {
+		aBox.add(aBox.createResource("http://test.vivo/x"), RDF.type, classB);
+		aBox.add(aBox.createResource("http://test.vivo/y"), RDF.type, classD);
+		aBox.add(aBox.createResource("http://test.vivo/z"), RDF.type, classA);
+
+		ABoxRecomputer recomputer = new FailingRecomputer(true);
+		recomputer.setCheckpointFile(checkpoint);
+		recomputer.recompute();
+
+		assertEquals(Arrays.asList(classB.getURI()),
+				Files.readAllLines(checkpoint, UTF_8));
+	}
+
+	@Test
+	public void checkpointIsKeptIfAClassFailed() throws IOException {
+		aBox.add(aBox.createResource("http://test.vivo/x"), RDF.type, classB);
+		aBox.add(aBox.createResource("http://test.vivo/y"), RDF.type, classD);
+
+		ABoxRecomputer recomputer = new FailingRecomputer(false);
+		recomputer.setCheckpointFile(checkpoint);
+		recomputer.recompute();
+
+		assertEquals(Arrays.asList(classB.getURI(), classA.getURI()),
+				Files.readAllLines(checkpoint, UTF_8));
+	}
+
+	@Test
+	public void progressThroughput() {
+		ABoxRecomputer.RecomputeProgress progress = new ABoxRecomputer.RecomputeProgress(
+				4, 2, 3000, 2000, 4000);
+		assertEquals(500.0, progress.getIndividualsPerSecond(), 0.001);
+		assertEquals("2/4 classes, 2000/3000 individuals, 500.0 individuals per second",
+				progress.toString());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Visits B, then D, then A. The individual of D fails, and the recompute
+	 * may be stopped while working on A.
+	 */
+	private class FailingRecomputer extends ABoxRecomputer {
+		private final boolean stopAtA;
+
+		FailingRecomputer(boolean stopAtA) {
+			super(tBox, aBox, new RDFServiceModel(dataset()), simpleReasoner,
+					null);
+			this.stopAtA = stopAtA;
+		}
+
+		@Override
+		protected List<String> getClassURIs() {
+			return Arrays.asList(classB.getURI(), classD.getURI(),
+					classA.getURI());
+		}
+
+		@Override
+		protected boolean recomputeIndividuals(Queue<String> individuals,
+				ABoxTypeCache caches) {
+			if (individuals.contains("http://test.vivo/y")) {
+				return false;
+			}
+			if (stopAtA && individuals.contains("http://test.vivo/z")) {
+				setStopRequested();
+				return false;
+			}
+			return super.recomputeIndividuals(individuals, caches);
+		}
+	}
+
+	private Dataset dataset() {
+		Dataset ds = DatasetFactory.createMem();
+		ds.setDefaultModel(aBox);
+		return ds;
+	}
+}
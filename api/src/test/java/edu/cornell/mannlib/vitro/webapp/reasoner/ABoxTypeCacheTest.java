@@ -0,0 +1,102 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.reasoner.ABoxTypeCache.Statistics;
+import edu.cornell.mannlib.vitro.webapp.reasoner.ABoxTypeCache.TypeList;
+
+public class ABoxTypeCacheTest extends AbstractTestClass {
+	private static final String NS = "http://test.vivo/";
+
+	private ABoxTypeCache cache;
+	private Resource individual;
+
+	@Before
+	public void setup() {
+		cache = new ABoxTypeCache(2);
+		individual = ModelFactory.createDefaultModel().createResource(NS + "x");
+	}
+
+	@Test
+	public void keyIgnoresTheOrderOfTheTypes() {
+		long generation = cache.getGeneration();
+		cache.cacheInferredTypes(key("B", "C"), types("A"), generation);
+
+		Model inferred = cache.getInferredTypesToModel(key("C", "B"), individual);
+		assertNotNull(inferred);
+		assertTrue(inferred.contains(individual, RDF.type,
+				inferred.createResource(NS + "A")));
+	}
+
+	@Test
+	public void invalidateDiscardsAnswers() {
+		cache.cacheInferredTypes(key("B"), types("A"), cache.getGeneration());
+		cache.invalidate();
+		assertNull(cache.getInferredTypesToModel(key("B"), individual));
+	}
+
+	@Test
+	public void answerComputedBeforeInvalidationIsNotStored() {
+		long generation = cache.getGeneration();
+		cache.invalidate();
+		cache.cacheInferredTypes(key("B"), types("A"), generation);
+		assertNull(cache.getInferredTypesToModel(key("B"), individual));
+	}
+
+	@Test
+	public void leastRecentlyUsedAnswersAreDropped() {
+		long generation = cache.getGeneration();
+		cache.cacheInferredTypes(key("B"), types("A"), generation);
+		cache.cacheInferredTypes(key("C"), types("A"), generation);
+		cache.getInferredTypesToModel(key("B"), individual);
+		cache.cacheInferredTypes(key("D"), types("A"), generation);
+
+		assertNotNull(cache.getInferredTypesToModel(key("B"), individual));
+		assertNull(cache.getInferredTypesToModel(key("C"), individual));
+	}
+
+	@Test
+	public void statisticsCountHitsAndMisses() {
+		cache.getInferredTypesToModel(key("B"), individual);
+		cache.cacheInferredTypes(key("B"), types("A"), cache.getGeneration());
+		cache.getInferredTypesToModel(key("B"), individual);
+		cache.getInferredTypesToModel(key("B"), individual);
+		cache.invalidate();
+
+		Statistics stats = cache.getStatistics();
+		assertEquals(2, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(1, stats.getInvalidations());
+		assertEquals(0, stats.getSize());
+		assertEquals(2.0 / 3.0, stats.getHitRate(), 0.001);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private TypeList key(String... localNames) {
+		return new TypeList(types(localNames), RDF.type);
+	}
+
+	private Model types(String... localNames) {
+		Model model = ModelFactory.createDefaultModel();
+		for (String localName : localNames) {
+			model.add(individual, RDF.type, model.createResource(NS + localName));
+		}
+		return model;
+	}
+}
@@ -0,0 +1,148 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.DOCID;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.FlushStatistics;
+
+public class SearchEngineBatcherTest {
+	private RecordingSearchEngine engine = new RecordingSearchEngine();
+	private SearchEngineBatcher batcher;
+
+	@After
+	public void shutdownBatcher() {
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+	}
+
+	@Test
+	public void nothingIsSentUntilTheBatchIsFull() {
+		batcher = new SearchEngineBatcher(engine, 3, 1000000, 60000);
+		batcher.add(doc("a"));
+		batcher.add(doc("b"));
+		assertEquals(0, engine.addCalls.size());
+
+		batcher.add(doc("c"));
+		assertEquals(1, engine.addCalls.size());
+		assertEquals(Arrays.asList("a", "b", "c"), engine.addCalls.get(0));
+	}
+
+	@Test
+	public void largeDocumentsFillTheBatchSooner() {
+		batcher = new SearchEngineBatcher(engine, 100, 80, 60000);
+		batcher.add(doc("a", "0123456789012345678901234567890123456789"));
+		assertEquals(0, engine.addCalls.size());
+
+		batcher.add(doc("b", "0123456789012345678901234567890123456789"));
+		assertEquals(1, engine.addCalls.size());
+	}
+
+	@Test
+	public void flushSendsAPartialBatch() {
+		batcher = new SearchEngineBatcher(engine, 100, 1000000, 60000);
+		batcher.add(doc("a"));
+		batcher.delete("b");
+		batcher.flush();
+
+		assertEquals(Arrays.asList(Arrays.asList("a")), engine.addCalls);
+		assertEquals(Arrays.asList(Arrays.asList("b")), engine.deleteCalls);
+	}
+
+	@Test
+	public void laterDeleteCancelsEarlierAdd() {
+		batcher = new SearchEngineBatcher(engine, 100, 1000000, 60000);
+		batcher.add(doc("a"));
+		batcher.delete("a");
+		batcher.flush();
+
+		assertEquals(0, engine.addCalls.size());
+		assertEquals(Arrays.asList(Arrays.asList("a")), engine.deleteCalls);
+	}
+
+	@Test
+	public void laterAddCancelsEarlierDelete() {
+		batcher = new SearchEngineBatcher(engine, 100, 1000000, 60000);
+		batcher.delete("a");
+		batcher.add(doc("a"));
+		batcher.flush();
+
+		assertEquals(Arrays.asList(Arrays.asList("a")), engine.addCalls);
+		assertEquals(0, engine.deleteCalls.size());
+	}
+
+	@Test
+	public void oldBatchIsSentByTheTimer() throws InterruptedException {
+		batcher = new SearchEngineBatcher(engine, 100, 1000000, 50);
+		batcher.add(doc("a"));
+		for (int i = 0; i < 100 && engine.addCalls.isEmpty(); i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(Arrays.asList(Arrays.asList("a")), engine.addCalls);
+	}
+
+	@Test
+	public void statisticsAreAccumulated() {
+		batcher = new SearchEngineBatcher(engine, 2, 1000000, 60000);
+		batcher.add(doc("a"));
+		batcher.add(doc("b"));
+		batcher.delete("c");
+		batcher.flush();
+
+		FlushStatistics stats = batcher.getStatistics();
+		assertEquals(2, stats.getFlushCount());
+		assertEquals(0, stats.getFailedFlushCount());
+		assertEquals(2, stats.getDocumentsAdded());
+		assertEquals(1, stats.getDocumentsDeleted());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private SearchInputDocument doc(String id, String... text) {
+		SearchInputDocument doc = engine.createInputDocument();
+		doc.addField(DOCID, id);
+		for (String t : text) {
+			doc.addField("ALLTEXT", t);
+		}
+		return doc;
+	}
+
+	private static class RecordingSearchEngine extends SearchEngineStub {
+		final List<List<String>> addCalls = Collections
+				.synchronizedList(new ArrayList<List<String>>());
+		final List<List<String>> deleteCalls = Collections
+				.synchronizedList(new ArrayList<List<String>>());
+
+		@Override
+		public void add(Collection<SearchInputDocument> docs)
+				throws SearchEngineException {
+			List<String> ids = new ArrayList<>();
+			for (SearchInputDocument doc : docs) {
+				ids.add(String.valueOf(doc.getField(DOCID).getFirstValue()));
+			}
+			addCalls.add(ids);
+		}
+
+		@Override
+		public void deleteById(Collection<String> ids)
+				throws SearchEngineException {
+			deleteCalls.add(new ArrayList<>(ids));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.CommitStatistics;
+
+public class SearchIndexCommitPolicyTest {
+	private RecordingSearchEngine engine = new RecordingSearchEngine();
+	private SearchIndexCommitPolicy policy;
+
+	@After
+	public void shutdownPolicy() {
+		if (policy != null) {
+			policy.shutdown();
+		}
+	}
+
+	@Test
+	public void updatesGetASoftCommit() {
+		policy = new SearchIndexCommitPolicy(engine, true, 0);
+		policy.updatesCompleted();
+		assertEquals(Arrays.asList("softCommit"), engine.calls);
+	}
+
+	@Test
+	public void softCommitsMayBeTurnedOff() {
+		policy = new SearchIndexCommitPolicy(engine, false, 0);
+		policy.updatesCompleted();
+		assertEquals(0, engine.calls.size());
+	}
+
+	@Test
+	public void updatesAreOnlyVisibleAfterASuccessfulSoftCommit() {
+		policy = new SearchIndexCommitPolicy(engine, true, 0);
+		assertTrue(policy.updatesCompleted());
+
+		engine.failSoftCommits = true;
+		assertFalse(policy.updatesCompleted());
+		assertEquals(1, policy.getStatistics().getFailureCount());
+
+		policy.shutdown();
+		policy = new SearchIndexCommitPolicy(engine, false, 0);
+		assertFalse(policy.updatesCompleted());
+	}
+
+	@Test
+	public void rebuildGetsCommitAndOptimize() {
+		policy = new SearchIndexCommitPolicy(engine, true, 0);
+		policy.rebuildCompleted();
+		assertEquals(Arrays.asList("commit", "optimize"), engine.calls);
+	}
+
+	@Test
+	public void uncommittedChangesAreCommittedAtShutdown() {
+		policy = new SearchIndexCommitPolicy(engine, true, 0);
+		policy.updatesCompleted();
+		policy.shutdown();
+		policy = null;
+		assertEquals(Arrays.asList("softCommit", "commit"), engine.calls);
+	}
+
+	@Test
+	public void scheduledHardCommitOnlyIfThereAreChanges()
+			throws InterruptedException {
+		policy = new SearchIndexCommitPolicy(engine, false, 20);
+		Thread.sleep(100);
+		assertEquals(0, engine.calls.size());
+
+		policy.updatesCompleted();
+		for (int i = 0; i < 100 && engine.calls.isEmpty(); i++) {
+			Thread.sleep(20);
+		}
+		Thread.sleep(100);
+		assertEquals(Arrays.asList("commit"), engine.calls);
+	}
+
+	@Test
+	public void statisticsAreAccumulated() {
+		policy = new SearchIndexCommitPolicy(engine, true, 0);
+		policy.updatesCompleted();
+		policy.updatesCompleted();
+		policy.rebuildCompleted();
+
+		CommitStatistics stats = policy.getStatistics();
+		assertEquals(2, stats.getSoftCommitCount());
+		assertEquals(1, stats.getHardCommitCount());
+		assertEquals(1, stats.getOptimizeCount());
+		assertEquals(0, stats.getFailureCount());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class RecordingSearchEngine extends SearchEngineStub {
+		final List<String> calls = Collections
+				.synchronizedList(new ArrayList<String>());
+		volatile boolean failSoftCommits;
+
+		@Override
+		public void commit() throws SearchEngineException {
+			calls.add("commit");
+		}
+
+		@Override
+		public void softCommit() throws SearchEngineException {
+			if (failSoftCommits) {
+				throw new SearchEngineException("soft commit failed");
+			}
+			calls.add("softCommit");
+		}
+
+		@Override
+		public void optimize() throws SearchEngineException {
+			calls.add("optimize");
+		}
+	}
+}
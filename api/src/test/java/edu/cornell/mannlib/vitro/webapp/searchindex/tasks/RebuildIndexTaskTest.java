@@ -0,0 +1,336 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
+
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.DOCID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.beans.IndividualStub;
+import stubs.edu.cornell.mannlib.vitro.webapp.dao.IndividualDaoStub;
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.ApplicationStub;
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import stubs.javax.servlet.ServletContextStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.RebuildCounts;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchEngineBatcher;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexCommitPolicy;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.WorkerThreadPool;
+import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifier;
+import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
+import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierListBasic;
+import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluder;
+import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluderList;
+import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluderListBasic;
+import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderList;
+
+public class RebuildIndexTaskTest extends AbstractTestClass {
+	private static final String NS = "http://test/ind";
+	private static final int PAGE_SIZE = 10;
+
+	private RecordingSearchEngine engine;
+	private StreamingIndividualDao indDao;
+	private WorkerThreadPool pool;
+	private SearchEngineBatcher batcher;
+	private SearchIndexCommitPolicy commitPolicy;
+	private Set<String> excluded;
+	private Set<String> unbuildable;
+
+	@Before
+	public void setup() {
+		setLoggerLevel(RebuildIndexTask.class, Level.OFF);
+		setLoggerLevel(SearchIndexerImpl.class, Level.OFF);
+
+		engine = new RecordingSearchEngine();
+		ApplicationStub.setup(new ServletContextStub(), engine);
+
+		indDao = new StreamingIndividualDao();
+		pool = new WorkerThreadPool(3);
+		batcher = new SearchEngineBatcher(engine, 7, 1000000, 60000);
+		commitPolicy = new SearchIndexCommitPolicy(engine, false, 0);
+		excluded = new HashSet<>();
+		unbuildable = new HashSet<>();
+	}
+
+	@After
+	public void cleanup() {
+		pool.shutdown();
+		batcher.shutdown();
+		commitPolicy.shutdown();
+	}
+
+	@Test
+	public void everyIndividualIsLoadedBuiltAndSubmitted() {
+		for (int i = 0; i < 95; i++) {
+			indDao.addIndividual(new IndividualStub(NS + i));
+		}
+
+		RebuildCounts counts = rebuild();
+
+		assertEquals(95, counts.getUrisFound());
+		assertEquals(95, counts.getIndividualsLoaded());
+		assertEquals(95, counts.getDocumentsBuilt());
+		assertEquals(95, counts.getDocumentsSubmitted());
+		assertEquals(95, engine.added.size());
+		assertEquals(1, engine.deletedByQuery.size());
+		assertEquals(1, engine.commits);
+	}
+
+	@Test
+	public void missingExcludedAndFailedIndividualsAreSkipped() {
+		for (int i = 0; i < 30; i++) {
+			indDao.addIndividual(new IndividualStub(NS + i));
+		}
+		indDao.addUri(NS + "missing");
+		excluded.addAll(Arrays.asList(NS + 3, NS + 14));
+		unbuildable.add(NS + 25);
+
+		RebuildCounts counts = rebuild();
+
+		assertEquals(31, counts.getUrisFound());
+		assertEquals(30, counts.getIndividualsLoaded());
+		assertEquals(2, counts.getExcluded());
+		assertEquals(27, counts.getDocumentsBuilt());
+		assertEquals(27, counts.getDocumentsSubmitted());
+		assertEquals(27, engine.added.size());
+	}
+
+	@Test(timeout = 30000)
+	public void pagesRejectedByAStoppedPoolDontHoldUpTheRebuild() {
+		for (int i = 0; i < 45; i++) {
+			indDao.addIndividual(new IndividualStub(NS + i));
+		}
+		pool.shutdown();
+
+		RebuildCounts counts = rebuild();
+
+		assertEquals(45, counts.getUrisFound());
+		assertEquals(0, counts.getIndividualsLoaded());
+		assertEquals(0, engine.added.size());
+	}
+
+	@Test(timeout = 30000)
+	public void workUnitsNeverRunOnTheStreamingThread() {
+		for (int i = 0; i < 600; i++) {
+			indDao.addIndividual(new IndividualStub(NS + i));
+		}
+		pool.shutdown();
+		pool = new WorkerThreadPool(1);
+		indDao.loadMillis = 5;
+
+		RebuildCounts counts = rebuild();
+
+		assertEquals(600, counts.getDocumentsSubmitted());
+		assertFalse(indDao.loadedWhileStreaming);
+	}
+
+	@Test(timeout = 30000)
+	public void documentsTheBatcherRejectsDontStopTheRebuild() {
+		for (int i = 0; i < 60; i++) {
+			indDao.addIndividual(new IndividualStub(NS + i));
+		}
+		batcher = new SearchEngineBatcher(engine, 7, 1000000, 60000) {
+			@Override
+			public void add(SearchInputDocument doc) {
+				String uri = String.valueOf(doc.getField(DOCID)
+						.getFirstValue());
+				if (uri.endsWith("7")) {
+					throw new IllegalStateException("Bad document: " + uri);
+				}
+				super.add(doc);
+			}
+		};
+
+		RebuildCounts counts = rebuild();
+
+		assertEquals(60, counts.getDocumentsBuilt());
+		assertEquals(54, counts.getDocumentsSubmitted());
+		assertEquals(54, engine.added.size());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private RebuildCounts rebuild() {
+		RebuildIndexTask task = new RebuildIndexTask(new Config());
+		task.run();
+		return (RebuildCounts) task.getStatus().getCounts();
+	}
+
+	private class Config implements IndexerConfig {
+		@Override
+		public IndexingUriFinderList uriFinderList() {
+			return null;
+		}
+
+		@Override
+		public SearchIndexExcluderList excluderList() {
+			SearchIndexExcluder excluder = ind -> excluded.contains(ind
+					.getURI()) ? "excluded" : SearchIndexExcluder.DONT_EXCLUDE;
+			return new SearchIndexExcluderListBasic(
+					Collections.singletonList(excluder));
+		}
+
+		@Override
+		public DocumentModifierList documentModifierList() {
+			return new DocumentModifierListBasic(
+					Collections.singletonList(new IdModifier()));
+		}
+
+		@Override
+		public IndividualDao individualDao() {
+			return indDao;
+		}
+
+		@Override
+		public ListenerList listenerList() {
+			return new ListenerList();
+		}
+
+		@Override
+		public WorkerThreadPool workerThreadPool() {
+			return pool;
+		}
+
+		@Override
+		public int rebuildPageSize() {
+			return PAGE_SIZE;
+		}
+
+		@Override
+		public SearchEngineBatcher searchEngineBatcher() {
+			return batcher;
+		}
+
+		@Override
+		public SearchIndexCommitPolicy commitPolicy() {
+			return commitPolicy;
+		}
+	}
+
+	private class IdModifier implements DocumentModifier {
+		@Override
+		public void modifyDocument(Individual ind, SearchInputDocument doc) {
+			if (unbuildable.contains(ind.getURI())) {
+				throw new IllegalStateException("Can't build " + ind.getURI());
+			}
+			doc.addField(DOCID, ind.getURI());
+		}
+
+		@Override
+		public void shutdown() {
+			// Nothing to do.
+		}
+	}
+
+	/**
+	 * Streams the URIs of the individuals, and any extra URIs that have no
+	 * individual.
+	 */
+	private static class StreamingIndividualDao extends IndividualDaoStub {
+		private final List<String> uris = new ArrayList<>();
+		volatile long loadMillis;
+		volatile Thread streamingThread;
+		volatile boolean loadedWhileStreaming;
+
+		@Override
+		public void addIndividual(Individual individual) {
+			super.addIndividual(individual);
+			uris.add(individual.getURI());
+		}
+
+		void addUri(String uri) {
+			uris.add(uri);
+		}
+
+		@Override
+		public void streamAllIndividualUris(Consumer<String> consumer) {
+			streamingThread = Thread.currentThread();
+			try {
+				for (String uri : uris) {
+					consumer.accept(uri);
+				}
+			} finally {
+				streamingThread = null;
+			}
+		}
+
+		@Override
+		public List<Individual> getIndividualsByURIs(
+				Collection<String> individualURIs) {
+			if (Thread.currentThread() == streamingThread) {
+				loadedWhileStreaming = true;
+			}
+			try {
+				Thread.sleep(loadMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.getIndividualsByURIs(individualURIs);
+		}
+	}
+
+	private static class RecordingSearchEngine extends SearchEngineStub {
+		final Set<String> added = Collections
+				.synchronizedSet(new HashSet<String>());
+		final List<String> deletedByQuery = Collections
+				.synchronizedList(new ArrayList<String>());
+		volatile int commits;
+
+		@Override
+		public void add(Collection<SearchInputDocument> docs)
+				throws SearchEngineException {
+			for (SearchInputDocument doc : docs) {
+				added.add(String.valueOf(doc.getField(DOCID).getFirstValue()));
+			}
+		}
+
+		@Override
+		public void deleteById(Collection<String> ids)
+				throws SearchEngineException {
+			// Nothing to do.
+		}
+
+		@Override
+		public void deleteByQuery(String query) throws SearchEngineException {
+			deletedByQuery.add(query);
+		}
+
+		@Override
+		public int documentCount() throws SearchEngineException {
+			return added.size();
+		}
+
+		@Override
+		public void commit() throws SearchEngineException {
+			commits++;
+		}
+
+		@Override
+		public void optimize() throws SearchEngineException {
+			// Nothing to do.
+		}
+	}
+}
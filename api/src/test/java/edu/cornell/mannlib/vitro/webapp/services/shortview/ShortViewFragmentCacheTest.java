@@ -0,0 +1,127 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.services.shortview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.beans.IndividualStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+
+public class ShortViewFragmentCacheTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+
+	private ShortViewFragmentCache cache;
+
+	@Before
+	public void setup() {
+		cache = new ShortViewFragmentCache();
+		cache.setMaxBytes(1000);
+	}
+
+	@Test
+	public void storedViewIsReturned() {
+		assertNull(cache.get("one"));
+		put("one", "<p>One</p>", individual("a"), noData());
+		assertEquals("<p>One</p>", cache.get("one"));
+		assertEquals(1, cache.getStatistics().getHits());
+		assertEquals(1, cache.getStatistics().getMisses());
+	}
+
+	@Test
+	public void changeToIndividualOrDataDiscardsTheView() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("rows", Arrays.asList(Collections.singletonMap("org",
+				NS + "org")));
+
+		put("one", "<p>One</p>", individual("a"), data);
+		put("two", "<p>Two</p>", individual("b"), noData());
+		put("three", "<p>Three</p>", individual("c"), noData());
+
+		cache.invalidate(Collections.singleton(NS + "org"));
+		assertNull(cache.get("one"));
+		assertEquals("<p>Two</p>", cache.get("two"));
+
+		// Statements about the individual's type are not about the individual.
+		cache.invalidate(Collections.singleton(NS + "Type"));
+		assertEquals("<p>Two</p>", cache.get("two"));
+
+		cache.invalidate(Collections.singleton(NS + "b"));
+		assertNull(cache.get("two"));
+		assertEquals("<p>Three</p>", cache.get("three"));
+		assertEquals(2, cache.getStatistics().getInvalidations());
+	}
+
+	@Test
+	public void viewRenderedDuringAChangeIsNotStored() {
+		long generation = cache.getGeneration();
+		cache.invalidate(Collections.singleton(NS + "somethingElse"));
+		cache.put("one", "<p>One</p>", individual("a"), noData(), generation);
+		assertNull(cache.get("one"));
+	}
+
+	@Test
+	public void eldestViewsAreEvictedToStayWithinTheBytes() {
+		String html = new String(new char[100]).replace('\0', 'x');
+		for (int i = 0; i < 4; i++) {
+			put("key" + i, html, individual("i" + i), noData());
+		}
+		cache.get("key0");
+		put("key4", html, individual("i4"), noData());
+
+		assertEquals(4, cache.getStatistics().getSize());
+		assertEquals(html, cache.get("key0"));
+		assertNull(cache.get("key1"));
+	}
+
+	@Test
+	public void viewTooLargeForTheCacheIsNotStored() {
+		String html = new String(new char[200]).replace('\0', 'x');
+		put("big", html, individual("a"), noData());
+		assertNull(cache.get("big"));
+	}
+
+	@Test
+	public void viewOlderThanTheMaximumAgeIsDiscarded()
+			throws InterruptedException {
+		cache.setMaxAgeMillis(50);
+		put("one", "<p>One</p>", individual("a"), noData());
+		assertEquals("<p>One</p>", cache.get("one"));
+
+		Thread.sleep(100);
+		assertNull(cache.get("one"));
+		assertEquals(0, cache.getStatistics().getSize());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void put(String key, String html, Individual individual,
+			Map<String, Object> data) {
+		cache.put(key, html, individual, data, cache.getGeneration());
+	}
+
+	private Map<String, Object> noData() {
+		return Collections.emptyMap();
+	}
+
+	private Individual individual(String localName) {
+		return new IndividualStub(NS + localName) {
+			@Override
+			public List<String> getMostSpecificTypeURIs() {
+				return Collections.singletonList(NS + "Type");
+			}
+		};
+	}
+}
@@ -0,0 +1,160 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.tboxreasoner.impl.jfact;
+
+import static org.apache.jena.rdf.model.ResourceFactory.createPlainLiteral;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.apache.jena.rdf.model.ResourceFactory.createStatement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.tboxreasoner.ReasonerStatementPattern;
+import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxChanges;
+import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxReasoner.Delta;
+import edu.cornell.mannlib.vitro.webapp.tboxreasoner.TBoxReasoner.Status;
+
+public class JFactTBoxReasonerTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+	private static final Resource A = createResource(NS + "A");
+	private static final Resource B = createResource(NS + "B");
+	private static final Resource C = createResource(NS + "C");
+	private static final Resource P = createResource(NS + "p");
+
+	private static final Statement A_SUB_C = createStatement(A,
+			RDFS.subClassOf, C);
+
+	private JFactTBoxReasoner reasoner;
+	private Model assertions;
+
+	@Before
+	public void setup() {
+		reasoner = new JFactTBoxReasoner();
+		assertions = ModelFactory.createDefaultModel();
+
+		TBoxChanges changes = new TBoxChanges();
+		add(changes, createStatement(A, RDF.type, OWL.Class));
+		add(changes, createStatement(B, RDF.type, OWL.Class));
+		add(changes, createStatement(C, RDF.type, OWL.Class));
+		add(changes, createStatement(A, RDFS.subClassOf, B));
+		add(changes, createStatement(B, RDFS.subClassOf, C));
+		assertSuccess(reason(changes));
+	}
+
+	@Test
+	public void firstReasoningHasNoDelta() {
+		assertTrue(combined().contains(A_SUB_C));
+		assertNull(reasoner.getLastDelta());
+	}
+
+	@Test
+	public void removedAxiomRetractsInference() {
+		TBoxChanges changes = new TBoxChanges();
+		remove(changes, createStatement(B, RDFS.subClassOf, C));
+		assertSuccess(reason(changes));
+
+		assertFalse(combined().contains(A_SUB_C));
+		Delta delta = reasoner.getLastDelta();
+		assertNotNull(delta);
+		assertTrue(delta.getAbsent().contains(A_SUB_C));
+		assertTrue(delta.getAbsent().contains(
+				createStatement(B, RDFS.subClassOf, C)));
+		assertMatchesFreshReasoner();
+	}
+
+	@Test
+	public void labelChangeKeepsInferences() {
+		Statement label = createStatement(A, RDFS.label,
+				createPlainLiteral("Class A"));
+		TBoxChanges changes = new TBoxChanges();
+		add(changes, label);
+		assertSuccess(reason(changes));
+
+		assertTrue(combined().contains(label));
+		assertTrue(combined().contains(A_SUB_C));
+		assertEquals(Collections.singletonList(label), reasoner
+				.getLastDelta().getPresent());
+		assertTrue(reasoner.getLastDelta().getAbsent().isEmpty());
+		assertMatchesFreshReasoner();
+	}
+
+	@Test
+	public void restrictionIsFoundByComparingOntologies() {
+		Resource restriction = ModelFactory.createDefaultModel()
+				.createResource();
+		TBoxChanges changes = new TBoxChanges();
+		add(changes, createStatement(P, RDF.type, OWL.ObjectProperty));
+		add(changes, createStatement(restriction, RDF.type, OWL.Restriction));
+		add(changes, createStatement(restriction, OWL.onProperty, P));
+		add(changes, createStatement(restriction, OWL.someValuesFrom, B));
+		add(changes, createStatement(C, OWL.equivalentClass, restriction));
+		assertSuccess(reason(changes));
+
+		assertNotNull(reasoner.getLastDelta());
+		assertMatchesFreshReasoner();
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void add(TBoxChanges changes, Statement stmt) {
+		changes.addStatement(stmt);
+		assertions.add(stmt);
+	}
+
+	private void remove(TBoxChanges changes, Statement stmt) {
+		changes.removeStatement(stmt);
+		assertions.remove(stmt);
+	}
+
+	private Status reason(TBoxChanges changes) {
+		reasoner.updateReasonerModel(changes);
+		return reasoner.performReasoning();
+	}
+
+	private void assertSuccess(Status status) {
+		assertTrue(status.isConsistent());
+		assertFalse(status.isInErrorState());
+	}
+
+	private Model combined() {
+		return toModel(reasoner);
+	}
+
+	private Model toModel(JFactTBoxReasoner r) {
+		List<Statement> all = r.filterResults(Collections
+				.singletonList(ReasonerStatementPattern.ANY_OBJECT_PROPERTY));
+		return ModelFactory.createDefaultModel().add(all);
+	}
+
+	/**
+	 * The incremental reasoner should agree with one that starts from scratch.
+	 */
+	private void assertMatchesFreshReasoner() {
+		JFactTBoxReasoner fresh = new JFactTBoxReasoner();
+		TBoxChanges changes = new TBoxChanges();
+		for (Statement stmt : assertions.listStatements().toList()) {
+			changes.addStatement(stmt);
+		}
+		fresh.updateReasonerModel(changes);
+		assertSuccess(fresh.performReasoning());
+		assertTrue(toModel(fresh).isIsomorphicWith(combined()));
+	}
+}
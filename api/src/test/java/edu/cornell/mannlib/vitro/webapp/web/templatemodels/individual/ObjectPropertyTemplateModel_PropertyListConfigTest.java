@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -118,6 +119,7 @@ public class ObjectPropertyTemplateModel_PropertyListConfigTest extends
 	@Before
 	public void setup() {
 		logMessages = new StringWriter();
+		PropertyListConfig.clearCompiledConfigs();
 
 		opDao = new ObjectPropertyDaoStub();
 		fpDao = new FauxPropertyDaoStub();
@@ -383,6 +385,45 @@ public class ObjectPropertyTemplateModel_PropertyListConfigTest extends
 		assertPostProcessorClass("pp OK", PostProcessorOK.class);
 	}
 
+	//
+	// Compiled configurations
+	//
+
+	@Test
+	public void configIsCompiledOnlyOnce()
+			throws InvalidConfigurationException {
+		op = buildOperation("postProcessorClassNotFound");
+		optm = new NonCollatingOPTM(op, subject, vreq, false);
+
+		captureLogsFromPropertyListConfig();
+		optm = new NonCollatingOPTM(op, subject, vreq, false);
+
+		assertEquals("no second warning", "", logMessages.toString());
+		assertPostProcessorClass("pp class still not found",
+				DefaultObjectPropertyDataPostProcessor.class);
+	}
+
+	@Test
+	public void modifiedConfigIsCompiledAgain() throws Exception {
+		Class<?> clazz = ObjectPropertyTemplateModel_PropertyListConfigTest.class;
+		File file = createFile(configDir, "testConfig-modified.xml",
+				readAll(clazz.getResourceAsStream("testConfig-postProcessorOK.xml")));
+		ctx.setRealPath("/config/testConfig-modified.xml",
+				file.getAbsolutePath());
+		op = buildOperation("modified");
+		optm = new NonCollatingOPTM(op, subject, vreq, false);
+		assertPostProcessorClass("before modification", PostProcessorOK.class);
+
+		long lastModified = file.lastModified();
+		FileUtils.writeStringToFile(file,
+				readAll(clazz.getResourceAsStream("testConfig-postProcessorNameEmpty.xml")),
+				"UTF-8");
+		file.setLastModified(lastModified + 2000);
+		optm = new NonCollatingOPTM(op, subject, vreq, false);
+		assertPostProcessorClass("after modification",
+				DefaultObjectPropertyDataPostProcessor.class);
+	}
+
 	// ----------------------------------------------------------------------
 	// Helper methods
 	// ----------------------------------------------------------------------
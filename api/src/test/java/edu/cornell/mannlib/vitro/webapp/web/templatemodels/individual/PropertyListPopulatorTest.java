@@ -0,0 +1,161 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.web.templatemodels.individual;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.config.ConfigurationPropertiesStub;
+import stubs.javax.servlet.ServletContextStub;
+import stubs.javax.servlet.http.HttpServletRequestStub;
+import stubs.javax.servlet.http.HttpSessionStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.ObjectProperty;
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+
+public class PropertyListPopulatorTest extends AbstractTestClass {
+	private ConfigurationPropertiesStub props;
+	private VitroRequest vreq;
+	private PropertyListPopulator populator;
+
+	@Before
+	public void setup() {
+		ServletContextStub ctx = new ServletContextStub();
+		props = new ConfigurationPropertiesStub();
+		props.setBean(ctx);
+
+		HttpSessionStub session = new HttpSessionStub();
+		session.setServletContext(ctx);
+		HttpServletRequestStub req = new HttpServletRequestStub();
+		req.setSession(session);
+		vreq = new VitroRequest(req);
+	}
+
+	@After
+	public void close() {
+		populator.close();
+	}
+
+	@Test
+	public void singleThreadBuildsOnTheRequestThread() {
+		populator = new PropertyListPopulator(vreq, "http://test/s", true);
+		Future<Thread> future = populator.submit(property(0),
+				new Callable<Thread>() {
+					@Override
+					public Thread call() {
+						return Thread.currentThread();
+					}
+				});
+		assertSame(Thread.currentThread(), PropertyListPopulator
+				.collect(future));
+	}
+
+	@Test
+	public void resultsAreCollectedInTheOrderSubmitted() {
+		props.setProperty(PropertyListPopulator.PROPERTY_THREADS, "3");
+		populator = new PropertyListPopulator(vreq, "http://test/s", true);
+
+		// The first property can't finish until the last one has.
+		final CountDownLatch lastIsDone = new CountDownLatch(1);
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			final int index = i;
+			futures.add(populator.submit(property(i), new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					if (index == 0) {
+						lastIsDone.await(10, TimeUnit.SECONDS);
+					} else if (index == 2) {
+						lastIsDone.countDown();
+					}
+					return "p" + index + " " + Thread.currentThread().getName();
+				}
+			}));
+		}
+
+		List<String> results = new ArrayList<>();
+		for (Future<String> future : futures) {
+			results.add(PropertyListPopulator.collect(future));
+		}
+		assertEquals(3, results.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("p" + i, results.get(i).split(" ")[0]);
+		}
+		assertTrue(results.get(0).split(" ")[1]
+				.startsWith("PropertyListPopulator"));
+	}
+
+	@Test
+	public void problemIsThrownWhenCollected() {
+		props.setProperty(PropertyListPopulator.PROPERTY_THREADS, "2");
+		populator = new PropertyListPopulator(vreq, "http://test/s", true);
+		Future<String> future = populator.submit(property(0),
+				new Callable<String>() {
+					@Override
+					public String call() {
+						throw new IllegalArgumentException("bad property");
+					}
+				});
+		try {
+			PropertyListPopulator.collect(future);
+			fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			assertEquals("bad property", e.getMessage());
+		}
+	}
+
+	@Test
+	public void contentThatIsNotThreadSafeIsBuiltOnTheRequestThread() {
+		props.setProperty(PropertyListPopulator.PROPERTY_THREADS, "3");
+		populator = new PropertyListPopulator(vreq, "http://test/s", false);
+		Future<Thread> future = populator.submit(property(0),
+				new Callable<Thread>() {
+					@Override
+					public Thread call() {
+						return Thread.currentThread();
+					}
+				});
+		assertSame(Thread.currentThread(), PropertyListPopulator
+				.collect(future));
+	}
+
+	@Test
+	public void invalidThreadCountMeansOneThread() {
+		props.setProperty(PropertyListPopulator.PROPERTY_THREADS, "many");
+		setLoggerLevel(PropertyListPopulator.class, Level.ERROR);
+		populator = new PropertyListPopulator(vreq, "http://test/s", true);
+		Future<Thread> future = populator.submit(property(0),
+				new Callable<Thread>() {
+					@Override
+					public Thread call() {
+						return Thread.currentThread();
+					}
+				});
+		assertSame(Thread.currentThread(), PropertyListPopulator
+				.collect(future));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private ObjectProperty property(int i) {
+		ObjectProperty op = new ObjectProperty();
+		op.setURI("http://test/p" + i);
+		return op;
+	}
+}
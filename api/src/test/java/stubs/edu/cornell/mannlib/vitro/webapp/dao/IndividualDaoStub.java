@@ -2,11 +2,14 @@
 
 package stubs.edu.cornell.mannlib.vitro.webapp.dao;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import edu.cornell.mannlib.vitro.webapp.beans.DataPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
@@ -50,6 +53,19 @@ public class IndividualDaoStub implements IndividualDao {
 		return indMap.get(individualURI);
 	}
 
+	@Override
+	public List<Individual> getIndividualsByURIs(
+			Collection<String> individualURIs) {
+		List<Individual> individuals = new ArrayList<>();
+		for (String uri : new LinkedHashSet<>(individualURIs)) {
+			Individual ind = indMap.get(uri);
+			if (ind != null) {
+				individuals.add(ind);
+			}
+		}
+		return individuals;
+	}
+
 	// ----------------------------------------------------------------------
 	// Un-implemented methods
 	// ----------------------------------------------------------------------
@@ -135,6 +151,12 @@ public class IndividualDaoStub implements IndividualDao {
 				"IndividualDaoStub.getAllIndividualUris() not implemented.");
 	}	
 
+	@Override
+	public void streamAllIndividualUris(Consumer<String> consumer) {
+		throw new RuntimeException(
+				"IndividualDaoStub.streamAllIndividualUris() not implemented.");
+	}
+
 	@Override
 	public Iterator<String> getUpdatedSinceIterator(long updatedSince) {
 		throw new RuntimeException(
@@ -15,6 +15,7 @@ import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.ModelMaker;
 
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.HierarchyIndex;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.OntModelSelector;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ContextModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.ReasoningOption;
@@ -131,4 +132,16 @@ public class ContextModelAccessStub implements ContextModelAccess {
 				"ContextModelAccessStub.getWebappDaoFactory() not implemented.");
 	}
 
+	@Override
+	public HierarchyIndex getHierarchyIndex() {
+		throw new RuntimeException(
+				"ContextModelAccessStub.getHierarchyIndex() not implemented.");
+	}
+
+	@Override
+	public HierarchyIndex getHierarchyIndex(ReasoningOption option) {
+		throw new RuntimeException(
+				"ContextModelAccessStub.getHierarchyIndex() not implemented.");
+	}
+
 }
@@ -100,6 +100,18 @@ public class SearchEngineStub implements SearchEngine {
 		throw new RuntimeException("SearchEngineStub.commit() not implemented.");
 	}
 
+	@Override
+	public void softCommit() throws SearchEngineException {
+		throw new RuntimeException(
+				"SearchEngineStub.softCommit() not implemented.");
+	}
+
+	@Override
+	public void optimize() throws SearchEngineException {
+		throw new RuntimeException(
+				"SearchEngineStub.optimize() not implemented.");
+	}
+
 	@Override
 	public void deleteById(String... ids) throws SearchEngineException {
 		throw new RuntimeException(
@@ -64,6 +64,12 @@ public class SearchIndexerStub implements SearchIndexer {
 				"SearchIndexerStub.rebuildIndex() not implemented.");
 	}
 
+	@Override
+	public void optimizeIndex() {
+		throw new RuntimeException(
+				"SearchIndexerStub.optimizeIndex() not implemented.");
+	}
+
 	@Override
 	public SearchIndexerStatus getStatus() {
 		throw new RuntimeException(
@@ -50,6 +50,7 @@ function DeveloperPanel(developerAjaxUrl) {
 		document.getElementById("developer_insertFreemarkerDelimiters").disabled = !developerEnabled;
 		document.getElementById("developer_pageContents_logCustomListView").disabled = !developerEnabled;
 		document.getElementById("developer_pageContents_logCustomShortView").disabled = !developerEnabled;
+		document.getElementById("developer_pageContents_logPropertyTimings").disabled = !developerEnabled;
 		document.getElementById("developer_i18n_defeatCache").disabled = !developerEnabled;
 		document.getElementById("developer_i18n_logStringRequests").disabled = !developerEnabled;
 		document.getElementById("developer_loggingRDFService_enable").disabled = !developerEnabled;
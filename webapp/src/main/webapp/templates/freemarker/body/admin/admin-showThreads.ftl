@@ -35,4 +35,33 @@ table.threadInfo th {
                 <td>${threadInfo.flags}</td>
         </#list>
     </table>
+</section>
+
+<h2>${i18n().change_listener_queues}</h2>
+
+<section id="show-listener-queues" role="region">
+    <#if listenerQueues?has_content>
+        <table class="threadInfo" summary="Status of change listener queues.">
+            <tr>
+                <th>${i18n().listener}</th>
+                <th>${i18n().queue_depth}</th>
+                <th>${i18n().lag_millis}</th>
+                <th>${i18n().delivered}</th>
+                <th>${i18n().failures}</th>
+                <th>${i18n().waits}</th>
+            </tr>
+            <#list listenerQueues as queue>
+                <tr>
+                    <td>${queue.listener}</td>
+                    <td>${queue.queueDepth}</td>
+                    <td>${queue.lagMillis?c}</td>
+                    <td>${queue.delivered?c}</td>
+                    <td>${queue.failed?c}</td>
+                    <td>${queue.waits?c}</td>
+                </tr>
+            </#list>
+        </table>
+    <#else>
+        <p>${i18n().no_change_listener_queues}</p>
+    </#if>
 </section>
\ No newline at end of file
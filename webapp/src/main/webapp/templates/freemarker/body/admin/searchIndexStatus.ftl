@@ -21,10 +21,29 @@
     <#elseif status.statusType = "REBUILDING">
         <h3>The search indexer has been rebuilding the index since ${status.since?datetime}</h3>
         <p><@showIndexerCounts "REBUILD_COUNTS", status /></p>
+        <p>
+            URIs found: ${status.urisFound} (${status.findRate}/sec),
+            individuals loaded: ${status.individualsLoaded} (${status.loadRate}/sec),
+            documents built: ${status.documentsBuilt} (${status.buildRate}/sec),
+            documents submitted: ${status.documentsSubmitted} (${status.submitRate}/sec)
+        </p>
+        <p><@showElapsedTime status.elapsed /></p>
 
     <#else>
         <h3>The search indexer status is: ${status.statusType}
     </#if>
+
+    <p>
+        Batches sent to the search engine: ${status.flushCount} (failed: ${status.failedFlushCount}),
+        documents added: ${status.flushedAdds}, documents deleted: ${status.flushedDeletes},
+        average time: ${status.averageFlushMillis}ms, longest: ${status.maxFlushMillis}ms, last: ${status.lastFlushMillis}ms
+    </p>
+    <p>
+        Soft commits: ${status.softCommitCount} (last: ${status.lastSoftCommitMillis}ms),
+        hard commits: ${status.hardCommitCount} (last: ${status.lastHardCommitMillis}ms),
+        optimizes: ${status.optimizeCount} (last: ${status.lastOptimizeMillis}ms),
+        failures: ${status.commitFailureCount}
+    </p>
     
     
     <form action="${rebuildUrl}" method="POST">
@@ -36,6 +55,15 @@
         </p>
     </form>
 
+    <form action="${optimizeUrl}" method="POST">
+        <p>
+            <#if status.statusType == "IDLE">
+                <input class="submit" type="submit" name="optimize" value="${i18n().optimize_button}" role="button" />
+                ${i18n().optimize_search_index}
+            </#if>
+        </p>
+    </form>
+
 
     <h3>History</h3>
     <table class="history">
@@ -76,5 +104,8 @@
        <#if counts.documentsAfter != 0>
            - after rebuild: ${counts.documentsAfter}
        </#if> 
+       <#if counts.urisFound != 0>
+           - found: ${counts.urisFound}, loaded: ${counts.individualsLoaded}, excluded: ${counts.excluded}, built: ${counts.documentsBuilt}, submitted: ${counts.documentsSubmitted}
+       </#if> 
    </#if>
 </#macro>
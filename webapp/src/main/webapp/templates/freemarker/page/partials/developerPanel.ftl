@@ -48,6 +48,12 @@
 									"Log the use of custom list view XML files." />
 							<@showCheckbox "developer_pageContents_logCustomShortView" , 
 									"Log the use of custom short views in search, index and browse pages."/>
+							<@showCheckbox "developer_pageContents_logPropertyTimings" , 
+									"Log the time taken to build each property on profile pages."/>
+							<#if shortViewCacheStatistics??>
+								<br/>
+								Short view cache: ${shortViewCacheStatistics}
+							</#if>
 						</div>
 						
 						<div class="container">